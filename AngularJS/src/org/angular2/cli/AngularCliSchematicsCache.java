@@ -0,0 +1,108 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.cli;
+
+import com.google.gson.GsonBuilder;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Schematics loaded for Angular CLI projects, kept between IDE restarts. Each entry is stored with a key calculated from
+ * the lock file of the project and {@code angular.json}, so that schematics are loaded again only when installed packages
+ * or the CLI configuration change. Projects without a lock file aren't cached.
+ */
+final class AngularCliSchematicsCache {
+
+  private static final Logger LOG = Logger.getInstance(AngularCliSchematicsCache.class);
+
+  private static final int VERSION = 1;
+  @NonNls private static final String[] LOCK_FILES = {"package-lock.json", "yarn.lock", "pnpm-lock.yaml"};
+
+  private AngularCliSchematicsCache() {
+  }
+
+  static @NotNull File getCacheDir() {
+    return new File(PathManager.getSystemPath(), "angular-cli/schematics");
+  }
+
+  static @NotNull File getCacheFile(@NotNull VirtualFile cliFolder, boolean includeHidden) {
+    return new File(getCacheDir(), hash(cliFolder.getPath() + (includeHidden ? ":all" : ":public")));
+  }
+
+  /**
+   * @return the key of the schematics of the project, or {@code null} if the project has no lock file
+   */
+  static @Nullable String getKey(@NotNull VirtualFile angularJson, boolean includeHidden) {
+    VirtualFile cliFolder = angularJson.getParent();
+    if (cliFolder == null) return null;
+    for (String name : LOCK_FILES) {
+      VirtualFile lockFile = cliFolder.findChild(name);
+      if (lockFile != null && lockFile.isValid() && !lockFile.isDirectory()) {
+        try {
+          return hash(VERSION + ":" + includeHidden + ":" + name + ":"
+                      + hash(lockFile.contentsToByteArray()) + ":" + hash(angularJson.contentsToByteArray()));
+        }
+        catch (IOException e) {
+          LOG.info("Failed to read " + lockFile.getPath(), e);
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the key and the schematics stored in the file, or {@code null} if there are none
+   */
+  static @Nullable Pair<String, List<Schematic>> read(@NotNull File cacheFile) {
+    if (!cacheFile.isFile()) return null;
+    try {
+      String content = FileUtil.loadFile(cacheFile, StandardCharsets.UTF_8);
+      int keyEnd = content.indexOf('\n');
+      if (keyEnd < 0) return null;
+      List<Schematic> schematics = SchematicsJsonParser.parse(content.substring(keyEnd + 1));
+      return schematics != null ? Pair.create(content.substring(0, keyEnd), schematics) : null;
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.info("Failed to load schematics from " + cacheFile, e);
+      FileUtil.delete(cacheFile);
+      return null;
+    }
+  }
+
+  static void write(@NotNull File cacheFile, @NotNull String key, @NotNull List<Schematic> schematics) {
+    try {
+      FileUtil.writeToFile(cacheFile, key + "\n" + new GsonBuilder().create().toJson(schematics));
+    }
+    catch (IOException e) {
+      LOG.info("Failed to save schematics to " + cacheFile, e);
+      FileUtil.delete(cacheFile);
+    }
+  }
+
+  private static @NotNull String hash(@NotNull String text) {
+    return hash(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static @NotNull String hash(byte @NotNull [] bytes) {
+    try {
+      return StringUtil.toHexString(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -41,6 +41,15 @@ public abstract class AngularCliSchematicsRegistryService {
    */
   public abstract boolean supportsNgAdd(@NotNull InstalledPackageVersion version);
 
+  /**
+   * Same as {@link #supportsNgAdd(InstalledPackageVersion)} for several locally installed packages,
+   * which are checked in parallel.
+   *
+   * @return the packages supporting ng-add, in the original order
+   */
+  public abstract @NotNull List<InstalledPackageVersion> filterPackagesSupportingNgAdd(
+    @NotNull Collection<InstalledPackageVersion> versions);
+
   /**
    * Loads schematics available in a particular location. The results are cached
    * and recalculated on every change of package.json in any node_modules directory.
@@ -53,6 +62,8 @@ public abstract class AngularCliSchematicsRegistryService {
   /**
    * Loads schematics available in a particular location. The results are cached
    * and recalculated on every change of package.json in any node_modules directory.
+   * For projects with a lock file the results are also kept between IDE restarts,
+   * and previous results are returned while new ones are loaded in background.
    */
   public abstract @NotNull Collection<Schematic> getSchematics(@NotNull Project project,
                                                                @NotNull VirtualFile cliFolder,
@@ -64,6 +75,11 @@ public abstract class AngularCliSchematicsRegistryService {
    */
   public abstract void clearProjectSchematicsCache();
 
+  /**
+   * Clears cache for getSchematics method, including the schematics of the given location kept between IDE restarts
+   */
+  public abstract void clearProjectSchematicsCache(@NotNull VirtualFile cliFolder);
+
   public static @NotNull AngularCliSchematicsRegistryService getInstance() {
     return ApplicationManager.getApplication().getService(AngularCliSchematicsRegistryService.class);
   }
@@ -11,8 +11,10 @@ import com.intellij.javascript.nodejs.packageJson.NodePackageBasicInfo;
 import com.intellij.lang.javascript.service.JSLanguageServiceUtil;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.*;
 import com.intellij.openapi.util.io.FileUtil;
@@ -32,10 +34,13 @@ import org.jetbrains.annotations.Nullable;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
 
@@ -49,11 +54,15 @@ public class AngularCliSchematicsRegistryServiceImpl extends AngularCliSchematic
   private static final int CACHE_EXPIRY = 25 * 60 * 1000; //25 mins
   @NonNls private static final ExecutorService ourExecutorService =
     AppExecutorUtil.createBoundedApplicationPoolExecutor("Angular CLI Schematics Registry Pool", 5);
+  // reading schematics collections of installed packages doesn't wait for Node.js runs of the registry pool
+  @NonNls private static final ExecutorService ourNgAddExecutorService =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Angular CLI ng-add Check Pool", 5);
   @NonNls private static final Key<CachedSchematics> SCHEMATICS_PUBLIC =
     new Key<>("angular.cli.schematics.public");
   @NonNls private static final Key<CachedSchematics> SCHEMATICS_ALL =
     new Key<>("angular.cli.schematics.all");
   private static final SimpleModificationTracker SCHEMATICS_CACHE_TRACKER = new SimpleModificationTracker();
+  private static final Set<File> ourRefreshedCacheFiles = ConcurrentHashMap.newKeySet();
   @NonNls private static final String NG_PACKAGES_JSON_PATH = "../../angularjs/cli/ng-packages.json";
   @NonNls private static final String SCHEMATICS_PROP = "schematics";
   @NonNls private static final String NG_ADD_SCHEMATIC = "ng-add";
@@ -119,19 +128,109 @@ public class AngularCliSchematicsRegistryServiceImpl extends AngularCliSchematic
       .map(angularJson -> ReadAction.compute(() -> PsiManager.getInstance(project).findFile(angularJson)))
       .map(angularJson -> getCachedSchematics(angularJson, includeHidden ? SCHEMATICS_ALL : SCHEMATICS_PUBLIC).getUpToDateOrCompute(
         () -> CachedValueProvider.Result.create(
-          SchematicsLoaderKt.doLoad(angularJson.getProject(),
-                                    angularJson.getVirtualFile().getParent(), includeHidden, logErrors),
+          loadSchematics(angularJson.getProject(), angularJson.getVirtualFile(), includeHidden, logErrors),
           NodeModulesDirectoryManager.getInstance(angularJson.getProject()).getNodeModulesDirChangeTracker(),
           SCHEMATICS_CACHE_TRACKER,
           angularJson)))
       .orElseGet(Collections::emptyList);
   }
 
+  @Override
+  public @NotNull List<InstalledPackageVersion> filterPackagesSupportingNgAdd(@NotNull Collection<InstalledPackageVersion> versions) {
+    List<Pair<InstalledPackageVersion, Future<Boolean>>> checks = ContainerUtil.map(
+      versions, version -> Pair.create(version, ourNgAddExecutorService.submit(() -> supportsNgAdd(version))));
+    List<InstalledPackageVersion> result = new ArrayList<>();
+    try {
+      for (Pair<InstalledPackageVersion, Future<Boolean>> check : checks) {
+        if (ProgressIndicatorUtils.awaitWithCheckCanceled(check.second)) {
+          result.add(check.first);
+        }
+      }
+    }
+    catch (ProcessCanceledException e) {
+      checks.forEach(check -> check.second.cancel(true));
+      throw e;
+    }
+    return result;
+  }
+
   @Override
   public void clearProjectSchematicsCache() {
     SCHEMATICS_CACHE_TRACKER.incModificationCount();
   }
 
+  @Override
+  public void clearProjectSchematicsCache(@NotNull VirtualFile cliFolder) {
+    FileUtil.delete(AngularCliSchematicsCache.getCacheFile(cliFolder, true));
+    FileUtil.delete(AngularCliSchematicsCache.getCacheFile(cliFolder, false));
+    SCHEMATICS_CACHE_TRACKER.incModificationCount();
+  }
+
+  /**
+   * Schematics are loaded by running Node.js, so they're stored on disk for projects with a lock file. If the stored ones
+   * were loaded for other dependencies, they're still returned while new ones are loaded in background. The default schematics,
+   * used when the CLI reports none, aren't stored, so that the CLI is asked again once it works.
+   */
+  private static @NotNull List<Schematic> loadSchematics(@NotNull Project project,
+                                                         @NotNull VirtualFile angularJson,
+                                                         boolean includeHidden,
+                                                         boolean logErrors) {
+    VirtualFile cliFolder = angularJson.getParent();
+    String key = ReadAction.compute(() -> AngularCliSchematicsCache.getKey(angularJson, includeHidden));
+    if (key == null) {
+      return SchematicsLoaderKt.doLoad(project, cliFolder, includeHidden, logErrors);
+    }
+    File cacheFile = AngularCliSchematicsCache.getCacheFile(cliFolder, includeHidden);
+    Pair<String, List<Schematic>> cached = AngularCliSchematicsCache.read(cacheFile);
+    if (cached != null) {
+      if (!key.equals(cached.first)) {
+        refreshInBackground(project, angularJson, includeHidden, cacheFile);
+      }
+      return cached.second;
+    }
+    List<Schematic> schematics = SchematicsLoaderKt.doLoadFromCli(project, cliFolder, includeHidden, logErrors);
+    if (schematics == null) {
+      return Collections.emptyList();
+    }
+    if (schematics.isEmpty()) {
+      return SchematicsLoaderKt.getDefaultSchematics();
+    }
+    AngularCliSchematicsCache.write(cacheFile, key, schematics);
+    return schematics;
+  }
+
+  private static void refreshInBackground(@NotNull Project project,
+                                          @NotNull VirtualFile angularJson,
+                                          boolean includeHidden,
+                                          @NotNull File cacheFile) {
+    if (!ourRefreshedCacheFiles.add(cacheFile)) {
+      return;
+    }
+    ourExecutorService.execute(() -> {
+      try {
+        if (project.isDisposed() || !angularJson.isValid()) {
+          return;
+        }
+        // the key is calculated before loading, so that changes made meanwhile cause another refresh
+        String key = ReadAction.compute(() -> AngularCliSchematicsCache.getKey(angularJson, includeHidden));
+        if (key == null) {
+          return;
+        }
+        List<Schematic> schematics = SchematicsLoaderKt.doLoadFromCli(project, angularJson.getParent(), includeHidden, false);
+        if (schematics != null && !schematics.isEmpty()) {
+          AngularCliSchematicsCache.write(cacheFile, key, schematics);
+          SCHEMATICS_CACHE_TRACKER.incModificationCount();
+        }
+      }
+      catch (Exception e) {
+        LOG.info("Failed to refresh schematics of " + angularJson.getPath(), e);
+      }
+      finally {
+        ourRefreshedCacheFiles.remove(cacheFile);
+      }
+    });
+  }
+
   private static @NotNull List<NodePackageBasicInfo> fetchPackagesSupportingNgAdd() {
     try {
       RequestBuilder builder = HttpRequests.request(NG_PACKAGES_URL);
@@ -22,15 +22,24 @@ private var myLogErrors: ThreadLocal<Boolean> = ThreadLocal.withInitial { true }
 private val LOG: Logger = Logger.getInstance("#org.angular2.cli.SchematicsLoader")
 
 fun doLoad(project: Project, cli: VirtualFile, includeHidden: Boolean, logErrors: Boolean): List<Schematic> {
+  val schematics = doLoadFromCli(project, cli, includeHidden, logErrors) ?: return emptyList()
+  return schematics.ifEmpty { getDefaultSchematics() }
+}
+
+/**
+ * @return the schematics reported by the Angular CLI of the project, an empty list if it has reported none,
+ * or `null` if Node.js can't be run
+ */
+fun doLoadFromCli(project: Project, cli: VirtualFile, includeHidden: Boolean, logErrors: Boolean): List<Schematic>? {
   myLogErrors.set(logErrors)
-  val interpreter = NodeJsInterpreterManager.getInstance(project).interpreter ?: return emptyList()
+  val interpreter = NodeJsInterpreterManager.getInstance(project).interpreter ?: return null
   val configurator: NodeCommandLineConfigurator
   try {
     configurator = NodeCommandLineConfigurator.find(interpreter)
   }
   catch (e: Exception) {
     LOG.error("Cannot load schematics", e)
-    return emptyList()
+    return null
   }
 
   var parse: Collection<Schematic> = emptyList()
@@ -57,13 +66,16 @@ fun doLoad(project: Project, cli: VirtualFile, includeHidden: Boolean, logErrors
     }
   }
 
-  if (parse.isEmpty()) {
-    parse = BlueprintParser().parse(DEFAULT_OUTPUT)
-  }
-
   return parse.sortedBy { it.name }
 }
 
+/**
+ * @return the schematics of the Angular CLI versions which report none
+ */
+fun getDefaultSchematics(): List<Schematic> {
+  return BlueprintParser().parse(DEFAULT_OUTPUT).sortedBy { it.name }
+}
+
 private fun loadSchematicsInfoJson(configurator: NodeCommandLineConfigurator,
                                    cli: VirtualFile,
                                    includeHidden: Boolean): String {
@@ -94,7 +94,7 @@ class AngularCliGenerateAction : DumbAwareAction() {
       }
 
       override fun actionPerformed(e: AnActionEvent) {
-        AngularCliSchematicsRegistryService.getInstance().clearProjectSchematicsCache()
+        AngularCliSchematicsRegistryService.getInstance().clearProjectSchematicsCache(cli)
         updateList(list, model, project, cli)
       }
 
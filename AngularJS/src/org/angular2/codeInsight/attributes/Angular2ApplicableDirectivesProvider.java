@@ -2,16 +2,21 @@
 package org.angular2.codeInsight.attributes;
 
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.NotNullLazyValue;
+import com.intellij.openapi.util.Pair;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.containers.ContainerUtil;
 import org.angular2.entities.Angular2Directive;
 import org.angular2.lang.expr.psi.Angular2TemplateBindings;
+import org.angular2.lang.selector.Angular2CompiledSelectorMatcher;
 import org.angular2.lang.selector.Angular2DirectiveSimpleSelector;
 import org.angular2.lang.selector.Angular2SelectorMatcher;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.angular2.codeInsight.template.Angular2TemplateElementsScopeProvider.isTemplateTag;
 import static org.angular2.entities.Angular2EntitiesProvider.findElementDirectivesCandidates;
@@ -19,7 +24,7 @@ import static org.angular2.web.Angular2WebSymbolsAdditionalContextProvider.ELEME
 
 public class Angular2ApplicableDirectivesProvider {
 
-  private final NotNullLazyValue<List<Angular2Directive>> myDirectiveCandidates;
+  private final List<Angular2Directive> myDirectiveCandidates;
   private final List<Angular2Directive> myMatchedDirectives;
 
   public Angular2ApplicableDirectivesProvider(@NotNull XmlTag xmlTag) {
@@ -40,19 +45,12 @@ public class Angular2ApplicableDirectivesProvider {
                                                @NotNull String tagName,
                                                boolean onlyMatchingTagName,
                                                @NotNull Angular2DirectiveSimpleSelector cssSelector) {
-    Set<Angular2Directive> directiveCandidates = new HashSet<>(
-      findElementDirectivesCandidates(project, tagName));
-    if (!onlyMatchingTagName) {
-      directiveCandidates.addAll(findElementDirectivesCandidates(project, ""));
-    }
-
-    Angular2SelectorMatcher<Angular2Directive> matcher = new Angular2SelectorMatcher<>();
-    directiveCandidates.forEach(d -> matcher.addSelectables(d.getSelector().getSimpleSelectors(), d));
-    myDirectiveCandidates = NotNullLazyValue.createValue(() -> new ArrayList<>(directiveCandidates));
+    DirectivesMatcher matcher = getDirectivesMatcher(project, tagName, onlyMatchingTagName);
+    myDirectiveCandidates = matcher.candidates;
 
     boolean isTemplateTag = isTemplateTag(tagName);
     Set<Angular2Directive> matchedDirectives = new HashSet<>();
-    matcher.match(cssSelector, (selector, directive) -> {
+    matcher.matcher.match(cssSelector, (selector, directive) -> {
       if (directive.getDirectiveKind().isRegular() || isTemplateTag) {
         matchedDirectives.add(directive);
       }
@@ -62,10 +60,40 @@ public class Angular2ApplicableDirectivesProvider {
   }
 
   public List<Angular2Directive> getCandidates() {
-    return myDirectiveCandidates.getValue();
+    return myDirectiveCandidates;
   }
 
   public List<Angular2Directive> getMatched() {
     return myMatchedDirectives;
   }
+
+  private static @NotNull DirectivesMatcher getDirectivesMatcher(@NotNull Project project,
+                                                                 @NotNull String tagName,
+                                                                 boolean onlyMatchingTagName) {
+    return CachedValuesManager.getManager(project).getCachedValue(project, () -> CachedValueProvider.Result.create(
+      new ConcurrentHashMap<Pair<String, Boolean>, DirectivesMatcher>(), PsiModificationTracker.MODIFICATION_COUNT))
+      .computeIfAbsent(Pair.create(tagName, onlyMatchingTagName), key -> new DirectivesMatcher(project, key.first, key.second));
+  }
+
+  /**
+   * Directives which may match tags with the given name, along with the compiled matcher of their selectors,
+   * shared by all tags with the name until the next PSI modification.
+   */
+  private static final class DirectivesMatcher {
+    final List<Angular2Directive> candidates;
+    final Angular2CompiledSelectorMatcher<Angular2Directive> matcher;
+
+    DirectivesMatcher(@NotNull Project project, @NotNull String tagName, boolean onlyMatchingTagName) {
+      Set<Angular2Directive> directiveCandidates = new HashSet<>(
+        findElementDirectivesCandidates(project, tagName));
+      if (!onlyMatchingTagName) {
+        directiveCandidates.addAll(findElementDirectivesCandidates(project, ""));
+      }
+      candidates = Collections.unmodifiableList(new ArrayList<>(directiveCandidates));
+
+      Angular2SelectorMatcher<Angular2Directive> selectorMatcher = new Angular2SelectorMatcher<>();
+      directiveCandidates.forEach(d -> selectorMatcher.addSelectables(d.getSelector().getSimpleSelectors(), d));
+      matcher = selectorMatcher.compile();
+    }
+  }
 }
@@ -2,26 +2,30 @@
 package org.angular2.codeInsight.attributes;
 
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ArrayUtilRt;
 import com.intellij.xml.util.HtmlUtil;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 
+/**
+ * DOM properties and events of HTML and SVG elements. The schema is parsed on first use into bit sets of interned property
+ * and event names per element, with the names of the element's super types already included, so that membership checks
+ * don't allocate.
+ */
 public final class DomElementSchemaRegistry {
 
   public static @NotNull Set<String> getElementProperties(@NotNull String tagNamespace, @NotNull String tagName) {
-    if (tagNamespace.equals(HtmlUtil.SVG_NAMESPACE)) {
-      tagName = ":svg:" + tagName; //NON-NLS
-    }
-    return PROP_SCHEMA.getOrDefault(tagName, DEFAULT_ELEMENT_PROPERTIES);
+    Schema schema = Schema.INSTANCE;
+    return schema.properties[schema.getTagId(tagNamespace, tagName)];
   }
 
   public static @NotNull Set<String> getElementEvents(@NotNull String tagNamespace, @NotNull String tagName) {
-    if (tagNamespace.equals(HtmlUtil.SVG_NAMESPACE)) {
-      tagName = ":svg:" + tagName; //NON-NLS
-    }
-    return EVENT_SCHEMA.getOrDefault(tagName, DEFAULT_ELEMENT_EVENTS);
+    Schema schema = Schema.INSTANCE;
+    return schema.events[schema.getTagId(tagNamespace, tagName)];
   }
 
   @NonNls private static final String[] SCHEMA_DEF = new String[]{
@@ -180,50 +184,146 @@ public final class DomElementSchemaRegistry {
     ":svg:cursor^:svg:|"
   };
 
-  private static final Map<String, Set<String>> PROP_SCHEMA = new HashMap<>();
-  private static final Map<String, Set<String>> EVENT_SCHEMA = new HashMap<>();
-  private static final Set<String> DEFAULT_ELEMENT_PROPERTIES;
-  private static final Set<String> DEFAULT_ELEMENT_EVENTS;
-
-  static {
-    for (String encodedType : SCHEMA_DEF) {
-      Set<String> props = new HashSet<>();
-      Set<String> events = new HashSet<>();
-      List<String> strType_strProperties = StringUtil.split(encodedType, "|", true, false);
-      List<String> data = StringUtil.split(strType_strProperties.get(1), ",");
-      List<String> typeNames_superName = StringUtil.split(strType_strProperties.get(0), "^", true, false);
-      StringUtil.split(typeNames_superName.get(0), ",")
-        .forEach(tag -> {
-          PROP_SCHEMA.put(StringUtil.toLowerCase(tag), Collections.unmodifiableSet(props));
-          EVENT_SCHEMA.put(StringUtil.toLowerCase(tag), Collections.unmodifiableSet(events));
-        });
-      Set<String> superTypeProps = typeNames_superName.size() > 1 ? PROP_SCHEMA.get(StringUtil.toLowerCase(typeNames_superName.get(1))) : null;
-      if (superTypeProps != null) {
-        props.addAll(superTypeProps);
+  private static final class Schema {
+    // initialized on first access to the holder, SCHEMA_DEF itself is just an array of constants
+    static final Schema INSTANCE = new Schema(SCHEMA_DEF);
+
+    private static final String SVG_PREFIX = ":svg:"; //NON-NLS
+
+    // SVG elements are kept without the prefix, so that their names aren't concatenated on each lookup
+    private final Object2IntMap<String> myHtmlTagIds = new Object2IntOpenHashMap<>();
+    private final Object2IntMap<String> mySvgTagIds = new Object2IntOpenHashMap<>();
+    final NameSet[] properties;
+    final NameSet[] events;
+
+    Schema(String @NotNull [] schemaDef) {
+      Object2IntMap<String> propertyIds = new Object2IntOpenHashMap<>();
+      Object2IntMap<String> eventIds = new Object2IntOpenHashMap<>();
+      propertyIds.defaultReturnValue(-1);
+      eventIds.defaultReturnValue(-1);
+      List<String> propertyNames = new ArrayList<>();
+      List<String> eventNames = new ArrayList<>();
+      // all tag names share the properties of their type
+      Object2IntMap<String> typeIds = new Object2IntOpenHashMap<>();
+      typeIds.defaultReturnValue(-1);
+      List<BitSet> typeProperties = new ArrayList<>();
+      List<BitSet> typeEvents = new ArrayList<>();
+
+      for (String encodedType : schemaDef) {
+        List<String> strType_strProperties = StringUtil.split(encodedType, "|", true, false);
+        List<String> typeNames_superName = StringUtil.split(strType_strProperties.get(0), "^", true, false);
+        int superTypeId = typeNames_superName.size() > 1 ? typeIds.getInt(StringUtil.toLowerCase(typeNames_superName.get(1))) : -1;
+        BitSet props = superTypeId >= 0 ? (BitSet)typeProperties.get(superTypeId).clone() : new BitSet();
+        BitSet events = superTypeId >= 0 ? (BitSet)typeEvents.get(superTypeId).clone() : new BitSet();
+        for (String entry : StringUtil.split(strType_strProperties.get(1), ",")) {
+          if (!entry.isEmpty()) {
+            switch (entry.charAt(0)) {
+              case '*':
+                events.set(intern(entry.substring(1), eventIds, eventNames));
+                break;
+              case '!':
+              case '#':
+              case '%':
+                props.set(intern(entry.substring(1), propertyIds, propertyNames));
+                break;
+              default:
+                props.set(intern(entry, propertyIds, propertyNames));
+            }
+          }
+        }
+        int typeId = typeProperties.size();
+        typeProperties.add(props);
+        typeEvents.add(events);
+        for (String tag : StringUtil.split(typeNames_superName.get(0), ",")) {
+          typeIds.put(StringUtil.toLowerCase(tag), typeId);
+        }
       }
-      Set<String> superTypeEvents = typeNames_superName.size() > 1 ? EVENT_SCHEMA.get(StringUtil.toLowerCase(typeNames_superName.get(1))) : null;
-      if (superTypeEvents != null) {
-        events.addAll(superTypeEvents);
+
+      //noinspection HardCodedStringLiteral
+      int defaultTypeId = typeIds.getInt(StringUtil.toLowerCase("[HTMLElement]"));
+      myHtmlTagIds.defaultReturnValue(defaultTypeId);
+      mySvgTagIds.defaultReturnValue(defaultTypeId);
+      for (Object2IntMap.Entry<String> entry : typeIds.object2IntEntrySet()) {
+        String tag = entry.getKey();
+        if (tag.startsWith(SVG_PREFIX)) {
+          mySvgTagIds.put(tag.substring(SVG_PREFIX.length()), entry.getIntValue());
+        }
+        else {
+          myHtmlTagIds.put(tag, entry.getIntValue());
+        }
       }
-      data.forEach(entry -> {
-        if (!entry.isEmpty()) {
-          switch (entry.charAt(0)) {
-            case '*':
-              events.add(entry.substring(1));
-              break;
-            case '!':
-            case '#':
-            case '%':
-              props.add(entry.substring(1));
-              break;
-            default:
-              props.add(entry);
-          }
+
+      String[] propertyNamesArray = ArrayUtilRt.toStringArray(propertyNames);
+      String[] eventNamesArray = ArrayUtilRt.toStringArray(eventNames);
+      properties = new NameSet[typeProperties.size()];
+      events = new NameSet[typeEvents.size()];
+      for (int i = 0; i < properties.length; i++) {
+        properties[i] = new NameSet(typeProperties.get(i), propertyIds, propertyNamesArray);
+        events[i] = new NameSet(typeEvents.get(i), eventIds, eventNamesArray);
+      }
+    }
+
+    int getTagId(@NotNull String tagNamespace, @NotNull String tagName) {
+      return tagNamespace.equals(HtmlUtil.SVG_NAMESPACE) ? mySvgTagIds.getInt(tagName) : myHtmlTagIds.getInt(tagName);
+    }
+
+    private static int intern(@NotNull String name, @NotNull Object2IntMap<String> ids, @NotNull List<String> names) {
+      int id = ids.getInt(name);
+      if (id < 0) {
+        id = names.size();
+        ids.put(name, id);
+        names.add(name);
+      }
+      return id;
+    }
+  }
+
+  /**
+   * Immutable set of the names with bits set in the given bit set.
+   */
+  private static final class NameSet extends AbstractSet<String> {
+    private final BitSet myBits;
+    private final Object2IntMap<String> myIds;
+    private final String[] myNames;
+    private final int mySize;
+
+    NameSet(@NotNull BitSet bits, @NotNull Object2IntMap<String> ids, String @NotNull [] names) {
+      myBits = bits;
+      myIds = ids;
+      myNames = names;
+      mySize = bits.cardinality();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof String)) return false;
+      int id = myIds.getInt(o);
+      return id >= 0 && myBits.get(id);
+    }
+
+    @Override
+    public @NotNull Iterator<String> iterator() {
+      return new Iterator<>() {
+        private int myNext = myBits.nextSetBit(0);
+
+        @Override
+        public boolean hasNext() {
+          return myNext >= 0;
         }
-      });
+
+        @Override
+        public String next() {
+          if (myNext < 0) throw new NoSuchElementException();
+          String result = myNames[myNext];
+          myNext = myBits.nextSetBit(myNext + 1);
+          return result;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return mySize;
     }
-    //noinspection HardCodedStringLiteral
-    DEFAULT_ELEMENT_PROPERTIES = PROP_SCHEMA.get(StringUtil.toLowerCase("[HTMLElement]"));
-    DEFAULT_ELEMENT_EVENTS = EVENT_SCHEMA.get(StringUtil.toLowerCase("[HTMLElement]"));
   }
 }
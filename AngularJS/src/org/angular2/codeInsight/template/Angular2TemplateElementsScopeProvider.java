@@ -7,13 +7,13 @@ import com.intellij.lang.javascript.psi.JSVariable;
 import com.intellij.lang.javascript.psi.resolve.JSResolveResult;
 import com.intellij.lang.javascript.psi.stubs.JSImplicitElement;
 import com.intellij.lang.javascript.psi.stubs.impl.JSImplicitElementImpl;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.ResolveResult;
 import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
-import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlTag;
@@ -31,6 +31,7 @@ import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -39,6 +40,8 @@ import static org.angular2.web.Angular2WebSymbolsAdditionalContextProvider.ELEME
 
 public class Angular2TemplateElementsScopeProvider extends Angular2TemplateScopesProvider {
 
+  private static final Logger LOG = Logger.getInstance(Angular2TemplateElementsScopeProvider.class);
+
   @NonNls private static final String LEGACY_TEMPLATE_TAG = "template";
 
   public static boolean isTemplateTag(@Nullable XmlTag tag) {
@@ -55,17 +58,89 @@ public class Angular2TemplateElementsScopeProvider extends Angular2TemplateScope
     final PsiFile hostFile = CompletionUtil.getOriginalOrSelf(notNull(hostElement, element)).getContainingFile();
 
     boolean isInjected = hostElement != null;
-    final Angular2TemplateElementScope templateRootScope = CachedValuesManager.getCachedValue(hostFile, () -> {
-      final Angular2TemplateElementScope result;
+    final Angular2TemplateScopesTree scopesTree = CachedValuesManager.getCachedValue(hostFile, () -> {
+      long start = System.nanoTime();
+      final Angular2TemplateElementScope topLevelScope;
       if (!isInjected) {
-        result = new Angular2TemplateScopeBuilder(hostFile).getTopLevelScope();
+        topLevelScope = new Angular2TemplateScopeBuilder(hostFile).getTopLevelScope();
       }
       else {
-        result = new Angular2ForeignTemplateScopeBuilder(hostFile).getTopLevelScope();
+        topLevelScope = new Angular2ForeignTemplateScopeBuilder(hostFile).getTopLevelScope();
+      }
+      Angular2TemplateScopesTree result = new Angular2TemplateScopesTree(topLevelScope);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Built " + result.size() + " template scopes of " + hostFile.getName() + " in "
+                  + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
       }
-      return CachedValueProvider.Result.create(result, PsiModificationTracker.MODIFICATION_COUNT);
+      // scopes depend only on the template file, so they're kept until it's modified
+      return CachedValueProvider.Result.create(result, hostFile);
     });
-    return Collections.singletonList(templateRootScope.findBestMatchingTemplateScope(notNull(hostElement, element)));
+    return Collections.singletonList(scopesTree.findBestMatchingTemplateScope(notNull(hostElement, element)));
+  }
+
+  /**
+   * Scopes of a template in the order of their start offsets, so that the innermost scope containing an element
+   * is found with a binary search instead of going through the children of the scopes on each level.
+   */
+  private static final class Angular2TemplateScopesTree {
+
+    private final Angular2TemplateElementScope myRoot;
+    private final Angular2TemplateElementScope[] myScopes;
+    private final int[] myStartOffsets;
+
+    private Angular2TemplateScopesTree(@NotNull Angular2TemplateElementScope root) {
+      myRoot = root;
+      List<Angular2TemplateElementScope> scopes = new ArrayList<>();
+      collectScopes(root, scopes);
+      myScopes = scopes.toArray(new Angular2TemplateElementScope[0]);
+      myStartOffsets = new int[myScopes.length];
+      for (int i = 0; i < myScopes.length; i++) {
+        myStartOffsets[i] = myScopes[i].myRange.getStartOffset();
+      }
+    }
+
+    // nested scopes are within the ranges of their parents and siblings don't overlap, so pre-order is ordered by start offsets
+    private static void collectScopes(@NotNull Angular2TemplateElementScope scope, @NotNull List<Angular2TemplateElementScope> result) {
+      result.add(scope);
+      for (Angular2TemplateScope child : scope.getChildren()) {
+        if (child instanceof Angular2TemplateElementScope) {
+          collectScopes((Angular2TemplateElementScope)child, result);
+        }
+      }
+    }
+
+    int size() {
+      return myScopes.length;
+    }
+
+    public @Nullable Angular2TemplateElementScope findBestMatchingTemplateScope(@NotNull PsiElement element) {
+      int offset = element.getTextOffset();
+      if (!myRoot.myRange.contains(offset)) {
+        return null;
+      }
+      // the last scope starting before the offset is either the innermost scope containing it, or a descendant of that scope
+      int low = 0;
+      int high = myStartOffsets.length - 1;
+      while (low < high) {
+        int mid = (low + high + 1) >>> 1;
+        if (myStartOffsets[mid] <= offset) {
+          low = mid;
+        }
+        else {
+          high = mid - 1;
+        }
+      }
+      Angular2TemplateElementScope curScope = myScopes[low];
+      while (!curScope.myRange.contains(offset)) {
+        curScope = (Angular2TemplateElementScope)curScope.getParent();
+        assert curScope != null;
+      }
+      if (PsiTreeUtil.getParentOfType(element, Angular2HtmlTemplateBindings.class) != null
+          && curScope != myRoot) {
+        curScope = (Angular2TemplateElementScope)curScope.getParent();
+      }
+      return curScope;
+    }
   }
 
   private static final class Angular2TemplateElementScope extends Angular2TemplateScope {
@@ -90,30 +165,6 @@ public class Angular2TemplateElementsScopeProvider extends Angular2TemplateScope
     public void add(@NotNull JSPsiElementBase element) {
       elements.add(element);
     }
-
-    public @Nullable Angular2TemplateElementScope findBestMatchingTemplateScope(@NotNull PsiElement element) {
-      if (!myRange.contains(element.getTextOffset())) {
-        return null;
-      }
-      Angular2TemplateElementScope curScope = null;
-      Angular2TemplateElementScope innerScope = this;
-      while (innerScope != null) {
-        curScope = innerScope;
-        innerScope = null;
-        for (Angular2TemplateScope child : curScope.getChildren()) {
-          if (child instanceof Angular2TemplateElementScope
-              && ((Angular2TemplateElementScope)child).myRange.contains(element.getTextOffset())) {
-            innerScope = (Angular2TemplateElementScope)child;
-            break;
-          }
-        }
-      }
-      if (PsiTreeUtil.getParentOfType(element, Angular2HtmlTemplateBindings.class) != null
-          && curScope != this) {
-        curScope = (Angular2TemplateElementScope)curScope.getParent();
-      }
-      return curScope;
-    }
   }
 
   private static JSImplicitElement createVariable(@NotNull String name,
@@ -9,8 +9,6 @@ import com.intellij.lang.javascript.psi.ecmal4.JSAttributeList;
 import com.intellij.lang.javascript.psi.stubs.JSElementIndexingData;
 import com.intellij.lang.javascript.psi.stubs.JSImplicitElement;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Pair;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.stubs.StubIndex;
@@ -21,7 +19,6 @@ import com.intellij.util.ObjectUtils;
 import com.intellij.util.SmartList;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
-import one.util.streamex.StreamEx;
 import org.angular2.entities.ivy.Angular2IvyUtil;
 import org.angular2.entities.metadata.Angular2MetadataUtil;
 import org.angular2.entities.metadata.psi.Angular2MetadataDirectiveBase;
@@ -30,19 +27,16 @@ import org.angular2.entities.metadata.psi.Angular2MetadataModule;
 import org.angular2.entities.metadata.psi.Angular2MetadataPipe;
 import org.angular2.entities.source.*;
 import org.angular2.index.*;
-import org.angular2.lang.selector.Angular2DirectiveSimpleSelector;
 import org.angularjs.index.AngularIndexUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import static com.intellij.psi.util.CachedValueProvider.Result.create;
 import static com.intellij.util.ObjectUtils.tryCast;
-import static java.util.stream.Collectors.toMap;
 import static org.angular2.Angular2DecoratorUtil.*;
 import static org.angular2.entities.Angular2EntityUtils.*;
 import static org.angular2.entities.ivy.Angular2IvyUtil.getIvyEntity;
@@ -120,8 +114,10 @@ public final class Angular2EntitiesProvider {
         ContainerUtil.addIfNotNull(result, tryCast(getSourceEntity(pipe), Angular2Pipe.class));
         return true;
       });
-    processIvyEntities(project, name, Angular2IvyPipeIndex.KEY, Angular2Pipe.class, result::add);
-    processMetadataEntities(project, name, Angular2MetadataPipe.class, Angular2MetadataPipeIndex.KEY, result::add);
+    processIvyEntities(project, name, GlobalSearchScope.allScope(project), Angular2IvyPipeIndex.KEY, Angular2Pipe.class,
+                       (el, pipe) -> result.add(pipe));
+    processMetadataEntities(project, name, GlobalSearchScope.allScope(project), Angular2MetadataPipe.class,
+                            Angular2MetadataPipeIndex.KEY, (el, pipe) -> result.add(pipe));
     return result;
   }
 
@@ -140,37 +136,11 @@ public final class Angular2EntitiesProvider {
   }
 
   public static @NotNull Map<String, List<Angular2Directive>> getAllElementDirectives(@NotNull Project project) {
-    return CachedValuesManager.getManager(project).getCachedValue(project, () -> create(
-      StreamEx.of(findDirectivesCandidates(project, getAnyElementDirectiveIndexName()))
-        .flatCollection(directive -> {
-          List<Pair<String, Angular2Directive>> result = new SmartList<>();
-          Consumer<Angular2DirectiveSimpleSelector> selectorProcessor = sel -> {
-            String elementName = sel.getElementName();
-            if (!StringUtil.isEmpty(elementName) && !"*".equals(elementName)) {
-              result.add(Pair.pair(elementName, directive));
-            }
-          };
-          for (Angular2DirectiveSimpleSelector sel : directive.getSelector().getSimpleSelectors()) {
-            selectorProcessor.accept(sel);
-            sel.getNotSelectors().forEach(selectorProcessor);
-          }
-          return result;
-        })
-        .groupingBy(p -> p.first, Collectors.mapping(p -> p.second, Collectors.toList())),
-      PsiModificationTracker.MODIFICATION_COUNT)
-    );
+    return Angular2EntitiesRegistry.getInstance(project).getAllElementDirectives();
   }
 
   public static @NotNull Map<String, List<Angular2Pipe>> getAllPipes(@NotNull Project project) {
-    return CachedValuesManager.getManager(project).getCachedValue(project, () -> create(
-      StreamEx.of(AngularIndexUtil.getAllKeys(Angular2SourcePipeIndex.KEY, project))
-        .append(AngularIndexUtil.getAllKeys(Angular2MetadataPipeIndex.KEY, project))
-        .append(AngularIndexUtil.getAllKeys(Angular2IvyPipeIndex.KEY, project))
-        .distinct()
-        .collect(toMap(Function.identity(),
-                       name -> findPipes(project, name))),
-      PsiModificationTracker.MODIFICATION_COUNT)
-    );
+    return Angular2EntitiesRegistry.getInstance(project).getAllPipes();
   }
 
   public static boolean isPipeTransformMethod(@Nullable PsiElement element) {
@@ -200,20 +170,47 @@ public final class Angular2EntitiesProvider {
   }
 
   public static List<Angular2Module> getAllModules(@NotNull Project project) {
-    return CachedValuesManager.getManager(project).getCachedValue(project, () -> {
-      List<Angular2Module> result = new ArrayList<>();
-      StubIndex.getInstance().processElements(Angular2SourceModuleIndex.KEY, NG_MODULE_INDEX_NAME,
-                                              project, GlobalSearchScope.allScope(project),
-                                              JSImplicitElementProvider.class, (module) -> {
-          if (module.isValid()) {
-            ContainerUtil.addIfNotNull(result, tryCast(getSourceEntity(module), Angular2Module.class));
+    return Angular2EntitiesRegistry.getInstance(project).getAllModules();
+  }
+
+  /**
+   * Processes all modules, pipes and directives matching any element in the scope along with the elements they're indexed by,
+   * which are used by {@link Angular2EntitiesRegistry} to find the files the entities come from.
+   *
+   * @param pipeNames names of the pipes to look for, all pipes are indexed by their names only
+   */
+  static void processAllEntities(@NotNull Project project,
+                                 @NotNull GlobalSearchScope scope,
+                                 @NotNull Collection<String> pipeNames,
+                                 @NotNull BiConsumer<? super PsiElement, ? super Angular2Entity> consumer) {
+    StubIndex.getInstance().processElements(Angular2SourceModuleIndex.KEY, NG_MODULE_INDEX_NAME,
+                                            project, scope,
+                                            JSImplicitElementProvider.class, (module) -> {
+        if (module.isValid()) {
+          Angular2Module entity = tryCast(getSourceEntity(module), Angular2Module.class);
+          if (entity != null) {
+            consumer.accept(module, entity);
           }
-          return true;
-        });
-      processIvyEntities(project, NG_MODULE_INDEX_NAME, Angular2IvyModuleIndex.KEY, Angular2Module.class, result::add);
-      processMetadataEntities(project, NG_MODULE_INDEX_NAME, Angular2MetadataModule.class, Angular2MetadataModuleIndex.KEY, result::add);
-      return create(result, PsiModificationTracker.MODIFICATION_COUNT);
-    });
+        }
+        return true;
+      });
+    processIvyEntities(project, NG_MODULE_INDEX_NAME, scope, Angular2IvyModuleIndex.KEY, Angular2Module.class, consumer);
+    processMetadataEntities(project, NG_MODULE_INDEX_NAME, scope, Angular2MetadataModule.class, Angular2MetadataModuleIndex.KEY,
+                            consumer);
+
+    findDirectivesCandidates(project, getAnyElementDirectiveIndexName(), scope, consumer);
+
+    for (String name : pipeNames) {
+      AngularIndexUtil.multiResolve(project, scope, Angular2SourcePipeIndex.KEY, name, pipe -> {
+        Angular2Pipe entity = tryCast(getSourceEntity(pipe), Angular2Pipe.class);
+        if (entity != null) {
+          consumer.accept(pipe, entity);
+        }
+        return true;
+      });
+      processIvyEntities(project, name, scope, Angular2IvyPipeIndex.KEY, Angular2Pipe.class, consumer);
+      processMetadataEntities(project, name, scope, Angular2MetadataPipe.class, Angular2MetadataPipeIndex.KEY, consumer);
+    }
   }
 
   public static Angular2SourceEntity getSourceEntity(@NotNull PsiElement element) {
@@ -271,8 +268,16 @@ public final class Angular2EntitiesProvider {
 
   private static @NotNull List<Angular2Directive> findDirectivesCandidates(@NotNull Project project, @NotNull String indexLookupName) {
     List<Angular2Directive> result = new ArrayList<>();
+    findDirectivesCandidates(project, indexLookupName, GlobalSearchScope.allScope(project), (el, directive) -> result.add(directive));
+    return result;
+  }
+
+  private static void findDirectivesCandidates(@NotNull Project project,
+                                               @NotNull String indexLookupName,
+                                               @NotNull GlobalSearchScope scope,
+                                               @NotNull BiConsumer<? super PsiElement, ? super Angular2Directive> consumer) {
     StubIndex.getInstance().processElements(
-      Angular2SourceDirectiveIndex.KEY, indexLookupName, project, GlobalSearchScope.allScope(project), JSImplicitElementProvider.class,
+      Angular2SourceDirectiveIndex.KEY, indexLookupName, project, scope, JSImplicitElementProvider.class,
       provider -> {
         final JSElementIndexingData indexingData = provider.getIndexingData();
         if (indexingData != null) {
@@ -282,7 +287,7 @@ public final class Angular2EntitiesProvider {
               if (element.isValid()) {
                 Angular2Directive directive = tryCast(getSourceEntity(element), Angular2Directive.class);
                 if (directive != null) {
-                  result.add(directive);
+                  consumer.accept(provider, directive);
                   return true;
                 }
               }
@@ -292,20 +297,20 @@ public final class Angular2EntitiesProvider {
         return true;
       }
     );
-    processIvyEntities(project, indexLookupName, Angular2IvyDirectiveIndex.KEY, Angular2Directive.class, result::add);
-    processMetadataEntities(project, indexLookupName, Angular2MetadataDirectiveBase.class,
-                            Angular2MetadataDirectiveIndex.KEY, result::add);
-    return result;
+    processIvyEntities(project, indexLookupName, scope, Angular2IvyDirectiveIndex.KEY, Angular2Directive.class, consumer);
+    processMetadataEntities(project, indexLookupName, scope, Angular2MetadataDirectiveBase.class,
+                            Angular2MetadataDirectiveIndex.KEY, consumer);
   }
 
   private static <T extends Angular2MetadataEntity<?>> void processMetadataEntities(@NotNull Project project,
                                                                                     @NotNull String name,
+                                                                                    @NotNull GlobalSearchScope scope,
                                                                                     @NotNull Class<T> entityClass,
                                                                                     @NotNull StubIndexKey<String, T> key,
-                                                                                    @NotNull Consumer<? super T> consumer) {
-    StubIndex.getInstance().processElements(key, name, project, GlobalSearchScope.allScope(project), entityClass, el -> {
+                                                                                    @NotNull BiConsumer<? super PsiElement, ? super T> consumer) {
+    StubIndex.getInstance().processElements(key, name, project, scope, entityClass, el -> {
       if (el.isValid() && !hasIvyMetadata(el)) {
-        consumer.accept(el);
+        consumer.accept(el, el);
       }
       return true;
     });
@@ -313,14 +318,15 @@ public final class Angular2EntitiesProvider {
 
   private static <T extends Angular2Entity> void processIvyEntities(@NotNull Project project,
                                                                     @NotNull String name,
+                                                                    @NotNull GlobalSearchScope scope,
                                                                     @NotNull StubIndexKey<String, TypeScriptClass> key,
                                                                     @NotNull Class<T> entityClass,
-                                                                    @NotNull Consumer<? super T> consumer) {
-    StubIndex.getInstance().processElements(key, name, project, GlobalSearchScope.allScope(project), TypeScriptClass.class, el -> {
+                                                                    @NotNull BiConsumer<? super PsiElement, ? super T> consumer) {
+    StubIndex.getInstance().processElements(key, name, project, scope, TypeScriptClass.class, el -> {
       if (el.isValid()) {
         T entity = tryCast(getIvyEntity(el), entityClass);
         if (entity != null) {
-          consumer.accept(entity);
+          consumer.accept(el, entity);
         }
       }
       return true;
@@ -0,0 +1,367 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.entities;
+
+import com.intellij.javascript.nodejs.library.NodeModulesDirectoryManager;
+import com.intellij.javascript.nodejs.packageJson.PackageJsonFileManager;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.impl.PsiTreeAnyChangeAbstractAdapter;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StubIndex;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.angular2.index.Angular2IvyPipeIndex;
+import org.angular2.index.Angular2MetadataPipeIndex;
+import org.angular2.index.Angular2SourcePipeIndex;
+import org.angular2.lang.selector.Angular2DirectiveSimpleSelector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Modules, pipes and element directives of the project, kept per file and updated only for the files changed since the last request,
+ * instead of being collected from the indexes again after each PSI modification. Files are reported changed by PSI events, and by VFS
+ * events for the files changed externally without loaded PSI. The project-wide lists and maps are built anew only when the entities of
+ * some file, or their pipe names or element names, have changed, reusing the entities of all other files. All files are processed again
+ * after changes of the project roots, of the dumb mode, of the PSI which don't belong to a single file, or of many files at once,
+ * and after changes of package.json files or node_modules directories, since whether a file is in the Angular context, and so has
+ * entities, is decided by them rather than by the file itself.<p/>
+ *
+ * The indexes are queried under a separate lock, so that the listeners reporting changed files aren't blocked meanwhile.
+ */
+@Service
+public final class Angular2EntitiesRegistry implements Disposable {
+
+  // above that, processing all files at once is cheaper than processing each of them separately
+  private static final int MAX_CHANGED_FILES = 100;
+
+  private final Project myProject;
+  private final SimpleModificationTracker myModificationTracker = new SimpleModificationTracker();
+  // guards the changed files, and the entities of the files to decide which files are changed
+  private final Object myLock = new Object();
+  // guards the snapshot and the modification counts it corresponds to
+  private final Object myUpdateLock = new Object();
+
+  private final Set<VirtualFile> myChangedFiles = new HashSet<>();
+  private boolean myAllFilesChanged = true;
+  // entities which don't come from a physical file can't be updated separately
+  private boolean myHasEntitiesWithoutFile;
+  private Map<VirtualFile, FileEntities> myFileEntities = Collections.emptyMap();
+  private long myRootsModificationCount = -1;
+  private long myDumbModificationCount = -1;
+  private long myContextModificationCount = -1;
+  private long myValidatedPsiModificationCount = -1;
+  private Snapshot mySnapshot;
+
+  public static Angular2EntitiesRegistry getInstance(@NotNull Project project) {
+    return project.getService(Angular2EntitiesRegistry.class);
+  }
+
+  public Angular2EntitiesRegistry(@NotNull Project project) {
+    myProject = project;
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeAnyChangeAbstractAdapter() {
+      @Override
+      protected void onChange(@Nullable PsiFile file) {
+        fileChanged(file);
+      }
+    }, this);
+    project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        filesChanged(events);
+      }
+    });
+  }
+
+  /**
+   * @return a tracker changed each time the set of modules, pipes or element directives changes
+   */
+  public @NotNull ModificationTracker getModificationTracker() {
+    return myModificationTracker;
+  }
+
+  public @NotNull List<Angular2Module> getAllModules() {
+    return getSnapshot().modules;
+  }
+
+  public @NotNull Map<String, List<Angular2Pipe>> getAllPipes() {
+    return getSnapshot().pipes;
+  }
+
+  public @NotNull Map<String, List<Angular2Directive>> getAllElementDirectives() {
+    return getSnapshot().elementDirectives;
+  }
+
+  private void fileChanged(@Nullable PsiFile file) {
+    VirtualFile virtualFile = file != null ? file.getOriginalFile().getVirtualFile() : null;
+    synchronized (myLock) {
+      addChangedFile(virtualFile);
+    }
+  }
+
+  private void filesChanged(@NotNull List<? extends VFileEvent> events) {
+    GlobalSearchScope scope = GlobalSearchScope.allScope(myProject);
+    synchronized (myLock) {
+      for (VFileEvent event : events) {
+        if (myAllFilesChanged) return;
+        // a copied file is a new one, and directory events may affect any files in them
+        VirtualFile file = event instanceof VFileCopyEvent ? ((VFileCopyEvent)event).getNewParent() : event.getFile();
+        if (file != null && (myFileEntities.containsKey(file) || file.isValid() && scope.contains(file))) {
+          addChangedFile(file.isDirectory() ? null : file);
+        }
+      }
+    }
+  }
+
+  private void addChangedFile(@Nullable VirtualFile file) {
+    if (file == null || myHasEntitiesWithoutFile || myChangedFiles.size() >= MAX_CHANGED_FILES) {
+      myAllFilesChanged = true;
+      myChangedFiles.clear();
+    }
+    else if (!myAllFilesChanged) {
+      myChangedFiles.add(file);
+    }
+  }
+
+  private @NotNull Snapshot getSnapshot() {
+    synchronized (myUpdateLock) {
+      // PSI of a file might be recreated without changes, e.g. after it's been collected, which makes the kept entities invalid
+      long psiModificationCount = PsiModificationTracker.getInstance(myProject).getModificationCount();
+      if (psiModificationCount != myValidatedPsiModificationCount) {
+        synchronized (myLock) {
+          for (Map.Entry<VirtualFile, FileEntities> entry : myFileEntities.entrySet()) {
+            if (!entry.getValue().isValid()) {
+              addChangedFile(entry.getKey());
+            }
+          }
+        }
+        myValidatedPsiModificationCount = psiModificationCount;
+      }
+
+      long rootsModificationCount = ProjectRootModificationTracker.getInstance(myProject).getModificationCount();
+      long dumbModificationCount = DumbService.getInstance(myProject).getModificationTracker().getModificationCount();
+      long contextModificationCount = getContextModificationCount();
+      boolean allFilesChanged;
+      Set<VirtualFile> changedFiles;
+      Map<VirtualFile, FileEntities> oldFileEntities;
+      synchronized (myLock) {
+        allFilesChanged = mySnapshot == null
+                          || myAllFilesChanged
+                          || rootsModificationCount != myRootsModificationCount
+                          || dumbModificationCount != myDumbModificationCount
+                          || contextModificationCount != myContextModificationCount;
+        changedFiles = allFilesChanged ? Collections.emptySet() : new HashSet<>(myChangedFiles);
+        oldFileEntities = myFileEntities;
+        // the files changed while they're processed are reported anew
+        myAllFilesChanged = false;
+        myChangedFiles.clear();
+      }
+
+      boolean processed = false;
+      try {
+        if (allFilesChanged) {
+          Ref<Boolean> hasEntitiesWithoutFile = Ref.create(false);
+          Map<VirtualFile, FileEntities> fileEntities = collectAllEntities(hasEntitiesWithoutFile);
+          update(fileEntities, hasEntitiesWithoutFile.get());
+          myRootsModificationCount = rootsModificationCount;
+          myDumbModificationCount = dumbModificationCount;
+          myContextModificationCount = contextModificationCount;
+        }
+        else if (!changedFiles.isEmpty()) {
+          Collection<String> pipeNames = getPipeNames();
+          Map<VirtualFile, FileEntities> fileEntities = new LinkedHashMap<>(oldFileEntities);
+          boolean changed = false;
+          for (VirtualFile file : changedFiles) {
+            FileEntities entities = file.isValid() ? collectFileEntities(file, pipeNames) : FileEntities.EMPTY;
+            if (!entities.equals(fileEntities.getOrDefault(file, FileEntities.EMPTY))) {
+              changed = true;
+              if (entities.isEmpty()) {
+                fileEntities.remove(file);
+              }
+              else {
+                fileEntities.put(file, entities);
+              }
+            }
+          }
+          if (changed) {
+            // with entities without a file, all files would have been processed
+            update(fileEntities, false);
+          }
+        }
+        processed = true;
+      }
+      finally {
+        if (!processed) {
+          // e.g. the read action is canceled, the same files are processed by the next request
+          synchronized (myLock) {
+            if (allFilesChanged) {
+              myAllFilesChanged = true;
+            }
+            else {
+              changedFiles.forEach(this::addChangedFile);
+            }
+          }
+        }
+      }
+      return mySnapshot;
+    }
+  }
+
+  // whether a file is in the Angular context depends on package.json files and the packages installed to node_modules
+  private long getContextModificationCount() {
+    return PackageJsonFileManager.getInstance(myProject).getModificationTracker().getModificationCount()
+           + NodeModulesDirectoryManager.getInstance(myProject).getNodeModulesDirChangeTracker().getModificationCount();
+  }
+
+  private void update(@NotNull Map<VirtualFile, FileEntities> fileEntities, boolean hasEntitiesWithoutFile) {
+    synchronized (myLock) {
+      myFileEntities = fileEntities;
+      myHasEntitiesWithoutFile = hasEntitiesWithoutFile;
+    }
+    mySnapshot = new Snapshot(fileEntities.values());
+    myModificationTracker.incModificationCount();
+  }
+
+  private @NotNull Map<VirtualFile, FileEntities> collectAllEntities(@NotNull Ref<Boolean> hasEntitiesWithoutFile) {
+    Map<VirtualFile, FileEntities> result = new LinkedHashMap<>();
+    Angular2EntitiesProvider.processAllEntities(myProject, GlobalSearchScope.allScope(myProject), getPipeNames(), (element, entity) -> {
+      PsiFile file = element.getContainingFile();
+      VirtualFile virtualFile = file != null ? file.getOriginalFile().getVirtualFile() : null;
+      if (virtualFile == null) {
+        hasEntitiesWithoutFile.set(true);
+      }
+      result.computeIfAbsent(virtualFile, __ -> new FileEntities()).add(element, entity);
+    });
+    return result;
+  }
+
+  private @NotNull FileEntities collectFileEntities(@NotNull VirtualFile file, @NotNull Collection<String> pipeNames) {
+    FileEntities result = new FileEntities();
+    Angular2EntitiesProvider.processAllEntities(myProject, GlobalSearchScope.fileScope(myProject, file), pipeNames, result::add);
+    return result;
+  }
+
+  // all keys ever added to the indexes, the unused ones are simply not found
+  private @NotNull Collection<String> getPipeNames() {
+    Set<String> result = new HashSet<>();
+    StubIndex stubIndex = StubIndex.getInstance();
+    result.addAll(stubIndex.getAllKeys(Angular2SourcePipeIndex.KEY, myProject));
+    result.addAll(stubIndex.getAllKeys(Angular2MetadataPipeIndex.KEY, myProject));
+    result.addAll(stubIndex.getAllKeys(Angular2IvyPipeIndex.KEY, myProject));
+    return result;
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  /**
+   * Entities of a file with the keys they are found by, computed when the file is processed: entities are cached per PSI element,
+   * so after an edit of a selector or a pipe name the same entities come with new keys.
+   */
+  private static final class FileEntities {
+    static final FileEntities EMPTY = new FileEntities();
+
+    final List<PsiElement> elements = new ArrayList<>();
+    final List<Angular2Module> modules = new ArrayList<>();
+    final List<Angular2Pipe> pipes = new ArrayList<>();
+    final List<String> pipeNames = new ArrayList<>();
+    final List<Angular2Directive> elementDirectives = new ArrayList<>();
+    final List<Set<String>> elementNames = new ArrayList<>();
+
+    void add(@NotNull PsiElement element, @NotNull Angular2Entity entity) {
+      elements.add(element);
+      if (entity instanceof Angular2Module) {
+        modules.add((Angular2Module)entity);
+      }
+      else if (entity instanceof Angular2Pipe) {
+        pipes.add((Angular2Pipe)entity);
+        pipeNames.add(entity.getName());
+      }
+      else if (entity instanceof Angular2Directive) {
+        elementDirectives.add((Angular2Directive)entity);
+        elementNames.add(getElementNames((Angular2Directive)entity));
+      }
+    }
+
+    private static @NotNull Set<String> getElementNames(@NotNull Angular2Directive directive) {
+      Set<String> result = new LinkedHashSet<>();
+      Consumer<Angular2DirectiveSimpleSelector> selectorProcessor = sel -> {
+        String elementName = sel.getElementName();
+        if (!StringUtil.isEmpty(elementName) && !"*".equals(elementName)) {
+          result.add(elementName);
+        }
+      };
+      for (Angular2DirectiveSimpleSelector sel : directive.getSelector().getSimpleSelectors()) {
+        selectorProcessor.accept(sel);
+        sel.getNotSelectors().forEach(selectorProcessor);
+      }
+      return result;
+    }
+
+    boolean isEmpty() {
+      return elements.isEmpty();
+    }
+
+    boolean isValid() {
+      for (PsiElement element : elements) {
+        if (!element.isValid()) return false;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      FileEntities entities = (FileEntities)o;
+      return modules.equals(entities.modules)
+             && pipes.equals(entities.pipes)
+             && pipeNames.equals(entities.pipeNames)
+             && elementDirectives.equals(entities.elementDirectives)
+             && elementNames.equals(entities.elementNames);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(modules, pipes, pipeNames, elementDirectives, elementNames);
+    }
+  }
+
+  private static final class Snapshot {
+    final List<Angular2Module> modules = new ArrayList<>();
+    final Map<String, List<Angular2Pipe>> pipes = new HashMap<>();
+    final Map<String, List<Angular2Directive>> elementDirectives = new HashMap<>();
+
+    Snapshot(@NotNull Collection<FileEntities> fileEntities) {
+      for (FileEntities entities : fileEntities) {
+        modules.addAll(entities.modules);
+        for (int i = 0; i < entities.pipes.size(); i++) {
+          pipes.computeIfAbsent(entities.pipeNames.get(i), __ -> new ArrayList<>()).add(entities.pipes.get(i));
+        }
+        for (int i = 0; i < entities.elementDirectives.size(); i++) {
+          Angular2Directive directive = entities.elementDirectives.get(i);
+          for (String elementName : entities.elementNames.get(i)) {
+            elementDirectives.computeIfAbsent(elementName, __ -> new ArrayList<>()).add(directive);
+          }
+        }
+      }
+    }
+  }
+}
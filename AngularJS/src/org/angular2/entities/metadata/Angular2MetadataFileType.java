@@ -1,7 +1,7 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2.entities.metadata;
 
-import com.intellij.json.psi.JsonValue;
+import com.google.gson.JsonElement;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.tree.IStubFileElementType;
@@ -61,7 +61,7 @@ public final class Angular2MetadataFileType extends MetadataJsonFileType {
   }
 
   @Override
-  protected void createRootStub(MetadataFileStubImpl fileStub, JsonValue jsonRoot) {
+  protected void createRootStub(MetadataFileStubImpl fileStub, JsonElement jsonRoot) {
     new Angular2MetadataNodeModuleStub(fileStub, jsonRoot);
   }
 }
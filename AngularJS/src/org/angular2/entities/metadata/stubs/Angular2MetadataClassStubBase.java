@@ -1,7 +1,9 @@
 // Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2.entities.metadata.stubs;
 
-import com.intellij.json.psi.*;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.intellij.lang.javascript.index.flags.BooleanStructureElement;
 import com.intellij.lang.javascript.index.flags.FlagsStructure;
 import com.intellij.openapi.util.NotNullLazyValue;
@@ -50,7 +52,7 @@ public class Angular2MetadataClassStubBase<Psi extends Angular2MetadataClassBase
   }
 
   public static Angular2MetadataClassStubBase<?> createClassStub(@Nullable String memberName,
-                                                                 @NotNull JsonValue source,
+                                                                 @NotNull JsonElement source,
                                                                  @Nullable StubElement parent) {
     return streamDecorators((JsonObject)source)
       .map(pair -> doIfNotNull(getEntityFactories().get(pair.first),
@@ -84,17 +86,17 @@ public class Angular2MetadataClassStubBase<Psi extends Angular2MetadataClassBase
     if (loadInOuts()) {
       readTemplateFlag(source);
     }
-    JsonObject extendsClass = getPropertyValue(source.findProperty(EXTENDS), JsonObject.class);
+    JsonObject extendsClass = getPropertyValue(source.get(EXTENDS), JsonObject.class);
     if (extendsClass != null) {
       Angular2MetadataReferenceStub.createReferenceStub(EXTENDS_MEMBER, extendsClass, this);
     }
     myOutputMappings = new HashMap<>();
     myInputMappings = new HashMap<>();
-    MetadataUtils.streamObjectProperty(source.findProperty(MEMBERS))
+    MetadataUtils.streamObjectProperty(source.get(MEMBERS))
       .forEach(this::loadMember);
-    MetadataUtils.streamObjectProperty(source.findProperty(STATICS))
+    MetadataUtils.streamObjectProperty(source.get(STATICS))
       .filter(prop -> prop.getValue() instanceof JsonObject
-                      && SYMBOL_FUNCTION.equals(readStringPropertyValue(((JsonObject)prop.getValue()).findProperty(SYMBOL_TYPE))))
+                      && SYMBOL_FUNCTION.equals(readStringPropertyValue(((JsonObject)prop.getValue()).get(SYMBOL_TYPE))))
       .forEach(this::loadMemberProperty);
   }
 
@@ -164,9 +166,9 @@ public class Angular2MetadataClassStubBase<Psi extends Angular2MetadataClassBase
   }
 
   private void readTemplateFlag(JsonObject source) {
-    JsonObject members = tryCast(doIfNotNull(source.findProperty(MEMBERS), JsonProperty::getValue), JsonObject.class);
-    JsonProperty constructor = members != null ? members.findProperty(CONSTRUCTOR) : null;
-    String constructorText = constructor != null ? constructor.getText() : "";
+    JsonObject members = tryCast(source.get(MEMBERS), JsonObject.class);
+    JsonElement constructor = members != null ? members.get(CONSTRUCTOR) : null;
+    String constructorText = constructor != null ? constructor.toString() : "";
     Angular2DirectiveKind kind = Angular2DirectiveKind.get(
       constructorText.contains(Angular2EntityUtils.ELEMENT_REF),
       constructorText.contains(Angular2EntityUtils.TEMPLATE_REF),
@@ -176,24 +178,24 @@ public class Angular2MetadataClassStubBase<Psi extends Angular2MetadataClassBase
     writeFlag(IS_REGULAR_DIRECTIVE_FLAG, kind != null && kind.isRegular());
   }
 
-  private void loadMember(@NotNull JsonProperty property) {
-    String name = property.getName();
+  private void loadMember(@NotNull Map.Entry<String, JsonElement> property) {
+    String name = property.getKey();
     JsonArray val = tryCast(property.getValue(), JsonArray.class);
-    if (val == null || val.getValueList().size() != 1) {
+    if (val == null || val.size() != 1) {
       return;
     }
-    JsonObject obj = tryCast(val.getValueList().get(0), JsonObject.class);
+    JsonObject obj = tryCast(val.get(0), JsonObject.class);
     if (obj == null) {
       return;
     }
-    String memberSymbol = readStringPropertyValue(obj.findProperty(SYMBOL_TYPE));
+    String memberSymbol = readStringPropertyValue(obj.get(SYMBOL_TYPE));
     if (loadInOuts() && (SYMBOL_PROPERTY.equals(memberSymbol) || SYMBOL_METHOD.equals(memberSymbol))) {
       streamDecorators(obj).forEach(dec -> {
         if (INPUT_DEC.equals(dec.first)) {
-          addBindingMapping(name, myInputMappings, getDecoratorInitializer(dec.second, JsonStringLiteral.class));
+          addBindingMapping(name, myInputMappings, readStringPropertyValue(getDecoratorInitializer(dec.second, JsonElement.class)));
         }
         else if (OUTPUT_DEC.equals(dec.first)) {
-          addBindingMapping(name, myOutputMappings, getDecoratorInitializer(dec.second, JsonStringLiteral.class));
+          addBindingMapping(name, myOutputMappings, readStringPropertyValue(getDecoratorInitializer(dec.second, JsonElement.class)));
         }
       });
     }
@@ -204,8 +206,8 @@ public class Angular2MetadataClassStubBase<Psi extends Angular2MetadataClassBase
 
   private static void addBindingMapping(@NotNull String fieldName,
                                         @NotNull Map<String, String> mappings,
-                                        @Nullable JsonStringLiteral initializer) {
-    String bindingName = initializer != null ? initializer.getValue() : fieldName;
+                                        @Nullable String initializer) {
+    String bindingName = initializer != null ? initializer : fieldName;
     mappings.put(fieldName, bindingName);
   }
 
@@ -1,22 +1,20 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2.entities.metadata.stubs;
 
-import com.intellij.json.psi.JsonObject;
+import com.google.gson.JsonObject;
 import com.intellij.lang.javascript.index.flags.BooleanStructureElement;
 import com.intellij.lang.javascript.index.flags.FlagsStructure;
+import com.intellij.lexer.Lexer;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiFileFactory;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.psi.stubs.StubInputStream;
 import com.intellij.psi.stubs.StubOutputStream;
-import com.intellij.psi.xml.XmlAttribute;
+import com.intellij.psi.tree.IElementType;
 import com.intellij.util.SmartList;
 import org.angular2.entities.Angular2DirectiveKind;
 import org.angular2.entities.metadata.Angular2MetadataElementTypes;
 import org.angular2.entities.metadata.psi.Angular2MetadataComponent;
-import org.angular2.lang.html.Angular2HtmlLanguage;
-import org.angular2.lang.html.psi.Angular2HtmlRecursiveElementWalkingVisitor;
+import org.angular2.lang.html.lexer.Angular2HtmlLexer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -24,6 +22,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 
+import static com.intellij.psi.xml.XmlTokenType.*;
 import static org.angular2.Angular2DecoratorUtil.TEMPLATE_PROP;
 import static org.angular2.lang.metadata.MetadataUtils.readStringPropertyValue;
 import static org.angular2.web.Angular2WebSymbolsAdditionalContextProvider.ATTR_SELECT;
@@ -48,28 +47,12 @@ public class Angular2MetadataComponentStub extends Angular2MetadataDirectiveStub
     JsonObject initializer = getDecoratorInitializer(decoratorSource, JsonObject.class);
     String template;
     if (initializer == null
-        || (template = readStringPropertyValue(initializer.findProperty(TEMPLATE_PROP))) == null
+        || (template = readStringPropertyValue(initializer.get(TEMPLATE_PROP))) == null
         || !template.contains("<" + ELEMENT_NG_CONTENT)) {
       myNgContentSelectors = Collections.emptyList();
       return;
     }
-    PsiFile file = PsiFileFactory.getInstance(source.getProject())
-      .createFileFromText(Angular2HtmlLanguage.INSTANCE, template);
-    myNgContentSelectors = new SmartList<>();
-    if (file != null) {
-      file.accept(new Angular2HtmlRecursiveElementWalkingVisitor() {
-        @Override
-        public void visitXmlAttribute(XmlAttribute attribute) {
-          if (attribute.getName().equals(ATTR_SELECT)
-              && attribute.getParent().getName().equals(ELEMENT_NG_CONTENT)) {
-            String value = attribute.getValue();
-            if (!StringUtil.isEmptyOrSpaces(value)) {
-              myNgContentSelectors.add(value);
-            }
-          }
-        }
-      });
-    }
+    myNgContentSelectors = findNgContentSelectors(template);
   }
 
   public Angular2MetadataComponentStub(@NotNull StubInputStream stream,
@@ -79,6 +62,66 @@ public class Angular2MetadataComponentStub extends Angular2MetadataDirectiveStub
                                                               : Collections.emptyList();
   }
 
+  /**
+   * Finds values of select attributes of ng-content elements with the lexer only, since stubs are built without a project
+   * to create PSI in.
+   */
+  private static @NotNull List<String> findNgContentSelectors(@NotNull String template) {
+    List<String> result = new SmartList<>();
+    Lexer lexer = new Angular2HtmlLexer(true, null);
+    lexer.start(template);
+    boolean tagNameExpected = false;
+    boolean inNgContent = false;
+    boolean inSelect = false;
+    // the value of the select attribute being read
+    StringBuilder value = null;
+    for (IElementType type; (type = lexer.getTokenType()) != null; lexer.advance()) {
+      if (value != null) {
+        if (type == XML_ATTRIBUTE_VALUE_TOKEN || type == XML_CHAR_ENTITY_REF || type == XML_ENTITY_REF_TOKEN) {
+          value.append(lexer.getTokenSequence());
+          continue;
+        }
+        if (type == XML_ATTRIBUTE_VALUE_START_DELIMITER
+            || value.length() == 0 && (type == XML_WHITE_SPACE || type == XML_REAL_WHITE_SPACE)) {
+          continue;
+        }
+        if (!StringUtil.isEmptyOrSpaces(value)) {
+          result.add(value.toString());
+        }
+        value = null;
+      }
+
+      if (type == XML_START_TAG_START) {
+        tagNameExpected = true;
+        inNgContent = false;
+      }
+      else if (type == XML_NAME || type == XML_TAG_NAME) {
+        if (tagNameExpected) {
+          inNgContent = ELEMENT_NG_CONTENT.contentEquals(lexer.getTokenSequence());
+        }
+        else {
+          inSelect = inNgContent && ATTR_SELECT.contentEquals(lexer.getTokenSequence());
+        }
+        tagNameExpected = false;
+      }
+      else if (type == XML_EQ) {
+        if (inSelect) {
+          value = new StringBuilder();
+        }
+        inSelect = false;
+      }
+      else if (type == XML_TAG_END || type == XML_EMPTY_ELEMENT_END || type == XML_END_TAG_START) {
+        tagNameExpected = false;
+        inNgContent = false;
+        inSelect = false;
+      }
+    }
+    if (value != null && !StringUtil.isEmptyOrSpaces(value)) {
+      result.add(value.toString());
+    }
+    return result;
+  }
+
   @Override
   public @Nullable Angular2DirectiveKind getDirectiveKind() {
     return Angular2DirectiveKind.REGULAR;
@@ -1,7 +1,9 @@
 // Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2.entities.metadata.stubs;
 
-import com.intellij.json.psi.*;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.intellij.lang.javascript.index.flags.BooleanStructureElement;
 import com.intellij.lang.javascript.index.flags.FlagsStructure;
 import com.intellij.openapi.util.Pair;
@@ -16,6 +18,7 @@ import one.util.streamex.StreamEx;
 import org.angular2.entities.Angular2EntityUtils;
 import org.angular2.entities.metadata.psi.Angular2MetadataDirectiveBase;
 import org.angular2.index.Angular2MetadataDirectiveIndex;
+import org.angular2.lang.metadata.MetadataUtils;
 import org.angular2.lang.metadata.psi.MetadataElementType;
 import org.angular2.lang.metadata.stubs.MetadataElementStub;
 import org.jetbrains.annotations.NotNull;
@@ -27,7 +30,6 @@ import java.util.Map.Entry;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
-import static com.intellij.util.ObjectUtils.doIfNotNull;
 import static com.intellij.util.ObjectUtils.tryCast;
 import static java.util.Collections.emptyMap;
 import static java.util.stream.Collectors.toMap;
@@ -67,8 +69,8 @@ public abstract class Angular2MetadataDirectiveStubBase<Psi extends Angular2Meta
       return;
     }
 
-    mySelector = StringRef.fromString(readStringPropertyValue(initializer.findProperty(SELECTOR_PROP)));
-    myExportAs = StringRef.fromString(readStringPropertyValue(initializer.findProperty(EXPORT_AS_PROP)));
+    mySelector = StringRef.fromString(readStringPropertyValue(initializer.get(SELECTOR_PROP)));
+    myExportAs = StringRef.fromString(readStringPropertyValue(initializer.get(EXPORT_AS_PROP)));
     loadAdditionalBindingMappings(myInputMappings, initializer, INPUTS_PROP);
     loadAdditionalBindingMappings(myOutputMappings, initializer, OUTPUTS_PROP);
   }
@@ -126,10 +128,10 @@ public abstract class Angular2MetadataDirectiveStubBase<Psi extends Angular2Meta
   }
 
   private static @NotNull Map<String, Integer> loadAttributesMapping(final @NotNull JsonObject source) {
-    return StreamEx.ofNullable(getPropertyValue(source.findProperty(MEMBERS), JsonObject.class))
+    return StreamEx.ofNullable(getPropertyValue(source.get(MEMBERS), JsonObject.class))
       .map(toPropertyValue(CONSTRUCTOR, JsonArray.class))
       .nonNull()
-      .flatCollection(JsonArray::getValueList)
+      .flatMap(array -> StreamEx.of(array.iterator()))
       .select(JsonObject.class)
       .map(toPropertyValue(PARAMETER_DECORATORS, JsonArray.class))
       .nonNull()
@@ -141,23 +143,24 @@ public abstract class Angular2MetadataDirectiveStubBase<Psi extends Angular2Meta
   private static @NotNull Map<String, Integer> buildAttributesMapping(final @NotNull JsonArray paramDecorators) {
     // Checks if the input object represents the @Attribute decorator
     final Predicate<JsonObject> isAttributeDecorator = object -> {
-      final JsonObject expr = getPropertyValue(object.findProperty(EXPRESSION), JsonObject.class);
+      final JsonObject expr = getPropertyValue(object.get(EXPRESSION), JsonObject.class);
       final String decoratorName = expr != null
-                                   ? readStringPropertyValue(expr.findProperty(REFERENCE_NAME))
+                                   ? readStringPropertyValue(expr.get(REFERENCE_NAME))
                                    : null;
       return ATTRIBUTE_DEC.equals(decoratorName);
     };
 
-    return EntryStream.of(paramDecorators.getValueList())
+    return EntryStream.of(StreamEx.of(paramDecorators.iterator()).toList())
       .selectValues(JsonArray.class)
-      .flatMapValues(a -> a.getValueList().stream())
+      .flatMapValues(a -> StreamEx.of(a.iterator()))
       .selectValues(JsonObject.class)
       .filterValues(isAttributeDecorator)
       .mapValues(toPropertyValue(ARGUMENTS, JsonArray.class))
       .nonNullValues()
-      .mapValues(o -> o.getValueList().get(0))
-      .selectValues(JsonStringLiteral.class)
-      .mapValues(JsonStringLiteral::getValue)
+      .filterValues(o -> o.size() > 0)
+      .mapValues(o -> o.get(0))
+      .filterValues(MetadataUtils::isStringLiteral)
+      .mapValues(JsonElement::getAsString)
       .filterValues(s -> !s.trim().isEmpty())
       .collect(toMap(Entry::getValue, Entry::getKey, (i, __) -> i));
   }
@@ -165,11 +168,11 @@ public abstract class Angular2MetadataDirectiveStubBase<Psi extends Angular2Meta
   private void loadAdditionalBindingMappings(@NotNull Map<String, String> mappings,
                                              @NotNull JsonObject initializer,
                                              @NotNull String propertyName) {
-    JsonArray list = tryCast(doIfNotNull(initializer.findProperty(propertyName), JsonProperty::getValue), JsonArray.class);
-    if (list != null && ContainerUtil.all(list.getValueList(), JsonStringLiteral.class::isInstance)) {
-      for (JsonValue v : list.getValueList()) {
-        if (v instanceof JsonStringLiteral) {
-          String value = ((JsonStringLiteral)v).getValue();
+    JsonArray list = tryCast(initializer.get(propertyName), JsonArray.class);
+    if (list != null && ContainerUtil.and(list, MetadataUtils::isStringLiteral)) {
+      for (JsonElement v : list) {
+        if (MetadataUtils.isStringLiteral(v)) {
+          String value = v.getAsString();
           Pair<String, String> p = Angular2EntityUtils.parsePropertyMapping(value);
           mappings.putIfAbsent(p.first, p.second);
         }
@@ -180,8 +183,8 @@ public abstract class Angular2MetadataDirectiveStubBase<Psi extends Angular2Meta
     }
   }
 
-  private static <T extends JsonValue> Function<JsonObject, T> toPropertyValue(final @NotNull String property,
-                                                                               final @NotNull Class<T> clazz) {
-    return o -> getPropertyValue(o.findProperty(property), clazz);
+  private static <T extends JsonElement> Function<JsonObject, T> toPropertyValue(final @NotNull String property,
+                                                                                 final @NotNull Class<T> clazz) {
+    return o -> getPropertyValue(o.get(property), clazz);
   }
 }
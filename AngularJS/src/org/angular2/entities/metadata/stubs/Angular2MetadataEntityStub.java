@@ -1,8 +1,8 @@
 // Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2.entities.metadata.stubs;
 
-import com.intellij.json.psi.JsonObject;
-import com.intellij.json.psi.JsonProperty;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.psi.stubs.StubInputStream;
 import org.angular2.entities.metadata.psi.Angular2MetadataEntity;
@@ -31,9 +31,9 @@ public class Angular2MetadataEntityStub<Psi extends Angular2MetadataEntity<?>> e
 
   protected void stubDecoratorFields(@NotNull JsonObject initializer, String @NotNull ... fields) {
     for (String name : fields) {
-      JsonProperty property = initializer.findProperty(name);
-      if (property != null) {
-        createMember(DECORATOR_FIELD_PREFIX + name, property.getValue());
+      JsonElement value = initializer.get(name);
+      if (value != null) {
+        createMember(DECORATOR_FIELD_PREFIX + name, value);
       }
     }
   }
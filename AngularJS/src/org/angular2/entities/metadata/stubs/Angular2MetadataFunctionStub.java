@@ -1,9 +1,8 @@
 // Copyright 2000-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2.entities.metadata.stubs;
 
-import com.intellij.json.psi.JsonObject;
-import com.intellij.json.psi.JsonProperty;
-import com.intellij.json.psi.JsonValue;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.intellij.psi.stubs.IndexSink;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.psi.stubs.StubInputStream;
@@ -17,7 +16,6 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 
-import static com.intellij.util.ObjectUtils.doIfNotNull;
 import static com.intellij.util.ObjectUtils.tryCast;
 import static org.angular2.lang.metadata.MetadataUtils.readStringPropertyValue;
 
@@ -26,11 +24,11 @@ public class Angular2MetadataFunctionStub extends Angular2MetadataElementStub<An
   @NonNls private static final String VALUE_OBJ = "#value";
 
   public static Angular2MetadataFunctionStub createFunctionStub(@Nullable String memberName,
-                                                                @NotNull JsonValue source,
+                                                                @NotNull JsonElement source,
                                                                 @Nullable StubElement parent) {
     JsonObject sourceObject = (JsonObject)source;
-    if (memberName != null && SYMBOL_FUNCTION.equals(readStringPropertyValue(sourceObject.findProperty(SYMBOL_TYPE)))) {
-      JsonValue value = doIfNotNull(sourceObject.findProperty(FUNCTION_VALUE), JsonProperty::getValue);
+    if (memberName != null && SYMBOL_FUNCTION.equals(readStringPropertyValue(sourceObject.get(SYMBOL_TYPE)))) {
+      JsonElement value = sourceObject.get(FUNCTION_VALUE);
       if (value != null) {
         return new Angular2MetadataFunctionStub(memberName, value, parent);
       }
@@ -43,7 +41,7 @@ public class Angular2MetadataFunctionStub extends Angular2MetadataElementStub<An
   }
 
   public Angular2MetadataFunctionStub(@NotNull String memberName,
-                                      @NotNull JsonValue value,
+                                      @NotNull JsonElement value,
                                       @Nullable StubElement parent) {
     super(memberName, parent, Angular2MetadataElementTypes.FUNCTION);
     createMember(VALUE_OBJ, value);
@@ -1,9 +1,9 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2.entities.metadata.stubs;
 
-import com.intellij.json.psi.JsonArray;
-import com.intellij.json.psi.JsonObject;
-import com.intellij.json.psi.JsonValue;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.intellij.psi.stubs.IndexSink;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.psi.stubs.StubInputStream;
@@ -33,19 +33,19 @@ public class Angular2MetadataNodeModuleStub extends Angular2MetadataElementStub<
     myImportAs = stream.readName();
   }
 
-  public Angular2MetadataNodeModuleStub(@Nullable StubElement parentStub, @Nullable JsonValue fileRoot) {
+  public Angular2MetadataNodeModuleStub(@Nullable StubElement parentStub, @Nullable JsonElement fileRoot) {
     super((String)null, parentStub, Angular2MetadataElementTypes.NODE_MODULE);
     if (fileRoot instanceof JsonArray) {
-      fileRoot = ((JsonArray)fileRoot).getValueList().get(0);
+      fileRoot = ((JsonArray)fileRoot).size() > 0 ? ((JsonArray)fileRoot).get(0) : null;
     }
     if (fileRoot instanceof JsonObject) {
       JsonObject fileRootObject = (JsonObject)fileRoot;
-      myImportAs = StringRef.fromString(MetadataUtils.readStringPropertyValue(fileRootObject.findProperty(IMPORT_AS)));
-      StreamEx.ofNullable(MetadataUtils.getPropertyValue(fileRootObject.findProperty(EXPORTS), JsonArray.class))
-        .flatCollection(JsonArray::getValueList)
+      myImportAs = StringRef.fromString(MetadataUtils.readStringPropertyValue(fileRootObject.get(IMPORT_AS)));
+      StreamEx.ofNullable(MetadataUtils.getPropertyValue(fileRootObject.get(EXPORTS), JsonArray.class))
+        .flatMap(array -> StreamEx.of(array.iterator()))
         .select(JsonObject.class)
         .forEach(object -> new Angular2MetadataModuleExportStub(this, object));
-      MetadataUtils.streamObjectProperty(fileRootObject.findProperty(METADATA))
+      MetadataUtils.streamObjectProperty(fileRootObject.get(METADATA))
         .forEach(this::loadMemberProperty);
     }
     else {
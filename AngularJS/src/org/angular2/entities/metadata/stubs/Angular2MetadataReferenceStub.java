@@ -1,8 +1,8 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2.entities.metadata.stubs;
 
-import com.intellij.json.psi.JsonObject;
-import com.intellij.json.psi.JsonValue;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.intellij.lang.javascript.index.flags.BooleanStructureElement;
 import com.intellij.lang.javascript.index.flags.FlagsStructure;
 import com.intellij.psi.stubs.StubElement;
@@ -21,12 +21,12 @@ import static org.angular2.lang.metadata.MetadataUtils.readStringPropertyValue;
 public class Angular2MetadataReferenceStub extends Angular2MetadataElementStub<Angular2MetadataReference> {
 
   public static Angular2MetadataReferenceStub createReferenceStub(@Nullable String memberName,
-                                                                  @NotNull JsonValue source,
+                                                                  @NotNull JsonElement source,
                                                                   @Nullable StubElement parent) {
     JsonObject sourceObject = (JsonObject)source;
-    if (SYMBOL_REFERENCE.equals(readStringPropertyValue(sourceObject.findProperty(SYMBOL_TYPE)))) {
-      String name = readStringPropertyValue(sourceObject.findProperty(REFERENCE_NAME));
-      String module = readStringPropertyValue(sourceObject.findProperty(REFERENCE_MODULE));
+    if (SYMBOL_REFERENCE.equals(readStringPropertyValue(sourceObject.get(SYMBOL_TYPE)))) {
+      String name = readStringPropertyValue(sourceObject.get(REFERENCE_NAME));
+      String module = readStringPropertyValue(sourceObject.get(REFERENCE_MODULE));
       if (name != null) {
         return new Angular2MetadataReferenceStub(memberName, name, module, parent);
       }
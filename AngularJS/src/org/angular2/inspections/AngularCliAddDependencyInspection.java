@@ -24,7 +24,11 @@ import org.angular2.inspections.quickfixes.AngularCliAddQuickFix;
 import org.angular2.lang.Angular2Bundle;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class AngularCliAddDependencyInspection extends LocalInspectionTool {
 
@@ -51,6 +55,17 @@ public class AngularCliAddDependencyInspection extends LocalInspectionTool {
     List<JsonProperty> properties = PackageJsonMismatchedDependencyInspection.getDependencies(file);
     if (properties.isEmpty()) return;
     NodeInstalledPackageFinder finder = new NodeInstalledPackageFinder(project, packageJson);
+    Map<JsonProperty, InstalledPackageVersion> installedPackages = new HashMap<>();
+    for (JsonProperty property : properties) {
+      InstalledPackageVersion pkgVersion = finder.findInstalledPackage(property.getName());
+      if (pkgVersion != null) {
+        installedPackages.put(property, pkgVersion);
+      }
+    }
+    // collections of installed packages are read in parallel
+    Set<InstalledPackageVersion> ngAddPackages = new HashSet<>(
+      AngularCliSchematicsRegistryService.getInstance().filterPackagesSupportingNgAdd(installedPackages.values()));
+
     for (JsonProperty property : properties) {
       JsonStringLiteral nameLiteral = ObjectUtils.tryCast(property.getNameElement(), JsonStringLiteral.class);
       JsonStringLiteral versionLiteral = ObjectUtils.tryCast(property.getValue(), JsonStringLiteral.class);
@@ -60,9 +75,9 @@ public class AngularCliAddDependencyInspection extends LocalInspectionTool {
 
       String packageName = property.getName();
       String version = versionLiteral == null ? "" : versionLiteral.getValue();
-      InstalledPackageVersion pkgVersion = finder.findInstalledPackage(packageName);
+      InstalledPackageVersion pkgVersion = installedPackages.get(property);
 
-      if ((pkgVersion != null && AngularCliSchematicsRegistryService.getInstance().supportsNgAdd(pkgVersion))
+      if ((pkgVersion != null && ngAddPackages.contains(pkgVersion))
           || (pkgVersion == null && AngularCliSchematicsRegistryService.getInstance().supportsNgAdd(packageName, TIMEOUT))) {
         String message = Angular2Bundle.message("angular.inspection.install-with-ng-add.message",
                                                 StringUtil.wrapWithDoubleQuote(packageName));
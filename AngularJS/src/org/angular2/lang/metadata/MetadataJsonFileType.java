@@ -1,7 +1,7 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2.lang.metadata;
 
-import com.intellij.json.psi.JsonValue;
+import com.google.gson.JsonElement;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.fileTypes.ex.FileTypeIdentifiableByVirtualFile;
 import com.intellij.psi.tree.IStubFileElementType;
@@ -37,5 +37,5 @@ public abstract class MetadataJsonFileType implements FileType, FileTypeIdentifi
 
   public abstract IStubFileElementType getFileElementType();
 
-  protected abstract void createRootStub(MetadataFileStubImpl result, JsonValue value);
+  protected abstract void createRootStub(MetadataFileStubImpl result, JsonElement value);
 }
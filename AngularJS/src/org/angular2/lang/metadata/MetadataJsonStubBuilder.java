@@ -1,20 +1,30 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.angular2.lang.metadata;
 
-import com.intellij.json.JsonLanguage;
-import com.intellij.json.psi.impl.JsonFileImpl;
+import com.google.gson.*;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiFileFactory;
 import com.intellij.psi.stubs.BinaryFileStubBuilder;
 import com.intellij.psi.stubs.Stub;
 import com.intellij.util.indexing.FileContent;
+import com.intellij.util.text.CharSequenceReader;
 import org.angular2.lang.metadata.stubs.MetadataFileStubImpl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+
+/**
+ * Builds stubs of metadata files from a tree of plain JSON values read with a token reader. Metadata files in {@code node_modules}
+ * can be large and are never edited, so no JSON PSI is created for them during indexing.
+ */
 public class MetadataJsonStubBuilder implements BinaryFileStubBuilder {
 
+  private static final Logger LOG = Logger.getInstance(MetadataJsonStubBuilder.class);
+
   @Override
   public boolean acceptsFile(@NotNull VirtualFile file) {
     return file.getFileType() instanceof MetadataJsonFileType;
@@ -27,19 +37,64 @@ public class MetadataJsonStubBuilder implements BinaryFileStubBuilder {
     CharSequence text = LoadTextUtil.getTextByBinaryPresentation(
       fileContent.getContent(), fileContent.getFile());
 
-    JsonFileImpl jsonFile = (JsonFileImpl)PsiFileFactory
-      .getInstance(fileContent.getProject())
-      .createFileFromText(JsonLanguage.INSTANCE, text);
-
     MetadataFileStubImpl result = new MetadataFileStubImpl(null, fileType.getFileElementType());
-    if (jsonFile.getTopLevelValue() != null) {
-      fileType.createRootStub(result, jsonFile.getTopLevelValue());
+    JsonElement topLevelValue = readJson(text, fileContent.getFile());
+    if (topLevelValue != null && !topLevelValue.isJsonNull()) {
+      fileType.createRootStub(result, topLevelValue);
     }
     return result;
   }
 
   @Override
   public int getStubVersion() {
-    return 22;
+    return 24;
+  }
+
+  private static @Nullable JsonElement readJson(@NotNull CharSequence text, @NotNull VirtualFile file) {
+    try (JsonReader reader = new JsonReader(new CharSequenceReader(text))) {
+      reader.setLenient(true);
+      return readValue(reader);
+    }
+    catch (IOException | IllegalStateException | NumberFormatException e) {
+      LOG.debug("Failed to read metadata from " + file.getPath(), e);
+      return null;
+    }
+  }
+
+  private static @NotNull JsonElement readValue(@NotNull JsonReader reader) throws IOException {
+    switch (reader.peek()) {
+      case BEGIN_OBJECT:
+        JsonObject object = new JsonObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String name = reader.nextName();
+          JsonElement value = readValue(reader);
+          // like JSON PSI lookups, the first of the duplicate properties wins
+          if (!object.has(name)) {
+            object.add(name, value);
+          }
+        }
+        reader.endObject();
+        return object;
+      case BEGIN_ARRAY:
+        JsonArray array = new JsonArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          array.add(readValue(reader));
+        }
+        reader.endArray();
+        return array;
+      case STRING:
+        return new JsonPrimitive(reader.nextString());
+      case NUMBER:
+        return new JsonPrimitive(new LazilyParsedNumber(reader.nextString()));
+      case BOOLEAN:
+        return new JsonPrimitive(reader.nextBoolean());
+      case NULL:
+        reader.nextNull();
+        return JsonNull.INSTANCE;
+      default:
+        throw new IllegalStateException("Unexpected JSON token: " + reader.peek());
+    }
   }
 }
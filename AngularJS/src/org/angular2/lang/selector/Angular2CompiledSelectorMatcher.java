@@ -0,0 +1,228 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.lang.selector;
+
+import com.intellij.util.ArrayUtil;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable form of {@link Angular2SelectorMatcher} created with {@link Angular2SelectorMatcher#compile()}, which can be cached
+ * and matched from several threads. Names are interned to ids, so that each name of the matched selector is looked up once
+ * per match, and transitions of the nodes are kept in arrays sorted by ids. {@code :not()} selectors are compiled once
+ * together with the selectors they belong to, instead of on each match.
+ */
+public final class Angular2CompiledSelectorMatcher<T> {
+
+  // ids of the names which aren't used by any selector are negative, so they're never found in the tables
+  static final int UNKNOWN_ID = -1;
+  private static final int NULL_ID = -2;
+
+  private final Object2IntMap<String> myIds;
+  private final int myStarId;
+  private final int myEmptyId;
+  private final Node<T> myRoot;
+  private final int myListCount;
+
+  Angular2CompiledSelectorMatcher(@NotNull Object2IntMap<String> ids, @NotNull Node<T> root, int listCount) {
+    myIds = ids;
+    myStarId = ids.getInt("*");
+    myEmptyId = ids.getInt("");
+    myRoot = root;
+    myListCount = listCount;
+  }
+
+  /**
+   * Same as {@link Angular2SelectorMatcher#match}.
+   */
+  public boolean match(@NotNull Angular2DirectiveSimpleSelector cssSelector,
+                       @Nullable BiConsumer<? super Angular2DirectiveSimpleSelector, ? super T> matchedCallback) {
+    Query query = new Query(cssSelector, matchedCallback != null ? new boolean[myListCount] : null);
+    return match(myRoot, query, matchedCallback);
+  }
+
+  private boolean match(@NotNull Node<T> node,
+                        @NotNull Query query,
+                        @Nullable BiConsumer<? super Angular2DirectiveSimpleSelector, ? super T> matchedCallback) {
+    boolean result = matchTerminal(node.elementTerminals, query.element, query, matchedCallback);
+    result |= matchPartial(node.elementPartials, query.element, query, matchedCallback);
+
+    for (int classId : query.classes) {
+      result |= matchTerminal(node.classTerminals, classId, query, matchedCallback);
+      result |= matchPartial(node.classPartials, classId, query, matchedCallback);
+    }
+
+    for (int i = 0; i < query.attrNames.length; i++) {
+      int value = query.attrValues[i];
+
+      Table<Selectable<T>[]> terminalValues = node.attrTerminals.get(query.attrNames[i]);
+      if (terminalValues != null) {
+        if (query.attrValuesNotEmpty[i]) {
+          result |= matchTerminal(terminalValues, myEmptyId, query, matchedCallback);
+        }
+        result |= matchTerminal(terminalValues, value, query, matchedCallback);
+      }
+
+      Table<Node<T>> partialValues = node.attrPartials.get(query.attrNames[i]);
+      if (partialValues != null) {
+        if (query.attrValuesNotEmpty[i]) {
+          result |= matchPartial(partialValues, myEmptyId, query, matchedCallback);
+        }
+        result |= matchPartial(partialValues, value, query, matchedCallback);
+      }
+    }
+    return result;
+  }
+
+  private boolean matchTerminal(@NotNull Table<Selectable<T>[]> table,
+                                int id,
+                                @NotNull Query query,
+                                @Nullable BiConsumer<? super Angular2DirectiveSimpleSelector, ? super T> matchedCallback) {
+    if (id == NULL_ID) {
+      return false;
+    }
+    boolean result = false;
+    Selectable<T>[] selectables = table.get(id);
+    if (selectables != null) {
+      for (Selectable<T> selectable : selectables) {
+        result = matchSelectable(selectable, query, matchedCallback) || result;
+      }
+    }
+    Selectable<T>[] starSelectables = table.get(myStarId);
+    if (starSelectables != null) {
+      for (Selectable<T> selectable : starSelectables) {
+        result = matchSelectable(selectable, query, matchedCallback) || result;
+      }
+    }
+    return result;
+  }
+
+  private boolean matchPartial(@NotNull Table<Node<T>> table,
+                               int id,
+                               @NotNull Query query,
+                               @Nullable BiConsumer<? super Angular2DirectiveSimpleSelector, ? super T> matchedCallback) {
+    Node<T> node = table.get(id);
+    return node != null && match(node, query, matchedCallback);
+  }
+
+  private boolean matchSelectable(@NotNull Selectable<T> selectable,
+                                  @NotNull Query query,
+                                  @Nullable BiConsumer<? super Angular2DirectiveSimpleSelector, ? super T> matchedCallback) {
+    boolean listMatched = selectable.listIndex >= 0 && query.matchedLists != null && query.matchedLists[selectable.listIndex];
+    boolean result = true;
+    if (selectable.notMatcher != null && !listMatched) {
+      result = !match(selectable.notMatcher, query, null);
+    }
+    if (result && matchedCallback != null && !listMatched) {
+      if (selectable.listIndex >= 0) {
+        query.matchedLists[selectable.listIndex] = true;
+      }
+      matchedCallback.accept(selectable.selector, selectable.context);
+    }
+    return result;
+  }
+
+  private int getId(@Nullable String name) {
+    return name != null ? myIds.getInt(name) : NULL_ID;
+  }
+
+  private final class Query {
+    final int element;
+    final int[] classes;
+    final int[] attrNames;
+    final int[] attrValues;
+    final boolean[] attrValuesNotEmpty;
+    // whether some selector of a list has already been matched, by indexes of the lists
+    final boolean @Nullable [] matchedLists;
+
+    Query(@NotNull Angular2DirectiveSimpleSelector cssSelector, boolean @Nullable [] matchedLists) {
+      this.matchedLists = matchedLists;
+      element = getId(cssSelector.element);
+      List<String> classNames = cssSelector.classNames;
+      classes = new int[classNames.size()];
+      for (int i = 0; i < classes.length; i++) {
+        classes[i] = getId(classNames.get(i));
+      }
+      List<String> attrs = cssSelector.attrs;
+      attrNames = new int[attrs.size() / 2];
+      attrValues = new int[attrNames.length];
+      attrValuesNotEmpty = new boolean[attrNames.length];
+      for (int i = 0; i < attrNames.length; i++) {
+        String value = attrs.get(2 * i + 1);
+        attrNames[i] = getId(attrs.get(2 * i));
+        attrValues[i] = getId(value);
+        attrValuesNotEmpty[i] = value != null && !value.isEmpty();
+      }
+    }
+  }
+
+  static final class Node<T> {
+    final Table<Selectable<T>[]> elementTerminals;
+    final Table<Node<T>> elementPartials;
+    final Table<Selectable<T>[]> classTerminals;
+    final Table<Node<T>> classPartials;
+    // attribute name -> attribute value -> selectables or nested nodes
+    final Table<Table<Selectable<T>[]>> attrTerminals;
+    final Table<Table<Node<T>>> attrPartials;
+
+    Node(@NotNull Table<Selectable<T>[]> elementTerminals,
+         @NotNull Table<Node<T>> elementPartials,
+         @NotNull Table<Selectable<T>[]> classTerminals,
+         @NotNull Table<Node<T>> classPartials,
+         @NotNull Table<Table<Selectable<T>[]>> attrTerminals,
+         @NotNull Table<Table<Node<T>>> attrPartials) {
+      this.elementTerminals = elementTerminals;
+      this.elementPartials = elementPartials;
+      this.classTerminals = classTerminals;
+      this.classPartials = classPartials;
+      this.attrTerminals = attrTerminals;
+      this.attrPartials = attrPartials;
+    }
+  }
+
+  static final class Selectable<T> {
+    final Angular2DirectiveSimpleSelector selector;
+    final T context;
+    // index of the selector list the selector belongs to, or -1 if it's the only one in its list
+    final int listIndex;
+    final @Nullable Node<T> notMatcher;
+
+    Selectable(@NotNull Angular2DirectiveSimpleSelector selector, @Nullable T context, int listIndex, @Nullable Node<T> notMatcher) {
+      this.selector = selector;
+      this.context = context;
+      this.listIndex = listIndex;
+      this.notMatcher = notMatcher;
+    }
+  }
+
+  static final class Table<V> {
+    private static final Table<?> EMPTY = new Table<>(ArrayUtil.EMPTY_INT_ARRAY, ArrayUtil.EMPTY_OBJECT_ARRAY);
+
+    private final int[] myKeys;
+    private final Object[] myValues;
+
+    /**
+     * @param keys sorted ids
+     */
+    Table(int @NotNull [] keys, Object @NotNull [] values) {
+      myKeys = keys;
+      myValues = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> Table<V> empty() {
+      return (Table<V>)EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable V get(int id) {
+      if (id < 0) return null;
+      int index = Arrays.binarySearch(myKeys, id);
+      return index >= 0 ? (V)myValues[index] : null;
+    }
+  }
+}
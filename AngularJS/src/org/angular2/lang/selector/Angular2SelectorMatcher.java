@@ -3,11 +3,17 @@ package org.angular2.lang.selector;
 
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.SmartList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.angular2.lang.selector.Angular2CompiledSelectorMatcher.Node;
+import org.angular2.lang.selector.Angular2CompiledSelectorMatcher.Selectable;
+import org.angular2.lang.selector.Angular2CompiledSelectorMatcher.Table;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import static com.intellij.util.containers.ContainerUtil.concat;
 
@@ -103,6 +109,15 @@ public class Angular2SelectorMatcher<T> {
     return map.computeIfAbsent(name, k -> new Angular2SelectorMatcher<>());
   }
 
+  /**
+   * @return an immutable copy of the matcher, which is cheaper to match against and can be cached and shared between threads
+   */
+  public @NotNull Angular2CompiledSelectorMatcher<T> compile() {
+    Compiler<T> compiler = new Compiler<>();
+    Node<T> root = compiler.compile(this);
+    return new Angular2CompiledSelectorMatcher<>(compiler.ids, root, compiler.listIndexes.size());
+  }
+
   /**
    * Find the objects that have been added via `addSelectable`
    * whose css selector is contained in the given css selector.
@@ -191,6 +206,68 @@ public class Angular2SelectorMatcher<T> {
   }
 
 
+  private static final class Compiler<T> {
+    final Object2IntMap<String> ids = new Object2IntOpenHashMap<>();
+    final Map<SelectorListContext, Integer> listIndexes = new IdentityHashMap<>();
+
+    Compiler() {
+      ids.defaultReturnValue(Angular2CompiledSelectorMatcher.UNKNOWN_ID);
+      intern("*");
+      intern("");
+    }
+
+    @NotNull Node<T> compile(@NotNull Angular2SelectorMatcher<T> matcher) {
+      return new Node<>(table(matcher._elementMap, this::compileSelectables),
+                        table(matcher._elementPartialMap, this::compile),
+                        table(matcher._classMap, this::compileSelectables),
+                        table(matcher._classPartialMap, this::compile),
+                        table(matcher._attrValueMap, values -> table(values, this::compileSelectables)),
+                        table(matcher._attrValuePartialMap, values -> table(values, this::compile)));
+    }
+
+    @SuppressWarnings("unchecked")
+    Selectable<T> @NotNull [] compileSelectables(@NotNull List<SelectorContext<T>> contexts) {
+      Selectable<T>[] result = new Selectable[contexts.size()];
+      for (int i = 0; i < result.length; i++) {
+        SelectorContext<T> context = contexts.get(i);
+        int listIndex = context.listContext != null
+                        ? listIndexes.computeIfAbsent(context.listContext, __ -> listIndexes.size())
+                        : -1;
+        Node<T> notMatcher = context.notSelectors.isEmpty()
+                             ? null
+                             : compile(Angular2SelectorMatcher.<T>createNotMatcher(context.notSelectors));
+        result[i] = new Selectable<>(context.selector, context.context, listIndex, notMatcher);
+      }
+      return result;
+    }
+
+    <S, V> @NotNull Table<V> table(@NotNull Map<String, S> map, @NotNull Function<? super S, ? extends V> valueCompiler) {
+      if (map.isEmpty()) {
+        return Table.empty();
+      }
+      int[] keys = new int[map.size()];
+      int index = 0;
+      for (String name : map.keySet()) {
+        keys[index++] = intern(name);
+      }
+      Arrays.sort(keys);
+      Object[] values = new Object[keys.length];
+      for (Map.Entry<String, S> entry : map.entrySet()) {
+        values[Arrays.binarySearch(keys, ids.getInt(entry.getKey()))] = valueCompiler.apply(entry.getValue());
+      }
+      return new Table<>(keys, values);
+    }
+
+    int intern(@NotNull String name) {
+      int id = ids.getInt(name);
+      if (id == Angular2CompiledSelectorMatcher.UNKNOWN_ID) {
+        id = ids.size();
+        ids.put(name, id);
+      }
+      return id;
+    }
+  }
+
   private static class SelectorListContext {
     public boolean alreadyMatched = false;
     public final List<Angular2DirectiveSimpleSelector> selectors;
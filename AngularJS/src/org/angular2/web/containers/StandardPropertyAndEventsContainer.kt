@@ -98,9 +98,9 @@ class StandardPropertyAndEventsContainer(private val templateFile: PsiFile) : We
       val tagClass = WebJSTypesUtil.getHtmlElementClassType(typeSource, tagName)
       val elementEventMap = Angular2TypeUtils.getElementEventMap(typeSource)?.asRecordType()
 
-      val allowedElementProperties = DomElementSchemaRegistry.getElementProperties(tagNamespace, tagName).toMutableSet()
-      val eventNames = DomElementSchemaRegistry.getElementEvents(tagNamespace, tagName).toMutableSet()
-      elementEventMap?.propertyNames?.forEach { name -> eventNames.add(name) }
+      val elementProperties = DomElementSchemaRegistry.getElementProperties(tagNamespace, tagName)
+      val addedProperties = HashSet<String>()
+      val addedEvents = HashSet<String>()
 
       fun addStandardProperty(name: String, project: Project, source: TypeScriptPropertySignature?) {
         propToAttrName[name]?.let { consumer(Angular2StandardProperty(it, project, source)) }
@@ -117,7 +117,7 @@ class StandardPropertyAndEventsContainer(private val templateFile: PsiFile) : We
           val name: String
           if (property.memberName.startsWith(EVENT_ATTR_PREFIX)) {
             val eventName = property.memberName.substring(2)
-            eventNames.remove(eventName)
+            addedEvents.add(eventName)
             consumer(Angular2StandardEvent(eventName,
                                            propertyDeclaration.project, propertyDeclaration,
                                            elementEventMap?.findPropertySignature(eventName)
@@ -125,17 +125,22 @@ class StandardPropertyAndEventsContainer(private val templateFile: PsiFile) : We
           }
           else {
             name = property.memberName
-            if (!allowedElementProperties.remove(name)) {
+            if (!elementProperties.contains(name) || !addedProperties.add(name)) {
               continue
             }
             addStandardProperty(name, propertyDeclaration.project, propertyDeclaration)
           }
         }
       }
-      for (name in allowedElementProperties) {
-        addStandardProperty(name, templateFile.project, null)
+      for (name in elementProperties) {
+        if (!addedProperties.contains(name)) {
+          addStandardProperty(name, templateFile.project, null)
+        }
       }
+      val eventNames = DomElementSchemaRegistry.getElementEvents(tagNamespace, tagName).asSequence() +
+                       (elementEventMap?.propertyNames?.asSequence() ?: emptySequence())
       for (eventName in eventNames) {
+        if (!addedEvents.add(eventName)) continue
         consumer(Angular2StandardEvent(eventName,
                                        templateFile.project,
                                        null,
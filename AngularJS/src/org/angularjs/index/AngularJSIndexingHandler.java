@@ -87,7 +87,7 @@ public final class AngularJSIndexingHandler extends FrameworkIndexingHandler {
   public static final String WHEN = "when";
   private static final String RESTRICT_PROP = "restrict";
 
-  private static final String[] ALL_INTERESTING_METHODS;
+  static final String[] ALL_INTERESTING_METHODS;
   private static final BidirectionalMap<String, StubIndexKey<String, JSImplicitElementProvider>> INDEXES;
   public static final String AS_CONNECTOR_WITH_SPACES = " as ";
 
@@ -206,6 +206,7 @@ public final class AngularJSIndexingHandler extends FrameworkIndexingHandler {
       public void fillIndexingData(@NotNull JSLiteralExpression argument,
                                    @NotNull JSCallExpression callExpression,
                                    @NotNull JSElementIndexingData outIndexingData) {
+        if (!AngularJSIndexingPreFilter.mayContainAngularJS(argument)) return;
         JSExpression[] arguments = callExpression.getArguments();
         if (arguments.length == 0 || arguments[0] != argument) return;
         final JSExpression methodExpression = callExpression.getMethodExpression();
@@ -263,7 +264,7 @@ public final class AngularJSIndexingHandler extends FrameworkIndexingHandler {
   @Override
   public void processCallExpression(JSCallExpression callExpression, @NotNull JSElementIndexingData outData) {
     final JSReferenceExpression reference = ObjectUtils.tryCast(callExpression.getMethodExpression(), JSReferenceExpression.class);
-    if (reference == null) return;
+    if (reference == null || !AngularJSIndexingPreFilter.mayContainAngularJS(callExpression)) return;
     if (JSSymbolUtil.isAccurateReferenceExpressionName(reference, "$stateProvider", STATE)) {
       final JSExpression[] arguments = callExpression.getArguments();
       if (arguments.length == 1 && arguments[0] instanceof JSReferenceExpression) {
@@ -297,7 +298,7 @@ public final class AngularJSIndexingHandler extends FrameworkIndexingHandler {
   @Override
   public @Nullable JSElementIndexingData processAnyProperty(@NotNull JSProperty property, @Nullable JSElementIndexingData outData) {
     final String name = property.getName();
-    if (name == null) return outData;
+    if (name == null || !AngularJSIndexingPreFilter.mayContainAngularJS(property)) return outData;
     JSElementIndexingData localOutData;
     if (TEMPLATE_URL.equals(name) && processTemplateUrlProperty(
       property, localOutData = (outData == null ? new JSElementIndexingDataImpl() : outData))) {
@@ -398,6 +399,7 @@ public final class AngularJSIndexingHandler extends FrameworkIndexingHandler {
 
   @Override
   public JSElementIndexingData processJSDocComment(final @NotNull JSDocComment comment, @Nullable JSElementIndexingData outData) {
+    if (!AngularJSIndexingPreFilter.mayContainAngularJS(comment)) return outData;
     JSDocTag ngdocTag = null;
     JSDocTag nameTag = null;
     for (JSDocTag tag : comment.getTags()) {
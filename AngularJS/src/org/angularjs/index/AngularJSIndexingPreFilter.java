@@ -0,0 +1,217 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angularjs.index;
+
+import com.intellij.lang.injection.InjectedLanguageManager;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.TestOnly;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.angularjs.index.AngularJSIndexingHandler.*;
+
+/**
+ * Checks whether a file may contain anything indexed by {@link AngularJSIndexingHandler}, before the handler walks its PSI.
+ * The text of the file is scanned once for the identifiers the handler looks for, with a trie of the identifiers, so that
+ * vendor bundles and other files without AngularJS code are skipped. The check only has to be conservative: a file, which
+ * passes it, is indexed as before.
+ */
+public final class AngularJSIndexingPreFilter {
+
+  private static final Logger LOG = Logger.getInstance(AngularJSIndexingPreFilter.class);
+
+  private static final int NONE = 0;
+  // anywhere in the file
+  private static final int ANYWHERE = 1;
+  // as a property name, e.g. `template: ...`
+  private static final int PROPERTY = 2;
+  // as a name of a method called with a qualifier, e.g. `$stateProvider.state(...)`
+  private static final int CALL = 3;
+  // as a name of a method called with a qualifier and a string or an object literal, e.g. `app.directive('name', ...)`
+  private static final int CALL_WITH_LITERAL = 4;
+
+  private static final Trie MARKERS = new Trie();
+
+  static {
+    for (String method : ALL_INTERESTING_METHODS) {
+      MARKERS.add(method, CALL_WITH_LITERAL);
+    }
+    // injectables are indexed with any arguments, e.g. `app.config([...])` or `app.controller(Ctrl)`
+    for (String method : INJECTABLE_METHODS) {
+      MARKERS.add(method, CALL);
+    }
+    // properties of objects passed to these methods are indexed as well, so the arguments can be anything
+    MARKERS.add(STATE, CALL);
+    MARKERS.add(WHEN, CALL);
+    MARKERS.add("otherwise", CALL);
+    MARKERS.add(TEMPLATE, PROPERTY);
+    MARKERS.add(TEMPLATE_URL, ANYWHERE);
+    MARKERS.add("angular", ANYWHERE);
+    MARKERS.add("ngdoc", ANYWHERE);
+  }
+
+  // every that many checked files, the number of skipped files and the total scan time are logged at debug level
+  private static final int REPORT_INTERVAL = 1000;
+  private static final AtomicInteger ourCheckedFiles = new AtomicInteger();
+  private static final AtomicInteger ourSkippedFiles = new AtomicInteger();
+  private static final AtomicLong ourScanTime = new AtomicLong();
+  private static volatile boolean ourEnabled = true;
+
+  private AngularJSIndexingPreFilter() {
+  }
+
+  /**
+   * Makes all files indexed as if they may contain AngularJS code, to compare indexing with and without the check
+   */
+  @TestOnly
+  public static void disable(@NotNull Disposable parentDisposable) {
+    ourEnabled = false;
+    Disposer.register(parentDisposable, () -> ourEnabled = true);
+  }
+
+  static boolean mayContainAngularJS(@NotNull PsiElement element) {
+    PsiFile file = element.getContainingFile();
+    if (file == null || !ourEnabled) {
+      return true;
+    }
+    return CachedValuesManager.getCachedValue(file, () -> CachedValueProvider.Result.create(check(file), file));
+  }
+
+  private static boolean check(@NotNull PsiFile file) {
+    if (InjectedLanguageManager.getInstance(file.getProject()).isInjectedFragment(file)) {
+      return true;
+    }
+    long start = System.nanoTime();
+    boolean result = containsMarkers(file.getViewProvider().getContents());
+    long scanTime = ourScanTime.addAndGet(System.nanoTime() - start);
+    int skipped = result ? ourSkippedFiles.get() : ourSkippedFiles.incrementAndGet();
+    int checked = ourCheckedFiles.incrementAndGet();
+    if (LOG.isDebugEnabled() && checked % REPORT_INTERVAL == 0) {
+      LOG.debug("Skipped " + skipped + " of " + checked + " checked files without AngularJS code, scanning all checked files took " +
+                scanTime / 1_000_000 + " ms");
+    }
+    return result;
+  }
+
+  static boolean containsMarkers(@NotNull CharSequence text) {
+    int length = text.length();
+    int i = 0;
+    while (i < length) {
+      if (!Character.isJavaIdentifierStart(text.charAt(i))) {
+        i++;
+        continue;
+      }
+      int start = i;
+      int node = Trie.ROOT;
+      char c;
+      while (i < length && Character.isJavaIdentifierPart(c = text.charAt(i))) {
+        if (node != Trie.NO_NODE) {
+          node = MARKERS.next(node, c);
+        }
+        i++;
+      }
+      if (node != Trie.NO_NODE && isMarker(text, start, i, MARKERS.kind(node))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isMarker(@NotNull CharSequence text, int start, int end, int kind) {
+    switch (kind) {
+      case ANYWHERE:
+        return true;
+      case PROPERTY: {
+        int next = skipWhitespace(text, end < text.length() && isQuote(text.charAt(end)) ? end + 1 : end);
+        // a property with a value or a shorthand property
+        return next < text.length() && (text.charAt(next) == ':' || text.charAt(next) == ',' || text.charAt(next) == '}');
+      }
+      case CALL:
+      case CALL_WITH_LITERAL: {
+        int prev = skipWhitespaceBackward(text, start - 1);
+        int next = skipWhitespace(text, end);
+        if (prev < 0 || text.charAt(prev) != '.' || next >= text.length() || text.charAt(next) != '(') {
+          return false;
+        }
+        if (kind == CALL) {
+          return true;
+        }
+        int argument = skipWhitespace(text, next + 1);
+        return argument < text.length() && (isQuote(text.charAt(argument)) || text.charAt(argument) == '{');
+      }
+      default:
+        return false;
+    }
+  }
+
+  private static int skipWhitespace(@NotNull CharSequence text, int offset) {
+    while (offset < text.length() && Character.isWhitespace(text.charAt(offset))) {
+      offset++;
+    }
+    return offset;
+  }
+
+  private static int skipWhitespaceBackward(@NotNull CharSequence text, int offset) {
+    while (offset >= 0 && Character.isWhitespace(text.charAt(offset))) {
+      offset--;
+    }
+    return offset;
+  }
+
+  private static boolean isQuote(char c) {
+    return c == '\'' || c == '"' || c == '`';
+  }
+
+  /**
+   * Trie of ASCII identifiers, with transitions of each node kept in a row of a table. Adding an identifier again replaces its kind.
+   */
+  private static final class Trie {
+    static final int ROOT = 0;
+    static final int NO_NODE = -1;
+    private static final int ALPHABET_SIZE = 128;
+
+    private int[][] myNext = {newRow()};
+    private int[] myKinds = {NONE};
+    private int mySize = 1;
+
+    void add(@NotNull String identifier, int kind) {
+      int node = ROOT;
+      for (int i = 0; i < identifier.length(); i++) {
+        char c = identifier.charAt(i);
+        assert c < ALPHABET_SIZE : identifier;
+        if (myNext[node][c] == NO_NODE) {
+          if (mySize == myNext.length) {
+            myNext = Arrays.copyOf(myNext, mySize * 2);
+            myKinds = Arrays.copyOf(myKinds, mySize * 2);
+          }
+          myNext[mySize] = newRow();
+          myNext[node][c] = mySize++;
+        }
+        node = myNext[node][c];
+      }
+      myKinds[node] = kind;
+    }
+
+    int next(int node, char c) {
+      return c < ALPHABET_SIZE ? myNext[node][c] : NO_NODE;
+    }
+
+    int kind(int node) {
+      return myKinds[node];
+    }
+
+    private static int[] newRow() {
+      int[] row = new int[ALPHABET_SIZE];
+      Arrays.fill(row, NO_NODE);
+      return row;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.codeInsight;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import org.angular2.Angular2CodeInsightFixtureTestCase;
+import org.angular2.entities.Angular2EntitiesProvider;
+
+public class EntitiesRegistryTest extends Angular2CodeInsightFixtureTestCase {
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFixture.addFileToProject("package.json", "{\"dependencies\": {\"@angular/core\": \"*\"}}");
+    myFixture.addFileToProject("node_modules/@angular/core/index.d.ts",
+                               "export declare function Component(obj: any): any;\n" +
+                               "export declare function Pipe(obj: any): any;\n");
+  }
+
+  public void testSelectorChange() {
+    PsiFile component = myFixture.addFileToProject("comp.ts",
+                                                   "import {Component} from '@angular/core';\n" +
+                                                   "@Component({selector: 'app-old', template: ''})\n" +
+                                                   "export class Comp {}\n");
+    assertSameElements(Angular2EntitiesProvider.getAllElementDirectives(getProject()).keySet(), "app-old");
+    replaceText(component, "app-old", "app-new");
+    assertSameElements(Angular2EntitiesProvider.getAllElementDirectives(getProject()).keySet(), "app-new");
+  }
+
+  public void testPipeNameChange() {
+    PsiFile pipe = myFixture.addFileToProject("pipe.ts",
+                                              "import {Pipe} from '@angular/core';\n" +
+                                              "@Pipe({name: 'oldPipe'})\n" +
+                                              "export class MyPipe {\n" +
+                                              "  transform(value: any) { return value; }\n" +
+                                              "}\n");
+    assertSameElements(Angular2EntitiesProvider.getAllPipes(getProject()).keySet(), "oldPipe");
+    replaceText(pipe, "oldPipe", "newPipe");
+    assertSameElements(Angular2EntitiesProvider.getAllPipes(getProject()).keySet(), "newPipe");
+  }
+
+  private void replaceText(PsiFile file, String oldText, String newText) {
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+      Document document = documentManager.getDocument(file);
+      assertNotNull(document);
+      int offset = document.getText().indexOf(oldText);
+      document.replaceString(offset, offset + oldText.length(), newText);
+      documentManager.commitDocument(document);
+    });
+  }
+}
@@ -0,0 +1,64 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.performance;
+
+import com.intellij.codeInsight.lookup.LookupManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.angular2.Angular2CodeInsightFixtureTestCase;
+import org.angular2.entities.Angular2EntitiesProvider;
+import org.angular2.entities.Angular2EntitiesRegistry;
+
+public class Angular2EntitiesPerformanceTest extends Angular2CodeInsightFixtureTestCase {
+
+  private static final int COMPONENTS_COUNT = 1500;
+
+  public void testCompletionAfterUnrelatedChange() {
+    myFixture.addFileToProject("package.json", "{\"dependencies\": {\"@angular/core\": \"*\"}}");
+    myFixture.addFileToProject("node_modules/@angular/core/index.d.ts",
+                               "export declare function Component(obj: any): any;\n" +
+                               "export declare function NgModule(obj: any): any;\n");
+    StringBuilder moduleImports = new StringBuilder("import {NgModule} from '@angular/core';\n");
+    StringBuilder declarations = new StringBuilder();
+    for (int i = 0; i < COMPONENTS_COUNT; i++) {
+      myFixture.addFileToProject("components/comp" + i + ".ts",
+                                 "import {Component} from '@angular/core';\n" +
+                                 "@Component({selector: 'app-comp-" + i + "', template: ''})\n" +
+                                 "export class Comp" + i + " {}\n");
+      moduleImports.append("import {Comp").append(i).append("} from './components/comp").append(i).append("';\n");
+      declarations.append(i > 0 ? ", " : "").append("Comp").append(i);
+    }
+    myFixture.addFileToProject("app.module.ts", moduleImports +
+                                                "@NgModule({declarations: [" + declarations + "]})\n" +
+                                                "export class AppModule {}\n");
+    PsiFile unrelated = myFixture.addFileToProject("service.ts", "export class Service {\n  value = 0;\n}\n");
+    myFixture.configureByText("app.component.html", "<app-comp-<caret>");
+
+    assertEquals(COMPONENTS_COUNT, Angular2EntitiesProvider.getAllElementDirectives(getProject()).size());
+    long registryModificationCount = Angular2EntitiesRegistry.getInstance(getProject()).getModificationTracker().getModificationCount();
+    changeFile(unrelated);
+    assertEquals(COMPONENTS_COUNT, Angular2EntitiesProvider.getAllElementDirectives(getProject()).size());
+    assertEquals(registryModificationCount,
+                 Angular2EntitiesRegistry.getInstance(getProject()).getModificationTracker().getModificationCount());
+
+    PlatformTestUtil.startPerformanceTest(getTestName(false), 2_000, () -> myFixture.completeBasic())
+      .setup(() -> {
+        LookupManager.getInstance(getProject()).hideActiveLookup();
+        changeFile(unrelated);
+      })
+      .attempts(10)
+      .assertTiming();
+  }
+
+  private void changeFile(PsiFile file) {
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+      Document document = documentManager.getDocument(file);
+      assertNotNull(document);
+      document.insertString(document.getText().indexOf('0'), "1");
+      documentManager.commitDocument(document);
+    });
+  }
+}
@@ -0,0 +1,90 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.performance;
+
+import com.intellij.json.JsonLanguage;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.psi.stubs.Stub;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.FileContentImpl;
+import org.angular2.Angular2CodeInsightFixtureTestCase;
+import org.angular2.entities.metadata.Angular2MetadataFileType;
+import org.angular2.lang.metadata.MetadataJsonStubBuilder;
+import org.angular2.metadata.JsonMetadataTest;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.angularjs.AngularTestUtil.getBaseTestDataPath;
+
+public class Angular2MetadataStubBuilderPerformanceTest extends Angular2CodeInsightFixtureTestCase {
+
+  // number of times the largest metadata file of the test data is indexed, which is roughly the size of node_modules
+  // of a project using a few Angular component libraries
+  private static final int FILES_COUNT = 50;
+
+  @Override
+  protected String getTestDataPath() {
+    return getBaseTestDataPath(JsonMetadataTest.class) + "/json";
+  }
+
+  public void testNodeModulesIndexing() throws IOException {
+    myFixture.copyFileToProject("ng-zorro-antd.d.ts");
+    VirtualFile file = myFixture.copyFileToProject("ng-zorro-antd.metadata.json");
+    assertEquals(Angular2MetadataFileType.INSTANCE, file.getFileType());
+    FileContent content = FileContentImpl.createByFile(file, getProject());
+    MetadataJsonStubBuilder builder = new MetadataJsonStubBuilder();
+
+    Stub stub = builder.buildStubTree(content);
+    assertNotNull(stub);
+    assertFalse(stub.getChildrenStubs().isEmpty());
+
+    PlatformTestUtil.startPerformanceTest(getTestName(false), 3_000, () -> {
+      for (int i = 0; i < FILES_COUNT; i++) {
+        builder.buildStubTree(content);
+      }
+    }).attempts(5).assertTiming();
+  }
+
+  public void testNodeModulesIndexingAllocation() throws IOException {
+    myFixture.copyFileToProject("ng-zorro-antd.d.ts");
+    VirtualFile file = myFixture.copyFileToProject("ng-zorro-antd.metadata.json");
+    FileContent content = FileContentImpl.createByFile(file, getProject());
+    MetadataJsonStubBuilder builder = new MetadataJsonStubBuilder();
+    String text = LoadTextUtil.getTextByBinaryPresentation(content.getContent(), file).toString();
+    // warm up, so that classes and caches initialized once aren't counted
+    builder.buildStubTree(content);
+    buildJsonPsi(text);
+
+    long allocatedByStubs = getAllocatedBytesPerFile(() -> builder.buildStubTree(content));
+    // stubs used to be built from JSON PSI of the file, which alone takes more than the whole stub building now
+    long allocatedByJsonPsi = getAllocatedBytesPerFile(() -> buildJsonPsi(text));
+    assertTrue("Building stubs allocates " + allocatedByStubs + " bytes per file, building JSON PSI " + allocatedByJsonPsi,
+               allocatedByStubs < allocatedByJsonPsi);
+  }
+
+  private void buildJsonPsi(@NotNull String text) {
+    PsiFile jsonFile = PsiFileFactory.getInstance(getProject()).createFileFromText("index.metadata.json", JsonLanguage.INSTANCE, text);
+    // the stubs were built from the whole tree
+    jsonFile.accept(new PsiRecursiveElementWalkingVisitor() {
+    });
+  }
+
+  private static long getAllocatedBytesPerFile(@NotNull Runnable indexing) {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assertTrue("Allocated bytes aren't measured by the JVM", bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)bean;
+    long threadId = Thread.currentThread().getId();
+    long start = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < FILES_COUNT; i++) {
+      indexing.run();
+    }
+    return (threadBean.getThreadAllocatedBytes(threadId) - start) / FILES_COUNT;
+  }
+}
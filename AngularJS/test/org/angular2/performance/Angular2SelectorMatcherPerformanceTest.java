@@ -0,0 +1,60 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.angular2.performance;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.angular2.lang.selector.Angular2CompiledSelectorMatcher;
+import org.angular2.lang.selector.Angular2DirectiveSimpleSelector;
+import org.angular2.lang.selector.Angular2SelectorMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Angular2SelectorMatcherPerformanceTest extends BasePlatformTestCase {
+
+  // roughly the number of directives and components of Angular Material together with CDK
+  private static final int COMPONENTS_COUNT = 120;
+  private static final int DIRECTIVES_COUNT = 250;
+
+  public void testMaterialSizedDirectives() throws Exception {
+    Angular2SelectorMatcher<Integer> matcher = new Angular2SelectorMatcher<>();
+    int context = 0;
+    for (int i = 0; i < COMPONENTS_COUNT; i++) {
+      matcher.addSelectables(Angular2DirectiveSimpleSelector.parse("mat-comp" + i + ", [mat-comp" + i + "]"), context++);
+      matcher.addSelectables(Angular2DirectiveSimpleSelector.parse("button[mat-button" + i + "], a[mat-button" + i + "]"), context++);
+    }
+    for (int i = 0; i < DIRECTIVES_COUNT; i++) {
+      matcher.addSelectables(Angular2DirectiveSimpleSelector.parse("[cdkDir" + i + "]:not([cdkDisabled" + i + "])"), context++);
+      matcher.addSelectables(Angular2DirectiveSimpleSelector.parse("input[matInput" + i + "], textarea[matInput" + i + "]"), context++);
+      matcher.addSelectables(Angular2DirectiveSimpleSelector.parse(".mat-class" + i + "[role=option" + i + "]"), context++);
+    }
+    Angular2CompiledSelectorMatcher<Integer> compiled = matcher.compile();
+
+    List<Angular2DirectiveSimpleSelector> elements = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      elements.addAll(Angular2DirectiveSimpleSelector.parse("mat-comp" + i % COMPONENTS_COUNT));
+      elements.addAll(Angular2DirectiveSimpleSelector.parse("button[mat-button" + i % COMPONENTS_COUNT + "][type=submit]"));
+      elements.addAll(Angular2DirectiveSimpleSelector.parse("div.mat-class" + i + ".other[role=option" + i + "][cdkDir" + i + "]"));
+      elements.addAll(Angular2DirectiveSimpleSelector.parse("input[matInput" + i + "][cdkDir" + i + "][cdkDisabled" + i + "]"));
+    }
+
+    for (Angular2DirectiveSimpleSelector element : elements) {
+      List<Integer> expected = new ArrayList<>();
+      List<Integer> actual = new ArrayList<>();
+      boolean expectedResult = matcher.match(element, (selector, ctx) -> expected.add(ctx));
+      boolean actualResult = compiled.match(element, (selector, ctx) -> actual.add(ctx));
+      assertEquals(element.toString(), expectedResult, actualResult);
+      assertEquals(element.toString(), expected, actual);
+    }
+
+    int[] matched = new int[1];
+    PlatformTestUtil.startPerformanceTest(getTestName(false), 1_000, () -> {
+      for (int i = 0; i < 100; i++) {
+        for (Angular2DirectiveSimpleSelector element : elements) {
+          compiled.match(element, (selector, ctx) -> matched[0]++);
+        }
+      }
+    }).attempts(5).assertTiming();
+    assertTrue(matched[0] > 0);
+  }
+}
@@ -0,0 +1,34 @@
+package org.angularjs.index;
+
+import junit.framework.TestCase;
+
+import static org.angularjs.index.AngularJSIndexingPreFilter.containsMarkers;
+
+public class AngularJSIndexingPreFilterTest extends TestCase {
+
+  public void testMarkers() {
+    assertTrue(containsMarkers("angular.module('app', [])"));
+    assertTrue(containsMarkers("app.directive('myDir', function() {})"));
+    assertTrue(containsMarkers("app\n  .component( \"myComp\", {})"));
+    assertTrue(containsMarkers("app.controller({MyCtrl: function() {}})"));
+    assertTrue(containsMarkers("app.controller(MyCtrl)"));
+    assertTrue(containsMarkers("app.config(['$locationProvider', function($locationProvider) {}])"));
+    assertTrue(containsMarkers("app.run(function($rootScope) {})"));
+    assertTrue(containsMarkers("$interpolateProvider.startSymbol('[[')"));
+    assertTrue(containsMarkers("$stateProvider.state(state)"));
+    assertTrue(containsMarkers("$routeProvider.otherwise({redirectTo: '/'})"));
+    assertTrue(containsMarkers("export default {template: require('./a.html'), controller: Ctrl}"));
+    assertTrue(containsMarkers("export default {'templateUrl': 'a.html'}"));
+    assertTrue(containsMarkers("/**\n * @ngdoc directive\n * @name ngClick\n */"));
+  }
+
+  public void testNoMarkers() {
+    assertFalse(containsMarkers(""));
+    assertFalse(containsMarkers("items.filter(item => item.value).map(item => item.name)"));
+    assertFalse(containsMarkers("this.service = service; config.value = 1;"));
+    assertFalse(containsMarkers("directive('myDir', function() {})"));
+    assertFalse(containsMarkers("const template = _.template(text);"));
+    assertFalse(containsMarkers("angularity.modules.directives = []"));
+    assertFalse(containsMarkers("promise.then(run).catch(config)"));
+  }
+}
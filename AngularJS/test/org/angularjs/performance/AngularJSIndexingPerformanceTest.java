@@ -0,0 +1,45 @@
+package org.angularjs.performance;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.stubs.StubTreeBuilder;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.intellij.util.ThrowableRunnable;
+import com.intellij.util.indexing.FileContentImpl;
+import org.angularjs.index.AngularJSIndexingPreFilter;
+
+public class AngularJSIndexingPerformanceTest extends BasePlatformTestCase {
+
+  // roughly the size of a vendor bundle with a few libraries
+  private static final int FUNCTIONS_COUNT = 5000;
+
+  public void testVendorBundleIndexing() {
+    indexVendorBundle(5_000);
+  }
+
+  // the same bundle with its whole PSI walked by the indexing handler, for comparison with the test above
+  public void testVendorBundleIndexingWithoutPreFilter() {
+    AngularJSIndexingPreFilter.disable(getTestRootDisposable());
+    indexVendorBundle(15_000);
+  }
+
+  private void indexVendorBundle(int expectedMs) {
+    VirtualFile vendorFile = myFixture.addFileToProject("vendor.js", generateVendorCode()).getVirtualFile();
+    ThrowableRunnable<Exception> indexVendorFile = () -> assertNotNull(
+      StubTreeBuilder.buildStubTree(FileContentImpl.createByFile(vendorFile, getProject())));
+
+    PlatformTestUtil.startPerformanceTest(getTestName(false), expectedMs, indexVendorFile).attempts(5).assertTiming();
+  }
+
+  private static String generateVendorCode() {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < FUNCTIONS_COUNT; i++) {
+      result.append("function f").append(i).append("(items, options) {\n")
+        .append("  var config = {value: ").append(i).append(", scope: options.scope, cache: null};\n")
+        .append("  return items.filter(function (item) { return item.value > config.value; })\n")
+        .append("    .map(function (item) { return {name: item.name, state: item.state}; });\n")
+        .append("}\n");
+    }
+    return result.toString();
+  }
+}
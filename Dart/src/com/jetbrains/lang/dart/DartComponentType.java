@@ -54,6 +54,8 @@ public enum DartComponentType {
   OPERATOR(AllIcons.Nodes.ClassInitializer, DartBundle.messagePointer("find.usages.type.operator")),
   LABEL(AllIcons.Nodes.Variable, DartBundle.messagePointer("find.usages.type.label"));
 
+  private static final DartComponentType[] VALUES = values();
+
   private final Icon myIcon;
   private final Supplier<@Nls String> myUsageTypeSupplier;
 
@@ -81,7 +83,7 @@ public enum DartComponentType {
 
   @Nullable
   public static DartComponentType valueOf(int key) {
-    return key >= 0 && key < values().length ? values()[key] : null;
+    return key >= 0 && key < VALUES.length ? VALUES[key] : null;
   }
 
   @Nullable
@@ -9,6 +9,7 @@ import com.google.dart.server.generated.AnalysisServer;
 import com.google.dart.server.internal.remote.DebugPrintStream;
 import com.google.dart.server.internal.remote.RemoteAnalysisServerImpl;
 import com.google.dart.server.internal.remote.StdioServerSocket;
+import com.google.dart.server.internal.remote.utilities.ResponseUtilities;
 import com.google.dart.server.utilities.logging.Logging;
 import com.google.gson.JsonObject;
 import com.intellij.codeInsight.CodeInsightSettings;
@@ -67,6 +68,7 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
 import java.io.File;
 import java.util.*;
@@ -141,6 +143,8 @@ public final class DartAnalysisServerService implements Disposable {
   private final Map<String, Long> myFilePathWithOverlaidContentToTimestamp = new HashMap<>();
   private final List<String> myVisibleFiles = new ArrayList<>();
   private final Set<Document> myChangedDocuments = new HashSet<>();
+  // changes made in documents since their overlaid content was sent to the server, see DartDocumentDeltas
+  private final Map<Document, DartDocumentDeltas> myDocumentDeltas = new HashMap<>();
   private final Alarm myUpdateFilesAlarm;
 
   @NotNull private final Queue<CompletionInfo> myCompletionInfos = new LinkedList<>();
@@ -692,6 +696,7 @@ public final class DartAnalysisServerService implements Disposable {
         updateCurrentFile();
 
         if (isLocalAnalyzableFile(file)) {
+          myServerData.onFileOpened(file);
           updateVisibleFiles();
         }
       }
@@ -731,6 +736,12 @@ public final class DartAnalysisServerService implements Disposable {
 
         final VirtualFile file = FileDocumentManager.getInstance().getFile(e.getDocument());
         if (isLocalAnalyzableFile(file)) {
+          if (isIncrementalOverlaysEnabled()) {
+            synchronized (myLock) {
+              myDocumentDeltas.computeIfAbsent(e.getDocument(), DartDocumentDeltas::new).addEdit(e);
+            }
+          }
+
           for (VirtualFile fileInEditor : FileEditorManager.getInstance(myProject).getOpenFiles()) {
             if (fileInEditor.equals(file)) {
               synchronized (myLock) {
@@ -802,6 +813,14 @@ public final class DartAnalysisServerService implements Disposable {
     return myServerData.getErrors(scope);
   }
 
+  /**
+   * @param severity one of {@link AnalysisErrorSeverity} constants
+   */
+  @NotNull
+  public List<DartServerData.DartError> getErrors(@NotNull final SearchScope scope, @NotNull final String severity) {
+    return myServerData.getErrors(scope, severity);
+  }
+
   @NotNull
   public List<DartServerData.DartHighlightRegion> getHighlight(@NotNull final VirtualFile file) {
     return myServerData.getHighlight(file);
@@ -905,9 +924,11 @@ public final class DartAnalysisServerService implements Disposable {
     }
   }
 
-  private void doUpdateFilesContent() {
-    // may be use DocumentListener to collect deltas instead of sending the whole Document.getText() each time?
+  private static boolean isIncrementalOverlaysEnabled() {
+    return Registry.is("dart.server.incremental.content.overlays", true);
+  }
 
+  private void doUpdateFilesContent() {
     AnalysisServer server = myServer;
     if (server == null) {
       return;
@@ -916,8 +937,15 @@ public final class DartAnalysisServerService implements Disposable {
     myUpdateFilesAlarm.cancelAllRequests();
 
     final Map<String, Object> filesToUpdate = new HashMap<>();
+    // system-independent paths of the files sent with AddContentOverlay or ChangeContentOverlay
+    final Map<String, Document> overlaidDocuments = new HashMap<>();
+    long fullContentLength = 0;
+    long incrementalContentLength = 0;
     ApplicationManager.getApplication().assertReadAccessAllowed();
     synchronized (myLock) {
+      // the server has been restarted, myFilePathWithOverlaidContentToTimestamp doesn't correspond to it
+      if (server != myServer) return;
+
       final Set<String> oldTrackedFiles = new HashSet<>(myFilePathWithOverlaidContentToTimestamp.keySet());
 
       final FileDocumentManager fileDocumentManager = FileDocumentManager.getInstance();
@@ -934,13 +962,31 @@ public final class DartAnalysisServerService implements Disposable {
           oldTrackedFiles.remove(file.getPath());
 
           final Long oldTimestamp = myFilePathWithOverlaidContentToTimestamp.get(file.getPath());
-          if (oldTimestamp == null || document.getModificationStamp() != oldTimestamp) {
-            filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), new AddContentOverlay(document.getText()));
+          final DartDocumentDeltas deltas = myDocumentDeltas.remove(document);
+          // undo may restore the modification stamp, so recorded deltas are checked as well
+          if (oldTimestamp == null || document.getModificationStamp() != oldTimestamp || deltas != null) {
+            final ChangeContentOverlay changeOverlay =
+              oldTimestamp != null && deltas != null ? deltas.createOverlay(document, oldTimestamp) : null;
+            if (changeOverlay != null) {
+              filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), changeOverlay);
+              incrementalContentLength += deltas.getReplacementLength();
+            }
+            else {
+              filesToUpdate.put(FileUtil.toSystemDependentName(file.getPath()), new AddContentOverlay(document.getText()));
+              fullContentLength += document.getTextLength();
+            }
             myFilePathWithOverlaidContentToTimestamp.put(file.getPath(), document.getModificationStamp());
+            overlaidDocuments.put(file.getPath(), document);
           }
         }
       }
 
+      // deltas recorded for documents that are not overlaid anymore (or have never been) are useless
+      myDocumentDeltas.keySet().removeIf(document -> {
+        final VirtualFile file = fileDocumentManager.getFile(document);
+        return file == null || !myFilePathWithOverlaidContentToTimestamp.containsKey(file.getPath());
+      });
+
       // oldTrackedFiles at this point contains only those files that are not in FileDocumentManager.getUnsavedDocuments() anymore
       for (String oldPath : oldTrackedFiles) {
         final Long removed = myFilePathWithOverlaidContentToTimestamp.remove(oldPath);
@@ -964,10 +1010,62 @@ public final class DartAnalysisServerService implements Disposable {
     }
 
     if (!filesToUpdate.isEmpty()) {
-      server.analysis_updateContent(filesToUpdate, myServerData::onFilesContentUpdated);
+      final long startTime = System.currentTimeMillis();
+      final long fullLength = fullContentLength;
+      final long incrementalLength = incrementalContentLength;
+      server.analysis_updateContent(filesToUpdate, new UpdateContentConsumer() {
+        @Override
+        public void onResponse() {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("analysis_updateContent (full content: " + fullLength + " chars, incremental changes: " + incrementalLength +
+                      " chars) took " + (System.currentTimeMillis() - startTime) + " ms");
+          }
+          myServerData.onFilesContentUpdated();
+        }
+
+        @Override
+        public void onError(RequestError error) {
+          onFilesContentRejected(server, overlaidDocuments);
+        }
+      });
     }
   }
 
+  /**
+   * Makes the server forget the overlaid content of the file without updating the state of this service.
+   */
+  @TestOnly
+  public void removeContentOverlayOnServerOnly(@NotNull VirtualFile file) {
+    final AnalysisServer server = myServer;
+    if (server != null) {
+      server.analysis_updateContent(Collections.singletonMap(FileUtil.toSystemDependentName(file.getPath()), new RemoveContentOverlay()),
+                                    () -> {});
+    }
+  }
+
+  /**
+   * If analysis.updateContent has been rejected (e.g. with INVALID_OVERLAY_CHANGE because a ChangeContentOverlay didn't apply),
+   * the content known to the server is unclear, so the full text of the documents is sent with the next update.
+   */
+  private void onFilesContentRejected(@NotNull AnalysisServer server, @NotNull Map<String, Document> overlaidDocuments) {
+    synchronized (myLock) {
+      // a restarted server gets the full content anyway
+      if (server != myServer) return;
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("analysis_updateContent rejected, resending full content: " + StringUtil.join(overlaidDocuments.keySet(), ",\n"));
+      }
+      for (Map.Entry<String, Document> entry : overlaidDocuments.entrySet()) {
+        myFilePathWithOverlaidContentToTimestamp.remove(entry.getKey());
+        myDocumentDeltas.remove(entry.getValue());
+        myChangedDocuments.add(entry.getValue());
+      }
+    }
+
+    myUpdateFilesAlarm.cancelAllRequests();
+    myUpdateFilesAlarm.addRequest(this::updateFilesContent, 0);
+  }
+
   public void ensureAnalysisRootsUpToDate() {
     myRootsHandler.updateRoots();
   }
@@ -2166,6 +2264,9 @@ public final class DartAnalysisServerService implements Disposable {
 
         startedServer.analysis_updateOptions(new AnalysisOptions(true, true, true, true, true, false, true, false));
 
+        // the new server knows nothing about the overlays sent to the previous one
+        myFilePathWithOverlaidContentToTimestamp.clear();
+        myDocumentDeltas.clear();
         myServer = startedServer;
 
         // Clear any dart view notifications.
@@ -2263,8 +2364,10 @@ public final class DartAnalysisServerService implements Disposable {
       mySdkVersion = "";
       myServerVersion = "";
       myFilePathWithOverlaidContentToTimestamp.clear();
+      myServerData.saveToDiskCache(ContainerUtil.map(myVisibleFiles, FileUtil::toSystemIndependentName));
       myVisibleFiles.clear();
       myChangedDocuments.clear();
+      myDocumentDeltas.clear();
       myServerData.clearData();
       myRootsHandler.onServerStopped();
 
@@ -2336,6 +2439,12 @@ public final class DartAnalysisServerService implements Disposable {
       return;
     }
 
+    if (ResponseUtilities.REQUEST_SUPERSEDED.equals(error.getCode())) {
+      // a newer request of the same kind has been sent for this file, result of this one is not needed
+      LOG.debug(getShortErrorMessage(methodName, filePath, error));
+      return;
+    }
+
     final String trace = error.getStackTrace();
     final String partialTrace = trace == null || trace.isEmpty() ? "" : trace.substring(0, Math.min(trace.length(), 1000));
     final String message = getShortErrorMessage(methodName, filePath, error) + "\n" + partialTrace + "...";
@@ -2359,6 +2468,14 @@ public final class DartAnalysisServerService implements Disposable {
       builder.append(", for file ").append(filePath);
     }
     builder.append(", Dart SDK version: ").append(mySdkVersion);
+    final RemoteAnalysisServerImpl server = myServer;
+    if (server != null) {
+      builder.append(", requests in flight: ").append(server.getRequestStatistics().getInFlightCount());
+      builder.append(", requests queued: ").append(server.getRequestQueueDepth());
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Analysis Server request latencies, " + server.getRequestStatistics());
+      }
+    }
     LOG.info(builder.toString());
   }
 
@@ -0,0 +1,74 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import org.dartlang.analysis.server.protocol.ChangeContentOverlay;
+import org.dartlang.analysis.server.protocol.SourceEdit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Document changes made since the document content has been sent to the Analysis Server last time. Lets
+ * {@link DartAnalysisServerService} send a small {@link ChangeContentOverlay} instead of the whole {@link Document#getText()}.
+ * <p/>
+ * Edits are recorded in the order they happen, each one relative to the document text after the previous edit, which is exactly how the
+ * server applies {@link ChangeContentOverlay#getEdits()}. If too many edits are accumulated, the log is dropped and the caller has to
+ * fall back to a full overlay.
+ */
+final class DartDocumentDeltas {
+  private static final int MAX_EDITS = 100;
+
+  private final long myBaseStamp;
+  private final int myBaseLength;
+
+  private final List<SourceEdit> myEdits = new ArrayList<>();
+  private int myLengthDelta;
+  private long myReplacementLength;
+  private boolean myOverflow;
+
+  /**
+   * @param document the document right before the first recorded change
+   */
+  DartDocumentDeltas(@NotNull Document document) {
+    myBaseStamp = document.getModificationStamp();
+    myBaseLength = document.getTextLength();
+  }
+
+  /**
+   * Must be called from {@link com.intellij.openapi.editor.event.DocumentListener#beforeDocumentChange(DocumentEvent)}.
+   */
+  void addEdit(@NotNull DocumentEvent e) {
+    myLengthDelta += e.getNewLength() - e.getOldLength();
+    if (myOverflow) return;
+
+    myReplacementLength += e.getNewLength();
+    // when the accumulated edits become comparable with the document itself, there is no reason to keep them, the full text is cheaper
+    if (myEdits.size() >= MAX_EDITS || myReplacementLength > Math.max(myBaseLength, e.getDocument().getTextLength()) / 2) {
+      myOverflow = true;
+      myEdits.clear();
+      return;
+    }
+
+    myEdits.add(new SourceEdit(e.getOffset(), e.getOldLength(), e.getNewFragment().toString(), null));
+  }
+
+  /**
+   * @param overlaidStamp modification stamp of the document when its content has been sent to the server last time
+   * @return {@code null} if edits can't be used and the whole document text should be sent instead
+   */
+  @Nullable
+  ChangeContentOverlay createOverlay(@NotNull Document document, long overlaidStamp) {
+    if (myOverflow || myEdits.isEmpty()) return null;
+    // make sure that the recorded edits start exactly at the content known to the server and end at the current document content
+    if (myBaseStamp != overlaidStamp || myBaseLength + myLengthDelta != document.getTextLength()) return null;
+    return new ChangeContentOverlay(new ArrayList<>(myEdits));
+  }
+
+  long getReplacementLength() {
+    return myReplacementLength;
+  }
+}
@@ -0,0 +1,209 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.util.PathUtil;
+import com.intellij.util.Processor;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartError;
+import org.dartlang.analysis.server.protocol.AnalysisErrorSeverity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tree of files that have problems reported by the Analysis Server, with per-folder problem counters. {@link DartServerData} keeps
+ * errors for all analyzed files, including files without errors, so it's much cheaper to find files with errors in some scope
+ * walking this tree: only folders that contain problems of the requested severity are visited, and files are found by id without
+ * resolving their paths.
+ * <p/>
+ * Updates are serialized, queries don't take any locks.
+ */
+final class DartErrorIndex {
+  private static final String ROOT = "";
+
+  private final Object myUpdateLock = new Object();
+
+  // file path -> info about problems in this file; only files with problems are here
+  private final Map<String, FileInfo> myFiles = new ConcurrentHashMap<>();
+  // folder path -> problems in this folder (recursively)
+  private final Map<String, ProblemCounts> myFolders = new ConcurrentHashMap<>();
+  // folder path -> paths of its direct children (files and folders) that contain problems
+  private final Map<String, Set<String>> myChildren = new ConcurrentHashMap<>();
+
+  void fileErrorsUpdated(@NotNull String filePath, @Nullable VirtualFile file, @NotNull List<? extends DartError> errors) {
+    final ProblemCounts counts = ProblemCounts.of(errors);
+    synchronized (myUpdateLock) {
+      final FileInfo oldInfo = myFiles.remove(filePath);
+      if (oldInfo != null) {
+        updateFolders(filePath, oldInfo.myCounts, -1);
+      }
+
+      if (counts.isEmpty()) {
+        if (oldInfo != null) {
+          removeFromParent(filePath);
+        }
+        return;
+      }
+
+      final int fileId = file instanceof VirtualFileWithId ? ((VirtualFileWithId)file).getId() : 0;
+      myFiles.put(filePath, new FileInfo(fileId, counts));
+      updateFolders(filePath, counts, 1);
+      addToParent(filePath);
+    }
+  }
+
+  void fileRemoved(@NotNull String filePath) {
+    synchronized (myUpdateLock) {
+      final FileInfo oldInfo = myFiles.remove(filePath);
+      if (oldInfo != null) {
+        updateFolders(filePath, oldInfo.myCounts, -1);
+        removeFromParent(filePath);
+      }
+    }
+  }
+
+  void clear() {
+    synchronized (myUpdateLock) {
+      myFiles.clear();
+      myFolders.clear();
+      myChildren.clear();
+    }
+  }
+
+  /**
+   * Processes paths of files that are in the {@code scope} and have problems of the given severity, or any problems if {@code severity}
+   * is {@code null}.
+   */
+  void processFilesWithProblems(@NotNull SearchScope scope, @Nullable String severity, @NotNull Processor<? super String> processor) {
+    processChildren(ROOT, scope, severity, processor);
+  }
+
+  private boolean processChildren(@NotNull String folderPath,
+                                  @NotNull SearchScope scope,
+                                  @Nullable String severity,
+                                  @NotNull Processor<? super String> processor) {
+    final Set<String> children = myChildren.get(folderPath);
+    if (children == null) return true;
+
+    for (String childPath : children) {
+      final FileInfo fileInfo = myFiles.get(childPath);
+      if (fileInfo != null) {
+        if (fileInfo.myCounts.hasProblems(severity)) {
+          final VirtualFile file = fileInfo.myFileId > 0 ? VirtualFileManager.getInstance().findFileById(fileInfo.myFileId)
+                                                         : LocalFileSystem.getInstance().findFileByPath(childPath);
+          if (file != null && scope.contains(file) && !processor.process(childPath)) return false;
+        }
+      }
+      else {
+        final ProblemCounts folderCounts = myFolders.get(childPath);
+        if (folderCounts != null && folderCounts.hasProblems(severity) && !processChildren(childPath, scope, severity, processor)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void updateFolders(@NotNull String filePath, @NotNull ProblemCounts counts, int sign) {
+    String folderPath = PathUtil.getParentPath(filePath);
+    while (!folderPath.isEmpty()) {
+      final ProblemCounts newCounts = myFolders.getOrDefault(folderPath, ProblemCounts.EMPTY).add(counts, sign);
+      if (newCounts.isEmpty()) {
+        myFolders.remove(folderPath);
+      }
+      else {
+        myFolders.put(folderPath, newCounts);
+      }
+      folderPath = PathUtil.getParentPath(folderPath);
+    }
+  }
+
+  private void addToParent(@NotNull String path) {
+    while (!path.isEmpty()) {
+      final String parentPath = PathUtil.getParentPath(path);
+      if (!myChildren.computeIfAbsent(parentPath, p -> ConcurrentHashMap.newKeySet()).add(path)) return;
+      path = parentPath;
+    }
+  }
+
+  private void removeFromParent(@NotNull String path) {
+    while (!path.isEmpty()) {
+      if (myChildren.containsKey(path) || myFiles.containsKey(path)) return; // still has problems
+
+      final String parentPath = PathUtil.getParentPath(path);
+      final Set<String> siblings = myChildren.get(parentPath);
+      if (siblings == null) return;
+      siblings.remove(path);
+      if (!siblings.isEmpty()) return;
+      myChildren.remove(parentPath);
+      path = parentPath;
+    }
+  }
+
+  private static final class FileInfo {
+    private final int myFileId;
+    @NotNull private final ProblemCounts myCounts;
+
+    private FileInfo(int fileId, @NotNull ProblemCounts counts) {
+      myFileId = fileId;
+      myCounts = counts;
+    }
+  }
+
+  private static final class ProblemCounts {
+    private static final ProblemCounts EMPTY = new ProblemCounts(0, 0, 0);
+
+    private final int myErrors;
+    private final int myWarnings;
+    private final int myInfos;
+
+    private ProblemCounts(int errors, int warnings, int infos) {
+      myErrors = errors;
+      myWarnings = warnings;
+      myInfos = infos;
+    }
+
+    @NotNull
+    private static ProblemCounts of(@NotNull List<? extends DartError> errors) {
+      int errorCount = 0;
+      int warningCount = 0;
+      int infoCount = 0;
+      for (DartError error : errors) {
+        if (AnalysisErrorSeverity.ERROR.equals(error.getSeverity())) {
+          errorCount++;
+        }
+        else if (AnalysisErrorSeverity.WARNING.equals(error.getSeverity())) {
+          warningCount++;
+        }
+        else {
+          infoCount++;
+        }
+      }
+      return new ProblemCounts(errorCount, warningCount, infoCount);
+    }
+
+    @NotNull
+    private ProblemCounts add(@NotNull ProblemCounts counts, int sign) {
+      return new ProblemCounts(myErrors + sign * counts.myErrors, myWarnings + sign * counts.myWarnings, myInfos + sign * counts.myInfos);
+    }
+
+    private boolean isEmpty() {
+      return myErrors <= 0 && myWarnings <= 0 && myInfos <= 0;
+    }
+
+    private boolean hasProblems(@Nullable String severity) {
+      if (severity == null) return !isEmpty();
+      if (AnalysisErrorSeverity.ERROR.equals(severity)) return myErrors > 0;
+      if (AnalysisErrorSeverity.WARNING.equals(severity)) return myWarnings > 0;
+      return myInfos > 0;
+    }
+  }
+}
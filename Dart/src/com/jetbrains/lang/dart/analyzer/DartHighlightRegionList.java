@@ -0,0 +1,179 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartHighlightRegion;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of highlight regions of a file. Big files have tens of thousands of highlight regions, so instead of keeping an object
+ * per region, offsets, lengths and region types are packed into {@code int} arrays. {@link DartHighlightRegion} objects are created on
+ * demand in {@link #get(int)}.
+ * <p/>
+ * The list is never modified: {@link #updated(DocumentEvent)} returns a new list, so it is safe to read it without any locking.
+ */
+public final class DartHighlightRegionList extends AbstractList<DartHighlightRegion> implements RandomAccess {
+  static final DartHighlightRegionList EMPTY = new DartHighlightRegionList(ArrayUtil.EMPTY_INT_ARRAY, ArrayUtil.EMPTY_INT_ARRAY,
+                                                                           ArrayUtil.EMPTY_INT_ARRAY, ArrayUtil.EMPTY_STRING_ARRAY);
+
+  private final int[] myOffsets;
+  private final int[] myLengths;
+  private final int[] myTypeIndices;
+  // distinct region types of this file, myTypeIndices point here
+  private final String[] myTypes;
+
+  private DartHighlightRegionList(int @NotNull [] offsets, int @NotNull [] lengths, int @NotNull [] typeIndices, String @NotNull [] types) {
+    myOffsets = offsets;
+    myLengths = lengths;
+    myTypeIndices = typeIndices;
+    myTypes = types;
+  }
+
+  @Override
+  public DartHighlightRegion get(int index) {
+    return new DartHighlightRegion(myOffsets[index], myLengths[index], myTypes[myTypeIndices[index]]);
+  }
+
+  @Override
+  public int size() {
+    return myOffsets.length;
+  }
+
+  /**
+   * @return list with regions shifted according to the document change, touched regions are updated or deleted
+   */
+  @NotNull
+  DartHighlightRegionList updated(@NotNull DocumentEvent e) {
+    final int eventOffset = e.getOffset();
+    final int deltaLength = e.getNewLength() - e.getOldLength();
+    if (deltaLength == 0 || myOffsets.length == 0) return this;
+
+    final int[] offsets = new int[myOffsets.length];
+    final int[] lengths = new int[myLengths.length];
+    final int[] typeIndices = new int[myTypeIndices.length];
+    int size = 0;
+
+    for (int i = 0; i < myOffsets.length; i++) {
+      int offset = myOffsets[i];
+      int length = myLengths[i];
+
+      if (deltaLength > 0) {
+        // Something was typed. Shift untouched regions, update touched.
+        if (eventOffset <= offset) {
+          offset += deltaLength;
+        }
+        else if (eventOffset < offset + length) {
+          length += deltaLength;
+        }
+      }
+      else {
+        // Some text was deleted. Shift untouched regions, delete or update touched.
+        final int eventRightOffset = eventOffset - deltaLength;
+        final int regionRightOffset = offset + length;
+
+        if (eventRightOffset <= offset) {
+          offset += deltaLength;
+        }
+        else if (offset <= eventOffset && eventRightOffset <= regionRightOffset && length != -deltaLength) {
+          length += deltaLength;
+        }
+        else if (eventOffset < regionRightOffset) {
+          continue;
+        }
+      }
+
+      offsets[size] = offset;
+      lengths[size] = length;
+      typeIndices[size] = myTypeIndices[i];
+      size++;
+    }
+
+    if (size == offsets.length) {
+      return new DartHighlightRegionList(offsets, lengths, typeIndices, myTypes);
+    }
+    return new DartHighlightRegionList(ArrayUtil.realloc(offsets, size), ArrayUtil.realloc(lengths, size),
+                                       ArrayUtil.realloc(typeIndices, size), myTypes);
+  }
+
+  void save(@NotNull DataOutput out) throws IOException {
+    DataInputOutputUtil.writeINT(out, myTypes.length);
+    for (String type : myTypes) {
+      IOUtil.writeUTF(out, type);
+    }
+    DataInputOutputUtil.writeINT(out, myOffsets.length);
+    for (int i = 0; i < myOffsets.length; i++) {
+      DataInputOutputUtil.writeINT(out, myOffsets[i]);
+      DataInputOutputUtil.writeINT(out, myLengths[i]);
+      DataInputOutputUtil.writeINT(out, myTypeIndices[i]);
+    }
+  }
+
+  @NotNull
+  static DartHighlightRegionList read(@NotNull DataInput in) throws IOException {
+    final String[] types = new String[DataInputOutputUtil.readINT(in)];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = IOUtil.readUTF(in).intern();
+    }
+    final int size = DataInputOutputUtil.readINT(in);
+    if (size == 0) return EMPTY;
+
+    final int[] offsets = new int[size];
+    final int[] lengths = new int[size];
+    final int[] typeIndices = new int[size];
+    for (int i = 0; i < size; i++) {
+      offsets[i] = DataInputOutputUtil.readINT(in);
+      lengths[i] = DataInputOutputUtil.readINT(in);
+      typeIndices[i] = DataInputOutputUtil.readINT(in);
+      if (typeIndices[i] < 0 || typeIndices[i] >= types.length) throw new IOException("Corrupted highlight region type index");
+    }
+    return new DartHighlightRegionList(offsets, lengths, typeIndices, types);
+  }
+
+  static final class Builder {
+    private final IntArrayList myOffsets;
+    private final IntArrayList myLengths;
+    private final IntArrayList myTypeIndices;
+    private final Object2IntMap<String> myTypeToIndex = new Object2IntOpenHashMap<>();
+    private final List<String> myTypes = new ArrayList<>();
+
+    Builder(int expectedSize) {
+      myOffsets = new IntArrayList(expectedSize);
+      myLengths = new IntArrayList(expectedSize);
+      myTypeIndices = new IntArrayList(expectedSize);
+    }
+
+    void add(int offset, int length, @NotNull String type) {
+      int typeIndex = myTypeToIndex.getOrDefault(type, -1);
+      if (typeIndex == -1) {
+        typeIndex = myTypes.size();
+        myTypes.add(type.intern());
+        myTypeToIndex.put(type, typeIndex);
+      }
+
+      myOffsets.add(offset);
+      myLengths.add(length);
+      myTypeIndices.add(typeIndex);
+    }
+
+    @NotNull
+    DartHighlightRegionList build() {
+      if (myOffsets.isEmpty()) return EMPTY;
+      return new DartHighlightRegionList(myOffsets.toIntArray(), myLengths.toIntArray(), myTypeIndices.toIntArray(),
+                                         ArrayUtil.toStringArray(myTypes));
+    }
+  }
+}
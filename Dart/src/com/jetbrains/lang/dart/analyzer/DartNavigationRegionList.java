@@ -0,0 +1,205 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.SmartList;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartNavigationRegion;
+import com.jetbrains.lang.dart.analyzer.DartServerData.DartNavigationTarget;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.dartlang.analysis.server.protocol.NavigationTarget;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Immutable list of navigation regions of a file, sorted by offset. Offsets and lengths of the regions are packed into {@code int}
+ * arrays, targets of all regions are kept in a single table shared by the regions, like the Analysis Server does in
+ * {@code analysis.navigation} notification. {@link DartNavigationRegion} objects are created on demand in {@link #get(int)}.
+ * <p/>
+ * The list is never modified: {@link #updated(String, DocumentEvent)} returns a new list, so it is safe to read it without any locking.
+ */
+public final class DartNavigationRegionList extends AbstractList<DartNavigationRegion> implements RandomAccess {
+  static final DartNavigationRegionList EMPTY = new DartNavigationRegionList(ArrayUtil.EMPTY_INT_ARRAY, ArrayUtil.EMPTY_INT_ARRAY,
+                                                                             new int[]{0}, ArrayUtil.EMPTY_INT_ARRAY,
+                                                                             new DartNavigationTarget[0]);
+
+  private final int[] myOffsets;
+  private final int[] myLengths;
+  // targets of the i-th region are myTargets[myTargetIndices[myTargetStarts[i]]] ... myTargets[myTargetIndices[myTargetStarts[i + 1] - 1]]
+  private final int[] myTargetStarts;
+  private final int[] myTargetIndices;
+  private final DartNavigationTarget[] myTargets;
+
+  private DartNavigationRegionList(int @NotNull [] offsets,
+                                   int @NotNull [] lengths,
+                                   int @NotNull [] targetStarts,
+                                   int @NotNull [] targetIndices,
+                                   DartNavigationTarget @NotNull [] targets) {
+    myOffsets = offsets;
+    myLengths = lengths;
+    myTargetStarts = targetStarts;
+    myTargetIndices = targetIndices;
+    myTargets = targets;
+  }
+
+  @Override
+  public DartNavigationRegion get(int index) {
+    final SmartList<DartNavigationTarget> targets = new SmartList<>();
+    for (int i = myTargetStarts[index]; i < myTargetStarts[index + 1]; i++) {
+      targets.add(myTargets[myTargetIndices[i]]);
+    }
+    return new DartNavigationRegion(myOffsets[index], myLengths[index], targets);
+  }
+
+  @Override
+  public int size() {
+    return myOffsets.length;
+  }
+
+  /**
+   * Binary search of the region that starts at the given offset.
+   *
+   * @return index of the region, or {@code (-(insertion point) - 1)} if there's no region starting at this offset
+   */
+  public int findOffsetIndex(int offset) {
+    return Arrays.binarySearch(myOffsets, offset);
+  }
+
+  /**
+   * @return list with regions shifted according to the document change, touched regions are deleted
+   */
+  @NotNull
+  DartNavigationRegionList updated(@NotNull String filePath, @NotNull DocumentEvent e) {
+    final int eventOffset = e.getOffset();
+    final int deltaLength = e.getNewLength() - e.getOldLength();
+    if (deltaLength == 0 || myOffsets.length == 0) return this;
+
+    // may be we'd better delete target touched by editing?
+    for (DartNavigationTarget target : myTargets) {
+      target.shiftIfInFile(filePath, eventOffset, deltaLength);
+    }
+
+    final int[] offsets = new int[myOffsets.length];
+    final int[] lengths = new int[myLengths.length];
+    final int[] targetStarts = new int[myTargetStarts.length];
+    final IntArrayList targetIndices = new IntArrayList(myTargetIndices.length);
+    int size = 0;
+
+    for (int i = 0; i < myOffsets.length; i++) {
+      int offset = myOffsets[i];
+      final int length = myLengths[i];
+
+      // Shift untouched regions, delete touched.
+      if (deltaLength > 0 ? eventOffset <= offset : eventOffset - deltaLength <= offset) {
+        offset += deltaLength;
+      }
+      else if (eventOffset < offset + length) {
+        continue;
+      }
+
+      offsets[size] = offset;
+      lengths[size] = length;
+      targetStarts[size] = targetIndices.size();
+      targetIndices.addElements(targetIndices.size(), myTargetIndices, myTargetStarts[i], myTargetStarts[i + 1] - myTargetStarts[i]);
+      size++;
+    }
+    targetStarts[size] = targetIndices.size();
+
+    return new DartNavigationRegionList(ArrayUtil.realloc(offsets, size), ArrayUtil.realloc(lengths, size),
+                                        ArrayUtil.realloc(targetStarts, size + 1), targetIndices.toIntArray(), myTargets);
+  }
+
+  void save(@NotNull DataOutput out) throws IOException {
+    DataInputOutputUtil.writeINT(out, myTargets.length);
+    for (DartNavigationTarget target : myTargets) {
+      IOUtil.writeUTF(out, target.getFile());
+      IOUtil.writeUTF(out, target.getKind());
+      DataInputOutputUtil.writeINT(out, target.getOriginalOffset());
+    }
+    DataInputOutputUtil.writeINT(out, myOffsets.length);
+    for (int i = 0; i < myOffsets.length; i++) {
+      DataInputOutputUtil.writeINT(out, myOffsets[i]);
+      DataInputOutputUtil.writeINT(out, myLengths[i]);
+      DataInputOutputUtil.writeINT(out, myTargetStarts[i + 1] - myTargetStarts[i]);
+      for (int j = myTargetStarts[i]; j < myTargetStarts[i + 1]; j++) {
+        DataInputOutputUtil.writeINT(out, myTargetIndices[j]);
+      }
+    }
+  }
+
+  @NotNull
+  static DartNavigationRegionList read(@NotNull DataInput in) throws IOException {
+    final DartNavigationTarget[] targets = new DartNavigationTarget[DataInputOutputUtil.readINT(in)];
+    for (int i = 0; i < targets.length; i++) {
+      final String file = IOUtil.readUTF(in);
+      final String kind = IOUtil.readUTF(in);
+      targets[i] = new DartNavigationTarget(file, kind, DataInputOutputUtil.readINT(in));
+    }
+    final int size = DataInputOutputUtil.readINT(in);
+    if (size == 0) return EMPTY;
+
+    final int[] offsets = new int[size];
+    final int[] lengths = new int[size];
+    final int[] targetStarts = new int[size + 1];
+    final IntArrayList targetIndices = new IntArrayList(size);
+    for (int i = 0; i < size; i++) {
+      offsets[i] = DataInputOutputUtil.readINT(in);
+      lengths[i] = DataInputOutputUtil.readINT(in);
+      targetStarts[i] = targetIndices.size();
+      final int targetCount = DataInputOutputUtil.readINT(in);
+      for (int j = 0; j < targetCount; j++) {
+        final int index = DataInputOutputUtil.readINT(in);
+        if (index < 0 || index >= targets.length) throw new IOException("Corrupted navigation target index");
+        targetIndices.add(index);
+      }
+    }
+    targetStarts[size] = targetIndices.size();
+    return new DartNavigationRegionList(offsets, lengths, targetStarts, targetIndices.toIntArray(), targets);
+  }
+
+  static final class Builder {
+    private final IntArrayList myOffsets;
+    private final IntArrayList myLengths;
+    private final IntArrayList myTargetStarts;
+    private final IntArrayList myTargetIndices;
+    private final List<DartNavigationTarget> myTargets = new ArrayList<>();
+    // the server shares target objects between regions, so do we
+    private final Map<Object, Integer> myServerTargetToIndex = new IdentityHashMap<>();
+
+    Builder(int expectedSize) {
+      myOffsets = new IntArrayList(expectedSize);
+      myLengths = new IntArrayList(expectedSize);
+      myTargetStarts = new IntArrayList(expectedSize + 1);
+      myTargetIndices = new IntArrayList(expectedSize);
+    }
+
+    void add(int offset, int length, @NotNull List<? extends NavigationTarget> targets) {
+      myOffsets.add(offset);
+      myLengths.add(length);
+      myTargetStarts.add(myTargetIndices.size());
+      for (NavigationTarget target : targets) {
+        Integer index = myServerTargetToIndex.get(target);
+        if (index == null) {
+          index = myTargets.size();
+          myTargets.add(new DartNavigationTarget(target));
+          myServerTargetToIndex.put(target, index);
+        }
+        myTargetIndices.add(index.intValue());
+      }
+    }
+
+    @NotNull
+    DartNavigationRegionList build() {
+      if (myOffsets.isEmpty()) return EMPTY;
+      myTargetStarts.add(myTargetIndices.size());
+      return new DartNavigationRegionList(myOffsets.toIntArray(), myLengths.toIntArray(), myTargetStarts.toIntArray(),
+                                          myTargetIndices.toIntArray(), myTargets.toArray(new DartNavigationTarget[0]));
+    }
+  }
+}
@@ -5,6 +5,7 @@ import com.google.common.collect.Sets;
 import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
@@ -20,6 +21,7 @@ import org.dartlang.analysis.server.protocol.*;
 import org.jetbrains.annotations.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class DartServerData {
   public interface OutlineListener extends EventListener {
@@ -30,9 +32,13 @@ public final class DartServerData {
 
   private final EventDispatcher<OutlineListener> myEventDispatcher = EventDispatcher.create(OutlineListener.class);
 
-  private final Map<String, List<DartError>> myErrorData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartHighlightRegion>> myHighlightData = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, List<DartNavigationRegion>> myNavigationData = Collections.synchronizedMap(new HashMap<>());
+  // errors for all analyzed files, including empty lists for files without errors
+  private final Map<String, List<DartError>> myErrorData = new ConcurrentHashMap<>();
+  // files with errors only, to answer scope queries quickly
+  private final DartErrorIndex myErrorIndex = new DartErrorIndex();
+  // values are immutable snapshots that are replaced on each change, so reading doesn't need locking
+  private final Map<String, DartHighlightRegionList> myHighlightData = new ConcurrentHashMap<>();
+  private final Map<String, DartNavigationRegionList> myNavigationData = new ConcurrentHashMap<>();
   private final Map<String, List<DartOverrideMember>> myOverrideData = Collections.synchronizedMap(new HashMap<>());
   private final Map<String, List<DartRegion>> myImplementedClassData = Collections.synchronizedMap(new HashMap<>());
   private final Map<String, List<DartRegion>> myImplementedMemberData = Collections.synchronizedMap(new HashMap<>());
@@ -40,6 +46,8 @@ public final class DartServerData {
   private final Map<Integer, AvailableSuggestionSet> myAvailableSuggestionSetMap = Collections.synchronizedMap(new HashMap<>());
   private final Map<String, Map<String, Map<String, Set<String>>>> myExistingImports = Collections.synchronizedMap(new HashMap<>());
 
+  private final DartServerDataCache myDiskCache;
+
   private final Set<String> myFilePathsWithUnsentChanges = Sets.newConcurrentHashSet();
 
   // keeps track of files in which error regions have been updated by DocumentListener
@@ -47,6 +55,7 @@ public final class DartServerData {
 
   DartServerData(@NotNull final DartAnalysisServerService service) {
     myService = service;
+    myDiskCache = new DartServerDataCache(service.getProject());
   }
 
   boolean isErrorInfoInaccurate(@NotNull final String filePath) {
@@ -71,6 +80,7 @@ public final class DartServerData {
 
     myFilePathsWithInaccurateErrorInfo.remove(filePath);
     myErrorData.put(filePath, newErrors);
+    myErrorIndex.fileErrorsUpdated(filePath, file, newErrors);
 
     if (restartHighlighting) {
       forceFileAnnotation(file, false);
@@ -88,35 +98,36 @@ public final class DartServerData {
   void computedHighlights(@NotNull final String filePath, final @NotNull List<? extends HighlightRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartHighlightRegion> newRegions = new ArrayList<>(regions.size());
+    final DartHighlightRegionList.Builder newRegions = new DartHighlightRegionList.Builder(regions.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
     for (HighlightRegion region : regions) {
       if (region.getLength() > 0) {
         final int offset = myService.getConvertedOffset(file, region.getOffset());
         final int length = myService.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
-        newRegions.add(new DartHighlightRegion(offset, length, region.getType()));
+        newRegions.add(offset, length, region.getType());
       }
     }
 
-    myHighlightData.put(filePath, newRegions);
+    myHighlightData.put(filePath, newRegions.build());
     forceFileAnnotation(file, false);
   }
 
   void computedNavigation(@NotNull final String filePath, final @NotNull List<? extends NavigationRegion> regions) {
     if (myFilePathsWithUnsentChanges.contains(filePath)) return;
 
-    final List<DartNavigationRegion> newRegions = new ArrayList<>(regions.size());
+    final DartNavigationRegionList.Builder newRegions = new DartNavigationRegionList.Builder(regions.size());
     final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
 
     for (NavigationRegion region : regions) {
       if (region.getLength() > 0) {
-        final DartNavigationRegion dartNavigationRegion = createDartNavigationRegion(myService, file, region);
-        newRegions.add(dartNavigationRegion);
+        final int offset = myService.getConvertedOffset(file, region.getOffset());
+        final int length = myService.getConvertedOffset(file, region.getOffset() + region.getLength()) - offset;
+        newRegions.add(offset, length, region.getTargetObjects());
       }
     }
 
-    myNavigationData.put(filePath, newRegions);
+    myNavigationData.put(filePath, newRegions.build());
     forceFileAnnotation(file, true);
   }
 
@@ -219,16 +230,27 @@ public final class DartServerData {
 
   @NotNull
   List<DartError> getErrors(@NotNull final SearchScope scope) {
+    return getErrors(scope, null);
+  }
+
+  /**
+   * @param severity one of {@link AnalysisErrorSeverity} constants, or {@code null} to return errors of all severities
+   */
+  @NotNull
+  List<DartError> getErrors(@NotNull final SearchScope scope, @Nullable final String severity) {
     final List<DartError> errors = new ArrayList<>();
 
-    synchronized (myErrorData) {
-      for (Map.Entry<String, List<DartError>> entry : myErrorData.entrySet()) {
-        final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(entry.getKey());
-        if (file != null && scope.contains(file)) {
-          errors.addAll(entry.getValue());
+    myErrorIndex.processFilesWithProblems(scope, severity, filePath -> {
+      final List<DartError> fileErrors = myErrorData.get(filePath);
+      if (fileErrors != null) {
+        for (DartError error : fileErrors) {
+          if (severity == null || severity.equals(error.getSeverity())) {
+            errors.add(error);
+          }
         }
       }
-    }
+      return true;
+    });
 
     return errors;
   }
@@ -242,13 +264,13 @@ public final class DartServerData {
   @NotNull
   List<DartHighlightRegion> getHighlight(@NotNull final VirtualFile file) {
     final List<DartHighlightRegion> regions = myHighlightData.get(file.getPath());
-    return regions != null ? regions : Collections.emptyList();
+    return regions != null ? regions : DartHighlightRegionList.EMPTY;
   }
 
   @NotNull
   List<DartNavigationRegion> getNavigation(@NotNull final VirtualFile file) {
     final List<DartNavigationRegion> regions = myNavigationData.get(file.getPath());
-    return regions != null ? regions : Collections.emptyList();
+    return regions != null ? regions : DartNavigationRegionList.EMPTY;
   }
 
   @NotNull
@@ -327,7 +349,64 @@ public final class DartServerData {
     myFilePathsWithUnsentChanges.clear();
   }
 
+  /**
+   * If the Analysis Server hasn't sent highlighting, navigation and outline for the file yet, shows data saved on disk when the file
+   * was closed last time, if its content is the same.
+   */
+  void onFileOpened(@NotNull final VirtualFile file) {
+    if (!DartServerDataCache.isEnabled()) return;
+
+    final String filePath = file.getPath();
+    if (myHighlightData.containsKey(filePath)) return;
+
+    final Document document = FileDocumentManager.getInstance().getDocument(file);
+    if (document == null) return;
+
+    final long modificationStamp = document.getModificationStamp();
+    myDiskCache.load(filePath, document.getImmutableCharSequence(), data -> {
+      // the document has been edited while loading, offsets may be wrong
+      if (document.getModificationStamp() != modificationStamp) return;
+
+      final boolean highlightsLoaded = myHighlightData.putIfAbsent(filePath, data.highlights) == null;
+      final boolean navigationLoaded = myNavigationData.putIfAbsent(filePath, data.navigation) == null;
+      if (highlightsLoaded || navigationLoaded) {
+        forceFileAnnotation(file, navigationLoaded);
+      }
+
+      if (data.outline != null && myOutlineData.putIfAbsent(filePath, data.outline) == null) {
+        ApplicationManager.getApplication().invokeLater(() -> myEventDispatcher.getMulticaster().outlineUpdated(filePath),
+                                                        ModalityState.NON_MODAL,
+                                                        myService.getDisposedCondition());
+      }
+    });
+  }
+
+  /**
+   * Saves highlighting, navigation and outline of the files to the disk cache, so that they are shown immediately when the files are
+   * opened next time, even if the Analysis Server hasn't finished analysis by then.
+   */
+  void saveToDiskCache(@NotNull final Collection<String> filePaths) {
+    if (!DartServerDataCache.isEnabled()) return;
+
+    for (String filePath : filePaths) {
+      // data doesn't correspond to the document content until the server handles the change
+      if (myFilePathsWithUnsentChanges.contains(filePath)) continue;
+
+      final DartHighlightRegionList highlights = myHighlightData.get(filePath);
+      final DartNavigationRegionList navigation = myNavigationData.get(filePath);
+      if (highlights == null || navigation == null) continue;
+
+      final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
+      final Document document = file == null ? null : FileDocumentManager.getInstance().getCachedDocument(file);
+      if (document == null) continue;
+
+      myDiskCache.save(filePath, document.getImmutableCharSequence(), highlights, navigation, myOutlineData.get(filePath));
+    }
+  }
+
   void onFileClosed(@NotNull final VirtualFile file) {
+    saveToDiskCache(Collections.singletonList(file.getPath()));
+
     // do not remove from myErrorData, this map is always kept up-to-date for all files, not only for visible
     myHighlightData.remove(file.getPath());
     myNavigationData.remove(file.getPath());
@@ -339,6 +418,9 @@ public final class DartServerData {
 
   void onFlushedResults(@NotNull final List<String> filePaths) {
     removeAllFromMap(myErrorData, filePaths);
+    for (String filePath : filePaths) {
+      myErrorIndex.fileRemoved(filePath);
+    }
     removeAllFromMap(myHighlightData, filePaths);
     removeAllFromMap(myNavigationData, filePaths);
     removeAllFromMap(myOverrideData, filePaths);
@@ -357,6 +439,7 @@ public final class DartServerData {
 
   void clearData() {
     myErrorData.clear();
+    myErrorIndex.clear();
     myHighlightData.clear();
     myNavigationData.clear();
     myOverrideData.clear();
@@ -373,23 +456,22 @@ public final class DartServerData {
     final String filePath = file.getPath();
     myFilePathsWithUnsentChanges.add(filePath);
 
-    boolean regionsUpdated = updateRegionsDeletingTouched(filePath, myErrorData.get(filePath), e);
+    boolean regionsUpdated = updateRegionsDeletingTouched(myErrorData.get(filePath), e);
     if (regionsUpdated) {
       myFilePathsWithInaccurateErrorInfo.add(filePath);
     }
-    updateRegionsUpdatingTouched(myHighlightData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myNavigationData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myOverrideData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedClassData.get(filePath), e);
-    updateRegionsDeletingTouched(filePath, myImplementedMemberData.get(filePath), e);
+    myHighlightData.computeIfPresent(filePath, (path, regions) -> regions.updated(e));
+    myNavigationData.computeIfPresent(filePath, (path, regions) -> regions.updated(filePath, e));
+    updateRegionsDeletingTouched(myOverrideData.get(filePath), e);
+    updateRegionsDeletingTouched(myImplementedClassData.get(filePath), e);
+    updateRegionsDeletingTouched(myImplementedMemberData.get(filePath), e);
     // A bit outdated outline data is not a big problem, updated data will come shortly
   }
 
   /**
    * @return {@code true} if at least one region has been updated or deleted, {@code false} if nothing done at all
    */
-  private static boolean updateRegionsDeletingTouched(@NotNull final String filePath,
-                                                      @Nullable final List<? extends DartRegion> regions,
+  private static boolean updateRegionsDeletingTouched(@Nullable final List<? extends DartRegion> regions,
                                                       @NotNull final DocumentEvent e) {
     if (regions == null) return false;
 
@@ -403,15 +485,6 @@ public final class DartServerData {
     while (iterator.hasNext()) {
       final DartRegion region = iterator.next();
 
-      if (region instanceof DartNavigationRegion) {
-        // may be we'd better delete target touched by editing?
-        for (DartNavigationTarget target : ((DartNavigationRegion)region).getTargets()) {
-          if (target.myFile.equals(filePath) && target.myConvertedOffset >= eventOffset) {
-            target.myConvertedOffset += deltaLength;
-          }
-        }
-      }
-
       if (deltaLength > 0) {
         // Something was typed. Shift untouched regions, delete touched.
         if (eventOffset <= region.myOffset) {
@@ -441,44 +514,6 @@ public final class DartServerData {
     return regionUpdated;
   }
 
-  private static void updateRegionsUpdatingTouched(@Nullable final List<? extends DartRegion> regions,
-                                                   @NotNull final DocumentEvent e) {
-    if (regions == null) return;
-
-    final int eventOffset = e.getOffset();
-    final int deltaLength = e.getNewLength() - e.getOldLength();
-
-    final Iterator<? extends DartRegion> iterator = regions.iterator();
-    while (iterator.hasNext()) {
-      final DartRegion region = iterator.next();
-
-      if (deltaLength > 0) {
-        // Something was typed. Shift untouched regions, update touched.
-        if (eventOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (eventOffset < region.myOffset + region.myLength) {
-          region.myLength += deltaLength;
-        }
-      }
-      else if (deltaLength < 0) {
-        // Some text was deleted. Shift untouched regions, delete or update touched.
-        final int eventRightOffset = eventOffset - deltaLength;
-        final int regionRightOffset = region.myOffset + region.myLength;
-
-        if (eventRightOffset <= region.myOffset) {
-          region.myOffset += deltaLength;
-        }
-        else if (region.myOffset <= eventOffset && eventRightOffset <= regionRightOffset && region.myLength != -deltaLength) {
-          region.myLength += deltaLength;
-        }
-        else if (eventOffset < regionRightOffset) {
-          iterator.remove();
-        }
-      }
-    }
-  }
-
   public static class DartRegion {
     protected int myOffset;
     protected int myLength;
@@ -510,9 +545,12 @@ public final class DartServerData {
   public static final class DartHighlightRegion extends DartRegion {
     private final String type;
 
-    private DartHighlightRegion(final int offset, final int length, @NotNull final String type) {
+    /**
+     * @param type must be interned, see {@link DartHighlightRegionList}
+     */
+    DartHighlightRegion(final int offset, final int length, @NotNull final String type) {
       super(offset, length);
-      this.type = type.intern();
+      this.type = type;
     }
 
     public String getType() {
@@ -616,16 +654,32 @@ public final class DartServerData {
 
     private int myConvertedOffset = -1;
 
-    private DartNavigationTarget(@NotNull final NavigationTarget target) {
+    DartNavigationTarget(@NotNull final NavigationTarget target) {
       myFile = FileUtil.toSystemIndependentName(target.getFile().trim()).intern();
       myOriginalOffset = target.getOffset();
       myKind = target.getKind().intern();
     }
 
+    DartNavigationTarget(@NotNull final String file, @NotNull final String kind, final int originalOffset) {
+      myFile = file.intern();
+      myOriginalOffset = originalOffset;
+      myKind = kind.intern();
+    }
+
+    void shiftIfInFile(@NotNull final String filePath, final int eventOffset, final int deltaLength) {
+      if (myFile.equals(filePath) && myConvertedOffset >= eventOffset) {
+        myConvertedOffset += deltaLength;
+      }
+    }
+
     public String getFile() {
       return myFile;
     }
 
+    int getOriginalOffset() {
+      return myOriginalOffset;
+    }
+
     public int getOffset(@NotNull final Project project, @Nullable final VirtualFile file) {
       if (myConvertedOffset == -1) {
         myConvertedOffset = DartAnalysisServerService.getInstance(project).getConvertedOffset(file, myOriginalOffset);
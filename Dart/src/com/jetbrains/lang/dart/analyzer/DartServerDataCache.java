@@ -0,0 +1,152 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.analyzer;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.util.io.IOUtil;
+import org.dartlang.analysis.server.protocol.Outline;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the last known highlighting, navigation and outline of the files opened in editors on disk, so that they can be shown right
+ * after IDE restart, before the Analysis Server finishes analysis of the project. Data is saved when a file is closed or when the server
+ * is stopped, and is used only if the file content hash is the same as it was at the moment of saving. Data coming from the server always
+ * replaces the cached one.
+ * <p/>
+ * All disk IO happens in pooled threads.
+ */
+final class DartServerDataCache {
+  private static final Logger LOG = Logger.getInstance(DartServerDataCache.class);
+
+  private static final int VERSION = 1;
+
+  static final class CachedData {
+    @NotNull final DartHighlightRegionList highlights;
+    @NotNull final DartNavigationRegionList navigation;
+    @Nullable final Outline outline;
+
+    private CachedData(@NotNull DartHighlightRegionList highlights,
+                       @NotNull DartNavigationRegionList navigation,
+                       @Nullable Outline outline) {
+      this.highlights = highlights;
+      this.navigation = navigation;
+      this.outline = outline;
+    }
+  }
+
+  @NotNull private final File myCacheDir;
+
+  DartServerDataCache(@NotNull Project project) {
+    myCacheDir = new File(PathManager.getSystemPath(), "dart-server-data/" + project.getLocationHash());
+  }
+
+  static boolean isEnabled() {
+    return Registry.is("dart.server.data.disk.cache", true);
+  }
+
+  /**
+   * @param content file content that the data corresponds to
+   */
+  void save(@NotNull String filePath,
+            @NotNull CharSequence content,
+            @NotNull DartHighlightRegionList highlights,
+            @NotNull DartNavigationRegionList navigation,
+            @Nullable Outline outline) {
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      final File file = getCacheFile(filePath);
+      try {
+        FileUtil.createParentDirs(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+          out.writeInt(VERSION);
+          IOUtil.writeUTF(out, getContentHash(content));
+          highlights.save(out);
+          navigation.save(out);
+          out.writeBoolean(outline != null);
+          if (outline != null) {
+            final byte[] bytes = outlineToJson(outline).toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+          }
+        }
+      }
+      catch (IOException | RuntimeException e) {
+        LOG.debug("Failed to save Analysis Server data for " + filePath, e);
+        FileUtil.delete(file);
+      }
+    });
+  }
+
+  /**
+   * Reads cached data in a pooled thread and passes it to the {@code consumer} if it has been saved for the same file {@code content}.
+   */
+  void load(@NotNull String filePath, @NotNull CharSequence content, @NotNull Consumer<? super CachedData> consumer) {
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      final File file = getCacheFile(filePath);
+      if (!file.isFile()) return;
+
+      final CachedData data;
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        if (in.readInt() != VERSION) return;
+        if (!getContentHash(content).equals(IOUtil.readUTF(in))) return;
+
+        final DartHighlightRegionList highlights = DartHighlightRegionList.read(in);
+        final DartNavigationRegionList navigation = DartNavigationRegionList.read(in);
+        Outline outline = null;
+        if (in.readBoolean()) {
+          final byte[] bytes = new byte[in.readInt()];
+          in.readFully(bytes);
+          outline = Outline.fromJson(null, JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8)).getAsJsonObject());
+        }
+        data = new CachedData(highlights, navigation, outline);
+      }
+      catch (IOException | RuntimeException e) {
+        LOG.debug("Failed to load Analysis Server data for " + filePath, e);
+        FileUtil.delete(file);
+        return;
+      }
+
+      consumer.accept(data);
+    });
+  }
+
+  @NotNull
+  private File getCacheFile(@NotNull String filePath) {
+    return new File(myCacheDir, Hashing.murmur3_128().hashString(filePath, StandardCharsets.UTF_8).toString());
+  }
+
+  @NotNull
+  private static String getContentHash(@NotNull CharSequence content) {
+    return Hashing.murmur3_128().hashUnencodedChars(content).toString();
+  }
+
+  @NotNull
+  private static JsonObject outlineToJson(@NotNull Outline outline) {
+    final JsonObject jsonObject = new JsonObject();
+    jsonObject.add("element", outline.getElement().toJson());
+    jsonObject.addProperty("offset", outline.getOffset());
+    jsonObject.addProperty("length", outline.getLength());
+    jsonObject.addProperty("codeOffset", outline.getCodeOffset());
+    jsonObject.addProperty("codeLength", outline.getCodeLength());
+    if (outline.getChildren() != null && !outline.getChildren().isEmpty()) {
+      final JsonArray children = new JsonArray();
+      for (Outline child : outline.getChildren()) {
+        children.add(outlineToJson(child));
+      }
+      jsonObject.add("children", children);
+    }
+    return jsonObject;
+  }
+}
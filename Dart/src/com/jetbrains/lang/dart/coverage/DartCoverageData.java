@@ -1,74 +1,136 @@
-// Copyright 2000-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.jetbrains.lang.dart.coverage;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.util.ArrayUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
-public class DartCoverageData {
-  @Nullable private List<DartFileCoverageData> coverage;
+/**
+ * Line hits read from the coverage report in the package:coverage JSON format:
+ * {@code {"coverage": [{"source": "package:foo/foo.dart", "hits": [line, count, line, count, ...]}, ...]}}.
+ * <p/>
+ * Reports of big test suites take hundreds of megabytes, so the report is read with a streaming {@link JsonReader}, and hits of all
+ * entries with the same source are merged right away into a single {@code int} array indexed by line number.
+ */
+public final class DartCoverageData {
+  private final Map<String, LineHits> mySourceToLineHits = new HashMap<>();
 
-  @Nullable
-  public List<DartFileCoverageData> getCoverage() {
-    return coverage;
-  }
-
-  public void setCoverage(@Nullable List<DartFileCoverageData> coverage) {
-    this.coverage = coverage;
+  private DartCoverageData() {
   }
 
+  /**
+   * @param entryProcessed is called after each entry of the {@code coverage} array, may be used to check cancellation and report progress
+   */
   @NotNull
-  public Map<String, SortedMap<Integer, Integer>> getMergedDartFileCoverageData() {
-    Map<String, SortedMap<Integer, Integer>> mergedCoverageData = new HashMap<>();
-    List<DartFileCoverageData> coverageData = getCoverage();
-    if (coverageData != null) {
-      for (DartFileCoverageData item : coverageData) {
-        String source = item.getSource();
-        if (source == null) {
-          continue;
-        }
-        SortedMap<Integer, Integer> fileData = mergedCoverageData.computeIfAbsent(source, k -> new TreeMap<>());
-        List<Integer> hits = item.getHits();
-        if (hits == null) {
-          continue;
-        }
-        for (int i = 0; i < hits.size(); i += 2) {
-          Integer lineNumber = hits.get(i);
-          Integer hitCount = hits.get(i + 1);
-          if (!fileData.containsKey(lineNumber)) {
-            fileData.put(lineNumber, 0);
+  public static DartCoverageData read(@NotNull Reader reader, @Nullable Runnable entryProcessed) throws IOException {
+    final DartCoverageData data = new DartCoverageData();
+    final JsonReader jsonReader = new JsonReader(reader);
+    jsonReader.beginObject();
+    while (jsonReader.hasNext()) {
+      if ("coverage".equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+          data.readEntry(jsonReader);
+          if (entryProcessed != null) {
+            entryProcessed.run();
           }
-
-          fileData.put(lineNumber, fileData.get(lineNumber) + hitCount);
         }
+        jsonReader.endArray();
+      }
+      else {
+        jsonReader.skipValue();
       }
     }
-
-    return mergedCoverageData;
+    jsonReader.endObject();
+    return data;
   }
-}
 
+  private void readEntry(@NotNull JsonReader jsonReader) throws IOException {
+    String source = null;
+    int[] hits = null;
+    int hitsSize = 0;
 
-class DartFileCoverageData {
-  @Nullable private String source;
-  @Nullable private List<Integer> hits;
+    jsonReader.beginObject();
+    while (jsonReader.hasNext()) {
+      final String name = jsonReader.nextName();
+      if ("source".equals(name) && jsonReader.peek() == JsonToken.STRING) {
+        source = jsonReader.nextString();
+      }
+      else if ("hits".equals(name) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+        hits = new int[16];
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+          if (hitsSize == hits.length) {
+            hits = Arrays.copyOf(hits, hitsSize * 2);
+          }
+          hits[hitsSize++] = jsonReader.nextInt();
+        }
+        jsonReader.endArray();
+      }
+      else {
+        jsonReader.skipValue();
+      }
+    }
+    jsonReader.endObject();
 
-  @Nullable
-  public String getSource() {
-    return source;
-  }
+    if (source == null) return;
 
-  public void setSource(@Nullable String source) {
-    this.source = source;
+    // "hits" may come before "source", so they are merged when the whole entry is read
+    final LineHits lineHits = mySourceToLineHits.computeIfAbsent(source, s -> new LineHits());
+    for (int i = 0; i + 1 < hitsSize; i += 2) {
+      lineHits.add(hits[i], hits[i + 1]);
+    }
   }
 
-  @Nullable
-  public List<Integer> getHits() {
-    return hits;
+  /**
+   * @return source URIs as they are in the coverage report mapped to merged line hits
+   */
+  @NotNull
+  public Map<String, LineHits> getSourceToLineHits() {
+    return mySourceToLineHits;
   }
 
-  public void setHits(@Nullable List<Integer> hits) {
-    this.hits = hits;
+  public static final class LineHits {
+    private static final int NO_DATA = -1;
+
+    // hit count for each line, NO_DATA for lines that are not mentioned in the report
+    private int[] myHits = ArrayUtil.EMPTY_INT_ARRAY;
+    private int myMaxLine = -1;
+
+    private void add(int line, int hitCount) {
+      if (line < 0) return;
+
+      if (line >= myHits.length) {
+        final int oldLength = myHits.length;
+        myHits = Arrays.copyOf(myHits, Math.max(line + 1, oldLength * 2));
+        Arrays.fill(myHits, oldLength, myHits.length, NO_DATA);
+      }
+
+      myHits[line] = myHits[line] == NO_DATA ? hitCount : myHits[line] + hitCount;
+      myMaxLine = Math.max(myMaxLine, line);
+    }
+
+    /**
+     * @return the biggest line number mentioned in the report, or -1 if there are no hits for this source
+     */
+    public int getMaxLine() {
+      return myMaxLine;
+    }
+
+    public boolean hasData(int line) {
+      return line <= myMaxLine && myHits[line] != NO_DATA;
+    }
+
+    public int getHits(int line) {
+      return hasData(line) ? myHits[line] : 0;
+    }
   }
-}
\ No newline at end of file
+}
@@ -1,14 +1,15 @@
 // Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.jetbrains.lang.dart.coverage;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.common.io.CountingInputStream;
+import com.intellij.concurrency.JobLauncher;
 import com.intellij.coverage.CoverageEngine;
 import com.intellij.coverage.CoverageRunner;
 import com.intellij.coverage.CoverageSuite;
 import com.intellij.execution.process.ProcessHandler;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Ref;
@@ -20,13 +21,13 @@ import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DartCoverageRunner extends CoverageRunner {
   private static final String ID = "DartCoverageRunner";
@@ -84,40 +85,57 @@ public class DartCoverageRunner extends CoverageRunner {
     }
 
     final ProjectData projectData = new ProjectData();
+    final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    if (indicator != null) {
+      indicator.setIndeterminate(false);
+    }
 
     try {
-      DartCoverageData data =
-        new Gson().fromJson(new BufferedReader(new FileReader(sessionDataFile, StandardCharsets.UTF_8)), DartCoverageData.class);
-      if (data == null) {
-        LOG.warn("Coverage file does not contain valid data.");
-        return null;
-      }
-
-      for (Map.Entry<String, SortedMap<Integer, Integer>> entry : data.getMergedDartFileCoverageData().entrySet()) {
+      final DartCoverageData data = readCoverageData(sessionDataFile, indicator);
+
+      // Mapping URIs to files is a request to the Analysis Server for each source, these requests are sent concurrently.
+      final List<String> sources = new ArrayList<>(data.getSourceToLineHits().keySet());
+      final Map<String, String> sourceToFilePath = new ConcurrentHashMap<>();
+      final AtomicInteger mappedCount = new AtomicInteger();
+      final boolean completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(sources, indicator, source -> {
+        final String filePath = getFileForUri(project, contextId, source);
+        if (filePath != null) {
+          sourceToFilePath.put(source, filePath);
+        }
+        if (indicator != null) {
+          indicator.setFraction(0.5 + 0.5 * mappedCount.incrementAndGet() / sources.size());
+        }
+        return true;
+      });
+      if (!completed) {
         ProgressManager.checkCanceled();
+      }
 
-        String filePath = getFileForUri(project, contextId, entry.getKey());
+      for (String source : sources) {
+        final String filePath = sourceToFilePath.get(source);
         if (filePath == null) {
           // File is not found.
           continue;
         }
-        SortedMap<Integer, Integer> lineHits = entry.getValue();
-        ClassData classData = projectData.getOrCreateClassData(filePath);
-        if (lineHits.size() == 0) {
+        final DartCoverageData.LineHits lineHits = data.getSourceToLineHits().get(source);
+        final ClassData classData = projectData.getOrCreateClassData(filePath);
+        if (lineHits.getMaxLine() < 0) {
           classData.setLines(new LineData[1]);
           continue;
         }
-        LineData[] lines = new LineData[lineHits.lastKey() + 1];
-        for (Map.Entry<Integer, Integer> hit : lineHits.entrySet()) {
-          LineData lineData = new LineData(hit.getKey(), null);
-          lineData.setHits(hit.getValue());
-          lines[hit.getKey()] = lineData;
+        final LineData[] lines = new LineData[lineHits.getMaxLine() + 1];
+        for (int line = 0; line < lines.length; line++) {
+          if (lineHits.hasData(line)) {
+            final LineData lineData = new LineData(line, null);
+            lineData.setHits(lineHits.getHits(line));
+            lines[line] = lineData;
+          }
         }
         classData.setLines(lines);
       }
     }
-    catch (JsonSyntaxException | IOException e) {
-      LOG.warn(e);
+    catch (IllegalStateException | NumberFormatException | IOException e) {
+      LOG.warn("Coverage file does not contain valid data.", e);
     }
     finally {
       DartAnalysisServerService.getInstance(project).execution_deleteContext(contextId);
@@ -126,6 +144,34 @@ public class DartCoverageRunner extends CoverageRunner {
     return projectData;
   }
 
+  /**
+   * Reading the report takes the first half of the progress, mapping source URIs to files takes the second one.
+   */
+  @NotNull
+  private static DartCoverageData readCoverageData(@NotNull File sessionDataFile, @Nullable ProgressIndicator indicator)
+    throws IOException {
+    final long fileLength = Math.max(1, sessionDataFile.length());
+    final long startTime = System.currentTimeMillis();
+
+    try (CountingInputStream inputStream = new CountingInputStream(new BufferedInputStream(new FileInputStream(sessionDataFile)));
+         Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+      final DartCoverageData data = DartCoverageData.read(reader, () -> {
+        ProgressManager.checkCanceled();
+        if (indicator != null) {
+          indicator.setFraction(0.5 * inputStream.getCount() / fileLength);
+        }
+      });
+
+      if (LOG.isDebugEnabled()) {
+        final Runtime runtime = Runtime.getRuntime();
+        LOG.debug("Coverage data loaded in " + (System.currentTimeMillis() - startTime) + " ms, file size: " + fileLength +
+                  " bytes, sources: " + data.getSourceToLineHits().size() +
+                  ", used memory: " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MB");
+      }
+      return data;
+    }
+  }
+
   @Nullable
   private static String getFileForUri(@NotNull final Project project, @NotNull final String contextId, @NotNull final String uri) {
     if (uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/")) {
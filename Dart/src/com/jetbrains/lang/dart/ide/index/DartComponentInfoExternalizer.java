@@ -5,6 +5,7 @@ import com.intellij.util.io.DataInputOutputUtil;
 import com.intellij.util.io.IOUtil;
 import com.jetbrains.lang.dart.DartComponentType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -14,11 +15,8 @@ public class DartComponentInfoExternalizer implements DataExternalizer<DartCompo
 
   @Override
   public void save(@NotNull final DataOutput out, @NotNull final DartComponentInfo componentInfo) throws IOException {
-    final DartComponentType dartComponentType = componentInfo.getComponentType();
-    final int key = dartComponentType == null ? -1 : dartComponentType.getKey();
-    DataInputOutputUtil.writeINT(out, key);
     final String libraryName = componentInfo.getLibraryName();
-    out.writeBoolean(libraryName != null);
+    DataInputOutputUtil.writeINT(out, getHeader(componentInfo.getComponentType(), libraryName != null));
     if (libraryName != null) {
       IOUtil.writeUTF(out, libraryName);
     }
@@ -26,9 +24,25 @@ public class DartComponentInfoExternalizer implements DataExternalizer<DartCompo
 
   @Override
   public DartComponentInfo read(@NotNull DataInput in) throws IOException {
-    final int componentTypeKey = DataInputOutputUtil.readINT(in);
-    final boolean hasLibraryName = in.readBoolean();
-    final String libraryName = hasLibraryName ? IOUtil.readUTF(in) : null;
-    return new DartComponentInfo(DartComponentType.valueOf(componentTypeKey), libraryName);
+    final int header = DataInputOutputUtil.readINT(in);
+    final String libraryName = hasLibraryName(header) ? IOUtil.readUTF(in) : null;
+    return new DartComponentInfo(getComponentType(header), libraryName);
+  }
+
+  /**
+   * Component type and the presence of the library name are packed into a single value that takes one byte for all component types.
+   */
+  private static int getHeader(@Nullable final DartComponentType componentType, final boolean hasLibraryName) {
+    final int key = componentType == null ? -1 : componentType.getKey();
+    return ((key + 1) << 1) | (hasLibraryName ? 1 : 0);
+  }
+
+  private static boolean hasLibraryName(final int header) {
+    return (header & 1) != 0;
+  }
+
+  @Nullable
+  private static DartComponentType getComponentType(final int header) {
+    return DartComponentType.valueOf((header >> 1) - 1);
   }
 }
@@ -12,14 +12,16 @@ import com.jetbrains.lang.dart.util.DartControlFlowUtil;
 import com.jetbrains.lang.dart.util.DartResolveUtil;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import static com.jetbrains.lang.dart.ide.index.DartImportOrExportInfo.Kind;
 
 public final class DartIndexUtil {
   // inc when change parser
-  public static final int INDEX_VERSION = 25;
+  public static final int INDEX_VERSION = 26;
 
   private static final Key<DartFileIndexData> ourDartCachesData = Key.create("dart.caches.index.data");
 
@@ -47,6 +49,8 @@ public final class DartIndexUtil {
     result.setIsPart(PsiTreeUtil.getChildOfType(psiFile, DartPartOfStatement.class) != null);
 
     if (psiFile instanceof DartFile) {
+      // all components of the file have the same library name, so DartComponentInfo objects are shared
+      final Map<DartComponentType, DartComponentInfo> componentInfos = new EnumMap<>(DartComponentType.class);
       PsiElement[] children = psiFile.getChildren();
 
       for (DartComponentName componentName : DartControlFlowUtil.getSimpleDeclarations(children, null, false)) {
@@ -60,7 +64,8 @@ public final class DartIndexUtil {
         PsiElement parent = componentName.getParent();
         final DartComponentType type = DartComponentType.typeOf(parent);
         if (type != null) {
-          result.addComponentInfo(name, new DartComponentInfo(type, result.getLibraryName()));
+          final String libraryName = result.getLibraryName();
+          result.addComponentInfo(name, componentInfos.computeIfAbsent(type, t -> new DartComponentInfo(t, libraryName)));
         }
         if (parent instanceof DartClass) {
           result.addClassName(name);
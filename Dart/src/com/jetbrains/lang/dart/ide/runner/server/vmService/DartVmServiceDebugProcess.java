@@ -510,11 +510,17 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
 
   public void isolateResumed(@NotNull IsolateRef isolateRef) {
     mySuspendedIsolateIds.remove(isolateRef.getId());
+    if (myVmServiceWrapper != null) {
+      myVmServiceWrapper.isolateResumed(isolateRef.getId());
+    }
   }
 
   public void isolateExit(@NotNull IsolateRef isolateRef) {
     myIsolatesInfo.deleteIsolate(isolateRef);
     mySuspendedIsolateIds.remove(isolateRef.getId());
+    if (myVmServiceWrapper != null) {
+      myVmServiceWrapper.isolateResumed(isolateRef.getId());
+    }
 
     if (isolateRef.getId().equals(myLatestCurrentIsolateId)) {
       resume(getSession().getSuspendContext()); // otherwise no way no resume them from UI
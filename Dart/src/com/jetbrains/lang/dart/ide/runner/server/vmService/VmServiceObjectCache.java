@@ -0,0 +1,144 @@
+// Copyright 2000-2021 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package com.jetbrains.lang.dart.ide.runner.server.vmService;
+
+import org.dartlang.vm.service.consumer.GetObjectConsumer;
+import org.dartlang.vm.service.element.Obj;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Sentinel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.jetbrains.lang.dart.ide.runner.server.vmService.VmServiceWrapper.LOG;
+
+/**
+ * Results of {@code getObject} requests received while an isolate is paused. Objects can't change until the isolate is resumed, so
+ * expanding the same values in the Variables and Watches views, or in several frames, doesn't need a round trip to the VM each time.
+ * Identical requests sent while the first one is still in progress wait for its response instead of being sent again.
+ * <p/>
+ * The cache must be invalidated for an isolate when it is resumed.
+ */
+final class VmServiceObjectCache {
+  private final Object myLock = new Object();
+
+  // "isolateId/objectId[offset,count]" -> object
+  private final Map<String, Obj> myObjects = new HashMap<>();
+  // "isolateId/objectId[offset,count]" -> consumers waiting for the response to the request that is already sent
+  private final Map<String, List<GetObjectConsumer>> myPendingRequests = new HashMap<>();
+  // incremented on each invalidation, responses to the requests sent before it are not cached
+  private long myGeneration;
+
+  private long myHits;
+  private long myMisses;
+
+  /**
+   * Passes the cached object to the {@code consumer} via {@code dispatcher}, or joins the identical request in progress, or calls
+   * {@code requestSender} with a consumer that caches the response and passes it to all waiting consumers.
+   */
+  void getObject(@NotNull String isolateId,
+                 @NotNull String objectId,
+                 int offset,
+                 int count,
+                 @NotNull GetObjectConsumer consumer,
+                 @NotNull Consumer<Runnable> dispatcher,
+                 @NotNull Consumer<GetObjectConsumer> requestSender) {
+    final String key = getKey(isolateId, objectId, offset, count);
+    final List<GetObjectConsumer> consumers = new ArrayList<>(1);
+    final long generation;
+
+    synchronized (myLock) {
+      final Obj obj = myObjects.get(key);
+      if (obj != null) {
+        myHits++;
+        dispatcher.accept(() -> consumer.received(obj));
+        return;
+      }
+
+      final List<GetObjectConsumer> waitingConsumers = myPendingRequests.get(key);
+      if (waitingConsumers != null) {
+        myHits++;
+        waitingConsumers.add(consumer);
+        return;
+      }
+
+      myMisses++;
+      consumers.add(consumer);
+      myPendingRequests.put(key, consumers);
+      generation = myGeneration;
+    }
+
+    final long startTime = System.currentTimeMillis();
+    requestSender.accept(new GetObjectConsumer() {
+      @Override
+      public void received(Obj response) {
+        for (GetObjectConsumer c : requestDone(key, consumers, generation, startTime, response)) {
+          c.received(response);
+        }
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        for (GetObjectConsumer c : requestDone(key, consumers, generation, startTime, null)) {
+          c.received(response);
+        }
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        for (GetObjectConsumer c : requestDone(key, consumers, generation, startTime, null)) {
+          c.onError(error);
+        }
+      }
+    });
+  }
+
+  @NotNull
+  private List<GetObjectConsumer> requestDone(@NotNull String key,
+                                              @NotNull List<GetObjectConsumer> consumers,
+                                              long generation,
+                                              long startTime,
+                                              @Nullable Obj response) {
+    final List<GetObjectConsumer> result;
+    synchronized (myLock) {
+      // may be already removed by invalidate()
+      myPendingRequests.remove(key, consumers);
+      if (response != null && generation == myGeneration) {
+        myObjects.put(key, response);
+      }
+      result = new ArrayList<>(consumers);
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("getObject " + key + " took " + (System.currentTimeMillis() - startTime) + " ms, consumers: " + result.size());
+    }
+
+    return result;
+  }
+
+  void invalidate(@NotNull String isolateId) {
+    final String prefix = isolateId + "/";
+    synchronized (myLock) {
+      myGeneration++;
+      myObjects.keySet().removeIf(key -> key.startsWith(prefix));
+      // responses to the requests in progress will be passed to their consumers, but nobody else should wait for them
+      myPendingRequests.keySet().removeIf(key -> key.startsWith(prefix));
+
+      if (LOG.isDebugEnabled() && myHits + myMisses > 0) {
+        LOG.debug("getObject cache for " + isolateId + " invalidated, hits: " + myHits + ", misses: " + myMisses +
+                  ", hit rate: " + (100 * myHits / (myHits + myMisses)) + "%");
+      }
+      myHits = 0;
+      myMisses = 0;
+    }
+  }
+
+  @NotNull
+  private static String getKey(@NotNull String isolateId, @NotNull String objectId, int offset, int count) {
+    return offset < 0 ? isolateId + "/" + objectId : isolateId + "/" + objectId + "[" + offset + "," + count + "]";
+  }
+}
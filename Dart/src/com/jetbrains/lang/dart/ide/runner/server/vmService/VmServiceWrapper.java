@@ -7,6 +7,7 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.util.EmptyRunnable;
 import com.intellij.openapi.util.NlsSafe;
 import com.intellij.openapi.util.Ref;
 import com.intellij.util.Alarm;
@@ -32,11 +33,14 @@ import org.jetbrains.annotations.Nullable;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 public class VmServiceWrapper implements Disposable {
 
   public static final Logger LOG = Logger.getInstance(VmServiceWrapper.class.getName());
   private static final long RESPONSE_WAIT_TIMEOUT = 3000; // millis
+  // identifiers, property access, indexing, literal indices and null checks
+  private static final Pattern SIDE_EFFECT_FREE_EXPRESSION = Pattern.compile("[\\w$.\\[\\]!?\\s]*");
 
   private final DartVmServiceDebugProcess myDebugProcess;
   private final VmService myVmService;
@@ -44,6 +48,7 @@ public class VmServiceWrapper implements Disposable {
   private final IsolatesInfo myIsolatesInfo;
   private final DartVmServiceBreakpointHandler myBreakpointHandler;
   private final Alarm myRequestsScheduler;
+  private final VmServiceObjectCache myObjectCache = new VmServiceObjectCache();
 
   private long myVmServiceReceiverThreadId;
 
@@ -352,6 +357,7 @@ public class VmServiceWrapper implements Disposable {
   }
 
   public void resumeIsolate(@NotNull String isolateId, @Nullable StepOption stepOption) {
+    myObjectCache.invalidate(isolateId);
     addRequest(() -> {
       myLatestStep = stepOption;
       myVmService.resume(isolateId, stepOption, null, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
@@ -371,6 +377,7 @@ public class VmServiceWrapper implements Disposable {
    * function, so frameIndex must be at least 1.
    */
   public void dropFrame(@NotNull String isolateId, int frameIndex) {
+    myObjectCache.invalidate(isolateId);
     addRequest(() -> {
       myLatestStep = StepOption.Rewind;
       myVmService.resume(isolateId, StepOption.Rewind, frameIndex, new SuccessConsumer() {
@@ -387,6 +394,13 @@ public class VmServiceWrapper implements Disposable {
     });
   }
 
+  /**
+   * Must be called when the isolate is resumed not by {@link #resumeIsolate} or {@link #dropFrame}, e.g. from the command line.
+   */
+  public void isolateResumed(@NotNull String isolateId) {
+    myObjectCache.invalidate(isolateId);
+  }
+
   public void pauseIsolate(@NotNull String isolateId) {
     addRequest(() -> myVmService.pause(isolateId, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER));
   }
@@ -448,7 +462,7 @@ public class VmServiceWrapper implements Disposable {
 
     final Ref<Script> resultRef = Ref.create();
 
-    addRequest(() -> myVmService.getObject(isolateId, scriptId, new GetObjectConsumer() {
+    getObject(isolateId, scriptId, new GetObjectConsumer() {
       @Override
       public void received(Obj script) {
         resultRef.set((Script)script);
@@ -464,14 +478,15 @@ public class VmServiceWrapper implements Disposable {
       public void onError(RPCError error) {
         semaphore.up();
       }
-    }));
+    });
 
     semaphore.waitFor(RESPONSE_WAIT_TIMEOUT);
     return resultRef.get();
   }
 
   public void getObject(@NotNull String isolateId, @NotNull String objectId, @NotNull GetObjectConsumer consumer) {
-    addRequest(() -> myVmService.getObject(isolateId, objectId, consumer));
+    myObjectCache.getObject(isolateId, objectId, -1, -1, consumer, this::addRequest,
+                            cachingConsumer -> addRequest(() -> myVmService.getObject(isolateId, objectId, cachingConsumer)));
   }
 
   public void getCollectionObject(@NotNull String isolateId,
@@ -479,32 +494,38 @@ public class VmServiceWrapper implements Disposable {
                                   int offset,
                                   int count,
                                   @NotNull GetObjectConsumer consumer) {
-    addRequest(() -> myVmService.getObject(isolateId, objectId, offset, count, consumer));
+    myObjectCache.getObject(isolateId, objectId, offset, count, consumer, this::addRequest,
+                            cachingConsumer -> addRequest(() -> myVmService.getObject(isolateId, objectId, offset, count, cachingConsumer)));
   }
 
   public void evaluateInFrame(@NotNull String isolateId,
                               @NotNull Frame vmFrame,
                               @NotNull String expression,
                               @NotNull XDebuggerEvaluator.XEvaluationCallback callback) {
+    final Runnable codeFinished = beforeRunningCode(isolateId, expression);
     addRequest(() -> myVmService.evaluateInFrame(isolateId, vmFrame.getIndex(), expression, new EvaluateInFrameConsumer() {
       @Override
       public void received(InstanceRef instanceRef) {
+        codeFinished.run();
         callback.evaluated(new DartVmServiceValue(myDebugProcess, isolateId, "result", instanceRef, null, null, false));
       }
 
       @Override
       public void received(Sentinel sentinel) {
+        codeFinished.run();
         @NlsSafe String message = sentinel.getValueAsString();
         callback.errorOccurred(message);
       }
 
       @Override
       public void received(ErrorRef errorRef) {
+        codeFinished.run();
         callback.errorOccurred(DartVmServiceEvaluator.getPresentableError(errorRef.getMessage()));
       }
 
       @Override
       public void onError(RPCError error) {
+        codeFinished.run();
         @NlsSafe String message = error.getMessage();
         callback.errorOccurred(message);
       }
@@ -523,31 +544,54 @@ public class VmServiceWrapper implements Disposable {
                                       @NotNull String targetId,
                                       @NotNull String expression,
                                       @NotNull XDebuggerEvaluator.XEvaluationCallback callback) {
+    final Runnable codeFinished = beforeRunningCode(isolateId, expression);
     evaluateInTargetContext(isolateId, targetId, expression, new EvaluateConsumer() {
       @Override
       public void received(InstanceRef instanceRef) {
+        codeFinished.run();
         callback.evaluated(new DartVmServiceValue(myDebugProcess, isolateId, "result", instanceRef, null, null, false));
       }
 
       @Override
       public void received(Sentinel sentinel) {
+        codeFinished.run();
         @NlsSafe String message = sentinel.getValueAsString();
         callback.errorOccurred(message);
       }
 
       @Override
       public void received(ErrorRef errorRef) {
+        codeFinished.run();
         callback.errorOccurred(DartVmServiceEvaluator.getPresentableError(errorRef.getMessage()));
       }
 
       @Override
       public void onError(RPCError error) {
+        codeFinished.run();
         @NlsSafe String message = error.getMessage();
         callback.errorOccurred(message);
       }
     });
   }
 
+  /**
+   * Must be called before sending a request that evaluates the {@code expression} in the isolate. If the expression may change objects,
+   * cached {@code getObject} results of the isolate are dropped now and once again when the returned runnable is called on response:
+   * responses to {@code getObject} requests sent while the expression is being evaluated must not be cached either.
+   * <p/>
+   * Watches that only read variables and properties, like {@code a.b[0]}, are treated as free of side effects, so that they don't drop
+   * the cache on each pause. The {@code toString()} and {@code toList()} calls made to present values don't invalidate it for the same
+   * reason.
+   */
+  @NotNull
+  private Runnable beforeRunningCode(@NotNull String isolateId, @NotNull String expression) {
+    if (SIDE_EFFECT_FREE_EXPRESSION.matcher(expression).matches()) {
+      return EmptyRunnable.INSTANCE;
+    }
+    myObjectCache.invalidate(isolateId);
+    return () -> myObjectCache.invalidate(isolateId);
+  }
+
   public void callToString(@NotNull String isolateId, @NotNull String targetId, @NotNull InvokeConsumer callback) {
     callMethodOnTarget(isolateId, targetId, "toString", callback);
   }
@@ -2,6 +2,8 @@
 package com.jetbrains.lang.dart.ide.runner.test;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.intellij.execution.testframework.TestConsoleProperties;
 import com.intellij.execution.testframework.sm.ServiceMessageBuilder;
 import com.intellij.execution.testframework.sm.runner.OutputToGeneralTestEventsConverter;
@@ -13,16 +15,18 @@ import com.intellij.util.PathUtil;
 import com.jetbrains.lang.dart.ide.runner.util.DartTestLocationProvider;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
 import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import jetbrains.buildServer.messages.serviceMessages.ServiceMessageVisitor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -91,9 +95,9 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
   private Key myCurrentOutputType;
   private ServiceMessageVisitor myCurrentVisitor;
   private final Int2LongOpenHashMap myTestIdToTimestamp;
-  private final Map<Integer, Test> myTestData;
-  private final Map<Integer, Group> myGroupData;
-  private final Map<Integer, Suite> mySuiteData;
+  private final Int2ObjectMap<Test> myTestData;
+  private final Int2ObjectMap<Group> myGroupData;
+  private final Int2ObjectMap<Suite> mySuiteData;
 
   public DartTestEventsConverter(@NotNull final String testFrameworkName,
                                  @NotNull final TestConsoleProperties consoleProperties,
@@ -101,15 +105,17 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     super(testFrameworkName, consoleProperties);
     myUrlResolver = urlResolver;
     myTestIdToTimestamp = new Int2LongOpenHashMap();
-    myTestData = new HashMap<>();
-    myGroupData = new HashMap<>();
-    mySuiteData = new HashMap<>();
+    myTestData = new Int2ObjectOpenHashMap<>();
+    myGroupData = new Int2ObjectOpenHashMap<>();
+    mySuiteData = new Int2ObjectOpenHashMap<>();
   }
 
   @Override
   protected boolean processServiceMessages(final String text, final Key outputType, final ServiceMessageVisitor visitor)
     throws ParseException {
-    LOG.debug("<<< " + text.trim());
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("<<< " + text.trim());
+    }
     myCurrentOutputType = outputType;
     myCurrentVisitor = visitor;
     // service message parser expects line like "##teamcity[ .... ]" without whitespaces in the end.
@@ -117,10 +123,14 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
   }
 
   private boolean processEventText(final String text) throws JsonSyntaxException, ParseException {
-    JsonParser jp = new JsonParser();
+    final ScalarEvent event = ScalarEvent.read(text);
+    if (event != null) {
+      return process(event);
+    }
+
     JsonElement elem;
     try {
-      elem = jp.parse(text);
+      elem = JsonParser.parseString(text);
     }
     catch (JsonSyntaxException ex) {
       if (text.contains("\"json\" is not an allowed value for option \"reporter\"")) {
@@ -138,10 +148,33 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
   }
 
   private boolean doProcessServiceMessages(@NotNull final String text) throws ParseException {
-    LOG.debug(">>> " + text);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(">>> " + text);
+    }
     return super.processServiceMessages(text, myCurrentOutputType, myCurrentVisitor);
   }
 
+  /**
+   * Fast path for the events that don't need a JSON tree, see {@link ScalarEvent}.
+   */
+  private boolean process(@NotNull ScalarEvent event) throws ParseException {
+    if (TYPE_TEST_DONE.equals(event.type)) {
+      return handleTestDone(getTest(event.testId), event.result, event.time);
+    }
+    else if (TYPE_ERROR.equals(event.type)) {
+      return handleError(getTest(event.testId), event.error, event.stackTrace);
+    }
+    else if (TYPE_PRINT.equals(event.type)) {
+      return handlePrint(getTest(event.testId), event.message);
+    }
+    else if (TYPE_DONE.equals(event.type)) {
+      return handleDone();
+    }
+    else {
+      return true;
+    }
+  }
+
   private boolean process(JsonObject obj) throws JsonSyntaxException, ParseException {
     String type = obj.get(JSON_TYPE).getAsString();
     if (TYPE_TEST_START.equals(type)) {
@@ -169,7 +202,7 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
       return handleStart(obj);
     }
     else if (TYPE_DONE.equals(type)) {
-      return handleDone(obj);
+      return handleDone();
     }
     else {
       return true;
@@ -231,25 +264,39 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
 
   private boolean handleTestDone(JsonObject obj) throws ParseException {
     final Test test = getTest(obj);
-
     if (!test.myTestStartReported) return true;
 
-    String result = getResult(obj);
-    if (!result.equals(RESULT_SUCCESS) && !result.equals(RESULT_FAILURE) && !result.equals(RESULT_ERROR)) {
+    final String result = getResult(obj);
+    if (!isKnownResult(result)) {
       throw new ParseException("Unknown result: " + obj, 0);
     }
 
+    return handleTestDone(test, result, getTimestamp(obj));
+  }
+
+  private boolean handleTestDone(@Nullable Test test, @NotNull String result, long timestamp) throws ParseException {
+    if (test == null) throw new ParseException("Unknown test", 0);
+    if (!test.myTestStartReported) return true;
+
+    if (!isKnownResult(result)) {
+      throw new ParseException("Unknown result: " + result, 0);
+    }
+
     test.testDone();
 
     //if (test.getMetadata().skip) return true; // skipped tests are reported as ignored in handleTestStart(). testFinished signal must follow
 
     ServiceMessageBuilder testFinished = ServiceMessageBuilder.testFinished(test.getBaseName());
-    long duration = getTimestamp(obj) - myTestIdToTimestamp.get(test.getId());
+    long duration = timestamp - myTestIdToTimestamp.get(test.getId());
     testFinished.addAttribute("duration", Long.toString(duration));
 
     return finishMessage(testFinished, test.getId(), test.getValidParentId()) && checkGroupDone(test.getParent());
   }
 
+  private static boolean isKnownResult(@NotNull String result) {
+    return result.equals(RESULT_SUCCESS) || result.equals(RESULT_FAILURE) || result.equals(RESULT_ERROR);
+  }
+
   private boolean checkGroupDone(@Nullable final Group group) throws ParseException {
     if (group != null && group.getTestCount() > 0 && group.getDoneTestsCount() == group.getTestCount()) {
       return processGroupDone(group) && checkGroupDone(group.getParent());
@@ -285,8 +332,11 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
   }
 
   private boolean handleError(JsonObject obj) throws ParseException {
-    final Test test = getTest(obj);
-    final String message = getErrorMessage(obj);
+    return handleError(getTest(obj), getErrorMessage(obj), getStackTrace(obj));
+  }
+
+  private boolean handleError(@Nullable Test test, @NotNull String message, @NotNull String stackTrace) throws ParseException {
+    if (test == null) throw new ParseException("Unknown test", 0);
     boolean result = true;
 
     if (!test.myTestStartReported) {
@@ -327,7 +377,6 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
       result &= finishMessage(testError, test.getId(), test.getValidParentId());
     }
 
-    final String stackTrace = getStackTrace(obj);
     if (!StringUtil.isEmptyOrSpaces(stackTrace)) {
       final ServiceMessageBuilder stackTraceMessage = ServiceMessageBuilder.testStdErr(test.getBaseName());
       stackTraceMessage.addAttribute("out", appendLineBreakIfNeeded(stackTrace));
@@ -351,7 +400,11 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
   }
 
   private boolean handlePrint(JsonObject obj) throws ParseException {
-    final Test test = getTest(obj);
+    return handlePrint(getTest(obj), getMessage(obj));
+  }
+
+  private boolean handlePrint(@Nullable Test test, @NotNull String text) throws ParseException {
+    if (test == null) throw new ParseException("Unknown test", 0);
     boolean result = true;
 
     if (!test.myTestStartReported) {
@@ -365,7 +418,7 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     }
 
     ServiceMessageBuilder message = ServiceMessageBuilder.testStdOut(test.getBaseName());
-    message.addAttribute("out", appendLineBreakIfNeeded(getMessage(obj)));
+    message.addAttribute("out", appendLineBreakIfNeeded(text));
 
     return result & finishMessage(message, test.getId(), test.getValidParentId());
   }
@@ -379,7 +432,7 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     return doProcessServiceMessages(ServiceMessageBuilder.testsStarted().toString());
   }
 
-  private boolean handleDone(JsonObject obj) {
+  private boolean handleDone() {
     // The test runner has reached the end of the tests.
     processAllTestsDone();
     return true;
@@ -471,6 +524,11 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     return getItem(obj, myTestData);
   }
 
+  @Nullable
+  private Test getTest(int testId) {
+    return myTestData.get(testId);
+  }
+
   @NotNull
   private Group getGroup(JsonObject obj) throws ParseException {
     return getItem(obj, myGroupData);
@@ -482,7 +540,7 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
   }
 
   @NotNull
-  private <T extends Item> T getItem(JsonObject obj, Map<Integer, T> items) throws ParseException {
+  private <T extends Item> T getItem(JsonObject obj, Int2ObjectMap<T> items) throws ParseException {
     if (obj == null) throw new ParseException("Unexpected null json object", 0);
     T item;
     JsonElement id = obj.get(JSON_ID);
@@ -574,7 +632,7 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
       return Metadata.from(obj.get(DEF_METADATA));
     }
 
-    static Suite lookupSuite(JsonObject obj, Map<Integer, Suite> suites) {
+    static Suite lookupSuite(JsonObject obj, Int2ObjectMap<Suite> suites) {
       JsonElement suiteObj = obj.get(JSON_SUITE_ID);
       Suite suite = null;
       if (suiteObj != null && suiteObj.isJsonPrimitive()) {
@@ -707,11 +765,11 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     private boolean myTestStartReported = false;
     private boolean myTestErrorReported = false;
 
-    static Test from(JsonObject obj, Map<Integer, Group> groups, Map<Integer, Suite> suites) {
-      int[] groupIds = GSON.fromJson(obj.get(JSON_GROUP_IDS), (Type)int[].class);
+    static Test from(JsonObject obj, Int2ObjectMap<Group> groups, Int2ObjectMap<Suite> suites) {
+      JsonElement groupIds = obj.get(JSON_GROUP_IDS);
       Group parent = null;
-      if (groupIds != null && groupIds.length > 0) {
-        parent = groups.get(groupIds[groupIds.length - 1]);
+      if (groupIds instanceof JsonArray && ((JsonArray)groupIds).size() > 0) {
+        parent = groups.get(((JsonArray)groupIds).get(((JsonArray)groupIds).size() - 1).getAsInt());
       }
       Suite suite = lookupSuite(obj, suites);
       final int line = extractInt(obj, JSON_LINE);
@@ -735,7 +793,7 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
     private final int myTestCount;
     private int myDoneTestsCount = 0;
 
-    static Group from(JsonObject obj, Map<Integer, Group> groups, Map<Integer, Suite> suites) {
+    static Group from(JsonObject obj, Int2ObjectMap<Group> groups, Int2ObjectMap<Suite> suites) {
       JsonElement parentObj = obj.get(JSON_PARENT_ID);
       Group parent = null;
       if (parentObj != null && parentObj.isJsonPrimitive()) {
@@ -809,4 +867,91 @@ public final class DartTestEventsConverter extends OutputToGeneralTestEventsConv
       return GSON.fromJson(elem, (Type)Metadata.class);
     }
   }
+
+  /**
+   * The most frequent events, "testDone", "print" and "error", as well as "done" and events that are not handled at all, have only scalar
+   * fields. Such events are read with a streaming {@link JsonReader}, without building a JSON tree. Other events, and events that
+   * don't look like expected, are processed as {@link JsonObject}s.
+   */
+  private static final class ScalarEvent {
+    private String type;
+    private int testId = -1;
+    private long time = -1;
+    @NotNull private String result = "<no result>";
+    @NotNull private String message = "<no message>";
+    @NotNull private String error = "<no error message>";
+    @NotNull private String stackTrace = "<no stack trace>";
+
+    /**
+     * @return {@code null} if the text should be processed as a {@link JsonObject}
+     */
+    @Nullable
+    static ScalarEvent read(@NotNull String text) {
+      final ScalarEvent event = new ScalarEvent();
+      try {
+        final JsonReader reader = new JsonReader(new StringReader(text));
+        reader.setLenient(true);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) return null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+          final String name = reader.nextName();
+          final JsonToken token = reader.peek();
+          if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY || token == JsonToken.NULL) {
+            reader.skipValue();
+          }
+          else if (JSON_TYPE.equals(name)) {
+            event.type = readString(reader, token);
+          }
+          else if (JSON_TEST_ID.equals(name)) {
+            event.testId = reader.nextInt();
+          }
+          else if (JSON_MILLIS.equals(name)) {
+            event.time = reader.nextLong();
+          }
+          else if (JSON_RESULT.equals(name)) {
+            event.result = readString(reader, token);
+          }
+          else if (JSON_MESSAGE.equals(name)) {
+            event.message = readString(reader, token);
+          }
+          else if (JSON_ERROR_MESSAGE.equals(name)) {
+            event.error = readString(reader, token);
+          }
+          else if (JSON_STACK_TRACE.equals(name)) {
+            event.stackTrace = readString(reader, token);
+          }
+          else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+      }
+      catch (IOException | IllegalStateException | NumberFormatException e) {
+        return null;
+      }
+
+      if (event.type == null) return null;
+
+      switch (event.type) {
+        case TYPE_TEST_DONE:
+          return event.testId >= 0 && event.time >= 0 ? event : null;
+        case TYPE_ERROR:
+        case TYPE_PRINT:
+          return event.testId >= 0 ? event : null;
+        case TYPE_START:
+        case TYPE_SUITE:
+        case TYPE_GROUP:
+        case TYPE_TEST_START:
+          return null;
+        default:
+          return event; // TYPE_DONE, TYPE_ALL_SUITES and unknown events
+      }
+    }
+
+    @NotNull
+    private static String readString(@NotNull JsonReader reader, @NotNull JsonToken token) throws IOException {
+      return token == JsonToken.BOOLEAN ? String.valueOf(reader.nextBoolean()) : reader.nextString();
+    }
+  }
 }
@@ -15,6 +15,7 @@ import com.intellij.util.ObjectUtils;
 import com.intellij.util.Processor;
 import com.intellij.util.SmartList;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import com.jetbrains.lang.dart.analyzer.DartNavigationRegionList;
 import com.jetbrains.lang.dart.analyzer.DartServerData;
 import com.jetbrains.lang.dart.analyzer.DartServerData.DartNavigationRegion;
 import com.jetbrains.lang.dart.analyzer.DartServerData.DartNavigationTarget;
@@ -142,6 +143,9 @@ public class DartResolver implements ResolveCache.AbstractResolver<DartReference
   }
 
   private static int findOffsetIndex(@NotNull List<? extends DartNavigationRegion> regions, int offset) {
+    if (regions instanceof DartNavigationRegionList) {
+      return ((DartNavigationRegionList)regions).findOffsetIndex(offset);
+    }
     return ObjectUtils.binarySearch(0, regions.size(), mid -> Integer.compare(regions.get(mid).getOffset(), offset));
   }
 
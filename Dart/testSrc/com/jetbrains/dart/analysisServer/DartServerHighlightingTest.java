@@ -1,6 +1,7 @@
 // Copyright 2000-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.jetbrains.dart.analysisServer;
 
+import com.google.dart.server.RequestListener;
 import com.intellij.codeInsight.daemon.impl.HighlightInfo;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.actionSystem.IdeActions;
@@ -25,6 +26,8 @@ import org.jetbrains.annotations.NotNull;
 
 import java.awt.datatransfer.StringSelection;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class DartServerHighlightingTest extends CodeInsightFixtureTestCase {
   @Override
@@ -371,6 +374,38 @@ public class DartServerHighlightingTest extends CodeInsightFixtureTestCase {
     assertEmpty(myFixture.doHighlighting(HighlightSeverity.WEAK_WARNING));
   }
 
+  public void testFullContentSentAfterRejectedChange() throws InterruptedException {
+    myFixture.configureByText("foo.dart", "<caret>import <warning>'dart:math'</warning>;");
+    myFixture.checkHighlighting();
+    myFixture.type("//");
+    assertEmpty(myFixture.doHighlighting(HighlightSeverity.WEAK_WARNING));
+
+    final DartAnalysisServerService service = DartAnalysisServerService.getInstance(getProject());
+    final VirtualFile file = getFile().getVirtualFile();
+    final CountDownLatch changeSent = new CountDownLatch(1);
+    final CountDownLatch fullContentSent = new CountDownLatch(1);
+    final RequestListener listener = request -> {
+      if (!request.contains("analysis.updateContent") || !request.contains("foo.dart")) return;
+      if (request.contains("\"change\"")) changeSent.countDown();
+      if (request.contains("\"add\"") && changeSent.getCount() == 0) fullContentSent.countDown();
+    };
+    service.addRequestListener(listener);
+    try {
+      // the server doesn't have the overlay anymore, so the next incremental change is rejected with INVALID_OVERLAY_CHANGE
+      service.removeContentOverlayOnServerOnly(file);
+      myFixture.type(" x");
+      service.updateFilesContent();
+      assertTrue(changeSent.await(10, TimeUnit.SECONDS));
+      assertTrue(fullContentSent.await(10, TimeUnit.SECONDS));
+    }
+    finally {
+      service.removeRequestListener(listener);
+    }
+
+    // the whole file is commented out; the server would report the unused import if it analyzed the content on disk
+    assertEmpty(myFixture.doHighlighting(HighlightSeverity.WEAK_WARNING));
+  }
+
   public void testInjectedHtmlWithStringTemplates() {
     myFixture.configureByText("foo.dart", "main() {\n" +
                                           "  var varNameLongerThanDart_string_template_placeholder;\n" +
@@ -13,6 +13,8 @@
  */
 package com.google.dart.server;
 
+import org.dartlang.analysis.server.protocol.RequestError;
+
 /**
  * The interface {@code UpdateContentConsumer} defines the behavior of objects that consume
  * 'analysis.updateContent' responses.
@@ -24,4 +26,13 @@ public interface UpdateContentConsumer extends Consumer {
    * A response to the request was received.
    */
   public void onResponse();
+
+  /**
+   * The request has been rejected, e.g. because a {@code ChangeContentOverlay} didn't apply to the
+   * content known to the server. {@link #onResponse()} is called as well.
+   *
+   * @param requestError the reason why the request has been rejected
+   */
+  default public void onError(RequestError requestError) {
+  }
 }
@@ -35,6 +35,12 @@ public class BlockingRequestSink implements RequestSink {
    */
   private final LinkedList<JsonObject> queue = new LinkedList<>();
 
+  /**
+   * The {@link RequestSink} this sink has been converted to. Requests added after the conversion
+   * by callers that still see this sink are forwarded to it.
+   */
+  private RequestSink target;
+
   public BlockingRequestSink(RequestSink base) {
     this.base = base;
   }
@@ -42,7 +48,9 @@ public class BlockingRequestSink implements RequestSink {
   @Override
   public void add(JsonObject request) {
     synchronized (queue) {
-      if (RequestUtilities.isVersionRequest(request)) {
+      if (target != null) {
+        target.add(request);
+      } else if (RequestUtilities.isVersionRequest(request)) {
         base.add(request);
       } else {
         queue.add(request);
@@ -50,6 +58,28 @@ public class BlockingRequestSink implements RequestSink {
     }
   }
 
+  @Override
+  public boolean remove(String id) {
+    synchronized (queue) {
+      if (target != null) {
+        return target.remove(id);
+      }
+      for (JsonObject request : queue) {
+        if (id.equals(RequestUtilities.getId(request))) {
+          return queue.remove(request);
+        }
+      }
+      return base.remove(id);
+    }
+  }
+
+  @Override
+  public int getQueueDepth() {
+    synchronized (queue) {
+      return queue.size() + base.getQueueDepth();
+    }
+  }
+
   @Override
   public void close() {
     base.close();
@@ -71,6 +101,8 @@ public class BlockingRequestSink implements RequestSink {
       for (JsonObject request : queue) {
         errorRequestSink.add(request);
       }
+      queue.clear();
+      target = errorRequestSink;
     }
     return errorRequestSink;
   }
@@ -83,6 +115,8 @@ public class BlockingRequestSink implements RequestSink {
       for (JsonObject request : queue) {
         base.add(request);
       }
+      queue.clear();
+      target = base;
     }
     return base;
   }
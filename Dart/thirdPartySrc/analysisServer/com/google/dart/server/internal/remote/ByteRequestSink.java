@@ -14,6 +14,7 @@
 package com.google.dart.server.internal.remote;
 
 import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.dart.server.internal.remote.utilities.RequestUtilities;
 import com.google.gson.JsonObject;
 
 import java.io.OutputStream;
@@ -21,16 +22,25 @@ import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * An {@link OutputStream} based implementation of {@link RequestSink}.
+ * <p>
+ * Requests are put into a lock-free queue and serialized and written by a separate thread, so
+ * callers never wait for each other or for the server to read its input. Requests that are still
+ * in the queue may be removed with {@link #remove(String)}.
  *
  * @coverage dart.server.remote
  */
 public class ByteRequestSink implements RequestSink {
+  private static final JsonObject EOF_REQUEST = new JsonObject();
+
   /**
    * The {@link PrintWriter} to print JSON strings to.
    */
@@ -40,9 +50,15 @@ public class ByteRequestSink implements RequestSink {
    */
   private DebugPrintStream debugStream;
   /**
-   * The queue of lines.
+   * The queue of requests.
+   */
+  private final Queue<JsonObject> requestQueue = new ConcurrentLinkedQueue<JsonObject>();
+  /**
+   * The number of requests in {@link #requestQueue}, {@link ConcurrentLinkedQueue#size()} is not
+   * a constant-time operation.
    */
-  private final BlockingQueue<String> lineQueue = new LinkedBlockingQueue<String>();
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final Thread writerThread;
 
   /**
    * Initializes a newly created request sink.
@@ -53,35 +69,54 @@ public class ByteRequestSink implements RequestSink {
   public ByteRequestSink(OutputStream stream, DebugPrintStream debugStream) {
     writer = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
     this.debugStream = debugStream;
-    new LinesWriterThread().start();
+    writerThread = new LinesWriterThread();
+    writerThread.start();
   }
 
   @Override
   public void add(JsonObject request) {
-    String text = request.toString();
-    if (debugStream != null) {
-      if (!text.contains("server.getVersion")) {
-        debugStream.println(System.currentTimeMillis() + " => " + text);
+    enqueue(request);
+  }
+
+  @Override
+  public boolean remove(String id) {
+    Iterator<JsonObject> iterator = requestQueue.iterator();
+    while (iterator.hasNext()) {
+      JsonObject request = iterator.next();
+      if (request != EOF_REQUEST && id.equals(RequestUtilities.getId(request)) && requestQueue.remove(request)) {
+        queueDepth.decrementAndGet();
+        return true;
       }
     }
-    lineQueue.add(text);
+    return false;
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queueDepth.get();
   }
 
   @Override
   public void close() {
     writer.close();
-    lineQueue.add(ByteResponseStream.EOF_LINE);
+    enqueue(EOF_REQUEST);
   }
 
   public void waitForFlush() {
     while (true) {
-      if (lineQueue.isEmpty()) {
+      if (requestQueue.isEmpty()) {
         return;
       }
       Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
     }
   }
 
+  private void enqueue(JsonObject request) {
+    requestQueue.add(request);
+    queueDepth.incrementAndGet();
+    LockSupport.unpark(writerThread);
+  }
+
   private class LinesWriterThread extends Thread {
     public LinesWriterThread() {
       setName("ByteRequestSink.LinesWriterThread");
@@ -91,17 +126,25 @@ public class ByteRequestSink implements RequestSink {
     @Override
     public void run() {
       while (true) {
-        try {
-          String line = lineQueue.take();
-          if (line == ByteResponseStream.EOF_LINE) {
-            return;
-          }
-
-          writer.println(line);
-          writer.flush();
+        JsonObject request = requestQueue.poll();
+        if (request == null) {
+          // add() unparks this thread, an unpark that happens before park() is not lost
+          LockSupport.park(this);
+          continue;
+        }
+        queueDepth.decrementAndGet();
+        if (request == EOF_REQUEST) {
+          return;
         }
-        catch (InterruptedException e) {
+
+        String text = request.toString();
+        if (debugStream != null) {
+          if (!text.contains("server.getVersion")) {
+            debugStream.println(System.currentTimeMillis() + " => " + text);
+          }
         }
+        writer.println(text);
+        writer.flush();
       }
     }
   }
@@ -105,11 +105,24 @@ public class ByteResponseStream implements ResponseStream {
 
   @Override
   public JsonObject take() throws Exception {
+    String line = takeLine();
+    return line != null ? parse(line) : null;
+  }
+
+  @Override
+  public String takeLine() throws Exception {
     String line = lineQueue.take();
     if (line == EOF_LINE) {
       lineQueue.add(line);
       return null;
     }
+    return line;
+  }
+
+  /**
+   * Parses the given response line taken from a {@link ResponseStream}.
+   */
+  public static JsonObject parse(String line) {
     try {
       return (JsonObject) new JsonParser().parse(line);
     } catch (JsonSyntaxException e) {
@@ -36,6 +36,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -58,6 +59,18 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
    */
   private final static Version MAX_SERVER_VERSION = Version.parseVersion("2.0.0");
 
+  /**
+   * Whether large notifications should be decoded by the {@link StreamingNotificationProcessor},
+   * the "dart.server.streaming.notifications" system property allows to switch it off.
+   */
+  private static final boolean USE_STREAMING_NOTIFICATION_PROCESSOR =
+      Boolean.parseBoolean(System.getProperty("dart.server.streaming.notifications", "true"));
+
+  /**
+   * Shorter responses are parsed into a {@link JsonObject}, the allocation saving is negligible for them.
+   */
+  private static final int STREAMING_NOTIFICATION_MIN_LENGTH = 16 * 1024;
+
   // Server domain
   private static final String SERVER_NOTIFICATION_CONNECTED = "server.connected";
   private static final String SERVER_NOTIFICATION_STATUS = "server.status";
@@ -86,7 +99,21 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
   private static final String LAUNCH_DATA_NOTIFICATION_RESULTS = "execution.launchData";
   private final AnalysisServerSocket socket;
   private final Object requestSinkLock = new Object();
-  private RequestSink requestSink;
+  // not guarded by requestSinkLock for reading: sending requests doesn't block each other
+  private volatile RequestSink requestSink;
+  private final RequestStatistics requestStatistics = new RequestStatistics();
+
+  /**
+   * The superseding key (see {@link RequestUtilities#getSupersedingKey(JsonObject)}) to the id of
+   * the last request sent with this key.
+   */
+  private final Map<String, String> supersedingKeyToRequestId = new ConcurrentHashMap<>();
+
+  /**
+   * The id of each pending request sent with a superseding key to this key, so that the key is
+   * forgotten when the request is responded or superseded.
+   */
+  private final Map<String, String> requestIdToSupersedingKey = new ConcurrentHashMap<>();
   private ResponseStream responseStream;
   private LineReaderStream errorStream;
   private final AtomicLong lastResponseTime = new AtomicLong(0);
@@ -716,7 +743,25 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
   }
 
   private void processResponse(JsonObject response) throws Exception {
-    notifyResponseListeners(response);
+    notifyResponseListeners(response.toString());
+    processResponseObject(response);
+  }
+
+  /**
+   * Handles the given response line taken from the {@link ResponseStream}. Large notifications
+   * are decoded by the {@link StreamingNotificationProcessor}, everything else is parsed into a
+   * {@link JsonObject} first.
+   */
+  private void processResponseLine(String line) throws Exception {
+    notifyResponseListeners(line);
+    if (USE_STREAMING_NOTIFICATION_PROCESSOR && line.length() >= STREAMING_NOTIFICATION_MIN_LENGTH &&
+        new StreamingNotificationProcessor(listener).process(line)) {
+      return;
+    }
+    processResponseObject(ByteResponseStream.parse(line));
+  }
+
+  private void processResponseObject(JsonObject response) throws Exception {
     // handle notification
     if (processNotification(response)) {
       return;
@@ -727,11 +772,13 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
       return;
     }
     String idString = idJsonPrimitive.getAsString();
-    // prepare consumer
+    requestStatistics.responseReceived(idString);
+    // prepare consumer, removing it right away so that a superseded request isn't responded twice
     Consumer consumer;
     synchronized (consumerMapLock) {
-      consumer = consumerMap.get(idString);
+      consumer = consumerMap.remove(idString);
     }
+    forgetSupersedingKey(idString);
     JsonObject errorObject = (JsonObject)response.get("error");
     RequestError requestError = null;
     if (errorObject != null) {
@@ -742,10 +789,17 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     // handle result
     JsonObject resultObject = (JsonObject)response.get("result");
 
+    dispatchResult(consumer, resultObject, requestError);
+  }
+
+  private void dispatchResult(Consumer consumer, JsonObject resultObject, RequestError requestError) throws Exception {
     //
     // Analysis Domain
     //
     if (consumer instanceof UpdateContentConsumer) {
+      if (requestError != null) {
+        ((UpdateContentConsumer)consumer).onError(requestError);
+      }
       ((UpdateContentConsumer)consumer).onResponse();
     }
     //
@@ -866,10 +920,6 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     else if (consumer instanceof JsonConsumer) {
       ((JsonConsumer)consumer).onResponse(resultObject, requestError);
     }
-
-    synchronized (consumerMapLock) {
-      consumerMap.remove(idString);
-    }
   }
 
   private void notifyRequestListeners(JsonObject request) {
@@ -881,11 +931,11 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     }
   }
 
-  private void notifyResponseListeners(JsonObject response) {
+  private void notifyResponseListeners(String response) {
     synchronized (responseListenerList) {
       List<ResponseListener> listeners = ImmutableList.copyOf(responseListenerList);
       for (ResponseListener listener : listeners) {
-        listener.onResponse(response.toString());
+        listener.onResponse(response);
       }
     }
   }
@@ -914,14 +964,78 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
       consumerMap.put(id, consumer);
     }
     lastRequestTime.set(System.currentTimeMillis());
-    synchronized (requestSinkLock) {
-      requestSink.add(request);
+    requestStatistics.requestSent(id, RequestUtilities.getMethod(request));
+
+    // registered before sending, so that the key of a quickly responded request is forgotten as well
+    String supersedingKey = RequestUtilities.getSupersedingKey(request);
+    String supersededId = null;
+    if (supersedingKey != null) {
+      requestIdToSupersedingKey.put(id, supersedingKey);
+      supersededId = supersedingKeyToRequestId.put(supersedingKey, id);
     }
+
+    RequestSink sink = requestSink;
+    sink.add(request);
+
+    if (supersededId != null) {
+      supersedeRequest(sink, supersededId);
+    }
+  }
+
+  private void forgetSupersedingKey(String id) {
+    String supersedingKey = requestIdToSupersedingKey.remove(id);
+    if (supersedingKey != null) {
+      supersedingKeyToRequestId.remove(supersedingKey, id);
+    }
+  }
+
+  /**
+   * Drops the request with the given id if it's not sent yet, and responds to its consumer with the
+   * {@link ResponseUtilities#REQUEST_SUPERSEDED} error right away, so that the caller doesn't wait
+   * for the result that is not needed anymore. The server response, if any, is ignored.
+   */
+  private void supersedeRequest(RequestSink sink, String id) {
+    // the key maps to the superseding request already
+    requestIdToSupersedingKey.remove(id);
+    Consumer consumer;
+    synchronized (consumerMapLock) {
+      consumer = consumerMap.remove(id);
+    }
+    if (consumer == null) {
+      // already responded
+      return;
+    }
+    sink.remove(id);
+    requestStatistics.requestSuperseded(id);
+    try {
+      dispatchResult(consumer, null, new RequestError(ResponseUtilities.REQUEST_SUPERSEDED, "Superseded by a newer request", null));
+    }
+    catch (Exception e) {
+      Logging.getLogger().logError(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Returns statistics of the requests sent to the server.
+   */
+  public RequestStatistics getRequestStatistics() {
+    return requestStatistics;
+  }
+
+  /**
+   * Returns the number of requests waiting to be sent to the server.
+   */
+  public int getRequestQueueDepth() {
+    RequestSink sink = requestSink;
+    return sink != null ? sink.getQueueDepth() : 0;
   }
 
   private void startServer() throws Exception {
     socket.start();
     consumerMap.clear();
+    supersedingKeyToRequestId.clear();
+    requestIdToSupersedingKey.clear();
+    requestStatistics.clear();
     requestSink = socket.getRequestSink();
     responseStream = socket.getResponseStream();
     errorStream = socket.getErrorStream();
@@ -1138,13 +1252,13 @@ public class RemoteAnalysisServerImpl implements AnalysisServer {
     public void run() {
       while (true) {
         try {
-          JsonObject response = stream.take();
-          if (response == null) {
+          String line = stream.takeLine();
+          if (line == null) {
             return;
           }
           lastResponseTime.set(System.currentTimeMillis());
           try {
-            processResponse(response);
+            processResponseLine(line);
           }
           finally {
             stream.lastRequestProcessed();
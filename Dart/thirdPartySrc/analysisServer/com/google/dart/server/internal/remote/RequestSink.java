@@ -28,6 +28,22 @@ public interface RequestSink {
    */
   void add(JsonObject request);
 
+  /**
+   * Remove the request with the given id if it has not been sent yet.
+   *
+   * @return {@code true} if the request has been removed
+   */
+  default boolean remove(String id) {
+    return false;
+  }
+
+  /**
+   * Return the number of requests waiting to be sent.
+   */
+  default int getQueueDepth() {
+    return 0;
+  }
+
   /**
    * Close the communication channel.
    */
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2014, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts requests sent to the analysis server that are waiting for a response, and collects
+ * per-method histograms of the time between sending a request and receiving its response.
+ *
+ * @coverage dart.server.remote
+ */
+public class RequestStatistics {
+  /**
+   * Histogram buckets are powers of two in milliseconds: [0, 1), [1, 2), [2, 4), ... [2^14, ...).
+   */
+  private static final int BUCKET_COUNT = 16;
+
+  private static class PendingRequest {
+    private final String method;
+    private final long startNanos;
+
+    private PendingRequest(String method, long startNanos) {
+      this.method = method;
+      this.startNanos = startNanos;
+    }
+  }
+
+  private final Map<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLongArray> histograms = new ConcurrentHashMap<>();
+  private final AtomicLong supersededCount = new AtomicLong();
+
+  void requestSent(String id, String method) {
+    if (method != null) {
+      pendingRequests.put(id, new PendingRequest(method, System.nanoTime()));
+    }
+  }
+
+  void responseReceived(String id) {
+    PendingRequest request = pendingRequests.remove(id);
+    if (request == null) {
+      return;
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - request.startNanos);
+    int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(millis));
+    histograms.computeIfAbsent(request.method, m -> new AtomicLongArray(BUCKET_COUNT)).incrementAndGet(bucket);
+  }
+
+  void requestSuperseded(String id) {
+    if (pendingRequests.remove(id) != null) {
+      supersededCount.incrementAndGet();
+    }
+  }
+
+  void clear() {
+    pendingRequests.clear();
+    histograms.clear();
+    supersededCount.set(0);
+  }
+
+  /**
+   * Returns the number of requests sent to the server and not responded yet.
+   */
+  public int getInFlightCount() {
+    return pendingRequests.size();
+  }
+
+  /**
+   * Returns the number of requests that have been dropped because newer requests of the same kind
+   * were sent.
+   */
+  public long getSupersededCount() {
+    return supersededCount.get();
+  }
+
+  /**
+   * Returns the latency histogram of the given method. The i-th element is the number of responses
+   * received in [2^(i-1), 2^i) milliseconds, the 0-th is for responses received in less than 1 ms.
+   */
+  public long[] getLatencyHistogram(String method) {
+    long[] result = new long[BUCKET_COUNT];
+    AtomicLongArray histogram = histograms.get(method);
+    if (histogram != null) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        result[i] = histogram.get(i);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("in flight: ").append(getInFlightCount());
+    builder.append(", superseded: ").append(getSupersededCount());
+    for (String method : new TreeMap<>(histograms).keySet()) {
+      builder.append("\n").append(method).append(":");
+      long[] histogram = getLatencyHistogram(method);
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        if (histogram[i] > 0) {
+          builder.append(" <").append(1L << i).append("ms=").append(histogram[i]);
+        }
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2014, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.server.internal.remote.processor;
+
+import com.google.dart.server.AnalysisServerListener;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.dartlang.analysis.server.protocol.HighlightRegion;
+import org.dartlang.analysis.server.protocol.NavigationRegion;
+import org.dartlang.analysis.server.protocol.NavigationTarget;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Processor for the notifications that may be very large, such as "analysis.highlights" and
+ * "analysis.navigation". Unlike {@link NotificationProcessor}s, it reads the response line with a
+ * {@link JsonReader} and creates protocol objects directly, without building an intermediate
+ * {@link com.google.gson.JsonObject} tree.
+ *
+ * @coverage dart.server.remote
+ */
+public class StreamingNotificationProcessor {
+  private static final String ANALYSIS_NOTIFICATION_HIGHLIGHTS = "analysis.highlights";
+  private static final String ANALYSIS_NOTIFICATION_NAVIGATION = "analysis.navigation";
+
+  private final AnalysisServerListener listener;
+
+  public StreamingNotificationProcessor(AnalysisServerListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Process the given response line if it is one of the supported notifications and notify
+   * {@link #listener}. Returns {@code false} if the line has not been handled and should be
+   * processed as a {@link com.google.gson.JsonObject}, for example if it is not a supported
+   * notification, or if its "params" precede its "event" name.
+   */
+  public boolean process(String line) throws IOException {
+    JsonReader reader = new JsonReader(new StringReader(line));
+    reader.beginObject();
+    String event = null;
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("event")) {
+        event = reader.nextString();
+        if (!event.equals(ANALYSIS_NOTIFICATION_HIGHLIGHTS) && !event.equals(ANALYSIS_NOTIFICATION_NAVIGATION)) {
+          return false;
+        }
+      }
+      else if (name.equals("params")) {
+        if (event == null) {
+          return false;
+        }
+        if (event.equals(ANALYSIS_NOTIFICATION_HIGHLIGHTS)) {
+          processHighlights(reader);
+        }
+        else {
+          processNavigation(reader);
+        }
+        return true;
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    return false;
+  }
+
+  private void processHighlights(JsonReader reader) throws IOException {
+    String file = null;
+    List<HighlightRegion> regions = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("file")) {
+        file = reader.nextString();
+      }
+      else if (name.equals("regions")) {
+        regions = new ArrayList<HighlightRegion>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          regions.add(readHighlightRegion(reader));
+        }
+        reader.endArray();
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    // notify listener
+    listener.computedHighlights(file, regions != null ? regions : HighlightRegion.EMPTY_LIST);
+  }
+
+  private void processNavigation(JsonReader reader) throws IOException {
+    String file = null;
+    String[] targetFiles = null;
+    List<NavigationTarget> targets = null;
+    List<NavigationRegion> regions = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("file")) {
+        file = reader.nextString();
+      }
+      else if (name.equals("files")) {
+        List<String> files = new ArrayList<String>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          files.add(reader.nextString());
+        }
+        reader.endArray();
+        targetFiles = files.toArray(new String[files.size()]);
+      }
+      else if (name.equals("targets")) {
+        targets = new ArrayList<NavigationTarget>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          targets.add(readNavigationTarget(reader));
+        }
+        reader.endArray();
+      }
+      else if (name.equals("regions")) {
+        regions = new ArrayList<NavigationRegion>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          regions.add(readNavigationRegion(reader));
+        }
+        reader.endArray();
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    // "files", "targets" and "regions" may come in any order, so resolve indices at the end
+    if (targets == null) {
+      targets = NavigationTarget.EMPTY_LIST;
+    }
+    if (regions == null) {
+      regions = NavigationRegion.EMPTY_LIST;
+    }
+    if (targetFiles != null) {
+      for (NavigationTarget target : targets) {
+        target.lookupFile(targetFiles);
+      }
+    }
+    for (NavigationRegion region : regions) {
+      region.lookupTargets(targets);
+    }
+    // notify listener
+    listener.computedNavigation(file, regions);
+  }
+
+  private static HighlightRegion readHighlightRegion(JsonReader reader) throws IOException {
+    String type = null;
+    int offset = 0;
+    int length = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("type")) {
+        type = reader.nextString();
+      }
+      else if (name.equals("offset")) {
+        offset = reader.nextInt();
+      }
+      else if (name.equals("length")) {
+        length = reader.nextInt();
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new HighlightRegion(type, offset, length);
+  }
+
+  private static NavigationRegion readNavigationRegion(JsonReader reader) throws IOException {
+    int offset = 0;
+    int length = 0;
+    int[] targets = new int[0];
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("offset")) {
+        offset = reader.nextInt();
+      }
+      else if (name.equals("length")) {
+        length = reader.nextInt();
+      }
+      else if (name.equals("targets")) {
+        targets = readIntArray(reader);
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new NavigationRegion(offset, length, targets);
+  }
+
+  private static NavigationTarget readNavigationTarget(JsonReader reader) throws IOException {
+    String kind = null;
+    int fileIndex = 0;
+    int offset = 0;
+    int length = 0;
+    int startLine = 0;
+    int startColumn = 0;
+    Integer codeOffset = null;
+    Integer codeLength = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (reader.peek() == JsonToken.NULL) {
+        reader.nextNull();
+      }
+      else if (name.equals("kind")) {
+        kind = reader.nextString();
+      }
+      else if (name.equals("fileIndex")) {
+        fileIndex = reader.nextInt();
+      }
+      else if (name.equals("offset")) {
+        offset = reader.nextInt();
+      }
+      else if (name.equals("length")) {
+        length = reader.nextInt();
+      }
+      else if (name.equals("startLine")) {
+        startLine = reader.nextInt();
+      }
+      else if (name.equals("startColumn")) {
+        startColumn = reader.nextInt();
+      }
+      else if (name.equals("codeOffset")) {
+        codeOffset = reader.nextInt();
+      }
+      else if (name.equals("codeLength")) {
+        codeLength = reader.nextInt();
+      }
+      else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new NavigationTarget(kind, fileIndex, offset, length, startLine, startColumn, codeOffset, codeLength);
+  }
+
+  private static int[] readIntArray(JsonReader reader) throws IOException {
+    int[] ints = new int[4];
+    int size = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == ints.length) {
+        int[] newInts = new int[size * 2];
+        System.arraycopy(ints, 0, newInts, 0, size);
+        ints = newInts;
+      }
+      ints[size++] = reader.nextInt();
+    }
+    reader.endArray();
+    if (size == ints.length) {
+      return ints;
+    }
+    int[] result = new int[size];
+    System.arraycopy(ints, 0, result, 0, size);
+    return result;
+  }
+}
@@ -1087,6 +1087,46 @@ public class RequestUtilities {
     return METHOD_SERVER_GET_VERSION.equals(method);
   }
 
+  /**
+   * Return the method of the given request, or {@code null}.
+   */
+  public static String getMethod(JsonObject request) {
+    return getRequestMethod(request);
+  }
+
+  /**
+   * Return the key that identifies requests superseding each other, or {@code null} if the given
+   * request can't be superseded. For example, a hover request for a location is not interesting
+   * anymore once another hover request for the same location has been sent. Requests for different
+   * locations (e.g. fixes of different errors in the same file) don't supersede each other.
+   */
+  public static String getSupersedingKey(JsonObject request) {
+    String method = getRequestMethod(request);
+    if (!METHOD_ANALYSIS_GET_HOVER.equals(method) &&
+        !METHOD_EDIT_GET_ASSISTS.equals(method) &&
+        !METHOD_EDIT_GET_FIXES.equals(method)) {
+      return null;
+    }
+    JsonElement params = request.get(PARAMS);
+    if (!(params instanceof JsonObject)) {
+      return null;
+    }
+    JsonElement file = ((JsonObject)params).get(FILE);
+    JsonElement offset = ((JsonObject)params).get(OFFSET);
+    if (!(file instanceof JsonPrimitive) || !(offset instanceof JsonPrimitive)) {
+      return null;
+    }
+    String key = method + ":" + file.getAsString() + ":" + offset.getAsString();
+    if (METHOD_EDIT_GET_ASSISTS.equals(method)) {
+      JsonElement length = ((JsonObject)params).get(LENGTH);
+      if (!(length instanceof JsonPrimitive)) {
+        return null;
+      }
+      key += ":" + length.getAsString();
+    }
+    return key;
+  }
+
   /**
    * Set whether the request time is included in the request itself.
    */
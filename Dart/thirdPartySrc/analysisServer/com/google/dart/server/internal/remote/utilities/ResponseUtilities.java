@@ -28,6 +28,12 @@ public class ResponseUtilities {
 
   public static final String INCOMPATIBLE_SERVER_VERSION = "INCOMPATIBLE_SERVER_VERSION";
 
+  /**
+   * The code of the error reported for a request that has been superseded by a newer request of
+   * the same kind before the server responded to it.
+   */
+  public static final String REQUEST_SUPERSEDED = "REQUEST_SUPERSEDED";
+
   /**
    * Return a new error response with the given id, code and message.
    */
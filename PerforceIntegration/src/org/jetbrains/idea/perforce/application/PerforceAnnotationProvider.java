@@ -72,7 +72,12 @@ public class PerforceAnnotationProvider implements AnnotationProviderEx {
     String pathAtRevision = p4Revision == null ? path : p4Revision.getDepotPath();
     long revision = p4Revision == null ? -1 : p4Revision.getRevisionNumber();
 
-    final AnnotationInfo annotationInfo = myRunner.annotate(connection, pathAtRevision, revision);
+    // the head revision is annotated by default; it's specified explicitly, so that the cached annotation can be used
+    P4Revision annotatedRevision = p4Revision == null && changeNumber == -1 && fileLog.length > 0 ? fileLog[0] : p4Revision;
+    final AnnotationInfo annotationInfo = annotatedRevision == null
+                                          ? myRunner.annotate(connection, pathAtRevision, revision)
+                                          : myRunner.annotate(connection, annotatedRevision.getDepotPath(),
+                                                              annotatedRevision.getRevisionNumber());
     return new AnnotationPrecursor(annotationInfo, fileLog, revision, p4Revision, connection);
   }
 
@@ -1,12 +1,18 @@
 package org.jetbrains.idea.perforce.application;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.AccessToken;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.SensitiveProgressWrapper;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.ThrowableComputable;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FilePath;
@@ -16,22 +22,29 @@ import com.intellij.openapi.vcs.changes.*;
 import com.intellij.openapi.vfs.VFileProperty;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.SystemProperties;
+import com.intellij.util.ThrowableConvertor;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.vcsUtil.VcsUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.idea.perforce.perforce.*;
+import org.jetbrains.idea.perforce.perforce.connections.AbstractP4Connection;
 import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
 import org.jetbrains.idea.perforce.perforce.connections.PerforceConnectionManager;
 import org.jetbrains.idea.perforce.perforce.connections.PerforceConnectionManagerI;
 
 import java.io.File;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
 
 public class PerforceChangeProvider implements ChangeProvider {
   private static final Logger LOG = Logger.getInstance(PerforceChangeProvider.class);
+  private static final int MAX_PARALLEL_CONNECTIONS =
+    Math.max(1, SystemProperties.getIntProperty("perforce.changes.parallel.connections", 4));
+  private static final ExecutorService ourConnectionExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Perforce Changes Collector", MAX_PARALLEL_CONNECTIONS);
 
   private final Project myProject;
   private final PerforceRunner myRunner;
@@ -41,6 +54,7 @@ public class PerforceChangeProvider implements ChangeProvider {
   private final Map<VirtualFile, Boolean> myAlwaysWritable = new ConcurrentHashMap<>();
   private final PerforceShelf myShelf;
   private final PerforceVcs myVcs;
+  private final PerforceFStatCache myFStatCache;
 
   public PerforceChangeProvider(final PerforceVcs vcs) {
     myVcs = vcs;
@@ -50,6 +64,7 @@ public class PerforceChangeProvider implements ChangeProvider {
     mySynchronizer = PerforceNumberNameSynchronizer.getInstance(myProject);
     myPerforceReadOnlyFileStateManager = new PerforceReadOnlyFileStateManager(myProject);
     myShelf = PerforceManager.getInstance(myProject).getShelf();
+    myFStatCache = PerforceFStatCache.getInstance(myProject);
   }
 
   public void activate(@NotNull Disposable parentDisposable) {
@@ -69,24 +84,33 @@ public class PerforceChangeProvider implements ChangeProvider {
                             @NotNull ProgressIndicator progress,
                             @NotNull ChangeListManagerGate addGate) throws VcsException {
     logDebug("getting changes for scope " + dirtyScope);
+    final long startedProcesses = AbstractP4Connection.getStartedProcessCount();
 
     myLastSuccessfulUpdateTracker.updateStarted();
     myShelf.clearShelf();
     PerforceManager.getInstance(myProject).clearInfoClientCache();
 
     PerforceChangeCache changeCache = new PerforceChangeCache(myProject);
-    MultiMap<ConnectionKey, PerforceChangeList> allLists = calcChangeListMap(changeCache);
+    MultiMap<ConnectionKey, PerforceChangeList> allLists = calcChangeListMap(changeCache, progress);
     refreshSynchronizer(addGate, allLists);
 
     ChangeCreator creator = new ChangeCreator(myProject);
 
     final Map<ConnectionKey, P4Connection> key2connection = PerforceSettings.getSettings(myProject).getConnectionsByKeys();
     MultiMap<ConnectionKey, VirtualFile> roots = getAffectedRoots(dirtyScope);
+    final List<P4Connection> connections = new ArrayList<>();
     for (ConnectionKey key : roots.keySet()) {
-      P4Connection connection = key2connection.get(key);
-      if (connection != null) {
-        processConnection(connection, builder, roots.get(key), progress, addGate, allLists.get(key), dirtyScope, changeCache, creator);
-      }
+      ContainerUtil.addIfNotNull(connections, key2connection.get(key));
+    }
+
+    // the server round trips of different connections are done in parallel, but the changes are reported one connection after another
+    final List<ConnectionChanges> allChanges = collectInParallel(connections, progress, connection -> {
+      ConnectionKey key = connection.getConnectionKey();
+      return timed("collecting changes of " + key,
+                   () -> collectChanges(connection, roots.get(key), progress, allLists.get(key), dirtyScope, changeCache));
+    });
+    for (ConnectionChanges changes : allChanges) {
+      reportChanges(changes, builder, addGate, creator);
     }
 
     myPerforceReadOnlyFileStateManager.getChanges(dirtyScope, builder, progress, addGate);
@@ -100,6 +124,9 @@ public class PerforceChangeProvider implements ChangeProvider {
     }
     reportModifiedWithoutCheckout(builder, creator, writableFiles);
     myLastSuccessfulUpdateTracker.updateSuccessful();
+
+    // counts processes of all p4 commands run meanwhile, including the ones not related to the refresh
+    logDebug("p4 processes started while getting changes: " + (AbstractP4Connection.getStartedProcessCount() - startedProcesses));
   }
 
   private void reportModifiedWithoutCheckout(ChangelistBuilder builder, ChangeCreator creator, Set<VirtualFile> writableFiles) throws VcsException {
@@ -194,16 +221,148 @@ public class PerforceChangeProvider implements ChangeProvider {
     return ContainerUtil.or(allRoots, root -> !pcl.getChangesUnder(root).isEmpty());
   }
 
-  private MultiMap<ConnectionKey, PerforceChangeList> calcChangeListMap(PerforceChangeCache changeCache) throws VcsException {
-    final MultiMap<ConnectionKey, PerforceChangeList> allLists = MultiMap.create();
-    for (Pair<P4Connection, Collection<VirtualFile>> pair : PerforceVcs.getInstance(myProject).getRootsByConnections()) {
+  private MultiMap<ConnectionKey, PerforceChangeList> calcChangeListMap(PerforceChangeCache changeCache, ProgressIndicator progress)
+    throws VcsException {
+    final List<Pair<P4Connection, Collection<VirtualFile>>> rootsByConnections =
+      new ArrayList<>(PerforceVcs.getInstance(myProject).getRootsByConnections());
+    final List<List<PerforceChangeList>> pendingLists = collectInParallel(rootsByConnections, progress, pair -> {
       final P4Connection connection = pair.first;
-      PerforceManager.ensureValidClient(myProject, connection);
-      allLists.putValues(connection.getConnectionKey(), getPendingChangeListsUnderRoots(changeCache, connection, pair.second));
+      return timed("getting change lists of " + connection.getConnectionKey(), () -> {
+        PerforceManager.ensureValidClient(myProject, connection);
+        return getPendingChangeListsUnderRoots(changeCache, connection, pair.second);
+      });
+    });
+
+    final MultiMap<ConnectionKey, PerforceChangeList> allLists = MultiMap.create();
+    final Map<ConnectionKey, P4Connection> connections = new LinkedHashMap<>();
+    for (int i = 0; i < rootsByConnections.size(); i++) {
+      final P4Connection connection = rootsByConnections.get(i).first;
+      allLists.putValues(connection.getConnectionKey(), pendingLists.get(i));
+      connections.putIfAbsent(connection.getConnectionKey(), connection);
+    }
+
+    if (PerforceFStatCache.isEnabled()) {
+      collectInParallel(new ArrayList<>(connections.values()), progress, connection -> {
+        revalidateFStatCache(connection, changeCache, allLists.get(connection.getConnectionKey()));
+        return null;
+      });
     }
     return allLists;
   }
 
+  /**
+   * Calls {@code task} for each of {@code items}, on pooled threads if there are several of them, at most
+   * {@code perforce.changes.parallel.connections} at a time, so that the refresh of workspaces on different servers takes as long as
+   * the slowest of them rather than the sum of their latencies.
+   *
+   * @return the results in the order of {@code items}
+   */
+  @VisibleForTesting
+  static <T, R> List<R> collectInParallel(List<? extends T> items,
+                                          ProgressIndicator progress,
+                                          ThrowableConvertor<? super T, ? extends R, VcsException> task) throws VcsException {
+    final List<R> result = new ArrayList<>(items.size());
+    if (items.size() <= 1 || MAX_PARALLEL_CONNECTIONS == 1) {
+      for (T item : items) {
+        progress.checkCanceled();
+        result.add(task.convert(item));
+      }
+      return result;
+    }
+
+    // cancelled when the results aren't needed anymore, so that the running tasks stop before their next p4 call
+    final ProgressIndicator taskProgress = new SensitiveProgressWrapper(progress);
+    final List<Future<R>> futures = new ArrayList<>(items.size());
+    try {
+      for (T item : items) {
+        futures.add(ourConnectionExecutor.submit(() -> {
+          final Ref<R> itemResult = new Ref<>();
+          final Ref<VcsException> exception = new Ref<>();
+          ProgressManager.getInstance().executeProcessUnderProgress(() -> {
+            try {
+              itemResult.set(task.convert(item));
+            }
+            catch (VcsException e) {
+              exception.set(e);
+            }
+          }, taskProgress);
+          if (!exception.isNull()) {
+            throw exception.get();
+          }
+          return itemResult.get();
+        }));
+      }
+      for (Future<R> future : futures) {
+        result.add(awaitResult(future, progress));
+      }
+      return result;
+    }
+    finally {
+      // the remaining tasks aren't needed after an error or cancellation
+      taskProgress.cancel();
+      for (Future<R> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private static <R> R awaitResult(Future<R> future, ProgressIndicator progress) throws VcsException {
+    while (true) {
+      progress.checkCanceled();
+      try {
+        return future.get(10, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) {
+      }
+      catch (InterruptedException e) {
+        throw new ProcessCanceledException(e);
+      }
+      catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof VcsException) throw (VcsException)cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+        if (cause instanceof Error) throw (Error)cause;
+        throw new VcsException(cause);
+      }
+    }
+  }
+
+  private static <T> T timed(String activity, ThrowableComputable<T, VcsException> computable) throws VcsException {
+    final long start = System.currentTimeMillis();
+    try {
+      return computable.compute();
+    }
+    finally {
+      logDebug(activity + " took " + (System.currentTimeMillis() - start) + " ms");
+    }
+  }
+
+  private void revalidateFStatCache(P4Connection connection, PerforceChangeCache changeCache, Collection<PerforceChangeList> lists)
+    throws VcsException {
+    final List<String> openedPaths = new ArrayList<>();
+    final List<PerforceChange> opened = new ArrayList<>(changeCache.getChanges(connection, -1, null));
+    for (PerforceChangeList list : lists) {
+      opened.addAll(changeCache.getChanges(connection, list.getNumber(), null));
+    }
+    for (PerforceChange change : opened) {
+      File file = change.getFile();
+      if (file != null) {
+        openedPaths.add(file.getPath());
+      }
+    }
+
+    final long lastChangeNumber;
+    try {
+      lastChangeNumber = myRunner.getLastSubmittedChangeNumber(connection);
+    }
+    catch (VcsException e) {
+      // the cached data of the connection stays unused until the last submitted change can be read
+      LOG.info("Cannot read the last submitted change of " + connection.getConnectionKey(), e);
+      return;
+    }
+    myFStatCache.revalidate(connection.getConnectionKey(), lastChangeNumber, openedPaths);
+  }
+
   private List<PerforceChangeList> getPendingChangeListsUnderRoots(PerforceChangeCache changeCache, P4Connection connection, Collection<VirtualFile> allRoots) throws VcsException {
     List<PerforceChangeList> perforceLists = myRunner.getPendingChangeLists(connection, changeCache);
     if (perforceLists.isEmpty()) return perforceLists;
@@ -253,14 +412,12 @@ public class PerforceChangeProvider implements ChangeProvider {
     mySynchronizer.removeNonexistentKeys(allLists.keySet());
   }
 
-  private void processConnection(@NotNull final P4Connection connection,
-                                 final ChangelistBuilder builder,
-                                 final Collection<VirtualFile> roots,
-                                 final ProgressIndicator progress,
-                                 final ChangeListManagerGate addGate,
-                                 final Collection<PerforceChangeList> allLists,
-                                 final VcsDirtyScope dirtyScope,
-                                 PerforceChangeCache changeCache, ChangeCreator changeCreator) throws VcsException {
+  private ConnectionChanges collectChanges(@NotNull final P4Connection connection,
+                                          final Collection<VirtualFile> roots,
+                                          final ProgressIndicator progress,
+                                          final Collection<PerforceChangeList> allLists,
+                                          final VcsDirtyScope dirtyScope,
+                                          PerforceChangeCache changeCache) throws VcsException {
     progress.checkCanceled();
 
     final LocalPathsSet resolvedWithConflictsMap = myRunner.getResolvedWithConflictsMap(connection, roots);
@@ -270,13 +427,37 @@ public class PerforceChangeProvider implements ChangeProvider {
     for (VirtualFile root : roots) {
       changes.addAll(getChangesUnder(connection, root, dirtyScope, allLists, changeCache));
     }
+    return new ConnectionChanges(connection, resolvedWithConflictsMap, resolvedFilesWrapper, changes);
+  }
 
-    final PerforceChangeListCalculator changeListCalculator = new PerforceChangeListCalculator(myProject, connection, addGate);
+  private void reportChanges(ConnectionChanges changes, ChangelistBuilder builder, ChangeListManagerGate addGate, ChangeCreator changeCreator)
+    throws VcsException {
+    final PerforceChangeListCalculator changeListCalculator = new PerforceChangeListCalculator(myProject, changes.connection, addGate);
 
     final OpenedResultProcessor processor =
-      new OpenedResultProcessor(connection, changeCreator, builder, resolvedWithConflictsMap, resolvedFilesWrapper,
+      new OpenedResultProcessor(changes.connection, changeCreator, builder, changes.resolvedWithConflictsMap, changes.resolvedFilesWrapper,
                                 changeListCalculator);
-    processor.process(changes);
+    processor.process(changes.changes);
+  }
+
+  /**
+   * Opened files of a connection collected from the server, to be reported to the {@link ChangelistBuilder}
+   */
+  private static final class ConnectionChanges {
+    private final P4Connection connection;
+    private final LocalPathsSet resolvedWithConflictsMap;
+    private final ResolvedFilesWrapper resolvedFilesWrapper;
+    private final List<PerforceChange> changes;
+
+    private ConnectionChanges(P4Connection connection,
+                              LocalPathsSet resolvedWithConflictsMap,
+                              ResolvedFilesWrapper resolvedFilesWrapper,
+                              List<PerforceChange> changes) {
+      this.connection = connection;
+      this.resolvedWithConflictsMap = resolvedWithConflictsMap;
+      this.resolvedFilesWrapper = resolvedFilesWrapper;
+      this.changes = changes;
+    }
   }
 
   @Override
@@ -146,6 +146,7 @@ public class PerforceCommittedChangesProvider implements CachingCommittedChanges
       final List<PerforceChangeList> changeListList = myRunner
         .getSubmittedChangeLists(client, user, P4File.create(new File(url)), settings, maxCount, p4Settings.SHOW_INTEGRATED_IN_COMMITTED_CHANGES);
       settings.filterChanges(changeLists);
+      PerforceSubmittedChangesCache.getInstance(myProject).prefetch(changeListList);
       for (PerforceChangeList changeList : changeListList) {
         consumer.consume(changeList);
       }
@@ -173,6 +174,8 @@ public class PerforceCommittedChangesProvider implements CachingCommittedChanges
     LOG.debug("Changelists from Perforce: " + changeLists.size());
     settings.filterChanges(changeLists);
     LOG.debug("Changelists after filtering: " + changeLists.size());
+    // the lists are going to be cached with their files, so describe them in batches rather than one by one
+    PerforceSubmittedChangesCache.getInstance(myProject).load(changeLists);
     return changeLists;
   }
 
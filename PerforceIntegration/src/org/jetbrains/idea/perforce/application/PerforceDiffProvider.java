@@ -54,7 +54,7 @@ public class PerforceDiffProvider extends DiffProviderEx implements DiffMixin {
     }
     try {
       Map<VirtualFile, VcsRevisionNumber> result = new LinkedHashMap<>();
-      Map<P4File, FStat> fStatMap = PerforceRunner.getInstance(myProject).fstatBulk(new ArrayList<>(p4Files.values()));
+      Map<P4File, FStat> fStatMap = PerforceRunner.getInstance(myProject).fstatBulk(new ArrayList<>(p4Files.values()), true);
       for (VirtualFile file : files) {
         FStat fStat = fStatMap.get(p4Files.get(file));
         result.put(file, PerforceVcsRevisionNumber.createFromFStat(fStat));
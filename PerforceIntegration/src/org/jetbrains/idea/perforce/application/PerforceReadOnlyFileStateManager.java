@@ -17,6 +17,7 @@ import com.intellij.openapi.vfs.*;
 import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.vcsUtil.VcsUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.idea.perforce.perforce.PerforceFStatCache;
 import org.jetbrains.idea.perforce.perforce.PerforceSettings;
 
 import java.io.File;
@@ -29,6 +30,7 @@ public final class PerforceReadOnlyFileStateManager {
   private final Project myProject;
   private final ProjectLevelVcsManager myVcsManager;
   private final PerforceUnversionedTracker myUnversionedTracker;
+  private final PerforceFStatCache myFStatCache;
   private final Object myLock = new Object();
   private final FrameStateListener myFrameStateListener = new FrameStateListener() {
     @Override
@@ -45,6 +47,7 @@ public final class PerforceReadOnlyFileStateManager {
     myProject = project;
     myVcsManager = ProjectLevelVcsManager.getInstance(myProject);
     myUnversionedTracker = new PerforceUnversionedTracker(project);
+    myFStatCache = PerforceFStatCache.getInstance(project);
   }
 
   PerforceUnversionedTracker getUnversionedTracker() {
@@ -196,6 +199,8 @@ public final class PerforceReadOnlyFileStateManager {
     public void propertyChanged(@NotNull VirtualFilePropertyEvent event) {
       VirtualFile file = event.getFile();
       if (fileIsUnderP4Root(file) && VirtualFile.PROP_WRITABLE.equals(event.getPropertyName())) {
+        // e.g. opened or reverted outside the IDE
+        myFStatCache.invalidate(file.getPath(), false);
         myUnversionedTracker.reportRecheck(file);
       }
     }
@@ -215,6 +220,7 @@ public final class PerforceReadOnlyFileStateManager {
     }
 
     private void processCreated(VirtualFile root) {
+      myFStatCache.invalidate(root.getPath(), root.isDirectory());
       myUnversionedTracker.reportRecheck(root);
     }
 
@@ -233,12 +239,14 @@ public final class PerforceReadOnlyFileStateManager {
     @Override
     public void beforeFileDeletion(@NotNull VirtualFileEvent event) {
       if (!fileIsUnderP4Root(event.getFile())) return;
+      myFStatCache.invalidate(event.getFile().getPath(), event.getFile().isDirectory());
       myUnversionedTracker.reportDelete(event.getFile());
     }
 
     @Override
     public void beforeFileMovement(@NotNull VirtualFileMoveEvent event) {
       if (!fileIsUnderP4Root(event.getFile())) return;
+      myFStatCache.invalidate(event.getFile().getPath(), event.getFile().isDirectory());
       myUnversionedTracker.reportDelete(event.getFile());
     }
   }
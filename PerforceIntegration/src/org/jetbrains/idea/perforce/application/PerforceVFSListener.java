@@ -53,12 +53,14 @@ public final class PerforceVFSListener extends VcsVFSListener {
     myProject.getMessageBus().connect(myProject).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
       @Override
       public void after(@NotNull List<? extends @NotNull VFileEvent> events) {
+        PerforceVersionedFilesCache versionedFiles = PerforceVersionedFilesCache.getInstance(myProject);
         for (VFileEvent event : events) {
           if (event instanceof VFileCreateEvent) {
             if (!(event.getFileSystem() instanceof LocalFileSystem)) continue;
             FilePath filePath = VcsUtil.getFilePath(event.getPath());
             if (!isUnderMyVcs(filePath)) continue; //call event.getFile() only for the file path under Perforce VCS
 
+            versionedFiles.invalidate(event.getPath(), ((VFileCreateEvent)event).isDirectory());
             VirtualFile file = event.getFile();
             if (file != null) {
               LastUnchangedContentTracker.markTouched(file);
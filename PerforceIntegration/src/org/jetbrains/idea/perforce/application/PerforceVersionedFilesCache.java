@@ -0,0 +1,295 @@
+package org.jetbrains.idea.perforce.application;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SystemInfoRt;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.util.SystemProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Local paths of the files which were in the have list of the client (i.e. synced to the workspace) when they were last checked
+ * with {@code p4 have}, kept between IDE restarts. They allow {@link UnversionedScopeScanner} to ask the server only about the files
+ * it hasn't seen before, instead of running {@code p4 have} over all roots on each total rescan.<p/>
+ *
+ * The data of a connection is complete only if it was collected by a total rescan, so incremental scans update only connections
+ * which already have data. All paths of a connection are dropped when the IDE runs a command changing the have list, like {@code p4 sync},
+ * and paths of files created anew (e.g. restored by a build tool) are removed on VFS events, so that they're checked again.
+ * Changes of the have list made from the command line, like {@code p4 flush #0}, are detected by a total rescan, which compares
+ * the number of files in the have list with the one stored with the data (see {@link #isValid}).
+ * Files synced from the command line are found anyway: new local files aren't in the set and are checked,
+ * and known files missing locally are checked before they're reported as deleted.<p/>
+ *
+ * Paths are kept sorted, so that the paths under a directory are found and removed as a range.
+ */
+@Service
+public final class PerforceVersionedFilesCache implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PerforceVersionedFilesCache.class);
+
+  private static final int VERSION = 2;
+  private static final Set<String> HAVE_LIST_COMMANDS = Set.of("sync", "flush", "update", "clean", "client", "workspace");
+
+  private final File myCacheFile;
+  private final Object myLock = new Object();
+  // null until the cache is loaded from disk on the first access
+  private Map<ConnectionKey, ConnectionData> myConnections;
+  private boolean myModified;
+
+  public static PerforceVersionedFilesCache getInstance(@NotNull Project project) {
+    return project.getService(PerforceVersionedFilesCache.class);
+  }
+
+  public PerforceVersionedFilesCache(@NotNull Project project) {
+    this(new File(PathManager.getSystemPath(), "perforce/versioned/" + project.getLocationHash()));
+  }
+
+  @TestOnly
+  PerforceVersionedFilesCache(@NotNull File cacheFile) {
+    myCacheFile = cacheFile;
+  }
+
+  public static boolean isEnabled() {
+    return SystemProperties.getBooleanProperty("perforce.versioned.files.cache.enabled", true);
+  }
+
+  /**
+   * @param haveListSize the number of files in the have list of the client, or -1 if it's unknown
+   * @return whether all versioned files of the connection are known, i.e. a total rescan has been done since the data was last dropped,
+   * and the have list had the given number of files then
+   */
+  boolean isValid(@NotNull ConnectionKey connectionKey, long haveListSize) {
+    synchronized (myLock) {
+      ensureLoaded();
+      ConnectionData data = myConnections.get(connectionKey);
+      return data != null && haveListSize >= 0 && data.haveListSize == haveListSize;
+    }
+  }
+
+  /**
+   * Stores the number of files in the have list of the client, which the complete data of the connection corresponds to
+   */
+  void setHaveListSize(@NotNull ConnectionKey connectionKey, long haveListSize) {
+    synchronized (myLock) {
+      ensureLoaded();
+      ConnectionData data = myConnections.get(connectionKey);
+      if (data != null && data.haveListSize != haveListSize) {
+        data.haveListSize = haveListSize;
+        myModified = true;
+      }
+    }
+  }
+
+  boolean contains(@NotNull ConnectionKey connectionKey, @NotNull String localPath) {
+    synchronized (myLock) {
+      ensureLoaded();
+      ConnectionData data = myConnections.get(connectionKey);
+      return data != null && data.paths.contains(getKey(localPath));
+    }
+  }
+
+  /**
+   * @return known versioned paths under the given directories (recursively) or equal to the given file paths
+   */
+  @NotNull
+  List<String> getPathsUnder(@NotNull ConnectionKey connectionKey, @NotNull Collection<FilePath> roots) {
+    synchronized (myLock) {
+      ensureLoaded();
+      ConnectionData data = myConnections.get(connectionKey);
+      if (data == null) return Collections.emptyList();
+
+      // a set, since the roots may be nested
+      Set<String> result = new LinkedHashSet<>();
+      for (FilePath root : roots) {
+        String key = getKey(root.getPath());
+        if (data.paths.contains(key)) {
+          result.add(key);
+        }
+        if (root.isDirectory()) {
+          result.addAll(getPathsUnder(data.paths, key));
+        }
+      }
+      return new ArrayList<>(result);
+    }
+  }
+
+  /**
+   * @return a live view of the paths under the given directory, not including the directory itself
+   */
+  @NotNull
+  private static NavigableSet<String> getPathsUnder(@NotNull NavigableSet<String> paths, @NotNull String dir) {
+    String prefix = StringUtil.endsWithChar(dir, '/') ? dir : dir + "/";
+    return paths.subSet(prefix, false, prefix + Character.MAX_VALUE, false);
+  }
+
+  /**
+   * Replaces the known versioned paths under the given roots with the result of {@code p4 have} for these roots.
+   *
+   * @param complete whether the roots are all roots of the connection, so that the connection data becomes complete if it wasn't
+   */
+  void replaceUnder(@NotNull ConnectionKey connectionKey,
+                    @NotNull Collection<FilePath> roots,
+                    @NotNull Collection<String> versionedPaths,
+                    boolean complete) {
+    synchronized (myLock) {
+      ensureLoaded();
+      ConnectionData data = complete ? myConnections.computeIfAbsent(connectionKey, __ -> new ConnectionData()) : myConnections.get(connectionKey);
+      if (data == null) return;
+
+      getPathsUnder(connectionKey, roots).forEach(data.paths::remove);
+      for (String path : versionedPaths) {
+        data.paths.add(getKey(path));
+      }
+      myModified = true;
+    }
+  }
+
+  /**
+   * @param checkedPaths   paths passed to {@code p4 have}
+   * @param versionedPaths paths reported by {@code p4 have}
+   */
+  void update(@NotNull ConnectionKey connectionKey, @NotNull Collection<String> checkedPaths, @NotNull Collection<String> versionedPaths) {
+    synchronized (myLock) {
+      ensureLoaded();
+      ConnectionData data = myConnections.get(connectionKey);
+      if (data == null) return;
+
+      for (String path : checkedPaths) {
+        data.paths.remove(getKey(path));
+      }
+      for (String path : versionedPaths) {
+        data.paths.add(getKey(path));
+      }
+      myModified = true;
+    }
+  }
+
+  /**
+   * Removes the path in all connections, so that the file is checked by the next scan instead of being considered versioned.
+   *
+   * @param recursive whether all paths under the given one should be removed as well
+   */
+  public void invalidate(@NotNull String localPath, boolean recursive) {
+    String key = getKey(localPath);
+    synchronized (myLock) {
+      if (myConnections == null) return;
+
+      for (ConnectionData data : myConnections.values()) {
+        if (data.paths.remove(key)) {
+          myModified = true;
+        }
+        if (recursive) {
+          NavigableSet<String> under = getPathsUnder(data.paths, key);
+          if (!under.isEmpty()) {
+            under.clear();
+            myModified = true;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops all data of the connection if the p4 command executed by the IDE might have changed its have list.
+   */
+  public void commandExecuted(@NotNull P4Connection connection, @NotNull String[] p4cmd) {
+    // checked first, since connections used for commands like "p4 -V" or "p4 set" have no connection key
+    if (p4cmd.length == 0 || !HAVE_LIST_COMMANDS.contains(p4cmd[0])) return;
+
+    synchronized (myLock) {
+      if (myConnections != null && myConnections.remove(connection.getConnectionKey()) != null) {
+        myModified = true;
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized (myLock) {
+      if (myConnections == null || myConnections.isEmpty()) return;
+
+      myConnections.clear();
+      myModified = true;
+    }
+  }
+
+  // paths are kept as they are, since they're passed back to p4, and the server may be case-sensitive
+  @NotNull
+  private static String getKey(@NotNull String path) {
+    return FileUtil.toSystemIndependentName(path);
+  }
+
+  private void ensureLoaded() {
+    if (myConnections != null) return;
+
+    myConnections = new HashMap<>();
+    if (!myCacheFile.isFile()) return;
+
+    try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(myCacheFile)))) {
+      if (stream.readInt() != VERSION) return;
+
+      int connectionCount = stream.readInt();
+      for (int i = 0; i < connectionCount; i++) {
+        ConnectionKey key = new ConnectionKey(stream.readUTF(), stream.readUTF(), stream.readUTF());
+        ConnectionData data = new ConnectionData();
+        data.haveListSize = stream.readLong();
+        int pathCount = stream.readInt();
+        for (int j = 0; j < pathCount; j++) {
+          data.paths.add(stream.readUTF());
+        }
+        myConnections.put(key, data);
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.info("Failed to load versioned files from " + myCacheFile, e);
+      myConnections.clear();
+    }
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (myLock) {
+      if (myConnections == null || !myModified) return;
+
+      try {
+        FileUtil.createParentDirs(myCacheFile);
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myCacheFile)))) {
+          stream.writeInt(VERSION);
+          stream.writeInt(myConnections.size());
+          for (Map.Entry<ConnectionKey, ConnectionData> entry : myConnections.entrySet()) {
+            ConnectionKey key = entry.getKey();
+            stream.writeUTF(key.getServer());
+            stream.writeUTF(key.getClient());
+            stream.writeUTF(key.getUser());
+            ConnectionData data = entry.getValue();
+            stream.writeLong(data.haveListSize);
+            stream.writeInt(data.paths.size());
+            for (String path : data.paths) {
+              stream.writeUTF(path);
+            }
+          }
+        }
+        myModified = false;
+      }
+      catch (IOException e) {
+        LOG.info("Failed to save versioned files to " + myCacheFile, e);
+        FileUtil.delete(myCacheFile);
+      }
+    }
+  }
+
+  private static final class ConnectionData {
+    // on a case-insensitive file system, paths differing only in case are the same file
+    private final NavigableSet<String> paths =
+      new TreeSet<>(SystemInfoRt.isFileSystemCaseSensitive ? Comparator.<String>naturalOrder() : String.CASE_INSENSITIVE_ORDER);
+    private long haveListSize = -1;
+  }
+}
@@ -12,6 +12,7 @@ import com.intellij.openapi.vcs.changes.VcsDirtyScopeImpl;
 import com.intellij.openapi.vcs.changes.VcsIgnoreManager;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.vcsUtil.VcsUtil;
 import org.jetbrains.idea.perforce.perforce.P4HaveParser;
@@ -28,12 +29,16 @@ import java.util.*;
  */
 public abstract class UnversionedScopeScanner {
   private static final Logger LOG = Logger.getInstance(UnversionedScopeScanner.class);
+  // above this number of files a recursive "p4 have" over the scope is cheaper than asking about each file
+  private static final int MAX_INCREMENTAL_CHECK_SIZE = 5000;
   private final Project myProject;
   private final PerforceRunner myRunner;
+  private final PerforceVersionedFilesCache myVersionedFiles;
 
   public UnversionedScopeScanner(final Project project) {
     myProject = project;
     myRunner = PerforceRunner.getInstance(myProject);
+    myVersionedFiles = PerforceVersionedFilesCache.getInstance(myProject);
   }
 
   protected abstract void checkCanceled();
@@ -54,36 +59,30 @@ public abstract class UnversionedScopeScanner {
       result.allLocalFiles.addAll(localFiles);
       checkCanceled();
 
-      final LocalFileSystem fs = LocalFileSystem.getInstance();
-      myRunner.haveMultiple(collectPaths(files), connection, new P4HaveParser(PerforceManager.getInstance(myProject)) {
-        @Override
-        public void consumeRevision(String path, long revision) {
-          checkCanceled();
-
-          VirtualFile vFile = findVirtualFile(path);
-          if (vFile != null) {
-            localFiles.remove(vFile);
-          }
-          else {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("locally missing file reported: " + path);
-            }
-            result.missingFiles.add(path);
-          }
-        }
-
-        private VirtualFile findVirtualFile(String path) {
-          VirtualFile vFile = fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(path));
-          if (vFile != null) {
-            return vFile;
-          }
-
-          // see https://youtrack.jetbrains.com/issue/IDEA-39796
-          File ioFile = new File(path);
-          String appleForkPath = FileUtil.toSystemIndependentName(ioFile.getParent()) + "/%" + ioFile.getName();
-          return fs.findFileByPathIfCached(FileUtil.toSystemIndependentName(appleForkPath));
+      final ConnectionKey key = connection.getConnectionKey();
+      final List<String> versionedPaths = new ArrayList<>();
+      final HaveParser parser = new HaveParser(localFiles, result, versionedPaths);
+      if (!PerforceVersionedFilesCache.isEnabled()) {
+        myRunner.haveMultiple(collectPaths(files), connection, parser);
+      }
+      else if (force) {
+        // taken before the scan, so that a concurrent change of the have list is detected by the next one
+        final long haveListSize = myRunner.getHaveListSize(connection);
+        checkCanceled();
+        // the data is complete only if the have list hasn't been changed outside of the IDE, e.g. by "p4 flush #0" from the command line
+        if (!myVersionedFiles.isValid(key, haveListSize) ||
+            !rescanIncrementally(connection, files, localFiles, parser, versionedPaths)) {
+          myRunner.haveMultiple(collectPaths(files), connection, parser);
+          // a total rescan covers all roots of the connection
+          myVersionedFiles.replaceUnder(key, files, versionedPaths, true);
         }
-      });
+        myVersionedFiles.setHaveListSize(key, haveListSize);
+      }
+      else {
+        myRunner.haveMultiple(collectPaths(files), connection, parser);
+        // the data of a partial rescan is useful only if there's data already
+        myVersionedFiles.replaceUnder(key, files, versionedPaths, false);
+      }
       checkCanceled();
 
       if (force) {
@@ -105,6 +104,55 @@ public abstract class UnversionedScopeScanner {
     return result;
   }
 
+  /**
+   * Asks p4 only about the local files which aren't known to be versioned, and about the known versioned files which are missing locally.
+   *
+   * @return false if there are too many such files, so that a {@code p4 have} over the whole scope is faster
+   */
+  private boolean rescanIncrementally(P4Connection connection,
+                                      Collection<FilePath> scope,
+                                      Set<VirtualFile> localFiles,
+                                      HaveParser parser,
+                                      List<String> versionedPaths) throws VcsException {
+    final ConnectionKey key = connection.getConnectionKey();
+    final List<FilePath> toCheck = new ArrayList<>();
+    final List<VirtualFile> known = new ArrayList<>();
+    final Set<String> localPaths = new HashSet<>();
+    for (VirtualFile file : localFiles) {
+      localPaths.add(file.getPath());
+      if (myVersionedFiles.contains(key, file.getPath())) {
+        known.add(file);
+      }
+      else {
+        toCheck.add(VcsUtil.getFilePath(file));
+      }
+    }
+    checkCanceled();
+
+    for (String path : myVersionedFiles.getPathsUnder(key, scope)) {
+      // potentially ignored files aren't enumerated, so the file system is checked as well
+      if (!localPaths.contains(path) && !new File(path).exists()) {
+        toCheck.add(VcsUtil.getFilePath(path, false));
+      }
+    }
+    if (toCheck.size() > MAX_INCREMENTAL_CHECK_SIZE) {
+      LOG.debug("too many files to check incrementally: " + toCheck.size());
+      return false;
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("checking incrementally " + toCheck.size() + " files, " + known.size() + " known versioned");
+    }
+    checkCanceled();
+
+    known.forEach(localFiles::remove);
+
+    final PathsHelper helper = new PathsHelper(PerforceManager.getInstance(myProject));
+    helper.addAllPaths(toCheck);
+    myRunner.haveMultiple(helper, connection, parser);
+    myVersionedFiles.update(key, ContainerUtil.map(toCheck, FilePath::getPath), versionedPaths);
+    return true;
+  }
+
   private PathsHelper collectPaths(Collection<FilePath> value) {
     final PathsHelper helper = new PathsHelper(PerforceManager.getInstance(myProject));
     for (final FilePath dir : value) {
@@ -128,6 +176,52 @@ public abstract class UnversionedScopeScanner {
     return scope;
   }
 
+  /**
+   * Removes the files reported by {@code p4 have} from the local files, and collects the reported files which are missing locally
+   */
+  private final class HaveParser extends P4HaveParser {
+    private final LocalFileSystem myFileSystem = LocalFileSystem.getInstance();
+    private final Set<VirtualFile> myLocalFiles;
+    private final ScanResult myResult;
+    private final List<String> myVersionedPaths;
+
+    private HaveParser(Set<VirtualFile> localFiles, ScanResult result, List<String> versionedPaths) {
+      super(PerforceManager.getInstance(myProject));
+      myLocalFiles = localFiles;
+      myResult = result;
+      myVersionedPaths = versionedPaths;
+    }
+
+    @Override
+    public void consumeRevision(String path, long revision) {
+      checkCanceled();
+
+      myVersionedPaths.add(path);
+      VirtualFile vFile = findVirtualFile(path);
+      if (vFile != null) {
+        myLocalFiles.remove(vFile);
+      }
+      else {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("locally missing file reported: " + path);
+        }
+        myResult.missingFiles.add(path);
+      }
+    }
+
+    private VirtualFile findVirtualFile(String path) {
+      VirtualFile vFile = myFileSystem.findFileByPathIfCached(FileUtil.toSystemIndependentName(path));
+      if (vFile != null) {
+        return vFile;
+      }
+
+      // see https://youtrack.jetbrains.com/issue/IDEA-39796
+      File ioFile = new File(path);
+      String appleForkPath = FileUtil.toSystemIndependentName(ioFile.getParent()) + "/%" + ioFile.getName();
+      return myFileSystem.findFileByPathIfCached(FileUtil.toSystemIndependentName(appleForkPath));
+    }
+  }
+
   static class ScanResult {
     final Set<String> missingFiles = new HashSet<>();
     final List<VirtualFile> localOnly = new ArrayList<>();
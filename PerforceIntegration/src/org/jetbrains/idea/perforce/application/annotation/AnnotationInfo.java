@@ -16,13 +16,14 @@
 package org.jetbrains.idea.perforce.application.annotation;
 
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.io.IOUtil;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.idea.perforce.PerforceBundle;
 
-import java.io.IOException;
-import java.io.LineNumberReader;
-import java.io.StringReader;
+import java.io.*;
 
 public final class AnnotationInfo {
   private final String myContent;
@@ -31,25 +32,32 @@ public final class AnnotationInfo {
   private static final Logger LOG = Logger.getInstance(AnnotationInfo.class);
 
   public AnnotationInfo(String output, boolean useChangelistNumbers) throws IOException, VcsException {
+    this(new BufferedReader(new StringReader(output)), useChangelistNumbers);
+  }
+
+  /**
+   * Reads {@code p4 annotate -q} output line by line, so that it's never kept in memory as a whole
+   */
+  public AnnotationInfo(@NotNull BufferedReader reader, boolean useChangelistNumbers) throws IOException, VcsException {
     myUseChangelistNumbers = useChangelistNumbers;
-    //noinspection IOResourceOpenedButNotSafelyClosed
-    final LineNumberReader reader = new LineNumberReader(new StringReader(output));
     String line;
     final StringBuilder content = new StringBuilder();
     final LongArrayList revisions = new LongArrayList();
+    int lineNumber = 0;
     try {
       while ((line = reader.readLine()) != null) {
-        final int endOfRevisionIndex = line.indexOf(":");
+        if (++lineNumber % 1000 == 0) {
+          ProgressManager.checkCanceled();
+        }
+        final int endOfRevisionIndex = line.indexOf(':');
         if (endOfRevisionIndex > 0) {
-          String revision = line.substring(0, endOfRevisionIndex);
-          String contentLine = line.substring(endOfRevisionIndex + 2);
-          content.append(contentLine);
+          content.append(line, Math.min(endOfRevisionIndex + 2, line.length()), line.length());
           content.append("\n");
-          revisions.add(Long.parseLong(revision));
+          revisions.add(Long.parseLong(line, 0, endOfRevisionIndex, 10));
         }
       }
     } catch (NumberFormatException e) {
-      LOG.info("Can not parse annotation output: \n'" + output + "'", e);
+      LOG.info("Can not parse annotation output at line " + lineNumber, e);
       throw new VcsException(PerforceBundle.message("error.can.not.parse.annotation.output"), e);
     }
 
@@ -57,6 +65,32 @@ public final class AnnotationInfo {
     myRevisions = revisions.toLongArray();
   }
 
+  private AnnotationInfo(String content, long[] revisions, boolean useChangelistNumbers) {
+    myContent = content;
+    myRevisions = revisions;
+    myUseChangelistNumbers = useChangelistNumbers;
+  }
+
+  void writeTo(@NotNull DataOutput out) throws IOException {
+    out.writeBoolean(myUseChangelistNumbers);
+    IOUtil.writeString(myContent, out);
+    out.writeInt(myRevisions.length);
+    for (long revision : myRevisions) {
+      out.writeLong(revision);
+    }
+  }
+
+  @NotNull
+  static AnnotationInfo readFrom(@NotNull DataInput in) throws IOException {
+    boolean useChangelistNumbers = in.readBoolean();
+    String content = IOUtil.readString(in);
+    long[] revisions = new long[in.readInt()];
+    for (int i = 0; i < revisions.length; i++) {
+      revisions[i] = in.readLong();
+    }
+    return new AnnotationInfo(content, revisions, useChangelistNumbers);
+  }
+
   public String getContent() {
     return myContent;
   }
@@ -0,0 +1,106 @@
+package org.jetbrains.idea.perforce.application.annotation;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.SystemProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Results of {@code p4 annotate} for exact file revisions, which never change, kept between IDE restarts.
+ * Each annotation is stored in its own file, and only {@code perforce.annotation.cache.size} most recently used ones are kept.
+ */
+@Service
+public final class PerforceAnnotationCache {
+  private static final Logger LOG = Logger.getInstance(PerforceAnnotationCache.class);
+
+  private static final int VERSION = 1;
+  private static final int MAX_SIZE = SystemProperties.getIntProperty("perforce.annotation.cache.size", 100);
+
+  private final File myCacheDir;
+  private final int myMaxSize;
+  private final Object myLock = new Object();
+
+  public static PerforceAnnotationCache getInstance(@NotNull Project project) {
+    return project.getService(PerforceAnnotationCache.class);
+  }
+
+  public PerforceAnnotationCache(@NotNull Project project) {
+    this(new File(PathManager.getSystemPath(), "perforce/annotations/" + project.getLocationHash()), MAX_SIZE);
+  }
+
+  @TestOnly
+  PerforceAnnotationCache(@NotNull File cacheDir, int maxSize) {
+    myCacheDir = cacheDir;
+    myMaxSize = maxSize;
+  }
+
+  /**
+   * @param key identifies the server and the complete annotate command, including the file revision and the options
+   */
+  @Nullable
+  public AnnotationInfo get(@NotNull String key) {
+    synchronized (myLock) {
+      File file = getFile(key);
+      if (!file.isFile()) return null;
+
+      try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        if (stream.readInt() != VERSION || !key.equals(stream.readUTF())) return null;
+
+        AnnotationInfo info = AnnotationInfo.readFrom(stream);
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        return info;
+      }
+      catch (IOException | RuntimeException e) {
+        LOG.info("Failed to load annotation from " + file, e);
+        FileUtil.delete(file);
+        return null;
+      }
+    }
+  }
+
+  public void put(@NotNull String key, @NotNull AnnotationInfo info) {
+    synchronized (myLock) {
+      File file = getFile(key);
+      try {
+        FileUtil.createParentDirs(file);
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+          stream.writeInt(VERSION);
+          stream.writeUTF(key);
+          info.writeTo(stream);
+        }
+      }
+      catch (IOException e) {
+        LOG.info("Failed to save annotation to " + file, e);
+        FileUtil.delete(file);
+        return;
+      }
+      removeLeastRecentlyUsed();
+    }
+  }
+
+  private void removeLeastRecentlyUsed() {
+    File[] files = myCacheDir.listFiles();
+    if (files == null || files.length <= myMaxSize) return;
+
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (int i = 0; i < files.length - myMaxSize; i++) {
+      FileUtil.delete(files[i]);
+    }
+  }
+
+  // the key is also stored in the file, so that hash collisions are detected
+  @NotNull
+  private File getFile(@NotNull String key) {
+    return new File(myCacheDir, Integer.toHexString(key.hashCode()));
+  }
+}
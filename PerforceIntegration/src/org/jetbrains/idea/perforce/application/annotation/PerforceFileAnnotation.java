@@ -24,6 +24,8 @@ import com.intellij.openapi.vcs.annotate.*;
 import com.intellij.openapi.vcs.history.VcsFileRevision;
 import com.intellij.openapi.vcs.history.VcsRevisionNumber;
 import com.intellij.openapi.vfs.VirtualFile;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.PerforceBundle;
@@ -43,6 +45,8 @@ import java.util.List;
 public class PerforceFileAnnotation extends FileAnnotation {
   private final AnnotationInfo myAnnotationInfo;
   private final P4Revision[] myRevisions;
+  // revisions by their change list or revision numbers, depending on what the annotation refers to
+  private final Long2ObjectMap<P4Revision> myRevisionsByNumber = new Long2ObjectOpenHashMap<>();
   private final VirtualFile myFile;
   private final long myRevision;
 
@@ -61,6 +65,11 @@ public class PerforceFileAnnotation extends FileAnnotation {
     myFile = file;
     myRevision = revision;
 
+    for (P4Revision p4Revision : myRevisions) {
+      long number = annotationInfo.isUseChangelistNumbers() ? p4Revision.getChangeNumber() : p4Revision.getRevisionNumber();
+      myRevisionsByNumber.putIfAbsent(number, p4Revision);
+    }
+
     myPerforceRevisions = new ArrayList<>();
     for (P4Revision p4Revision : myRevisions) {
       myPerforceRevisions.add(new PerforceFileRevision(p4Revision, connection, project));
@@ -147,15 +156,7 @@ public class PerforceFileAnnotation extends FileAnnotation {
   public P4Revision findRevisionForLine(final int lineNumber) {
     final long revision = myAnnotationInfo.getRevision(lineNumber);
     if (revision == -1) return null;
-    for (P4Revision p4Revision : myRevisions) {
-      if (myAnnotationInfo.isUseChangelistNumbers()) {
-        if (p4Revision.getChangeNumber() == revision) return p4Revision;
-      }
-      else {
-        if (p4Revision.getRevisionNumber() == revision) return p4Revision;
-      }
-    }
-    return null;
+    return myRevisionsByNumber.get(revision);
   }
 
   @Override
@@ -0,0 +1,251 @@
+package org.jetbrains.idea.perforce.operations;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.xmlb.XmlSerializer;
+import org.jdom.JDOMException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Append-only file of the changes of {@link VcsOperationLog}: each added operation is written as a record with its serialized form,
+ * and each removed one as a record referring to the added one, so that queueing an operation doesn't rewrite all pending operations.
+ * The file is rewritten with only the pending operations when it contains many more records than that,
+ * and is read back on startup with {@link #replay()}. Compaction writes a new file and replaces the old one with it, so a crash leaves
+ * either of them.<p/>
+ *
+ * Not thread-safe, the callers are expected to synchronize.
+ */
+final class VcsOperationJournal implements Closeable {
+  private static final Logger LOG = Logger.getInstance(VcsOperationJournal.class);
+
+  private static final int VERSION = 1;
+  private static final byte ADDED = 1;
+  private static final byte REMOVED = 2;
+  // the operations saved in the workspace state by previous versions have been moved to the journal
+  private static final byte MIGRATED = 3;
+  // the file is compacted when it has more than twice as many records as pending operations, but not for a few operations
+  private static final int MIN_RECORDS_TO_COMPACT = 1000;
+
+  private static final List<Class<? extends VcsOperation>> OPERATION_CLASSES = List.of(
+    P4AddOperation.class, P4CopyOperation.class, P4DeleteOperation.class, P4MoveRenameOperation.class, P4EditOperation.class,
+    P4RevertOperation.class, P4MoveToChangeListOperation.class);
+
+  private final File myFile;
+  // ids of the pending operations in the records
+  private final Map<VcsOperation, Integer> myIds = new IdentityHashMap<>();
+  private int myNextId;
+  private int myRecordCount;
+  private boolean myMigrated;
+  // whether a record has failed to be written, so that the file misses some changes
+  private boolean myIncomplete;
+  @Nullable private DataOutputStream myOutput;
+
+  VcsOperationJournal(@NotNull File file) {
+    myFile = file;
+  }
+
+  /**
+   * @return the pending operations in the order they were added
+   */
+  @NotNull
+  List<VcsOperation> replay() {
+    Map<Integer, VcsOperation> operations = new LinkedHashMap<>();
+    if (myFile.isFile()) {
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(myFile)))) {
+        if (input.readInt() == VERSION) {
+          readRecords(input, operations);
+        }
+      }
+      catch (IOException | JDOMException | RuntimeException e) {
+        // the last record might be incomplete if the IDE has been terminated while writing it, the previous ones are still valid
+        LOG.info("Failed to read offline operations from " + myFile + ", " + operations.size() + " operations are read", e);
+      }
+    }
+
+    List<VcsOperation> result = new ArrayList<>(operations.values());
+    compact(result);
+    return result;
+  }
+
+  private void readRecords(DataInputStream input, Map<Integer, VcsOperation> operations) throws IOException, JDOMException {
+    while (true) {
+      int kind = input.read();
+      if (kind == -1) return;
+
+      if (kind == MIGRATED) {
+        myMigrated = true;
+        continue;
+      }
+
+      int id = input.readInt();
+      if (kind == ADDED) {
+        Class<? extends VcsOperation> operationClass = OPERATION_CLASSES.get(input.readByte());
+        String serialized = IOUtil.readString(input);
+        operations.put(id, XmlSerializer.deserialize(JDOMUtil.load(serialized), operationClass));
+      }
+      else if (kind == REMOVED) {
+        operations.remove(id);
+      }
+      else {
+        throw new IOException("Unknown record kind: " + kind);
+      }
+    }
+  }
+
+  void added(@NotNull VcsOperation operation) {
+    writeRecord(output -> writeAdded(output, operation));
+  }
+
+  private void writeAdded(@NotNull DataOutputStream output, @NotNull VcsOperation operation) throws IOException {
+    int id = myNextId++;
+    myIds.put(operation, id);
+    output.writeByte(ADDED);
+    output.writeInt(id);
+    output.writeByte(OPERATION_CLASSES.indexOf(operation.getClass()));
+    IOUtil.writeString(JDOMUtil.write(XmlSerializer.serialize(operation)), output);
+  }
+
+  void removed(@NotNull VcsOperation operation) {
+    Integer id = myIds.remove(operation);
+    if (id == null) return;
+
+    writeRecord(output -> {
+      output.writeByte(REMOVED);
+      output.writeInt(id);
+    });
+  }
+
+  /**
+   * Writes the buffered records to the file, supposed to be called after each batch of changes.
+   *
+   * @param operations all pending operations, written anew instead of the records if there are too many records;
+   *                   not queried unless the file is compacted, so it may be a view whose size isn't known in constant time
+   */
+  void flush(@NotNull Collection<? extends VcsOperation> operations) {
+    // the written pending operations are counted instead of the given ones, so that a flush without compaction takes constant time
+    if (myIncomplete || myRecordCount > MIN_RECORDS_TO_COMPACT && myRecordCount > 2 * myIds.size()) {
+      compact(operations);
+      return;
+    }
+
+    if (myOutput != null) {
+      try {
+        myOutput.flush();
+      }
+      catch (IOException e) {
+        LOG.info("Failed to write offline operations to " + myFile, e);
+        closeOutput();
+        myIncomplete = true;
+      }
+    }
+  }
+
+  /**
+   * Rewrites the file with only the given pending operations, in the given order.
+   */
+  void compact(@NotNull Collection<? extends VcsOperation> operations) {
+    closeOutput();
+    myIds.clear();
+    myRecordCount = 0;
+    myIncomplete = false;
+
+    File tempFile = new File(myFile.getPath() + ".tmp");
+    try {
+      FileUtil.createParentDirs(tempFile);
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        output.writeInt(VERSION);
+        if (myMigrated) {
+          output.writeByte(MIGRATED);
+        }
+        for (VcsOperation operation : operations) {
+          writeAdded(output, operation);
+          myRecordCount++;
+        }
+      }
+      Files.move(tempFile.toPath(), myFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      // the old file is kept, and the operations are written again by the next flush
+      LOG.info("Failed to write offline operations to " + myFile, e);
+      FileUtil.delete(tempFile);
+      myIncomplete = true;
+    }
+  }
+
+  /**
+   * @return whether the operations saved in the workspace state by previous versions have already been moved to the journal
+   */
+  boolean isMigrated() {
+    return myMigrated;
+  }
+
+  /**
+   * Writes the given pending operations, including the ones taken from the workspace state, together with the mark that
+   * the workspace state has been migrated, so that its operations aren't taken again if the IDE terminates before saving it.
+   */
+  void migrated(@NotNull Collection<? extends VcsOperation> operations) {
+    myMigrated = true;
+    compact(operations);
+  }
+
+  private void writeRecord(@NotNull RecordWriter writer) {
+    // nothing is appended after a broken record until the file is rewritten
+    if (myIncomplete) return;
+
+    try {
+      if (myOutput == null) {
+        myOutput = openOutput();
+      }
+      writer.write(myOutput);
+      myRecordCount++;
+    }
+    catch (IOException e) {
+      // the operations are still kept in memory and are written again by the next compaction
+      LOG.info("Failed to write offline operations to " + myFile, e);
+      closeOutput();
+      myIncomplete = true;
+    }
+  }
+
+  @NotNull
+  private DataOutputStream openOutput() throws IOException {
+    boolean exists = myFile.isFile();
+    if (!exists) {
+      FileUtil.createParentDirs(myFile);
+    }
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myFile, true)));
+    if (!exists) {
+      output.writeInt(VERSION);
+    }
+    return output;
+  }
+
+  private void closeOutput() {
+    if (myOutput == null) return;
+
+    try {
+      myOutput.close();
+    }
+    catch (IOException e) {
+      LOG.info("Failed to close " + myFile, e);
+    }
+    myOutput = null;
+  }
+
+  @Override
+  public void close() {
+    closeOutput();
+  }
+
+  private interface RecordWriter {
+    void write(@NotNull DataOutputStream output) throws IOException;
+  }
+}
@@ -1,7 +1,9 @@
 package org.jetbrains.idea.perforce.operations;
 
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.AccessToken;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
@@ -21,6 +23,7 @@ import com.intellij.util.containers.MultiMap;
 import com.intellij.util.xmlb.annotations.AbstractCollection;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
 import org.jetbrains.idea.perforce.perforce.PerforceRunner;
@@ -32,8 +35,12 @@ import org.jetbrains.idea.perforce.perforce.login.PerforceLoginManager;
 import java.io.File;
 import java.util.*;
 
+/**
+ * Operations performed while offline, to be executed when the connection is restored. They're kept in {@link VcsOperationJournal},
+ * the workspace state is only read to take the operations saved there by previous versions.
+ */
 @State(name = "VcsOperationLog", storages = @Storage(StoragePathMacros.WORKSPACE_FILE), reportStatistic = false)
-public final class VcsOperationLog implements PersistentStateComponent<VcsOperationLog.OperationList>{
+public final class VcsOperationLog implements PersistentStateComponent<VcsOperationLog.OperationList>, Disposable {
   private static final Logger LOG = Logger.getInstance(VcsOperationLog.class);
   public static class OperationList {
     private final MultiMap<String, VcsOperation> myOperationsByOutputPath = new MultiMap<>(FileCollectionFactory.createCanonicalFilePathLinkedMap());
@@ -70,10 +77,20 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
 
   private final Object lock = new Object();
   private final Project myProject;
-  private OperationList myOperations = new OperationList();
+  private final OperationList myOperations = new OperationList();
+  private final VcsOperationJournal myJournal;
 
   public VcsOperationLog(final Project project) {
+    this(project, new File(PathManager.getSystemPath(), "perforce/offline/" + project.getLocationHash()));
+  }
+
+  @TestOnly
+  VcsOperationLog(@NotNull Project project, @NotNull File journalFile) {
     myProject = project;
+    myJournal = new VcsOperationJournal(journalFile);
+    for (VcsOperation operation : myJournal.replay()) {
+      myOperations.addOperation(operation);
+    }
   }
 
   public static VcsOperationLog getInstance(Project project) {
@@ -82,34 +99,65 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
 
   @Override
   public OperationList getState() {
+    // the operations are saved by the journal
+    return new OperationList();
+  }
+
+  @Override
+  public void loadState(@NotNull OperationList state) {
     synchronized (lock) {
-      return myOperations;
+      // the workspace state may still keep the operations moved to the journal if the IDE has terminated before saving it
+      if (myJournal.isMigrated() || state.getOperations().isEmpty()) return;
+
+      for (VcsOperation operation : state.getOperations()) {
+        myOperations.addOperation(operation);
+      }
+      myJournal.migrated(myOperations.myOperationsByOutputPath.values());
     }
   }
 
   @Override
-  public void loadState(@NotNull OperationList state) {
+  public void dispose() {
     synchronized (lock) {
-      myOperations = state;
+      myJournal.close();
     }
   }
 
+  private void addOperation(@NotNull VcsOperation operation) {
+    myOperations.addOperation(operation);
+    myJournal.added(operation);
+  }
+
+  private void removeOperation(@NotNull VcsOperation operation) {
+    myOperations.removeOperation(operation);
+    myJournal.removed(operation);
+  }
+
+  private void flushJournal() {
+    myJournal.flush(myOperations.myOperationsByOutputPath.values());
+  }
+
   public void addToLog(final VcsOperation vcsOperation) {
     synchronized (lock) {
-      for (VcsOperation oldOp : myOperations.myOperationsByOutputPath.get(vcsOperation.getInputPath())) {
-        VcsOperation mergedOp = vcsOperation.checkMerge(oldOp);
-        if (mergedOp != oldOp) {
-          myOperations.removeOperation(oldOp);
-          if (mergedOp != null) {
-            myOperations.addOperation(mergedOp);
-          }
-          return;
+      doAddToLog(vcsOperation);
+      flushJournal();
+    }
+  }
+
+  private void doAddToLog(VcsOperation vcsOperation) {
+    for (VcsOperation oldOp : myOperations.myOperationsByOutputPath.get(vcsOperation.getInputPath())) {
+      VcsOperation mergedOp = vcsOperation.checkMerge(oldOp);
+      if (mergedOp != oldOp) {
+        removeOperation(oldOp);
+        if (mergedOp != null) {
+          addOperation(mergedOp);
         }
+        return;
       }
-      LOG.debug("Add to log " + vcsOperation);
-      vcsOperation.prepareOffline(myProject);
-      myOperations.addOperation(vcsOperation);
     }
+    LOG.debug("Add to log " + vcsOperation);
+    vcsOperation.prepareOffline(myProject);
+    addOperation(vcsOperation);
   }
 
   public boolean runOperations(final List<VcsOperation> operations, final @NlsContexts.TabTitle String title, final PerformInBackgroundOption option, List<VcsException> exceptions) {
@@ -135,8 +183,9 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
                                      final List<VcsException> exceptions) {
     synchronized (lock) {
       for (VcsOperation operation : operations) {
-        addToLog(operation);
+        doAddToLog(operation);
       }
+      flushJournal();
     }
 
     if (!PerforceSettings.getSettings(myProject).ENABLED) {
@@ -172,7 +221,8 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
         Collection<? extends VcsOperation> allOperations = myOperations.myOperationsByOutputPath.values();
         VcsOperation firstOp = allOperations.iterator().next();
         List<VcsOperation> mergeable = ContainerUtil.filter(allOperations, op -> op.getClass() == firstOp.getClass());
-        mergeable.forEach(myOperations::removeOperation);
+        mergeable.forEach(this::removeOperation);
+        flushJournal();
         return mergeable;
       }
       return Collections.emptyList();
@@ -305,6 +355,8 @@ public final class VcsOperationLog implements PersistentStateComponent<VcsOperat
     private void pushBackOperations() {
       synchronized (lock) {
         myOperations.setOperations(ContainerUtil.newArrayList(ContainerUtil.concat(myRemaining, myOperations.getOperations())));
+        // the remaining operations go before the others, which is easier to write anew than to express with records
+        myJournal.compact(myOperations.myOperationsByOutputPath.values());
       }
     }
 
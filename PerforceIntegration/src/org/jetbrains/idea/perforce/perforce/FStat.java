@@ -18,14 +18,12 @@ package org.jetbrains.idea.perforce.perforce;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vcs.VcsException;
 import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.changesBrowser.FileChange;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.io.StringReader;
+import java.io.*;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -79,18 +77,18 @@ public final class FStat {
   @NonNls public String unresolved = null;
   public P4File fromFile = null;
   @NonNls static final String MOVED_FILE_STATUS_FIELD = "movedFile";
-  @NonNls static final String CLIENT_FILE_STATUS_FIELD = "clientFile ";
-  @NonNls static final String DEPOT_FILE_STATUS_FIELD = "depotFile ";
-  @NonNls static final String HEAD_ACTION_STATUS_FIELD = "headAction ";
-  @NonNls static final String HEAD_CHANGE_STATUS_FIELD = "headChange ";
-  @NonNls static final String HEAD_REV_STATUS_FIELD = "headRev ";
-  @NonNls static final String HEAD_TYPE_STATUS_FIELD = "headType ";
-  @NonNls static final String HEAD_TIME_STATUS_FIELD = "headTime ";
-  @NonNls static final String HAVE_REV_STATUS_FIELD = "haveRev ";
-  @NonNls static final String ACTION_STATUS_FIELD = "action ";
-  @NonNls static final String ACTION_OWNER_STATUS_FIELD = "actionOwner ";
-  @NonNls static final String CHANGE_STATUS_FIELD = "change ";
-  @NonNls static final String UNRESOLVED_STATUS_FIELD = "unresolved ";
+  @NonNls static final String CLIENT_FILE_STATUS_FIELD = "clientFile";
+  @NonNls static final String DEPOT_FILE_STATUS_FIELD = "depotFile";
+  @NonNls static final String HEAD_ACTION_STATUS_FIELD = "headAction";
+  @NonNls static final String HEAD_CHANGE_STATUS_FIELD = "headChange";
+  @NonNls static final String HEAD_REV_STATUS_FIELD = "headRev";
+  @NonNls static final String HEAD_TYPE_STATUS_FIELD = "headType";
+  @NonNls static final String HEAD_TIME_STATUS_FIELD = "headTime";
+  @NonNls static final String HAVE_REV_STATUS_FIELD = "haveRev";
+  @NonNls static final String ACTION_STATUS_FIELD = "action";
+  @NonNls static final String ACTION_OWNER_STATUS_FIELD = "actionOwner";
+  @NonNls static final String CHANGE_STATUS_FIELD = "change";
+  @NonNls static final String UNRESOLVED_STATUS_FIELD = "unresolved";
 
   @NonNls
   public String toString() {
@@ -150,75 +148,61 @@ public final class FStat {
     }
   }
 
-  static FStat parseFStat(BufferedReader rdr) throws VcsException {
-    FStat result = null;
-    String s;
-    try {
-      while ((s = rdr.readLine()) != null) {
-        if (s.length() == 0) {
-          break; // empty lines separate multiple fstat results
-        }
-        // check first "... "
-        if (s.indexOf("... ") != 0) {
-          throw new VcsException(PerforceBundle.message("exception.text.unexpected.fstat.line.syntax", s));
-        }
-        if (result == null) {
-          result = new FStat();
-        }
-        final String line = s.substring(4);
-
-        if (line.startsWith(CLIENT_FILE_STATUS_FIELD)) {
-          result.clientFile = line.substring(11);
-        }
-        else if (line.startsWith(DEPOT_FILE_STATUS_FIELD)) {
-          result.depotFile = line.substring(10);
-        }
-        else if (line.startsWith(HEAD_ACTION_STATUS_FIELD)) {
-          result.headAction = line.substring(11);
-        }
-        else if (line.startsWith(HEAD_CHANGE_STATUS_FIELD)) {
-          result.headChange = line.substring(11);
-        }
-        else if (line.startsWith(HEAD_REV_STATUS_FIELD)) {
-          result.headRev = line.substring(8);
-        }
-        else if (line.startsWith(HEAD_TYPE_STATUS_FIELD)) {
-          result.headType = line.substring(9);
-        }
-        else if (line.startsWith(HEAD_TIME_STATUS_FIELD)) {
-          result.headTime = line.substring(9);
-        }
-        else if (line.startsWith(HAVE_REV_STATUS_FIELD)) {
-          result.haveRev = line.substring(8);
-        }
-        else if (line.startsWith(ACTION_STATUS_FIELD)) {
-          result.action = line.substring(7);
-        }
-        else if (line.startsWith(ACTION_OWNER_STATUS_FIELD)) {
-          result.actionOwner = line.substring(12);
-        }
-        else if (line.startsWith(CHANGE_STATUS_FIELD)) {
-          result.change = line.substring(7);
-        }
-        else if (line.startsWith(UNRESOLVED_STATUS_FIELD)) {
-          result.unresolved = line.substring(11);
-        } else if (line.startsWith(MOVED_FILE_STATUS_FIELD)) {
-          result.movedFile = line.substring(10);
-        }
-        else {
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("Unparsed fstat field: \"" + s + "\"");
-          }
+  /**
+   * @param record a record of {@code p4 fstat} output read by {@link P4TaggedOutputReader}
+   */
+  @NotNull
+  static FStat fromTaggedRecord(@NotNull Map<String, String> record) throws VcsException {
+    FStat result = new FStat();
+    for (Map.Entry<String, String> entry : record.entrySet()) {
+      final String field = entry.getKey();
+      final String value = entry.getValue();
+      if (CLIENT_FILE_STATUS_FIELD.equals(field)) {
+        result.clientFile = value;
+      }
+      else if (DEPOT_FILE_STATUS_FIELD.equals(field)) {
+        result.depotFile = value;
+      }
+      else if (HEAD_ACTION_STATUS_FIELD.equals(field)) {
+        result.headAction = value;
+      }
+      else if (HEAD_CHANGE_STATUS_FIELD.equals(field)) {
+        result.headChange = value;
+      }
+      else if (HEAD_REV_STATUS_FIELD.equals(field)) {
+        result.headRev = value;
+      }
+      else if (HEAD_TYPE_STATUS_FIELD.equals(field)) {
+        result.headType = value;
+      }
+      else if (HEAD_TIME_STATUS_FIELD.equals(field)) {
+        result.headTime = value;
+      }
+      else if (HAVE_REV_STATUS_FIELD.equals(field)) {
+        result.haveRev = value;
+      }
+      else if (ACTION_STATUS_FIELD.equals(field)) {
+        result.action = value;
+      }
+      else if (ACTION_OWNER_STATUS_FIELD.equals(field)) {
+        result.actionOwner = value;
+      }
+      else if (CHANGE_STATUS_FIELD.equals(field)) {
+        result.change = value;
+      }
+      else if (UNRESOLVED_STATUS_FIELD.equals(field)) {
+        result.unresolved = value;
+      }
+      else if (MOVED_FILE_STATUS_FIELD.equals(field)) {
+        result.movedFile = value;
+      }
+      else {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Unparsed fstat field: \"" + field + " " + value + "\"");
         }
       }
     }
-    catch (IOException ex) {
-      throw new VcsException(PerforceBundle.message("exception.text.cannot.parse.fstat.stdout"));
-    }
-
-    if (result != null) {
-      result.resolveStatus();
-    }
+    result.resolveStatus();
     return result;
   }
 
@@ -256,4 +240,60 @@ public final class FStat {
     return LOCAL_CHECKED_OUT == local || LOCAL_ADDING == local || LOCAL_BRANCHING == local || LOCAL_INTEGRATING == local ||
            LOCAL_MOVE_ADDING == local;
   }
+
+  /**
+   * Doesn't write {@link #fromFile}, it's only known for files opened for integration.
+   */
+  void writeToStream(@NotNull DataOutput stream) throws IOException {
+    stream.writeByte(status.ordinal());
+    stream.writeByte(local.ordinal());
+    stream.writeLong(statTime);
+    writeNullable(stream, movedFile);
+    stream.writeUTF(clientFile);
+    stream.writeUTF(depotFile);
+    stream.writeUTF(headAction);
+    stream.writeUTF(headChange);
+    stream.writeUTF(headRev);
+    stream.writeUTF(headType);
+    stream.writeUTF(headTime);
+    stream.writeUTF(haveRev);
+    stream.writeUTF(action);
+    stream.writeUTF(actionOwner);
+    stream.writeUTF(change);
+    writeNullable(stream, unresolved);
+  }
+
+  @NotNull
+  static FStat readFromStream(@NotNull DataInput stream) throws IOException {
+    FStat result = new FStat();
+    result.status = Status.values()[stream.readByte()];
+    result.local = Local.values()[stream.readByte()];
+    result.statTime = stream.readLong();
+    result.movedFile = readNullable(stream);
+    result.clientFile = stream.readUTF();
+    result.depotFile = stream.readUTF();
+    result.headAction = stream.readUTF();
+    result.headChange = stream.readUTF();
+    result.headRev = stream.readUTF();
+    result.headType = stream.readUTF();
+    result.headTime = stream.readUTF();
+    result.haveRev = stream.readUTF();
+    result.action = stream.readUTF();
+    result.actionOwner = stream.readUTF();
+    result.change = stream.readUTF();
+    result.unresolved = readNullable(stream);
+    return result;
+  }
+
+  private static void writeNullable(@NotNull DataOutput stream, @Nullable String value) throws IOException {
+    stream.writeBoolean(value != null);
+    if (value != null) {
+      stream.writeUTF(value);
+    }
+  }
+
+  @Nullable
+  private static String readNullable(@NotNull DataInput stream) throws IOException {
+    return stream.readBoolean() ? stream.readUTF() : null;
+  }
 }
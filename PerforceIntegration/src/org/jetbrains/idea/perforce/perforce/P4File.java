@@ -207,8 +207,9 @@ public final class P4File {
         myFstat.status = FStat.STATUS_NOT_ADDED;
       }
       else {
+        final FStat cached = forceNew ? null : perforceRunner.getCachedFstat(this);
         // 7-8
-        myFstat = perforceRunner.getProxy().fstat(this);
+        myFstat = cached != null ? cached : perforceRunner.getProxy().fstat(this);
       }
     }
     return myFstat;
@@ -7,49 +7,44 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.application.PerforceManager;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
 * @author peter
 */
 public abstract class P4HaveParser {
-  private static final String HAVE_DELIMITER = " - ";
+  private static final String PATH_FIELD = "path";
+  private static final String HAVE_REV_FIELD = "haveRev";
   private final PerforceManager myPerforceManager;
 
   public P4HaveParser(PerforceManager perforceManager) {
     myPerforceManager = perforceManager;
   }
 
-  public void consumeLine(final String haveLine) throws VcsException {
-    final int hashIndex = haveLine.indexOf('#');
-    if (hashIndex < 0) {
-      throw new VcsException(PerforceBundle.message("error.unexpected.p4.have.output.format", haveLine));
-    }
-    final int idx = haveLine.indexOf(HAVE_DELIMITER, hashIndex);
-    if (idx < 0) {
-      throw new VcsException(PerforceBundle.message("error.unexpected.p4.have.output.format", haveLine));
-    }
-    String localPath = haveLine.substring(idx + HAVE_DELIMITER.length());
-    localPath = myPerforceManager.convertP4ParsedPath(null, localPath);
-    final long revision = Long.parseLong(haveLine.substring(hashIndex+1, idx));
-    consumeRevision(FileUtil.toSystemDependentName(localPath), revision);
-  }
-
   public abstract void consumeRevision(String path, long revision);
 
-  void readHaveOutput(InputStream inputStream) throws IOException, VcsException {
-    @SuppressWarnings("IOResourceOpenedButNotSafelyClosed")
-    final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-    do {
-      String line = reader.readLine();
-      if (line == null || line.length() == 0) break;
-      consumeLine(line);
+  /**
+   * Reads the output of {@code p4 -ztag have}
+   */
+  void readTaggedHaveOutput(InputStream inputStream) throws IOException, VcsException {
+    final P4TaggedOutputReader reader = new P4TaggedOutputReader(inputStream);
+    final Map<String, String> record = new HashMap<>();
+    while (reader.readRecord(record)) {
+      final String localPath = record.get(PATH_FIELD);
+      final String revision = record.get(HAVE_REV_FIELD);
+      if (localPath == null || revision == null) {
+        throw new VcsException(PerforceBundle.message("error.unexpected.p4.have.output.format", record));
+      }
+      try {
+        consumeRevision(FileUtil.toSystemDependentName(myPerforceManager.convertP4ParsedPath(null, localPath)), Long.parseLong(revision));
+      }
+      catch (NumberFormatException e) {
+        throw new VcsException(PerforceBundle.message("error.unexpected.p4.have.output.format", record));
+      }
     }
-    while (true);
   }
 
   static final class RevisionCollector extends P4HaveParser {
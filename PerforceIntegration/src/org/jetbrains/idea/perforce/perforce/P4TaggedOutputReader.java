@@ -0,0 +1,167 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.vcs.VcsException;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.idea.perforce.PerforceBundle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the tagged output of p4 commands (as printed by {@code fstat}, or by any command run with the {@code -ztag} global option):
+ * <pre>
+ * ... depotFile //depot/dir/a.txt
+ * ... clientFile /home/user/workspace/dir/a.txt
+ * ... haveRev 3
+ *
+ * ... depotFile //depot/dir/b.txt
+ * </pre>
+ * Records are separated by empty lines, nested fields ({@code ... ... otherOpen0 user@client}) are read as top-level ones.
+ * Only values of the fields that may contain line breaks (e.g. change descriptions) can be continued on the following lines,
+ * any other line without the {@code "... "} prefix is an error.<p/>
+ *
+ * The output is read as bytes right from the command output stream, without decoding it into a string first,
+ * and field names are shared between records, so the only allocated objects are field values.
+ */
+public final class P4TaggedOutputReader {
+  private static final byte[] FIELD_PREFIX = {'.', '.', '.', ' '};
+  private static final Set<String> MULTILINE_FIELDS = Set.of("desc");
+
+  private final InputStream myStream;
+  private final byte[] myBuffer = new byte[16 * 1024];
+  private int myBufferPosition;
+  private int myBufferLimit;
+
+  private byte[] myLine = new byte[256];
+  private int myLineLength;
+
+  // field names by hash of their bytes
+  private final Int2ObjectMap<String> myFieldNames = new Int2ObjectOpenHashMap<>();
+
+  public P4TaggedOutputReader(@NotNull InputStream stream) {
+    myStream = stream;
+  }
+
+  /**
+   * Reads the next record into {@code record}, replacing its previous content.
+   *
+   * @return false if there are no more records
+   */
+  public boolean readRecord(@NotNull Map<String, String> record) throws IOException, VcsException {
+    record.clear();
+    String lastField = null;
+    while (readLine()) {
+      if (myLineLength == 0) {
+        if (record.isEmpty()) continue;
+        return true;
+      }
+
+      int start = 0;
+      while (hasFieldPrefix(start)) {
+        start += FIELD_PREFIX.length;
+      }
+
+      if (start == 0) {
+        String line = new String(myLine, 0, myLineLength, StandardCharsets.UTF_8);
+        if (lastField == null || !MULTILINE_FIELDS.contains(lastField)) {
+          throw new VcsException(PerforceBundle.message("exception.text.unexpected.tagged.output.line", line));
+        }
+        // a line of a multiline value
+        record.put(lastField, record.get(lastField) + "\n" + line);
+        continue;
+      }
+
+      int space = start;
+      while (space < myLineLength && myLine[space] != ' ') {
+        space++;
+      }
+      lastField = getFieldName(start, space);
+      String value = space < myLineLength ? new String(myLine, space + 1, myLineLength - space - 1, StandardCharsets.UTF_8) : "";
+      record.put(lastField, value);
+    }
+    return !record.isEmpty();
+  }
+
+  private boolean hasFieldPrefix(int offset) {
+    if (myLineLength - offset < FIELD_PREFIX.length) return false;
+    for (int i = 0; i < FIELD_PREFIX.length; i++) {
+      if (myLine[offset + i] != FIELD_PREFIX[i]) return false;
+    }
+    return true;
+  }
+
+  @NotNull
+  private String getFieldName(int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + myLine[i];
+    }
+
+    String name = myFieldNames.get(hash);
+    if (name != null && isFieldName(name, start, end)) {
+      return name;
+    }
+
+    name = new String(myLine, start, end - start, StandardCharsets.UTF_8);
+    myFieldNames.putIfAbsent(hash, name);
+    return name;
+  }
+
+  private boolean isFieldName(@NotNull String name, int start, int end) {
+    if (name.length() != end - start) return false;
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) != myLine[start + i]) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Reads the next line without the line separator into {@link #myLine}.
+   *
+   * @return false at the end of the stream
+   */
+  private boolean readLine() throws IOException {
+    myLineLength = 0;
+    boolean hasData = false;
+    while (true) {
+      if (myBufferPosition == myBufferLimit) {
+        myBufferLimit = myStream.read(myBuffer);
+        myBufferPosition = 0;
+        if (myBufferLimit <= 0) {
+          myBufferLimit = 0;
+          return hasData;
+        }
+      }
+      hasData = true;
+
+      int lineEnd = myBufferPosition;
+      while (lineEnd < myBufferLimit && myBuffer[lineEnd] != '\n') {
+        lineEnd++;
+      }
+      appendToLine(myBufferPosition, lineEnd);
+      if (lineEnd < myBufferLimit) {
+        myBufferPosition = lineEnd + 1;
+        if (myLineLength > 0 && myLine[myLineLength - 1] == '\r') {
+          myLineLength--;
+        }
+        return true;
+      }
+      myBufferPosition = myBufferLimit;
+    }
+  }
+
+  private void appendToLine(int start, int end) {
+    int length = end - start;
+    if (myLineLength + length > myLine.length) {
+      myLine = Arrays.copyOf(myLine, Math.max(myLine.length * 2, myLineLength + length));
+    }
+    System.arraycopy(myBuffer, start, myLine, myLineLength, length);
+    myLineLength += length;
+  }
+}
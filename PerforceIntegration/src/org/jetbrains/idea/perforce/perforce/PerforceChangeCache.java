@@ -24,18 +24,30 @@ import java.util.concurrent.ConcurrentHashMap;
 public class PerforceChangeCache {
   private final PerforceRunner myRunner;
   private final PerforceManager myPerforceManager;
+  @Nullable private final PerforceSubmittedChangesCache mySubmittedChangesCache;
   private final Map<Pair<Long, ConnectionKey>, List<PerforceChange>> myCache = new ConcurrentHashMap<>();
 
   public PerforceChangeCache(Project project) {
+    this(project, false);
+  }
+
+  /**
+   * @param submitted whether the cache is used only for submitted change lists, so that their files can be taken from
+   *                  {@link PerforceSubmittedChangesCache}, which keeps them between refreshes and IDE restarts
+   */
+  public PerforceChangeCache(Project project, boolean submitted) {
     myRunner = PerforceRunner.getInstance(project);
     myPerforceManager = PerforceManager.getInstance(project);
+    mySubmittedChangesCache = submitted ? PerforceSubmittedChangesCache.getInstance(project) : null;
   }
 
   public List<PerforceChange> getChanges(P4Connection connection, final long changeListNumber, @Nullable final VirtualFile vcsRoot) {
     List<PerforceChange> all = myCache.get(createKey(connection, changeListNumber));
     if (all == null) {
       try {
-        all = myRunner.getChanges(connection, changeListNumber);
+        all = mySubmittedChangesCache != null && changeListNumber != -1
+              ? mySubmittedChangesCache.getChanges(connection, changeListNumber)
+              : myRunner.getChanges(connection, changeListNumber);
       }
       catch (VcsException e) {
         all = Collections.emptyList();
@@ -13,20 +13,35 @@ class PerforceContext {
   @NotNull public final P4Connection connection;
   public final boolean longTimeout;
   public final boolean justLogged;
+  /**
+   * Whether the command is run with the {@code -ztag} connection argument, so that its output can be read by {@link P4TaggedOutputReader}
+   */
+  public final boolean tagged;
 
   PerforceContext(@NotNull P4Connection connection) {
     this(connection, false, false);
   }
 
   PerforceContext(@NotNull P4Connection connection, boolean longTimeout, boolean justLogged) {
+    this(connection, longTimeout, justLogged, false);
+  }
+
+  PerforceContext(@NotNull P4Connection connection, boolean longTimeout, boolean justLogged, boolean tagged) {
     this.connection = connection;
     this.longTimeout = longTimeout;
     this.justLogged = justLogged;
+    this.tagged = tagged;
   }
 
   void runP4Command(PerforceSettings settings, String[] p4args, ExecResult retVal, @Nullable final StringBuffer inputStream)
     throws VcsException, PerforceTimeoutException, IOException, InterruptedException {
-    connection.runP4Command(longTimeout ? new LongTimeoutProxy(settings) : settings, p4args, retVal, inputStream);
+    PerforcePhysicalConnectionParametersI parameters = longTimeout ? new LongTimeoutProxy(settings) : settings;
+    if (tagged) {
+      connection.runP4Command(parameters, new String[]{"-ztag"}, p4args, retVal, inputStream);
+    }
+    else {
+      connection.runP4Command(parameters, p4args, retVal, inputStream);
+    }
   }
 
   private static class LongTimeoutProxy implements PerforcePhysicalConnectionParametersI {
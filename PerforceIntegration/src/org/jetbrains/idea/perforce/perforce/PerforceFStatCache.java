@@ -0,0 +1,305 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SystemInfoRt;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.SystemProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * {@code p4 fstat} results of files that aren't opened on the client, kept between refreshes and IDE restarts,
+ * so that status queries don't need a server round trip for each file.<p/>
+ *
+ * Cached data of a connection is used only after {@link #revalidate} has been called for it in the current session:
+ * if the last submitted change affecting the client has changed since the data was collected, everything cached for the connection is dropped, and files currently opened on the client are removed from the cache.<p/>
+ *
+ * Changes made on the client side are tracked by the local file timestamp and length stored with each entry
+ * (e.g. {@code p4 sync} from the command line), by the p4 commands executed by the IDE (see {@link #commandExecuted}),
+ * and by VFS events (e.g. a file made writable by {@code p4 edit} from the command line).
+ */
+@Service
+public final class PerforceFStatCache implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PerforceFStatCache.class);
+
+  private static final int VERSION = 1;
+  private static final int MAX_SIZE = SystemProperties.getIntProperty("perforce.fstat.cache.size", 100_000);
+  private static final Set<String> MODIFYING_COMMANDS = Set.of("add", "edit", "delete", "move", "rename", "integrate", "integ", "copy",
+                                                               "merge", "sync", "flush", "update", "clean", "reconcile", "unshelve",
+                                                               "undo", "revert", "submit", "client", "workspace");
+
+  private final File myCacheFile;
+  private final Object myLock = new Object();
+  // null until the cache is loaded from disk on the first revalidation
+  private Map<ConnectionKey, ConnectionCache> myConnections;
+  private boolean myModified;
+
+  public static PerforceFStatCache getInstance(@NotNull Project project) {
+    return project.getService(PerforceFStatCache.class);
+  }
+
+  public PerforceFStatCache(@NotNull Project project) {
+    this(new File(PathManager.getSystemPath(), "perforce/fstat/" + project.getLocationHash()));
+  }
+
+  @TestOnly
+  PerforceFStatCache(@NotNull File cacheFile) {
+    myCacheFile = cacheFile;
+  }
+
+  public static boolean isEnabled() {
+    return SystemProperties.getBooleanProperty("perforce.fstat.cache.enabled", true);
+  }
+
+  @Nullable
+  public FStat get(@NotNull ConnectionKey connectionKey, @NotNull String localPath) {
+    synchronized (myLock) {
+      ConnectionCache cache = myConnections == null ? null : myConnections.get(connectionKey);
+      if (cache == null || !cache.validated) return null;
+
+      String key = getKey(localPath);
+      Entry entry = cache.entries.get(key);
+      if (entry == null) return null;
+
+      File file = new File(localPath);
+      if (file.lastModified() != entry.timestamp || file.length() != entry.length) {
+        cache.entries.remove(key);
+        myModified = true;
+        return null;
+      }
+      return entry.fstat;
+    }
+  }
+
+  void put(@NotNull ConnectionKey connectionKey, @NotNull String localPath, @NotNull FStat fstat) {
+    if (!isCacheable(fstat)) return;
+
+    File file = new File(localPath);
+    Entry entry = new Entry(fstat, file.lastModified(), file.length());
+    synchronized (myLock) {
+      ConnectionCache cache = myConnections == null ? null : myConnections.get(connectionKey);
+      if (cache == null || !cache.validated) return;
+
+      cache.entries.put(getKey(localPath), entry);
+      myModified = true;
+    }
+  }
+
+  private static boolean isCacheable(@NotNull FStat fstat) {
+    if (!fstat.action.isEmpty()) return false;
+    return fstat.status == FStat.STATUS_ON_SERVER_AND_LOCAL || fstat.status == FStat.STATUS_ONLY_ON_SERVER ||
+           fstat.status == FStat.STATUS_DELETED || fstat.status == FStat.STATUS_NOT_ADDED;
+  }
+
+  /**
+   * @param lastChangeNumber the number of the last submitted change affecting the client
+   * @param openedPaths      local paths of all files opened on the client
+   */
+  public void revalidate(@NotNull ConnectionKey connectionKey, long lastChangeNumber, @NotNull Collection<String> openedPaths) {
+    synchronized (myLock) {
+      ensureLoaded();
+      ConnectionCache cache = myConnections.computeIfAbsent(connectionKey, __ -> new ConnectionCache());
+      if (cache.lastChangeNumber != lastChangeNumber) {
+        LOG.debug("Last submitted change of " + connectionKey + " is " + lastChangeNumber + ", was " + cache.lastChangeNumber +
+                  ", dropping " + cache.entries.size() + " cached fstat entries");
+        cache.entries.clear();
+        cache.lastChangeNumber = lastChangeNumber;
+        myModified = true;
+      }
+      for (String path : openedPaths) {
+        if (cache.entries.remove(getKey(path)) != null) {
+          myModified = true;
+        }
+      }
+      cache.validated = true;
+    }
+  }
+
+  /**
+   * Removes the cached data of the file in all connections.
+   *
+   * @param recursive whether the data of all files under the given path should be removed as well
+   */
+  public void invalidate(@NotNull String localPath, boolean recursive) {
+    String key = getKey(localPath);
+    synchronized (myLock) {
+      if (myConnections == null) return;
+
+      for (ConnectionCache cache : myConnections.values()) {
+        boolean removed = recursive ? cache.entries.keySet().removeIf(path -> FileUtil.startsWith(path, key, true))
+                                    : cache.entries.remove(key) != null;
+        if (removed) {
+          myModified = true;
+        }
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized (myLock) {
+      if (myConnections == null) return;
+
+      for (ConnectionCache cache : myConnections.values()) {
+        cache.entries.clear();
+      }
+      myModified = true;
+    }
+  }
+
+  /**
+   * Removes the cached data of the files that may be affected by a p4 command executed by the IDE.
+   * If the command has no local path arguments, or has depot path arguments, all data of the connection is removed.
+   */
+  void commandExecuted(@NotNull P4Connection connection, @NotNull String[] p4cmd, @NotNull Collection<String> args) {
+    // checked first, since connections used for commands like "p4 -V" or "p4 set" have no connection key
+    if (p4cmd.length == 0 || !MODIFYING_COMMANDS.contains(p4cmd[0])) return;
+
+    List<String> allArgs = new ArrayList<>(Arrays.asList(p4cmd).subList(1, p4cmd.length));
+    allArgs.addAll(args);
+
+    synchronized (myLock) {
+      ConnectionCache cache = myConnections == null ? null : myConnections.get(connection.getConnectionKey());
+      if (cache == null || cache.entries.isEmpty()) return;
+
+      myModified = true;
+      Set<String> files = new HashSet<>();
+      List<String> folders = new ArrayList<>();
+      for (String arg : allArgs) {
+        if (arg.startsWith("//")) {
+          cache.entries.clear();
+          return;
+        }
+        if (arg.startsWith("-")) continue;
+
+        // '#' and '@' are escaped in local paths, so these start revision specifiers
+        int revisionStart = StringUtil.indexOfAny(arg, "#@");
+        String path = P4File.unescapeWildcards(FileUtil.toSystemIndependentName(revisionStart < 0 ? arg : arg.substring(0, revisionStart)));
+        if (!new File(path).isAbsolute()) continue;
+
+        int wildcardStart = path.contains("...") ? path.indexOf("...") : path.indexOf('*');
+        if (wildcardStart >= 0) {
+          folders.add(getKey(path.substring(0, Math.max(0, path.lastIndexOf('/', wildcardStart)))));
+        }
+        else {
+          files.add(getKey(path));
+        }
+      }
+
+      if (files.isEmpty() && folders.isEmpty()) {
+        cache.entries.clear();
+        return;
+      }
+      cache.entries.keySet().removeAll(files);
+      if (!folders.isEmpty()) {
+        cache.entries.keySet().removeIf(key -> folders.stream().anyMatch(folder -> FileUtil.startsWith(key, folder, true)));
+      }
+    }
+  }
+
+  @NotNull
+  private static String getKey(@NotNull String path) {
+    String key = FileUtil.toSystemIndependentName(path);
+    return SystemInfoRt.isFileSystemCaseSensitive ? key : StringUtil.toLowerCase(key);
+  }
+
+  private void ensureLoaded() {
+    if (myConnections != null) return;
+
+    myConnections = new HashMap<>();
+    if (!myCacheFile.isFile()) return;
+
+    try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(myCacheFile)))) {
+      if (stream.readInt() != VERSION) return;
+
+      int connectionCount = stream.readInt();
+      for (int i = 0; i < connectionCount; i++) {
+        ConnectionKey key = new ConnectionKey(stream.readUTF(), stream.readUTF(), stream.readUTF());
+        ConnectionCache cache = new ConnectionCache();
+        cache.lastChangeNumber = stream.readLong();
+        int entryCount = stream.readInt();
+        for (int j = 0; j < entryCount; j++) {
+          String path = stream.readUTF();
+          long timestamp = stream.readLong();
+          long length = stream.readLong();
+          cache.entries.put(path, new Entry(FStat.readFromStream(stream), timestamp, length));
+        }
+        myConnections.put(key, cache);
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.info("Failed to load fstat cache from " + myCacheFile, e);
+      myConnections.clear();
+    }
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (myLock) {
+      if (myConnections == null || !myModified) return;
+
+      try {
+        FileUtil.createParentDirs(myCacheFile);
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myCacheFile)))) {
+          stream.writeInt(VERSION);
+          stream.writeInt(myConnections.size());
+          for (Map.Entry<ConnectionKey, ConnectionCache> entry : myConnections.entrySet()) {
+            ConnectionKey key = entry.getKey();
+            stream.writeUTF(key.getServer());
+            stream.writeUTF(key.getClient());
+            stream.writeUTF(key.getUser());
+            ConnectionCache cache = entry.getValue();
+            stream.writeLong(cache.lastChangeNumber);
+            stream.writeInt(cache.entries.size());
+            for (Map.Entry<String, Entry> fileEntry : cache.entries.entrySet()) {
+              stream.writeUTF(fileEntry.getKey());
+              stream.writeLong(fileEntry.getValue().timestamp);
+              stream.writeLong(fileEntry.getValue().length);
+              fileEntry.getValue().fstat.writeToStream(stream);
+            }
+          }
+        }
+        myModified = false;
+      }
+      catch (IOException e) {
+        LOG.info("Failed to save fstat cache to " + myCacheFile, e);
+        FileUtil.delete(myCacheFile);
+      }
+    }
+  }
+
+  private static final class ConnectionCache {
+    private long lastChangeNumber = -1;
+    // whether lastChangeNumber has been checked against the server in this session
+    private boolean validated;
+    // local path -> fstat, in insertion order to drop the oldest entries when the cache is full
+    private final Map<String, Entry> entries = new LinkedHashMap<>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > MAX_SIZE;
+      }
+    };
+  }
+
+  private static final class Entry {
+    private final FStat fstat;
+    private final long timestamp;
+    private final long length;
+
+    private Entry(FStat fstat, long timestamp, long length) {
+      this.fstat = fstat;
+      this.timestamp = timestamp;
+      this.length = length;
+    }
+  }
+}
@@ -61,6 +61,7 @@ import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.ServerVersion;
 import org.jetbrains.idea.perforce.application.*;
 import org.jetbrains.idea.perforce.application.annotation.AnnotationInfo;
+import org.jetbrains.idea.perforce.application.annotation.PerforceAnnotationCache;
 import org.jetbrains.idea.perforce.changesBrowser.FileChange;
 import org.jetbrains.idea.perforce.merge.BaseRevision;
 import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
@@ -186,6 +187,8 @@ public final class PerforceRunner implements PerforceRunnerI {
 
   private final PerforceManager myPerforceManager;
   private final LoginSupport myLoginManager;
+  private final PerforceFStatCache myFStatCache;
+  private final PerforceVersionedFilesCache myVersionedFilesCache;
 
   public static PerforceRunner getInstance(Project project) {
     return project.getService(PerforceRunner.class);
@@ -204,6 +207,8 @@ public final class PerforceRunner implements PerforceRunnerI {
     mySettings = settings;
     myPerforceManager = PerforceManager.getInstance(myProject);
     myLoginManager = loginManager;
+    myFStatCache = PerforceFStatCache.getInstance(myProject);
+    myVersionedFilesCache = PerforceVersionedFilesCache.getInstance(myProject);
     myProxy = new PerforceRunnerProxy(myProject, this);
   }
 
@@ -305,19 +310,16 @@ public final class PerforceRunner implements PerforceRunnerI {
 
     try {
       execResult.allowSafeStdoutUsage(stream -> {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
-        while (true) {
-          try {
-            FStat fStat = FStat.parseFStat(reader);
-            if (fStat == null) {
-              break;
-            }
-
+        P4TaggedOutputReader reader = new P4TaggedOutputReader(stream);
+        Map<String, String> record = new HashMap<>();
+        try {
+          while (reader.readRecord(record)) {
+            FStat fStat = FStat.fromTaggedRecord(record);
             result.put(getP4FileByPath(fStat.clientFile, path2File), fStat);
           }
-          catch (VcsException e) {
-            throw new IOException(e);
-          }
+        }
+        catch (VcsException e) {
+          throw new IOException(e);
         }
       });
     }
@@ -325,11 +327,101 @@ public final class PerforceRunner implements PerforceRunnerI {
       if (e.getCause() instanceof VcsException) {
         throw (VcsException)e.getCause();
       }
-      throw new VcsException(e);
+      throw new VcsException(PerforceBundle.message("exception.text.cannot.parse.fstat.stdout"), e);
+    }
+
+    ConnectionKey connectionKey = connection.getConnectionKey();
+    for (Map.Entry<P4File, FStat> entry : result.entrySet()) {
+      myFStatCache.put(connectionKey, entry.getKey().getLocalPath(), entry.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Same as {@link #fstatBulk(List)}, but takes the results from {@link PerforceFStatCache} when possible
+   * and runs {@code p4 fstat} only for the files that aren't cached.
+   */
+  public Map<P4File, FStat> fstatBulk(final List<P4File> files, boolean allowCached) throws VcsException {
+    if (!allowCached || files.isEmpty()) return fstatBulk(files);
+
+    ConnectionKey connectionKey = getNotNullConnection(files.get(0)).getConnectionKey();
+    final Map<P4File, FStat> result = new LinkedHashMap<>();
+    final List<P4File> notCached = new ArrayList<>();
+    for (P4File file : files) {
+      FStat fStat = myFStatCache.get(connectionKey, file.getLocalPath());
+      if (fStat != null) {
+        result.put(file, fStat);
+      }
+      else {
+        notCached.add(file);
+      }
     }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("fstat: " + result.size() + " cached, " + notCached.size() + " requested");
+    }
+
+    result.putAll(fstatBulk(notCached));
     return result;
   }
 
+  /**
+   * @return the status of the file from {@link PerforceFStatCache}, without running any p4 commands
+   */
+  @Nullable
+  public FStat getCachedFstat(final P4File p4File) {
+    P4Connection connection = myConnectionManager.getConnectionForFile(p4File);
+    return connection == null ? null : myFStatCache.get(connection.getConnectionKey(), p4File.getLocalPath());
+  }
+
+  /**
+   * @return the number of the last submitted change affecting the client of the connection, or -1 if there's none
+   */
+  public long getLastSubmittedChangeNumber(@NotNull P4Connection connection) throws VcsException {
+    final CommandArguments args = CommandArguments.createOn(P4Command.changes)
+      .append("-m").append("1")
+      .append("-s").append("submitted");
+    final String clientName = myPerforceManager.getClient(connection).getName();
+    if (clientName != null) {
+      args.append("//" + clientName + "/...");
+    }
+    final ExecResult execResult = executeP4Command(args.getArguments(), connection);
+    checkError(execResult, connection);
+    // Change 12345 on 2021/01/01 by user@client 'description'
+    final List<String> words = StringUtil.split(execResult.getStdout().trim(), " ");
+    if (words.size() < 2 || !"Change".equals(words.get(0))) return -1;
+    try {
+      return Long.parseLong(words.get(1));
+    }
+    catch (NumberFormatException e) {
+      throw new VcsException(PerforceBundle.message("error.cannot.parse.change.line", execResult.getStdout()));
+    }
+  }
+
+  /**
+   * @return the number of files in the have list of the client of the connection, or -1 if it can't be found out
+   */
+  public long getHaveListSize(@NotNull P4Connection connection) throws VcsException {
+    final String clientName = myPerforceManager.getClient(connection).getName();
+    if (clientName == null) return -1;
+
+    final CommandArguments args = CommandArguments.createOn(P4Command.sizes)
+      .append("-s")
+      .append("//" + clientName + "/...#have");
+    final ExecResult execResult = executeP4Command(args.getArguments(), connection);
+    if (execResult.getStderr().contains(NOT_ON_CLIENT_MESSAGE)) return 0;
+    checkError(execResult, connection);
+    // //client/...#have 12345 files 67890 bytes
+    final List<String> words = StringUtil.split(execResult.getStdout().trim(), " ");
+    final int filesIndex = words.indexOf("files");
+    if (filesIndex < 1) return -1;
+    try {
+      return Long.parseLong(words.get(filesIndex - 1));
+    }
+    catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
   private static P4File getP4FileByPath(String path, Map<String, P4File> path2File) throws VcsException {
     String clientFile = P4File.unescapeWildcards(FileUtil.toSystemIndependentName(path));
     P4File p4File = path2File.get(clientFile);
@@ -632,7 +724,8 @@ public final class PerforceRunner implements PerforceRunnerI {
     return result;
   }
 
-  private Map<Long, Pair<ChangeListData, List<FileChange>>> describeAll(P4Connection connection, List<Long> lists, boolean shelved) throws VcsException {
+  Map<Long, Pair<ChangeListData, List<FileChange>>> describeAll(P4Connection connection, List<Long> lists, boolean shelved)
+    throws VcsException {
     CommandArguments args = CommandArguments.createOn(P4Command.describe);
     args.append("-s");
 
@@ -996,7 +1089,7 @@ public final class PerforceRunner implements PerforceRunnerI {
 
     final ExecResult execResult = executeP4Command(arguments.getArguments(), connection);
     checkError(execResult, connection);
-    return parsePerforceChangeLists(execResult.getStdout(), connection, new PerforceChangeCache(myProject));
+    return parsePerforceChangeLists(execResult.getStdout(), connection, new PerforceChangeCache(myProject, true));
   }
 
   private static String dateSpec(final Date after, final Date before, final Long afterChange, final Long beforeChange, boolean strictlyAfter) {
@@ -1438,10 +1531,10 @@ public final class PerforceRunner implements PerforceRunnerI {
                       final P4HaveParser consumer,
                       boolean longTimeout) throws VcsException {
     // See http://www.perforce.com/perforce/doc.052/manuals/cmdref/have.html#1040665
-    // According to Perforce docs output will be presented patterned like: depot-file#revision-number - local-path
-    // One line per file
+    // Tagged output contains depotFile, clientFile, path (the local one) and haveRev fields for each file,
+    // so local paths containing " - " or '#' can't be confused with the separators of the plain text output
 
-    PerforceContext context = new PerforceContext(connection, longTimeout, false);
+    PerforceContext context = new PerforceContext(connection, longTimeout, false, true);
 
     for (List<String> chunk : Lists.partition(new ArrayList<>(new LinkedHashSet<>(filesSpec)), CHUNK_SIZE)) {
       final ExecResult execResult = executeP4Command(new String[]{"have"}, chunk, null, context);
@@ -1461,7 +1554,7 @@ public final class PerforceRunner implements PerforceRunnerI {
       try {
         execResult.allowSafeStdoutUsage(inputStream -> {
           try {
-            consumer.readHaveOutput(inputStream);
+            consumer.readTaggedHaveOutput(inputStream);
           }
           catch (VcsException e) {
             vcsExceptionRef.set(e);
@@ -1550,14 +1643,41 @@ public final class PerforceRunner implements PerforceRunnerI {
       commands.add("-dl");
     }
     commands.add(filePath);
+
+    // an exact revision is never changed, so its annotation can be reused
+    PerforceAnnotationCache cache = PerforceAnnotationCache.getInstance(myProject);
+    String cacheKey = revision != -1 ? connection.getConnectionKey().getServer() + " " + String.join(" ", commands) : null;
+    AnnotationInfo cached = cacheKey != null ? cache.get(cacheKey) : null;
+    if (cached != null) {
+      return cached;
+    }
+
     final ExecResult execResult = executeP4Command(ArrayUtilRt.toStringArray(commands), connection);
     checkError(execResult, connection);
+    final boolean finalUseChangelistNumbers = useChangelistNumbers;
+    final Ref<AnnotationInfo> result = new Ref<>();
     try {
-      return new AnnotationInfo(execResult.getStdout(), useChangelistNumbers);
+      execResult.allowSafeStdoutUsage(stream -> {
+        try {
+          BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+          result.set(new AnnotationInfo(reader, finalUseChangelistNumbers));
+        }
+        catch (VcsException e) {
+          throw new IOException(e);
+        }
+      });
     }
     catch (IOException e) {
+      if (e.getCause() instanceof VcsException) {
+        throw (VcsException)e.getCause();
+      }
       throw new VcsException(e);
     }
+
+    if (cacheKey != null) {
+      cache.put(cacheKey, result.get());
+    }
+    return result.get();
   }
 
   private boolean isAnnotateBranchSupported(@Nullable final P4Connection connection) throws VcsException {
@@ -1658,14 +1778,21 @@ public final class PerforceRunner implements PerforceRunnerI {
       }
 
       final String[] p4args;
-      if (shouldPassArgumentsViaFile(args)) {
+      StringBuffer input = inputStream;
+      if (!shouldPassArgumentsViaFile(args)) {
+        p4args = ArrayUtil.mergeArrays(p4cmd, ArrayUtilRt.toStringArray(args));
+      }
+      else if (inputStream == null) {
+        // stream the arguments to the standard input, no need to write and delete a temporary file
+        p4args = ArrayUtil.mergeArrays(new String[]{"-x", "-"}, p4cmd);
+        input = new StringBuffer(StringUtil.join(args, "\n"));
+      }
+      else {
         tempFile = createArgumentFile(args);
         p4args = ArrayUtil.mergeArrays(new String[]{"-x", tempFile.getPath()}, p4cmd);
-      } else {
-        p4args = ArrayUtil.mergeArrays(p4cmd, ArrayUtilRt.toStringArray(args));
       }
 
-      ctx.runP4Command(mySettings, p4args, retVal, inputStream);
+      ctx.runP4Command(mySettings, p4args, retVal, input);
     }
     catch (PerforceTimeoutException | VcsException | InterruptedException | IOException e) {
       retVal.setException(e);
@@ -1674,6 +1801,9 @@ public final class PerforceRunner implements PerforceRunnerI {
       if (tempFile != null) {
         FileUtil.asyncDelete(tempFile);
       }
+      // even a failed command may have changed the state of some files
+      myFStatCache.commandExecuted(ctx.connection, p4cmd, args);
+      myVersionedFilesCache.commandExecuted(ctx.connection, p4cmd);
     }
 
     if (mySettings.showCmds) {
@@ -1685,7 +1815,7 @@ public final class PerforceRunner implements PerforceRunnerI {
       try {
         if (!ctx.justLogged && myLoginManager.silentLogin(ctx.connection)) {
           retVal.cleanup();
-          return executeP4Command(p4cmd, args, inputStream, new PerforceContext(ctx.connection, ctx.longTimeout, true));
+          return executeP4Command(p4cmd, args, inputStream, new PerforceContext(ctx.connection, ctx.longTimeout, true, ctx.tagged));
         }
       }
       catch (VcsException e) {
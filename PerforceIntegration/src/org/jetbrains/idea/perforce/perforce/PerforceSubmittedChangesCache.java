@@ -0,0 +1,276 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.io.IOUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.idea.perforce.ChangeListData;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+import org.jetbrains.idea.perforce.application.PerforceClient;
+import org.jetbrains.idea.perforce.application.PerforceManager;
+import org.jetbrains.idea.perforce.changesBrowser.FileChange;
+import org.jetbrains.idea.perforce.perforce.connections.P4Connection;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Files of submitted change lists as reported by {@code p4 describe}, kept between IDE restarts.
+ * Submitted change lists don't change, so the cached data never needs to be validated, and only the most recently used
+ * {@code perforce.submitted.changes.cache.size} change lists are kept.<p/>
+ *
+ * Change lists shown in the committed changes view are described in batches beforehand, see {@link #prefetch}.
+ */
+@Service
+public final class PerforceSubmittedChangesCache implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PerforceSubmittedChangesCache.class);
+
+  private static final int VERSION = 2;
+  private static final int MAX_SIZE = SystemProperties.getIntProperty("perforce.submitted.changes.cache.size", 2000);
+  // change lists described by one 'p4 describe' command
+  private static final int BATCH_SIZE = 50;
+
+  // null in tests of the cache itself, which don't describe change lists
+  private final Project myProject;
+  private final File myCacheFile;
+  private final ExecutorService myPrefetchExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Perforce Submitted Changes Prefetch", 1);
+  private final Object myLock = new Object();
+  // null until the cache is loaded from disk on the first access; in access order to drop the least recently used entries
+  private Map<Pair<ConnectionKey, Long>, Entry> myEntries;
+  private boolean myModified;
+  private volatile boolean myDisposed;
+
+  public static PerforceSubmittedChangesCache getInstance(@NotNull Project project) {
+    return project.getService(PerforceSubmittedChangesCache.class);
+  }
+
+  public PerforceSubmittedChangesCache(@NotNull Project project) {
+    this(project, new File(PathManager.getSystemPath(), "perforce/submitted/" + project.getLocationHash()));
+  }
+
+  @TestOnly
+  PerforceSubmittedChangesCache(@NotNull File cacheFile) {
+    this(null, cacheFile);
+  }
+
+  private PerforceSubmittedChangesCache(Project project, @NotNull File cacheFile) {
+    myProject = project;
+    myCacheFile = cacheFile;
+  }
+
+  @NotNull
+  public List<PerforceChange> getChanges(@NotNull P4Connection connection, long changeListNumber) throws VcsException {
+    Entry entry = getEntry(connection.getConnectionKey(), changeListNumber);
+    if (entry == null) {
+      load(connection, Collections.singletonList(changeListNumber));
+      entry = getEntry(connection.getConnectionKey(), changeListNumber);
+      if (entry == null) {
+        return Collections.emptyList();
+      }
+    }
+    return entry.createChanges(PerforceManager.getInstance(myProject).getClient(connection), changeListNumber);
+  }
+
+  /**
+   * Describes the change lists which aren't cached yet, several of them in one command.
+   */
+  public void load(@NotNull P4Connection connection, @NotNull Collection<Long> changeListNumbers) throws VcsException {
+    ConnectionKey key = connection.getConnectionKey();
+    List<Long> toDescribe = new ArrayList<>();
+    for (Long number : changeListNumbers) {
+      if (getEntry(key, number) == null) {
+        toDescribe.add(number);
+      }
+    }
+
+    PerforceRunner runner = PerforceRunner.getInstance(myProject);
+    for (int i = 0; i < toDescribe.size(); i += BATCH_SIZE) {
+      List<Long> batch = toDescribe.subList(i, Math.min(i + BATCH_SIZE, toDescribe.size()));
+      Map<Long, Pair<ChangeListData, List<FileChange>>> described = runner.describeAll(connection, batch, false);
+      for (Map.Entry<Long, Pair<ChangeListData, List<FileChange>>> entry : described.entrySet()) {
+        put(key, entry.getKey(), entry.getValue().first.DESCRIPTION, entry.getValue().second);
+      }
+    }
+  }
+
+  void put(@NotNull ConnectionKey key, long changeListNumber, @Nullable String description, @NotNull List<FileChange> changes) {
+    Entry entry = new Entry(description, changes);
+    synchronized (myLock) {
+      ensureLoaded();
+      myEntries.put(Pair.create(key, changeListNumber), entry);
+      myModified = true;
+    }
+  }
+
+  public void load(@NotNull Collection<PerforceChangeList> changeLists) throws VcsException {
+    for (Map.Entry<P4Connection, List<Long>> entry : groupByConnection(changeLists).entrySet()) {
+      load(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Describes the change lists which aren't cached yet in background, so that their files are shown without a delay
+   * when they're selected.
+   */
+  public void prefetch(@NotNull Collection<PerforceChangeList> changeLists) {
+    Map<P4Connection, List<Long>> numbers = groupByConnection(changeLists);
+    myPrefetchExecutor.execute(() -> {
+      for (Map.Entry<P4Connection, List<Long>> entry : numbers.entrySet()) {
+        if (myDisposed) return;
+        try {
+          load(entry.getKey(), entry.getValue());
+        }
+        catch (VcsException | ProcessCanceledException e) {
+          LOG.debug("Failed to prefetch submitted change lists " + entry.getValue(), e);
+        }
+      }
+    });
+  }
+
+  private static Map<P4Connection, List<Long>> groupByConnection(@NotNull Collection<PerforceChangeList> changeLists) {
+    Map<P4Connection, List<Long>> numbers = new LinkedHashMap<>();
+    for (PerforceChangeList list : changeLists) {
+      numbers.computeIfAbsent(list.getConnection(), __ -> new ArrayList<>()).add(list.getNumber());
+    }
+    return numbers;
+  }
+
+  @Nullable
+  Entry getEntry(@NotNull ConnectionKey key, long changeListNumber) {
+    synchronized (myLock) {
+      ensureLoaded();
+      return myEntries.get(Pair.create(key, changeListNumber));
+    }
+  }
+
+  private void ensureLoaded() {
+    if (myEntries != null) return;
+
+    myEntries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Pair<ConnectionKey, Long>, Entry> eldest) {
+        return size() > MAX_SIZE;
+      }
+    };
+    if (!myCacheFile.isFile()) return;
+
+    try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(myCacheFile)))) {
+      if (stream.readInt() != VERSION) return;
+
+      int count = stream.readInt();
+      for (int i = 0; i < count; i++) {
+        ConnectionKey key = new ConnectionKey(stream.readUTF(), stream.readUTF(), stream.readUTF());
+        long number = stream.readLong();
+        myEntries.put(Pair.create(key, number), Entry.readFromStream(stream));
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.info("Failed to load submitted changes from " + myCacheFile, e);
+      myEntries.clear();
+    }
+  }
+
+  @Override
+  public void dispose() {
+    myDisposed = true;
+    myPrefetchExecutor.shutdownNow();
+    synchronized (myLock) {
+      if (myEntries == null || !myModified) return;
+
+      try {
+        FileUtil.createParentDirs(myCacheFile);
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myCacheFile)))) {
+          stream.writeInt(VERSION);
+          stream.writeInt(myEntries.size());
+          for (Map.Entry<Pair<ConnectionKey, Long>, Entry> entry : myEntries.entrySet()) {
+            ConnectionKey key = entry.getKey().first;
+            stream.writeUTF(key.getServer());
+            stream.writeUTF(key.getClient());
+            stream.writeUTF(key.getUser());
+            stream.writeLong(entry.getKey().second);
+            entry.getValue().writeToStream(stream);
+          }
+        }
+        myModified = false;
+      }
+      catch (IOException e) {
+        LOG.info("Failed to save submitted changes to " + myCacheFile, e);
+        FileUtil.delete(myCacheFile);
+      }
+    }
+  }
+
+  /**
+   * Files of a change list with their depot paths, so that local paths are calculated with the current client mapping
+   */
+  static final class Entry {
+    final String description;
+    final int[] types;
+    final String[] depotPaths;
+    final long[] revisions;
+
+    private Entry(String description, List<FileChange> changes) {
+      this(description, new int[changes.size()], new String[changes.size()], new long[changes.size()]);
+      for (int i = 0; i < changes.size(); i++) {
+        FileChange change = changes.get(i);
+        types[i] = change.getType();
+        depotPaths[i] = change.getDepotPath();
+        revisions[i] = change.getRevisionAfter();
+      }
+    }
+
+    private Entry(String description, int[] types, String[] depotPaths, long[] revisions) {
+      this.description = description;
+      this.types = types;
+      this.depotPaths = depotPaths;
+      this.revisions = revisions;
+    }
+
+    private List<PerforceChange> createChanges(PerforceClient client, long changeListNumber) throws VcsException {
+      List<PerforceChange> result = new ArrayList<>(depotPaths.length);
+      for (int i = 0; i < depotPaths.length; i++) {
+        File localFile = PerforceManager.getFileByDepotName(depotPaths[i], client);
+        result.add(new PerforceChange(types[i], localFile, depotPaths[i], revisions[i], changeListNumber, description));
+      }
+      return result;
+    }
+
+    private void writeToStream(DataOutput stream) throws IOException {
+      // descriptions may be longer than the 64K limit of DataOutput.writeUTF
+      IOUtil.writeString(description, stream);
+      stream.writeInt(depotPaths.length);
+      for (int i = 0; i < depotPaths.length; i++) {
+        stream.writeInt(types[i]);
+        IOUtil.writeUTF(stream, depotPaths[i]);
+        stream.writeLong(revisions[i]);
+      }
+    }
+
+    private static Entry readFromStream(DataInput stream) throws IOException {
+      String description = IOUtil.readString(stream);
+      int count = stream.readInt();
+      int[] types = new int[count];
+      String[] depotPaths = new String[count];
+      long[] revisions = new long[count];
+      for (int i = 0; i < count; i++) {
+        types[i] = stream.readInt();
+        depotPaths[i] = IOUtil.readUTF(stream);
+        revisions[i] = stream.readLong();
+      }
+      return new Entry(description, types, depotPaths, revisions);
+    }
+  }
+}
@@ -32,11 +32,15 @@ import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.process.InterruptibleProcess;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.ArrayUtilRt;
 import com.intellij.util.Consumer;
 import com.intellij.util.EmptyConsumer;
 import com.intellij.util.MemoryDumpHelper;
+import com.intellij.util.SystemProperties;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.idea.perforce.PerforceBundle;
 import org.jetbrains.idea.perforce.application.PerforceManager;
@@ -52,10 +56,8 @@ import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public abstract class AbstractP4Connection implements P4Connection {
@@ -66,6 +68,11 @@ public abstract class AbstractP4Connection implements P4Connection {
   private static Map<String, String> ourTestEnvironment = Collections.emptyMap();
   private static Consumer<? super String> ourCommandCallback = EmptyConsumer.getInstance();
 
+  private static final int MAX_PROCESSES_PER_SERVER = Math.max(1, SystemProperties.getIntProperty("perforce.max.processes.per.server", 8));
+  // server -> permits to run a p4 process talking to it
+  private static final Map<String, Semaphore> ourServerPermits = new ConcurrentHashMap<>();
+  private static final AtomicLong ourStartedProcessCount = new AtomicLong();
+
   @Override
   public ExecResult runP4CommandLine(final PerforceSettings settings,
                                      final String[] strings,
@@ -94,6 +101,22 @@ public abstract class AbstractP4Connection implements P4Connection {
     return result;
   }
 
+  @Override
+  public void runP4Command(PerforcePhysicalConnectionParametersI parameters,
+                           String @NotNull [] conArgs,
+                           String[] p4args,
+                           ExecResult retVal,
+                           @Nullable StringBuffer inputStream) {
+    runP4CommandImpl(parameters, ArrayUtil.mergeArrays(getConnectArgs(), conArgs), p4args, retVal, inputStream);
+  }
+
+  /**
+   * @return the arguments, which the commands of this connection are run with
+   */
+  protected String @NotNull [] getConnectArgs() {
+    return ArrayUtilRt.EMPTY_STRING_ARRAY;
+  }
+
   protected void runP4CommandImpl(PerforcePhysicalConnectionParametersI parameters,
                                   String[] connArgs,
                                   String[] p4args,
@@ -139,7 +162,7 @@ public abstract class AbstractP4Connection implements P4Connection {
     setEnvironment(cwd, cmd.getEnvironment());
 
     final CommandDebugInfoWrapper debugInfoWrapper = new CommandDebugInfoWrapper(cmd);
-    final Tracer tracer = new Tracer(project, p4args.length > 0 ? p4args[0] : "", debugInfoWrapper);
+    final Tracer tracer = new Tracer(project, getCommandName(p4args), debugInfoWrapper);
 
     debugCmd(cwd, debugInfoWrapper, cmd.getEnvironment());
 
@@ -147,12 +170,22 @@ public abstract class AbstractP4Connection implements P4Connection {
     Process proc = null;
     MyInterruptibleProcess worker = null;
     PerforceProcessWaiter processWaiter = null;
+    Future<?> inputWriter = null;
     String processList = null;
+    final Semaphore permits = acquireProcessPermit();
     try {
       tracer.start();
+      ourStartedProcessCount.incrementAndGet();
       proc = cmd.createProcess();
       if (inputData != null) {
-        passInputToProcess(inputData.toString(), proc, perforceSettings);
+        // written concurrently with reading the output: p4 may print the output of "-x -" arguments before reading all of them,
+        // and would block on a full output pipe while the input isn't written yet
+        Process process = proc;
+        String input = inputData.toString();
+        inputWriter = ApplicationManager.getApplication().executeOnPooledThread(() -> {
+          passInputToProcess(input, process, perforceSettings);
+          return null;
+        });
       }
 
       worker = new MyInterruptibleProcess(project, proc, perforceSettings.getServerTimeout());
@@ -160,6 +193,9 @@ public abstract class AbstractP4Connection implements P4Connection {
       processWaiter = new PerforceProcessWaiter();
       worker.setOnBeforeInterrupt(processWaiter::cancelListeners);
       rc = processWaiter.execute(worker, perforceSettings.getServerTimeout());
+      if (rc == 0 && inputWriter != null) {
+        waitForInput(inputWriter);
+      }
     }
     catch (ExecutionException e) {
       throw new RuntimeException(e.getCause());
@@ -173,11 +209,17 @@ public abstract class AbstractP4Connection implements P4Connection {
       }
 
       tracer.stop();
+      if (inputWriter != null) {
+        inputWriter.cancel(true);
+      }
       if (worker != null) {
         worker.closeProcess();
       } else if (proc != null) {
         InterruptibleProcess.close(proc);
       }
+      if (permits != null) {
+        permits.release();
+      }
     }
 
     if (rc == 0) {
@@ -225,6 +267,39 @@ public abstract class AbstractP4Connection implements P4Connection {
     }
   }
 
+  /**
+   * Waits until fewer than {@code perforce.max.processes.per.server} p4 processes talk to the server of this connection,
+   * so that a refresh of many roots, or several background tasks, don't overload the server.
+   *
+   * @return the semaphore to release when the process finishes, or null if the connection doesn't talk to a server
+   */
+  @Nullable
+  private Semaphore acquireProcessPermit() throws InterruptedException {
+    final String server = getServer();
+    if (server == null) return null;
+
+    final Semaphore permits = ourServerPermits.computeIfAbsent(server, __ -> new Semaphore(MAX_PROCESSES_PER_SERVER));
+    while (!permits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+      ProgressManager.checkCanceled();
+    }
+    return permits;
+  }
+
+  /**
+   * @return the server the commands of this connection are sent to, or null if the connection is used only for local commands
+   */
+  @Nullable
+  protected String getServer() {
+    return getConnectionKey().getServer();
+  }
+
+  /**
+   * @return the number of p4 processes started since the IDE start
+   */
+  public static long getStartedProcessCount() {
+    return ourStartedProcessCount.get();
+  }
+
   @TestOnly
   public static void setTestEnvironment(Map<String, String> env, Disposable parentDisposable) {
     if (!ourTestEnvironment.isEmpty()) {
@@ -268,7 +343,7 @@ public abstract class AbstractP4Connection implements P4Connection {
 
   private static GeneralCommandLine fillCmdLine(PerforcePhysicalConnectionParametersI perforceSettings, String[] connArgs, String[] p4args) {
     GeneralCommandLine cmd = new GeneralCommandLine(perforceSettings.getPathToExec());
-    String cmdName = p4args.length == 0 ? null : p4args[0];
+    String cmdName = p4args.length == 0 ? null : getCommandName(p4args);
     if (ourCommandCallback != EmptyConsumer.getInstance()) {
       ourCommandCallback.consume(StringUtil.join(p4args, " "));
     }
@@ -284,6 +359,17 @@ public abstract class AbstractP4Connection implements P4Connection {
     return cmd;
   }
 
+  /**
+   * @return the name of the command, skipping the {@code -x argumentFile} global option which may precede it
+   */
+  @NotNull
+  private static String getCommandName(String[] p4args) {
+    if (p4args.length > 2 && "-x".equals(p4args[0])) {
+      return p4args[2];
+    }
+    return p4args.length > 0 ? p4args[0] : "";
+  }
+
   private static void setEnvironment(File cwd, Map<String, String> env) {
     // On Unix, Perforce relies on the "PWD" variable to determine its current working directory
     // for finding .p4config.  We need to make sure it matches the directory we want to use.
@@ -292,6 +378,18 @@ public abstract class AbstractP4Connection implements P4Connection {
     env.putAll(ourTestEnvironment);
   }
 
+  private static void waitForInput(Future<?> inputWriter) throws IOException, InterruptedException {
+    try {
+      inputWriter.get();
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException)e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
   private static void passInputToProcess(String inputData, Process proc, final PerforcePhysicalConnectionParametersI perforceSettings) throws IOException {
     final OutputStream outputStream = proc.getOutputStream();
 
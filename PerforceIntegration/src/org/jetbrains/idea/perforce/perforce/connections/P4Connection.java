@@ -15,6 +15,13 @@ public interface P4Connection {
   void runP4Command(PerforcePhysicalConnectionParametersI parameters, String[] p4args, ExecResult retVal, @Nullable final StringBuffer inputStream)
     throws VcsException, PerforceTimeoutException, IOException, InterruptedException;
 
+  /**
+   * Runs the command with additional connection arguments, e.g. {@code -ztag}, passed after the own arguments of the connection
+   */
+  void runP4Command(PerforcePhysicalConnectionParametersI parameters, @NonNls @NotNull String[] conArgs, String[] p4args, ExecResult retVal,
+                    @Nullable final StringBuffer inputStream)
+    throws VcsException, PerforceTimeoutException, IOException, InterruptedException;
+
   ExecResult runP4CommandLine(final PerforceSettings settings, @NonNls final String[] strings, @Nullable final StringBuffer stringBuffer)
     throws VcsException;
 
@@ -43,6 +43,12 @@ public class PerforceLocalConnection extends AbstractP4Connection {
     throw new UnsupportedOperationException();
   }
 
+  @Nullable
+  @Override
+  protected String getServer() {
+    return null;
+  }
+
   @Override
   public ConnectionId getId() {
     return myConnectionId;
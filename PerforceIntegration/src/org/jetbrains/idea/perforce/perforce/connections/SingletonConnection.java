@@ -69,7 +69,12 @@ public class SingletonConnection extends AbstractP4Connection implements Perforc
                            String[] p4args,
                            ExecResult retVal,
                            @Nullable StringBuffer inputStream) {
-    runP4CommandImpl(parameters, mySettings.getConnectArgs(), p4args, retVal, inputStream);
+    runP4CommandImpl(parameters, getConnectArgs(), p4args, retVal, inputStream);
+  }
+
+  @Override
+  protected String @NotNull [] getConnectArgs() {
+    return mySettings.getConnectArgs();
   }
 
   @Override
@@ -977,7 +977,8 @@ public class PerforceChangeProviderTest extends PerforceTestCase {
 
     refreshChanges();
 
-    assertEquals(1, commands.stream().filter(s -> s.startsWith("changes ")).count());
+    assertEquals(1, commands.stream().filter(s -> s.startsWith("changes ") && s.contains(" pending")).count());
+    assertEquals(1, commands.stream().filter(s -> s.startsWith("changes ") && s.contains(" submitted")).count());
   }
 
   @Test
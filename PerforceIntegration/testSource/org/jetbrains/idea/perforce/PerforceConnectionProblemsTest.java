@@ -1,16 +1,21 @@
 package org.jetbrains.idea.perforce;
 
 import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.VcsConfiguration;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.impl.DebugUtil;
 import org.jetbrains.idea.perforce.application.PerforceVcs;
 import org.jetbrains.idea.perforce.operations.VcsOperationLog;
+import org.jetbrains.idea.perforce.perforce.ExecResult;
 import org.jetbrains.idea.perforce.perforce.PerforceSettings;
 import org.junit.Test;
 
+import java.io.File;
+
 import static com.intellij.testFramework.UsefulTestCase.assertOneElement;
+import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
 
@@ -126,6 +131,20 @@ public class PerforceConnectionProblemsTest extends PerforceTestCase {
     assertSingleOfflineChange();
   }
 
+  @Test
+  public void testLongArgumentListPassedViaStandardInput() throws Exception {
+    // more input and output than a pipe buffer holds, so that p4 prints the output while the input is still written
+    int count = 5000;
+    StringBuilder paths = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      paths.append(new File(myClientRoot, "dir" + i + "/file" + i + ".txt").getPath()).append('\n');
+    }
+    ExecResult result = new ExecResult();
+    getConnection().runP4Command(PerforceSettings.getSettings(myProject), new String[]{"-x", "-", "where"}, result, new StringBuffer(paths));
+    assertEquals(result.getStderr(), 0, result.getExitCode());
+    assertEquals(count, StringUtil.countNewLines(result.getStdout()));
+  }
+
   private void assertSingleOfflineChange() {
     refreshChanges();
     getSingleChange();
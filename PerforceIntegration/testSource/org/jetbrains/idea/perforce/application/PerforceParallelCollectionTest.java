@@ -0,0 +1,104 @@
+package org.jetbrains.idea.perforce.application;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.util.TimeoutUtil;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class PerforceParallelCollectionTest extends LightPlatformTestCase {
+  private static final int TIMEOUT_SECONDS = 10;
+
+  public void testResultsInOrderOfItems() throws VcsException {
+    List<Integer> items = IntStream.range(0, 8).boxed().collect(Collectors.toList());
+    // the first items finish last
+    List<String> results = PerforceChangeProvider.collectInParallel(items, new ProgressIndicatorBase(), item -> {
+      TimeoutUtil.sleep((items.size() - item) * 10L);
+      return "result" + item;
+    });
+    assertEquals(items.stream().map(item -> "result" + item).collect(Collectors.toList()), results);
+  }
+
+  public void testItemsCollectedConcurrently() throws VcsException {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    List<Boolean> results = PerforceChangeProvider.collectInParallel(List.of(1, 2), new ProgressIndicatorBase(), item -> {
+      bothStarted.countDown();
+      try {
+        return bothStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    assertEquals(List.of(true, true), results);
+  }
+
+  public void testErrorStopsRunningItems() throws InterruptedException {
+    CountDownLatch othersStarted = new CountDownLatch(2);
+    CountDownLatch othersStopped = new CountDownLatch(2);
+    try {
+      PerforceChangeProvider.collectInParallel(List.of(0, 1, 2), new ProgressIndicatorBase(), item -> {
+        if (item == 0) {
+          awaitQuietly(othersStarted);
+          throw new VcsException("failed");
+        }
+        return runUntilCancelled(othersStarted, othersStopped);
+      });
+      fail("The error of the first item should be rethrown");
+    }
+    catch (VcsException e) {
+      assertEquals("failed", e.getMessage());
+    }
+    assertTrue(othersStopped.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+
+  public void testCancellationStopsRunningItems() throws Exception {
+    ProgressIndicatorBase progress = new ProgressIndicatorBase();
+    progress.start();
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch stopped = new CountDownLatch(2);
+    new Thread(() -> {
+      awaitQuietly(started);
+      progress.cancel();
+    }, "Perforce collection canceller").start();
+    try {
+      PerforceChangeProvider.collectInParallel(List.of(0, 1), progress, item -> runUntilCancelled(started, stopped));
+      fail("The collection should be cancelled");
+    }
+    catch (ProcessCanceledException ignored) {
+    }
+    assertTrue(stopped.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+
+  private static Object runUntilCancelled(CountDownLatch started, CountDownLatch stopped) {
+    started.countDown();
+    try {
+      // long after the test stops waiting, so that only the cancellation stops it in time
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(3 * TIMEOUT_SECONDS);
+      while (System.currentTimeMillis() < deadline) {
+        ProgressManager.checkCanceled();
+        TimeoutUtil.sleep(5);
+      }
+      return null;
+    }
+    finally {
+      stopped.countDown();
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package org.jetbrains.idea.perforce.application;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class PerforceVersionedFilesCacheTest extends TestCase {
+  private static final ConnectionKey KEY = new ConnectionKey("server:1666", "client", "user");
+
+  private File myCacheFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheFile = FileUtil.createTempFile("versioned", ".cache", true);
+    FileUtil.delete(myCacheFile);
+  }
+
+  public void testRoundTrip() {
+    PerforceVersionedFilesCache cache = createCache(10, "/ws/a.txt", "/ws/dir/b.txt");
+    cache.dispose();
+
+    PerforceVersionedFilesCache loaded = new PerforceVersionedFilesCache(myCacheFile);
+    assertTrue(loaded.isValid(KEY, 10));
+    assertTrue(loaded.contains(KEY, "/ws/a.txt"));
+    assertTrue(loaded.contains(KEY, "/ws/dir/b.txt"));
+    assertFalse(loaded.contains(KEY, "/ws/c.txt"));
+    assertFalse(loaded.isValid(new ConnectionKey("server:1666", "other", "user"), 10));
+  }
+
+  public void testChangedHaveListInvalidatesData() {
+    PerforceVersionedFilesCache cache = createCache(10, "/ws/a.txt");
+    // e.g. "p4 flush //ws/...#0" from the command line
+    assertFalse(cache.isValid(KEY, 9));
+    assertFalse(cache.isValid(KEY, -1));
+
+    cache.setHaveListSize(KEY, 9);
+    assertTrue(cache.isValid(KEY, 9));
+  }
+
+  public void testPartialScanDoesNotMakeDataComplete() {
+    PerforceVersionedFilesCache cache = new PerforceVersionedFilesCache(myCacheFile);
+    cache.replaceUnder(KEY, List.of(dir("/ws")), List.of("/ws/a.txt"), false);
+    cache.setHaveListSize(KEY, 1);
+    assertFalse(cache.isValid(KEY, 1));
+    assertFalse(cache.contains(KEY, "/ws/a.txt"));
+  }
+
+  public void testGetPathsUnder() {
+    PerforceVersionedFilesCache cache = createCache(10, "/ws/dir", "/ws/dir/a.txt", "/ws/dir/sub/b.txt", "/ws/dir.txt", "/ws/dir2/c.txt");
+
+    assertSameElements(cache.getPathsUnder(KEY, List.of(dir("/ws/dir"))), "/ws/dir", "/ws/dir/a.txt", "/ws/dir/sub/b.txt");
+    assertSameElements(cache.getPathsUnder(KEY, List.of(file("/ws/dir.txt"), file("/ws/missing.txt"))), "/ws/dir.txt");
+    // nested roots
+    assertSameElements(cache.getPathsUnder(KEY, List.of(dir("/ws/dir"), dir("/ws/dir/sub"))),
+                       "/ws/dir", "/ws/dir/a.txt", "/ws/dir/sub/b.txt");
+  }
+
+  public void testInvalidateRecursively() {
+    PerforceVersionedFilesCache cache = createCache(10, "/ws/dir/a.txt", "/ws/dir/sub/b.txt", "/ws/dir.txt", "/ws/dir2/c.txt");
+
+    cache.invalidate("/ws/dir/a.txt", false);
+    assertFalse(cache.contains(KEY, "/ws/dir/a.txt"));
+    assertTrue(cache.contains(KEY, "/ws/dir/sub/b.txt"));
+
+    cache.invalidate("/ws/dir", true);
+    assertFalse(cache.contains(KEY, "/ws/dir/sub/b.txt"));
+    // siblings sharing the prefix of the name stay
+    assertTrue(cache.contains(KEY, "/ws/dir.txt"));
+    assertTrue(cache.contains(KEY, "/ws/dir2/c.txt"));
+  }
+
+  public void testReplaceUnder() {
+    PerforceVersionedFilesCache cache = createCache(10, "/ws/dir/a.txt", "/ws/dir/b.txt", "/ws/other.txt");
+
+    cache.replaceUnder(KEY, List.of(dir("/ws/dir")), List.of("/ws/dir/b.txt", "/ws/dir/c.txt"), false);
+    assertFalse(cache.contains(KEY, "/ws/dir/a.txt"));
+    assertTrue(cache.contains(KEY, "/ws/dir/b.txt"));
+    assertTrue(cache.contains(KEY, "/ws/dir/c.txt"));
+    assertTrue(cache.contains(KEY, "/ws/other.txt"));
+    assertTrue(cache.isValid(KEY, 10));
+  }
+
+  public void testUpdate() {
+    PerforceVersionedFilesCache cache = createCache(10, "/ws/a.txt", "/ws/b.txt");
+
+    cache.update(KEY, List.of("/ws/a.txt", "/ws/c.txt"), List.of("/ws/c.txt"));
+    assertFalse(cache.contains(KEY, "/ws/a.txt"));
+    assertTrue(cache.contains(KEY, "/ws/b.txt"));
+    assertTrue(cache.contains(KEY, "/ws/c.txt"));
+  }
+
+  public void testClear() {
+    PerforceVersionedFilesCache cache = createCache(10, "/ws/a.txt");
+    cache.clear();
+    assertFalse(cache.isValid(KEY, 10));
+    assertFalse(cache.contains(KEY, "/ws/a.txt"));
+  }
+
+  public void testOtherVersionIgnored() throws IOException {
+    FileUtil.writeToFile(myCacheFile, new byte[]{0, 0, 0, 1, 0, 0, 0, 1});
+    PerforceVersionedFilesCache cache = new PerforceVersionedFilesCache(myCacheFile);
+    assertFalse(cache.isValid(KEY, 1));
+    assertEquals(Collections.emptyList(), cache.getPathsUnder(KEY, List.of(dir("/ws"))));
+  }
+
+  private PerforceVersionedFilesCache createCache(long haveListSize, String... paths) {
+    PerforceVersionedFilesCache cache = new PerforceVersionedFilesCache(myCacheFile);
+    cache.replaceUnder(KEY, List.of(dir("/ws")), List.of(paths), true);
+    cache.setHaveListSize(KEY, haveListSize);
+    assertTrue(cache.isValid(KEY, haveListSize));
+    return cache;
+  }
+
+  private static FilePath dir(String path) {
+    return new LocalFilePath(path, true);
+  }
+
+  private static FilePath file(String path) {
+    return new LocalFilePath(path, false);
+  }
+
+  private static void assertSameElements(List<String> actual, String... expected) {
+    assertEquals(new HashSet<>(List.of(expected)), new HashSet<>(actual));
+    assertEquals(expected.length, actual.size());
+  }
+}
@@ -0,0 +1,80 @@
+package org.jetbrains.idea.perforce.application.annotation;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+
+public class PerforceAnnotationCacheTest extends TestCase {
+  private File myCacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheDir = FileUtil.createTempDirectory("annotations", "", true);
+  }
+
+  public void testRoundTrip() throws Exception {
+    new PerforceAnnotationCache(myCacheDir, 10).put("server://depot/a.txt#3", new AnnotationInfo("1: line1\n3: line2\n", true));
+
+    AnnotationInfo info = new PerforceAnnotationCache(myCacheDir, 10).get("server://depot/a.txt#3");
+    assertNotNull(info);
+    assertEquals("line1\nline2\n", info.getContent());
+    assertEquals(2, info.getLineCount());
+    assertEquals(1, info.getRevision(0));
+    assertEquals(3, info.getRevision(1));
+    assertTrue(info.isUseChangelistNumbers());
+
+    assertNull(new PerforceAnnotationCache(myCacheDir, 10).get("server://depot/a.txt#2"));
+  }
+
+  public void testKeyCollision() throws Exception {
+    // both keys have the same hash code, so they're stored in the same file
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    PerforceAnnotationCache cache = new PerforceAnnotationCache(myCacheDir, 10);
+    cache.put("Aa", new AnnotationInfo("1: a\n", false));
+    assertNull(cache.get("BB"));
+
+    cache.put("BB", new AnnotationInfo("1: b\n", false));
+    assertNull(cache.get("Aa"));
+    assertEquals("b\n", cache.get("BB").getContent());
+  }
+
+  public void testLeastRecentlyUsedDropped() throws Exception {
+    PerforceAnnotationCache cache = new PerforceAnnotationCache(myCacheDir, 2);
+    cache.put("a", new AnnotationInfo("1: a\n", false));
+    setTimestampOfNewFiles(1_000_000);
+    cache.put("b", new AnnotationInfo("1: b\n", false));
+    setTimestampOfNewFiles(2_000_000);
+    // using an annotation makes it the most recently used one
+    assertNotNull(cache.get("a"));
+
+    cache.put("c", new AnnotationInfo("1: c\n", false));
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+  }
+
+  public void testCorruptFileDropped() throws Exception {
+    PerforceAnnotationCache cache = new PerforceAnnotationCache(myCacheDir, 10);
+    cache.put("a", new AnnotationInfo("1: a\n", false));
+    File[] files = myCacheDir.listFiles();
+    assertNotNull(files);
+    assertEquals(1, files.length);
+    FileUtil.writeToFile(files[0], new byte[]{0, 0, 0, 1, 0});
+
+    assertNull(cache.get("a"));
+    assertFalse(files[0].exists());
+  }
+
+  // file timestamps may be too coarse to order the files written by a test
+  private void setTimestampOfNewFiles(long timestamp) {
+    File[] files = myCacheDir.listFiles();
+    assertNotNull(files);
+    for (File file : files) {
+      if (file.lastModified() > 10_000_000) {
+        assertTrue(file.setLastModified(timestamp));
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package org.jetbrains.idea.perforce.operations;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+public class VcsOperationJournalTest extends TestCase {
+  private File myFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFile = FileUtil.createTempFile("operations", ".journal", true);
+    FileUtil.delete(myFile);
+  }
+
+  public void testReplay() {
+    VcsOperationJournal journal = new VcsOperationJournal(myFile);
+    assertTrue(journal.replay().isEmpty());
+
+    P4AddOperation add = new P4AddOperation("list", "/ws/a.txt");
+    P4EditOperation edit = new P4EditOperation("list", "/ws/b.txt");
+    P4MoveRenameOperation rename = new P4MoveRenameOperation("other", "/ws/c.txt", "/ws/d.txt");
+    journal.added(add);
+    journal.added(edit);
+    journal.added(rename);
+    journal.removed(edit);
+    journal.flush(List.of(add, rename));
+    journal.close();
+
+    List<VcsOperation> replayed = new VcsOperationJournal(myFile).replay();
+    assertEquals(2, replayed.size());
+    P4AddOperation replayedAdd = (P4AddOperation)replayed.get(0);
+    assertEquals("/ws/a.txt", replayedAdd.getPath());
+    assertEquals("list", replayedAdd.getChangeList());
+    P4MoveRenameOperation replayedRename = (P4MoveRenameOperation)replayed.get(1);
+    assertEquals("/ws/c.txt", replayedRename.oldPath);
+    assertEquals("/ws/d.txt", replayedRename.newPath);
+  }
+
+  public void testIncompleteLastRecord() throws IOException {
+    VcsOperationJournal journal = new VcsOperationJournal(myFile);
+    journal.replay();
+    journal.added(new P4AddOperation("list", "/ws/a.txt"));
+    journal.added(new P4AddOperation("list", "/ws/b.txt"));
+    journal.close();
+
+    try (RandomAccessFile file = new RandomAccessFile(myFile, "rw")) {
+      file.setLength(file.length() - 3);
+    }
+
+    List<VcsOperation> replayed = new VcsOperationJournal(myFile).replay();
+    assertEquals(1, replayed.size());
+    assertEquals("/ws/a.txt", ((P4AddOperation)replayed.get(0)).getPath());
+  }
+
+  public void testCompaction() {
+    VcsOperationJournal journal = new VcsOperationJournal(myFile);
+    journal.replay();
+    P4AddOperation kept = new P4AddOperation("list", "/ws/kept.txt");
+    journal.added(kept);
+    for (int i = 0; i < 2000; i++) {
+      P4AddOperation operation = new P4AddOperation("list", "/ws/file" + i + ".txt");
+      journal.added(operation);
+      journal.removed(operation);
+    }
+    long sizeBefore = myFile.length();
+    journal.flush(List.of(kept));
+    journal.close();
+
+    assertTrue(myFile.length() < sizeBefore);
+    List<VcsOperation> replayed = new VcsOperationJournal(myFile).replay();
+    assertEquals(1, replayed.size());
+    assertEquals("/ws/kept.txt", ((P4AddOperation)replayed.get(0)).getPath());
+  }
+
+  public void testMigrationMarkSurvivesCompaction() {
+    VcsOperationJournal journal = new VcsOperationJournal(myFile);
+    journal.replay();
+    assertFalse(journal.isMigrated());
+    journal.migrated(List.of(new P4AddOperation("list", "/ws/a.txt")));
+    journal.close();
+
+    for (int i = 0; i < 2; i++) {
+      VcsOperationJournal reopened = new VcsOperationJournal(myFile);
+      assertEquals(1, reopened.replay().size());
+      assertTrue(reopened.isMigrated());
+      reopened.close();
+    }
+  }
+}
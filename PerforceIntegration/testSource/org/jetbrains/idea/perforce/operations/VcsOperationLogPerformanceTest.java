@@ -0,0 +1,60 @@
+package org.jetbrains.idea.perforce.operations;
+
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class VcsOperationLogPerformanceTest extends LightPlatformTestCase {
+  private static final int OPERATION_COUNT = 50_000;
+
+  private File myJournalFile;
+  private List<VcsOperation> myOperations;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myJournalFile = FileUtil.createTempFile("operations", ".journal", true);
+    FileUtil.delete(myJournalFile);
+    myOperations = new ArrayList<>();
+    for (int i = 0; i < OPERATION_COUNT; i++) {
+      myOperations.add(new P4EditOperation("list", "/ws/dir" + i % 100 + "/file" + i + ".txt"));
+    }
+  }
+
+  public void testEnqueue() {
+    PlatformTestUtil.startPerformanceTest("Enqueue offline operations", 10_000, () -> {
+      VcsOperationLog log = new VcsOperationLog(getProject(), myJournalFile);
+      try {
+        // each operation is flushed separately, so that the cost of a flush is multiplied by the number of pending operations
+        for (VcsOperation operation : myOperations) {
+          log.addToLog(operation);
+        }
+        assertEquals(OPERATION_COUNT, log.getPendingOperations().size());
+      }
+      finally {
+        Disposer.dispose(log);
+      }
+    }).setup(() -> FileUtil.delete(myJournalFile)).assertTiming();
+  }
+
+  public void testReplay() {
+    VcsOperationLog written = new VcsOperationLog(getProject(), myJournalFile);
+    myOperations.forEach(written::addToLog);
+    Disposer.dispose(written);
+
+    PlatformTestUtil.startPerformanceTest("Replay offline operations", 5_000, () -> {
+      VcsOperationLog log = new VcsOperationLog(getProject(), myJournalFile);
+      try {
+        assertEquals(OPERATION_COUNT, log.getPendingOperations().size());
+      }
+      finally {
+        Disposer.dispose(log);
+      }
+    }).assertTiming();
+  }
+}
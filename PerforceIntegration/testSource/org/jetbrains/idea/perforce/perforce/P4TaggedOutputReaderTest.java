@@ -0,0 +1,120 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.vcs.VcsException;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@NonNls public class P4TaggedOutputReaderTest extends TestCase {
+  public void testRecords() throws IOException, VcsException {
+    List<Map<String, String>> records = readAll("... depotFile //depot/a b - c.txt\n" +
+                                                "... clientFile /home/user/ws/a b - c.txt\n" +
+                                                "... headRev 3\n" +
+                                                "... ... otherOpen0 user@client\n" +
+                                                "\n" +
+                                                "... depotFile //depot/ф.txt\r\n" +
+                                                "... headType\r\n" +
+                                                "\r\n" +
+                                                "\n");
+    assertEquals(2, records.size());
+    assertEquals("//depot/a b - c.txt", records.get(0).get("depotFile"));
+    assertEquals("/home/user/ws/a b - c.txt", records.get(0).get("clientFile"));
+    assertEquals("3", records.get(0).get("headRev"));
+    assertEquals("user@client", records.get(0).get("otherOpen0"));
+    assertEquals("//depot/ф.txt", records.get(1).get("depotFile"));
+    assertEquals("", records.get(1).get("headType"));
+  }
+
+  public void testLastRecordWithoutSeparator() throws IOException, VcsException {
+    List<Map<String, String>> records = readAll("... depotFile //depot/a.txt\n\n... depotFile //depot/b.txt");
+    assertEquals(2, records.size());
+    assertEquals("//depot/b.txt", records.get(1).get("depotFile"));
+  }
+
+  public void testMultilineValue() throws IOException, VcsException {
+    Map<String, String> record = readAll("... desc first\nsecond\n... change 1\n").get(0);
+    assertEquals("first\nsecond", record.get("desc"));
+    assertEquals("1", record.get("change"));
+  }
+
+  public void testUnexpectedLine() throws IOException {
+    try {
+      readAll("... depotFile //depot/a.txt\nPerforce password (P4PASSWD) invalid or unset.\n");
+      fail();
+    }
+    catch (VcsException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Perforce password (P4PASSWD) invalid or unset."));
+    }
+  }
+
+  public void testLongLines() throws IOException, VcsException {
+    String longPath = "/dir".repeat(10_000) + "/a.txt";
+    assertEquals(longPath, readAll("... clientFile " + longPath + "\n").get(0).get("clientFile"));
+  }
+
+  public void testFStat() throws IOException, VcsException {
+    Map<String, String> record = readAll(fstatRecord(1)).get(0);
+    FStat fStat = FStat.fromTaggedRecord(record);
+    assertEquals("//depot/dir/file1.txt", fStat.depotFile);
+    assertEquals("/home/user/ws/dir/file1.txt", fStat.clientFile);
+    assertEquals("42", fStat.headChange);
+    assertEquals(FStat.STATUS_ON_SERVER_AND_LOCAL, fStat.status);
+    assertEquals(FStat.LOCAL_CHECKED_OUT, fStat.local);
+  }
+
+  public void testFStatPerformance() throws IOException, VcsException {
+    StringBuilder output = new StringBuilder();
+    for (int i = 0; i < 100_000; i++) {
+      output.append(fstatRecord(i));
+    }
+    byte[] bytes = output.toString().getBytes(StandardCharsets.UTF_8);
+
+    long start = System.currentTimeMillis();
+    P4TaggedOutputReader reader = new P4TaggedOutputReader(new ByteArrayInputStream(bytes));
+    Map<String, String> record = new HashMap<>();
+    int count = 0;
+    while (reader.readRecord(record)) {
+      FStat.fromTaggedRecord(record);
+      count++;
+    }
+    long executionTime = System.currentTimeMillis() - start;
+
+    assertEquals(100_000, count);
+    assertTrue("Execution time: " + executionTime, executionTime < 10000);
+  }
+
+  private static String fstatRecord(int i) {
+    return "... depotFile //depot/dir/file" + i + ".txt\n" +
+           "... clientFile /home/user/ws/dir/file" + i + ".txt\n" +
+           "... isMapped \n" +
+           "... headAction edit\n" +
+           "... headType text\n" +
+           "... headTime 1094486436\n" +
+           "... headRev 3\n" +
+           "... headChange 42\n" +
+           "... headModTime 1094486400\n" +
+           "... haveRev 3\n" +
+           "... action edit\n" +
+           "... change default\n" +
+           "... type text\n" +
+           "... actionOwner user\n" +
+           "\n";
+  }
+
+  private static List<Map<String, String>> readAll(String output) throws IOException, VcsException {
+    P4TaggedOutputReader reader = new P4TaggedOutputReader(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)));
+    List<Map<String, String>> result = new ArrayList<>();
+    Map<String, String> record = new HashMap<>();
+    while (reader.readRecord(record)) {
+      result.add(new HashMap<>(record));
+    }
+    return result;
+  }
+}
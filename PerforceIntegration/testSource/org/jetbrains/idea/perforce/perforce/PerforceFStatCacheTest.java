@@ -0,0 +1,134 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+public class PerforceFStatCacheTest extends TestCase {
+  private static final ConnectionKey KEY = new ConnectionKey("server:1666", "client", "user");
+
+  private File myCacheFile;
+  private File myRoot;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheFile = FileUtil.createTempFile("fstat", ".cache", true);
+    FileUtil.delete(myCacheFile);
+    myRoot = FileUtil.createTempDirectory("fstat", "root", true);
+  }
+
+  public void testRoundTrip() throws IOException {
+    String path = createFile("a.txt", "content");
+    PerforceFStatCache cache = new PerforceFStatCache(myCacheFile);
+    cache.revalidate(KEY, 10, Collections.emptyList());
+    cache.put(KEY, path, createFStat("3"));
+    assertEquals("3", cache.get(KEY, path).headRev);
+    cache.dispose();
+
+    PerforceFStatCache loaded = new PerforceFStatCache(myCacheFile);
+    // not used until checked against the server in this session
+    assertNull(loaded.get(KEY, path));
+    loaded.revalidate(KEY, 10, Collections.emptyList());
+    assertEquals("3", loaded.get(KEY, path).headRev);
+    assertNull(loaded.get(new ConnectionKey("server:1666", "other", "user"), path));
+  }
+
+  public void testNewSubmittedChangeDropsEntries() throws IOException {
+    String path = createFile("a.txt", "content");
+    PerforceFStatCache cache = createCache(path);
+    cache.dispose();
+
+    PerforceFStatCache loaded = new PerforceFStatCache(myCacheFile);
+    loaded.revalidate(KEY, 11, Collections.emptyList());
+    assertNull(loaded.get(KEY, path));
+  }
+
+  public void testOpenedFilesDropped() throws IOException {
+    String opened = createFile("a.txt", "content");
+    String other = createFile("b.txt", "content");
+    PerforceFStatCache cache = createCache(opened, other);
+
+    cache.revalidate(KEY, 10, List.of(opened));
+    assertNull(cache.get(KEY, opened));
+    assertNotNull(cache.get(KEY, other));
+  }
+
+  public void testOpenedStateNotCached() throws IOException {
+    String path = createFile("a.txt", "content");
+    PerforceFStatCache cache = new PerforceFStatCache(myCacheFile);
+    cache.revalidate(KEY, 10, Collections.emptyList());
+    FStat fstat = createFStat("3");
+    fstat.action = "edit";
+    cache.put(KEY, path, fstat);
+    assertNull(cache.get(KEY, path));
+  }
+
+  public void testLocalChangeDropsEntry() throws IOException {
+    String path = createFile("a.txt", "content");
+    PerforceFStatCache cache = createCache(path);
+
+    FileUtil.writeToFile(new File(path), "changed content");
+    assertNull(cache.get(KEY, path));
+  }
+
+  public void testInvalidate() throws IOException {
+    String a = createFile("dir/a.txt", "content");
+    String b = createFile("dir/sub/b.txt", "content");
+    String c = createFile("c.txt", "content");
+    PerforceFStatCache cache = createCache(a, b, c);
+
+    cache.invalidate(a, false);
+    assertNull(cache.get(KEY, a));
+    assertNotNull(cache.get(KEY, b));
+
+    cache.invalidate(new File(myRoot, "dir").getPath(), true);
+    assertNull(cache.get(KEY, b));
+    assertNotNull(cache.get(KEY, c));
+
+    cache.clear();
+    assertNull(cache.get(KEY, c));
+  }
+
+  public void testCorruptFileIgnored() throws IOException {
+    String path = createFile("a.txt", "content");
+    FileUtil.writeToFile(myCacheFile, "garbage");
+
+    PerforceFStatCache cache = new PerforceFStatCache(myCacheFile);
+    cache.revalidate(KEY, 10, Collections.emptyList());
+    assertNull(cache.get(KEY, path));
+    cache.put(KEY, path, createFStat("3"));
+    assertNotNull(cache.get(KEY, path));
+  }
+
+  private PerforceFStatCache createCache(String... paths) {
+    PerforceFStatCache cache = new PerforceFStatCache(myCacheFile);
+    cache.revalidate(KEY, 10, Collections.emptyList());
+    for (String path : paths) {
+      cache.put(KEY, path, createFStat("1"));
+      assertNotNull(cache.get(KEY, path));
+    }
+    return cache;
+  }
+
+  private String createFile(String relativePath, String content) throws IOException {
+    File file = new File(myRoot, relativePath);
+    FileUtil.writeToFile(file, content);
+    return file.getPath();
+  }
+
+  private static FStat createFStat(String headRev) {
+    FStat fstat = new FStat();
+    fstat.status = FStat.STATUS_ON_SERVER_AND_LOCAL;
+    fstat.local = FStat.LOCAL_CHECKED_IN;
+    fstat.depotFile = "//depot/a.txt";
+    fstat.headRev = headRev;
+    fstat.haveRev = headRev;
+    return fstat;
+  }
+}
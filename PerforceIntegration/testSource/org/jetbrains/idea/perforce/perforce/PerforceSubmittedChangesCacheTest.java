@@ -0,0 +1,75 @@
+package org.jetbrains.idea.perforce.perforce;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import junit.framework.TestCase;
+import org.jetbrains.idea.perforce.application.ConnectionKey;
+import org.jetbrains.idea.perforce.changesBrowser.FileChange;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+public class PerforceSubmittedChangesCacheTest extends TestCase {
+  private static final ConnectionKey KEY = new ConnectionKey("server:1666", "client", "user");
+
+  private File myCacheFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheFile = FileUtil.createTempFile("submitted", ".cache", true);
+    FileUtil.delete(myCacheFile);
+  }
+
+  public void testRoundTrip() {
+    String longDescription = StringUtil.repeat("description ", 10_000);
+    PerforceSubmittedChangesCache cache = new PerforceSubmittedChangesCache(myCacheFile);
+    cache.put(KEY, 1, longDescription, List.of(new FileChange("//depot/a.txt", null, 3, "edit"),
+                                               new FileChange("//depot/b.txt", null, 1, "add")));
+    cache.put(KEY, 2, null, Collections.emptyList());
+    cache.dispose();
+
+    PerforceSubmittedChangesCache loaded = new PerforceSubmittedChangesCache(myCacheFile);
+    PerforceSubmittedChangesCache.Entry entry = loaded.getEntry(KEY, 1);
+    assertNotNull(entry);
+    assertEquals(longDescription, entry.description);
+    assertOrderedEquals(entry.depotPaths, "//depot/a.txt", "//depot/b.txt");
+    assertEquals(3, entry.revisions[0]);
+    assertEquals(1, entry.revisions[1]);
+    assertEquals(new FileChange("//depot/a.txt", null, 3, "edit").getType(), entry.types[0]);
+
+    PerforceSubmittedChangesCache.Entry emptyEntry = loaded.getEntry(KEY, 2);
+    assertNotNull(emptyEntry);
+    assertNull(emptyEntry.description);
+    assertEquals(0, emptyEntry.depotPaths.length);
+
+    assertNull(loaded.getEntry(KEY, 3));
+    assertNull(loaded.getEntry(new ConnectionKey("other:1666", "client", "user"), 1));
+  }
+
+  public void testLeastRecentlyUsedDropped() {
+    PerforceSubmittedChangesCache cache = new PerforceSubmittedChangesCache(myCacheFile);
+    int maxSize = 2000;
+    for (int i = 0; i < maxSize; i++) {
+      cache.put(KEY, i, "change " + i, Collections.emptyList());
+    }
+    assertNotNull(cache.getEntry(KEY, 0));
+    cache.put(KEY, maxSize, "change " + maxSize, Collections.emptyList());
+
+    assertNotNull(cache.getEntry(KEY, 0));
+    assertNull(cache.getEntry(KEY, 1));
+    assertNotNull(cache.getEntry(KEY, maxSize));
+  }
+
+  public void testOtherVersionIgnored() throws IOException {
+    FileUtil.writeToFile(myCacheFile, new byte[]{0, 0, 0, 1, 0, 0, 0, 1});
+    PerforceSubmittedChangesCache cache = new PerforceSubmittedChangesCache(myCacheFile);
+    assertNull(cache.getEntry(KEY, 1));
+  }
+
+  private static void assertOrderedEquals(String[] actual, String... expected) {
+    assertEquals(List.of(expected), List.of(actual));
+  }
+}